@@ -0,0 +1,146 @@
+/********************************************************************************
+ * Copyright (c) 2020 AITIA
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *   AITIA - implementation
+ ********************************************************************************/
+
+package ai.aitia.arrowhead.application.library.benchmark;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.security.KeyStore;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.util.ReflectionUtils;
+
+import ai.aitia.arrowhead.application.library.ArrowheadService;
+import ai.aitia.arrowhead.application.library.util.ApplicationCommonConstants;
+import eu.arrowhead.common.CommonConstants;
+import eu.arrowhead.common.SSLProperties;
+import eu.arrowhead.common.http.HttpService;
+
+/**
+ * Creates {@link ArrowheadService} instances in a minimal Spring context (no web server, no application init listener), so the benchmarks measure
+ * the library code only, configured with the same defaults as a real application.
+ */
+public final class BenchmarkSupport {
+	
+	//=================================================================================================
+	// members
+	
+	public static final String SYSTEM_NAME = "benchmark";
+	public static final String STORE_TYPE = "PKCS12";
+	public static final String STORE_PASSWORD = "123456";
+	public static final String KEY_ALIAS = "benchmark";
+	public static final String KEYSTORE_RESOURCE = "benchmark.p12";
+	public static final String TRUSTSTORE_RESOURCE = "truststore.p12";
+	
+	private static final String PROPERTY_SOURCE_NAME = "benchmark";
+	
+	//=================================================================================================
+	// methods
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Creates the service in a minimal Spring context, so every property that is not set here gets its default value exactly as in an application.
+	 * 
+	 * @param httpService the http service used by the created instance
+	 * @param sslEnabled whether the created instance works in secure mode (the key material is the benchmark keystore)
+	 * @return an initialized ArrowheadService
+	 */
+	public static ArrowheadService createArrowheadService(final HttpService httpService, final boolean sslEnabled) throws Exception {
+		final Map<String,Object> arrowheadContext = new ConcurrentHashMap<>();
+		if (sslEnabled) {
+			final KeyStore keyStore = loadStore(KEYSTORE_RESOURCE);
+			arrowheadContext.put(CommonConstants.SERVER_PUBLIC_KEY, keyStore.getCertificate(KEY_ALIAS).getPublicKey());
+			arrowheadContext.put(CommonConstants.SERVER_PRIVATE_KEY, keyStore.getKey(KEY_ALIAS, STORE_PASSWORD.toCharArray()));
+		}
+		
+		final Map<String,Object> properties = new HashMap<>();
+		properties.put(ApplicationCommonConstants.APPLICATION_SYSTEM_NAME, SYSTEM_NAME);
+		properties.put(ApplicationCommonConstants.APPLICATION_SERVER_ADDRESS, "localhost");
+		
+		final AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+		context.getEnvironment().getPropertySources().addFirst(new MapPropertySource(PROPERTY_SOURCE_NAME, properties));
+		context.registerBean(CommonConstants.ARROWHEAD_CONTEXT, Map.class, () -> arrowheadContext);
+		context.registerBean(SSLProperties.class, () -> new BenchmarkSSLProperties(sslEnabled));
+		context.registerBean(HttpService.class, () -> httpService);
+		context.registerBean(ArrowheadService.class);
+		context.refresh();
+		
+		return context.getBean(ArrowheadService.class);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public static KeyStore loadStore(final String resource) throws Exception {
+		final KeyStore store = KeyStore.getInstance(STORE_TYPE);
+		store.load(new ClassPathResource(resource).getInputStream(), STORE_PASSWORD.toCharArray());
+		return store;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public static Object getField(final Object target, final String name) {
+		final Field field = ReflectionUtils.findField(target.getClass(), name);
+		ReflectionUtils.makeAccessible(field);
+		return ReflectionUtils.getField(field, target);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public static MethodHandle getPrivateMethod(final Class<?> clazz, final String name, final Class<?>... parameterTypes) throws IllegalAccessException {
+		final Method method = ReflectionUtils.findMethod(clazz, name, parameterTypes);
+		ReflectionUtils.makeAccessible(method);
+		return MethodHandles.lookup().unreflect(method);
+	}
+	
+	//=================================================================================================
+	// assistant methods
+	
+	//-------------------------------------------------------------------------------------------------
+	private BenchmarkSupport() {
+		throw new UnsupportedOperationException();
+	}
+	
+	//=================================================================================================
+	// nested classes
+	
+	//-------------------------------------------------------------------------------------------------
+	public static class BenchmarkSSLProperties extends SSLProperties {
+		
+		//=================================================================================================
+		// members
+		
+		private final boolean sslEnabled;
+		
+		//=================================================================================================
+		// methods
+		
+		//-------------------------------------------------------------------------------------------------
+		public BenchmarkSSLProperties(final boolean sslEnabled) {
+			this.sslEnabled = sslEnabled;
+		}
+		
+		//-------------------------------------------------------------------------------------------------
+		@Override public boolean isSslEnabled() { return sslEnabled; }
+		@Override public String getKeyStoreType() { return STORE_TYPE; }
+		@Override public Resource getKeyStore() { return new ClassPathResource(KEYSTORE_RESOURCE); }
+		@Override public String getKeyStorePassword() { return STORE_PASSWORD; }
+		@Override public String getKeyPassword() { return STORE_PASSWORD; }
+		@Override public Resource getTrustStore() { return new ClassPathResource(TRUSTSTORE_RESOURCE); }
+		@Override public String getTrustStorePassword() { return STORE_PASSWORD; }
+	}
+}
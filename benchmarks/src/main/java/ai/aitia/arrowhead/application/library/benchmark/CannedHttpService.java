@@ -0,0 +1,54 @@
+/********************************************************************************
+ * Copyright (c) 2020 AITIA
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *   AITIA - implementation
+ ********************************************************************************/
+
+package ai.aitia.arrowhead.application.library.benchmark;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.util.UriComponents;
+
+import eu.arrowhead.common.http.HttpService;
+
+/**
+ * Answers every request with an empty 200 response without any network traffic. The last requested URI is kept
+ * so the request assembly can't be eliminated as dead code.
+ */
+public class CannedHttpService extends HttpService {
+	
+	//=================================================================================================
+	// members
+	
+	private volatile UriComponents lastUri;
+	
+	//=================================================================================================
+	// methods
+	
+	//-------------------------------------------------------------------------------------------------
+	@Override
+	public <T,P> ResponseEntity<T> sendRequest(final UriComponents uri, final HttpMethod method, final Class<T> responseType, final P payload) {
+		lastUri = uri;
+		return ResponseEntity.ok().build();
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@Override
+	public <T> ResponseEntity<T> sendRequest(final UriComponents uri, final HttpMethod method, final Class<T> responseType) {
+		lastUri = uri;
+		return ResponseEntity.ok().build();
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public UriComponents getLastUri() {
+		return lastUri;
+	}
+}
@@ -0,0 +1,83 @@
+/********************************************************************************
+ * Copyright (c) 2020 AITIA
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *   AITIA - implementation
+ ********************************************************************************/
+
+package ai.aitia.arrowhead.application.library.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ai.aitia.arrowhead.application.library.ArrowheadService;
+import ai.aitia.arrowhead.application.library.util.CoreServiceUri;
+import ai.aitia.arrowhead.application.library.util.CoreServiceUriCache;
+import eu.arrowhead.common.core.CoreSystemService;
+
+/**
+ * Cached getCoreServiceUri lookups with a single caller and with many concurrent callers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CoreServiceUriBenchmark {
+	
+	//=================================================================================================
+	// members
+	
+	private ArrowheadService arrowheadService;
+	
+	//=================================================================================================
+	// methods
+	
+	//-------------------------------------------------------------------------------------------------
+	@Setup
+	public void setup() throws Exception {
+		arrowheadService = BenchmarkSupport.createArrowheadService(new CannedHttpService(), false);
+		final CoreServiceUriCache cache = (CoreServiceUriCache) BenchmarkSupport.getField(arrowheadService, "coreServiceUriCache");
+		cache.put(CoreSystemService.ORCHESTRATION_SERVICE, new CoreServiceUri("10.0.0.2", 8441, "/orchestrator/orchestration"));
+		cache.put(CoreSystemService.EVENT_PUBLISH_SERVICE, new CoreServiceUri("10.0.0.3", 8455, "/eventhandler/publish"));
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@Benchmark
+	@Threads(1)
+	public CoreServiceUri singleThread() {
+		return arrowheadService.getCoreServiceUri(CoreSystemService.ORCHESTRATION_SERVICE);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@Benchmark
+	@Threads(8)
+	public CoreServiceUri contended() {
+		return arrowheadService.getCoreServiceUri(CoreSystemService.ORCHESTRATION_SERVICE);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@Benchmark
+	@Threads(8)
+	public CoreServiceUri contendedMixedServices() {
+		return arrowheadService.getCoreServiceUri((Thread.currentThread().getId() & 1) == 0 ? CoreSystemService.ORCHESTRATION_SERVICE : CoreSystemService.EVENT_PUBLISH_SERVICE);
+	}
+}
@@ -0,0 +1,71 @@
+/********************************************************************************
+ * Copyright (c) 2020 AITIA
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *   AITIA - implementation
+ ********************************************************************************/
+
+package ai.aitia.arrowhead.application.library.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ai.aitia.arrowhead.application.library.ArrowheadService;
+import eu.arrowhead.common.dto.shared.OrchestrationFormRequestDTO;
+
+/**
+ * Cost of getOrchestrationFormBuilder in secure mode (the requester system's public key is Base64 encoded on every call)
+ * and in insecure mode.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrchestrationFormBuilderBenchmark {
+	
+	//=================================================================================================
+	// members
+	
+	private ArrowheadService secureService;
+	private ArrowheadService insecureService;
+	
+	//=================================================================================================
+	// methods
+	
+	//-------------------------------------------------------------------------------------------------
+	@Setup
+	public void setup() throws Exception {
+		secureService = BenchmarkSupport.createArrowheadService(new CannedHttpService(), true);
+		insecureService = BenchmarkSupport.createArrowheadService(new CannedHttpService(), false);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@Benchmark
+	public OrchestrationFormRequestDTO.Builder secure() {
+		return secureService.getOrchestrationFormBuilder();
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@Benchmark
+	public OrchestrationFormRequestDTO.Builder insecure() {
+		return insecureService.getOrchestrationFormBuilder();
+	}
+}
@@ -0,0 +1,88 @@
+/********************************************************************************
+ * Copyright (c) 2020 AITIA
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *   AITIA - implementation
+ ********************************************************************************/
+
+package ai.aitia.arrowhead.application.library.benchmark;
+
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLContext;
+
+import org.apache.http.ssl.SSLContexts;
+import org.apache.http.ssl.TrustStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ai.aitia.arrowhead.application.library.util.TlsMaterialProvider;
+
+/**
+ * Cost of the SSL context construction done by ArrowheadService.connnectServiceWS on every call: loading the key and trust stores
+ * from their resources and building the context from them, compared to the shared context of TlsMaterialProvider.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SslContextBenchmark {
+	
+	//=================================================================================================
+	// members
+	
+	private static final TrustStrategy ACCEPTING_TRUST_STRATEGY = (final X509Certificate[] chain, final String authType) -> true;
+	
+	private KeyStore keyStore;
+	private KeyStore trustStore;
+	private TlsMaterialProvider tlsMaterialProvider;
+	
+	//=================================================================================================
+	// methods
+	
+	//-------------------------------------------------------------------------------------------------
+	@Setup
+	public void setup() throws Exception {
+		keyStore = BenchmarkSupport.loadStore(BenchmarkSupport.KEYSTORE_RESOURCE);
+		trustStore = BenchmarkSupport.loadStore(BenchmarkSupport.TRUSTSTORE_RESOURCE);
+		tlsMaterialProvider = new TlsMaterialProvider(new BenchmarkSupport.BenchmarkSSLProperties(true));
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@Benchmark
+	public SSLContext loadStoresAndBuild() throws Exception {
+		final KeyStore loadedTrustStore = BenchmarkSupport.loadStore(BenchmarkSupport.TRUSTSTORE_RESOURCE);
+		final KeyStore loadedKeyStore = BenchmarkSupport.loadStore(BenchmarkSupport.KEYSTORE_RESOURCE);
+		return SSLContexts.custom().loadTrustMaterial(loadedTrustStore, ACCEPTING_TRUST_STRATEGY).loadKeyMaterial(loadedKeyStore, BenchmarkSupport.STORE_PASSWORD.toCharArray()).build();
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@Benchmark
+	public SSLContext buildFromLoadedStores() throws Exception {
+		return SSLContexts.custom().loadTrustMaterial(trustStore, ACCEPTING_TRUST_STRATEGY).loadKeyMaterial(keyStore, BenchmarkSupport.STORE_PASSWORD.toCharArray()).build();
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@Benchmark
+	public SSLContext sharedContext() {
+		return tlsMaterialProvider.getSSLContext();
+	}
+}
@@ -0,0 +1,68 @@
+/********************************************************************************
+ * Copyright (c) 2020 AITIA
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *   AITIA - implementation
+ ********************************************************************************/
+
+package ai.aitia.arrowhead.application.library.benchmark;
+
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ai.aitia.arrowhead.application.library.ArrowheadService;
+
+/**
+ * Cost of resolving the URI scheme from an interface name (ArrowheadService.getUriSchemeFromInterfaceName).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UriSchemeBenchmark {
+	
+	//=================================================================================================
+	// members
+	
+	@Param({ "HTTP-SECURE-JSON", "HTTP-INSECURE-JSON", "HTTPS-SECURE-JSON", "HTTP-JSON" })
+	private String interfaceName;
+	
+	private ArrowheadService arrowheadService;
+	private MethodHandle getUriSchemeFromInterfaceName;
+	
+	//=================================================================================================
+	// methods
+	
+	//-------------------------------------------------------------------------------------------------
+	@Setup
+	public void setup() throws Exception {
+		arrowheadService = BenchmarkSupport.createArrowheadService(new CannedHttpService(), false);
+		getUriSchemeFromInterfaceName = BenchmarkSupport.getPrivateMethod(ArrowheadService.class, "getUriSchemeFromInterfaceName", String.class);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@Benchmark
+	public String uriSchemeFromInterfaceName() throws Throwable {
+		return (String) getUriSchemeFromInterfaceName.invokeExact(arrowheadService, interfaceName);
+	}
+}
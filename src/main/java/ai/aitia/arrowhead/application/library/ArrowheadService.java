@@ -13,36 +13,49 @@
 
 package ai.aitia.arrowhead.application.library;
 
-import java.io.IOException;
-import java.security.KeyStore;
-import java.security.KeyStoreException;
-import java.security.NoSuchAlgorithmException;
+import java.nio.file.Paths;
 import java.security.PrivateKey;
 import java.security.PublicKey;
-import java.security.cert.CertificateException;
-import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.ServiceConfigurationError;
-import java.util.UUID;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
-import javax.net.ssl.SSLContext;
 
-import org.apache.http.ssl.SSLContexts;
-import org.apache.http.ssl.TrustStrategy;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.eclipse.paho.client.mqttv3.IMqttClient;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
 import org.eclipse.paho.client.mqttv3.MqttCallback;
 import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.MqttClientPersistence;
 import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
 import org.eclipse.paho.client.mqttv3.MqttException;
 import org.eclipse.paho.client.mqttv3.internal.security.SSLSocketFactoryFactory;
 import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.eclipse.paho.client.mqttv3.persist.MqttDefaultFilePersistence;
+import org.jose4j.jwt.JwtClaims;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpMethod;
@@ -51,13 +64,44 @@ import org.springframework.stereotype.Component;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.socket.WebSocketHandler;
-import org.springframework.web.socket.client.WebSocketConnectionManager;
 import org.springframework.web.socket.client.standard.StandardWebSocketClient;
 import org.springframework.web.util.UriComponents;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import ai.aitia.arrowhead.application.library.mqtt.AsyncMqttConnection;
+import ai.aitia.arrowhead.application.library.mqtt.BufferedMqttPublisher;
+import ai.aitia.arrowhead.application.library.mqtt.ManagedMqttClient;
+import ai.aitia.arrowhead.application.library.mqtt.MqttConnectionLease;
+import ai.aitia.arrowhead.application.library.mqtt.MqttConnectionManager;
+import ai.aitia.arrowhead.application.library.mqtt.MqttHandlerSettings;
+import ai.aitia.arrowhead.application.library.mqtt.MqttOfflineBuffer;
+import ai.aitia.arrowhead.application.library.mqtt.MqttReconnectSettings;
+import ai.aitia.arrowhead.application.library.mqtt.MqttTopicDispatcher;
 import ai.aitia.arrowhead.application.library.util.ApplicationCommonConstants;
+import ai.aitia.arrowhead.application.library.util.AuthorizationPublicKeyCache;
+import ai.aitia.arrowhead.application.library.util.CircuitBreakerOpenException;
+import ai.aitia.arrowhead.application.library.util.CircuitBreakerRegistry;
+import ai.aitia.arrowhead.application.library.util.CircuitBreakerSettings;
+import ai.aitia.arrowhead.application.library.util.CoreServiceDiscoveryResult;
 import ai.aitia.arrowhead.application.library.util.CoreServiceUri;
+import ai.aitia.arrowhead.application.library.util.CoreServiceUriCache;
+import ai.aitia.arrowhead.application.library.util.DirectBufferPool;
+import ai.aitia.arrowhead.application.library.util.KeyStoreWatcher;
+import ai.aitia.arrowhead.application.library.util.LoadBalancingStrategy;
+import ai.aitia.arrowhead.application.library.util.OrchestrationResponseCache;
+import ai.aitia.arrowhead.application.library.util.OverflowPolicy;
+import ai.aitia.arrowhead.application.library.util.PreparedServiceEndpoint;
+import ai.aitia.arrowhead.application.library.util.ServerKeyMaterial;
+import ai.aitia.arrowhead.application.library.util.ServiceProviderGroup;
+import ai.aitia.arrowhead.application.library.util.ServiceRegistryOperationResult;
+import ai.aitia.arrowhead.application.library.util.TlsMaterialProvider;
+import ai.aitia.arrowhead.application.library.util.TlsMaterialProvider.TlsMaterial;
+import ai.aitia.arrowhead.application.library.util.VerifiedTokenCache;
+import ai.aitia.arrowhead.application.library.ws.WebSocketConnection;
+import ai.aitia.arrowhead.application.library.ws.WebSocketConnectionRegistry;
+import ai.aitia.arrowhead.application.library.ws.WebSocketHeartbeatSettings;
+import ai.aitia.arrowhead.application.library.ws.WebSocketReconnectSettings;
+import ai.aitia.arrowhead.application.library.ws.WebSocketSenderSettings;
 import eu.arrowhead.common.CommonConstants;
 import eu.arrowhead.common.SSLProperties;
 import eu.arrowhead.common.Utilities;
@@ -69,10 +113,12 @@ import eu.arrowhead.common.dto.shared.DeviceRegistryOnboardingWithNameRequestDTO
 import eu.arrowhead.common.dto.shared.DeviceRegistryOnboardingWithNameResponseDTO;
 import eu.arrowhead.common.dto.shared.DeviceRegistryRequestDTO;
 import eu.arrowhead.common.dto.shared.DeviceRegistryResponseDTO;
+import eu.arrowhead.common.dto.shared.EventDTO;
 import eu.arrowhead.common.dto.shared.EventPublishRequestDTO;
 import eu.arrowhead.common.dto.shared.OrchestrationFormRequestDTO;
 import eu.arrowhead.common.dto.shared.OrchestrationFormRequestDTO.Builder;
 import eu.arrowhead.common.dto.shared.OrchestrationResponseDTO;
+import eu.arrowhead.common.dto.shared.OrchestrationResultDTO;
 import eu.arrowhead.common.dto.shared.ServiceQueryFormDTO;
 import eu.arrowhead.common.dto.shared.ServiceQueryResultDTO;
 import eu.arrowhead.common.dto.shared.ServiceRegistryRequestDTO;
@@ -98,6 +144,8 @@ public class ArrowheadService {
 	//=================================================================================================
 	// members
 	
+	private static final int MQTT_SCHEDULER_THREAD_NUM = 2;
+	
 	@Value(ApplicationCommonConstants.$APPLICATION_SYSTEM_NAME)
 	private String applicationSystemName;
 	
@@ -113,6 +161,198 @@ public class ArrowheadService {
 	@Value(CommonConstants.$SERVICEREGISTRY_PORT_WD)
 	private int serviceRegistryPort;
 	
+	@Value(ApplicationCommonConstants.$CORE_SERVICE_DISCOVERY_MAX_PARALLELISM_WD)
+	private int coreServiceDiscoveryMaxParallelism;
+	
+	@Value(ApplicationCommonConstants.$CORE_SERVICE_DISCOVERY_TIMEOUT_WD)
+	private long coreServiceDiscoveryTimeout;
+	
+	@Value(ApplicationCommonConstants.$SERVICE_REGISTRATION_MAX_PARALLELISM_WD)
+	private int serviceRegistrationMaxParallelism;
+	
+	@Value(ApplicationCommonConstants.$PROVIDER_GROUP_EJECTION_FAILURE_THRESHOLD_WD)
+	private int providerGroupEjectionFailureThreshold;
+	
+	@Value(ApplicationCommonConstants.$PROVIDER_GROUP_EJECTION_TIME_WD)
+	private long providerGroupEjectionTime;
+	
+	@Value(ApplicationCommonConstants.$CORE_SERVICE_URI_TTL_WD)
+	private long coreServiceUriTtl;
+	
+	@Value(ApplicationCommonConstants.$CORE_SERVICE_URI_REFRESH_AHEAD_WD)
+	private long coreServiceUriRefreshAhead;
+	
+	@Value(ApplicationCommonConstants.$CORE_SERVICE_LAZY_RESOLUTION_ENABLED_WD)
+	private boolean coreServiceLazyResolutionEnabled;
+	
+	@Value(ApplicationCommonConstants.$CORE_SERVICE_URI_NEGATIVE_TTL_WD)
+	private long coreServiceUriNegativeTtl;
+	
+	@Value(ApplicationCommonConstants.$ORCHESTRATION_CACHE_ENABLED_WD)
+	private boolean orchestrationCacheEnabled;
+	
+	@Value(ApplicationCommonConstants.$ORCHESTRATION_CACHE_MAX_SIZE_WD)
+	private int orchestrationCacheMaxSize;
+	
+	@Value(ApplicationCommonConstants.$ORCHESTRATION_CACHE_TTL_WD)
+	private long orchestrationCacheTtl;
+	
+	@Value(ApplicationCommonConstants.$ORCHESTRATION_CACHE_INVALIDATION_EVENT_TYPES_WD)
+	private String[] orchestrationCacheInvalidationEventTypes;
+	
+	@Value(ApplicationCommonConstants.$ORCHESTRATION_CACHE_FLUSH_EVENT_TYPES_WD)
+	private String[] orchestrationCacheFlushEventTypes;
+	
+	@Value(ApplicationCommonConstants.$CIRCUIT_BREAKER_ENABLED_WD)
+	private boolean circuitBreakerEnabled;
+	
+	@Value(ApplicationCommonConstants.$CIRCUIT_BREAKER_FAILURE_THRESHOLD_WD)
+	private int circuitBreakerFailureThreshold;
+	
+	@Value(ApplicationCommonConstants.$CIRCUIT_BREAKER_OPEN_DURATION_WD)
+	private long circuitBreakerOpenDuration;
+	
+	@Value(ApplicationCommonConstants.$CIRCUIT_BREAKER_TIMEOUT_MIN_WD)
+	private long circuitBreakerTimeoutMin;
+	
+	@Value(ApplicationCommonConstants.$CIRCUIT_BREAKER_TIMEOUT_MAX_WD)
+	private long circuitBreakerTimeoutMax;
+	
+	@Value(ApplicationCommonConstants.$CIRCUIT_BREAKER_TIMEOUT_PERCENTILE_WD)
+	private double circuitBreakerTimeoutPercentile;
+	
+	@Value(ApplicationCommonConstants.$CIRCUIT_BREAKER_TIMEOUT_MULTIPLIER_WD)
+	private double circuitBreakerTimeoutMultiplier;
+	
+	@Value(ApplicationCommonConstants.$CIRCUIT_BREAKER_TIMEOUT_THREAD_NUM_WD)
+	private int circuitBreakerTimeoutThreadNum;
+	
+	@Value(ApplicationCommonConstants.$KEYSTORE_RELOAD_ENABLED_WD)
+	private boolean keystoreReloadEnabled;
+	
+	@Value(ApplicationCommonConstants.$KEYSTORE_RELOAD_INTERVAL_WD)
+	private long keystoreReloadInterval;
+	
+	@Value(ApplicationCommonConstants.$MQTT_SHARED_SOCKET_FACTORY_ENABLED_WD)
+	private boolean mqttSharedSocketFactoryEnabled;
+	
+	@Value(ApplicationCommonConstants.$MQTT_ASYNC_MAX_INFLIGHT_WD)
+	private int mqttAsyncMaxInflight;
+	
+	@Value(ApplicationCommonConstants.$MQTT_ASYNC_PUBLISH_TIMEOUT_WD)
+	private long mqttAsyncPublishTimeout;
+	
+	@Value(ApplicationCommonConstants.$MQTT_PERSISTENCE_DIRECTORY_WD)
+	private String mqttPersistenceDirectory;
+	
+	@Value(ApplicationCommonConstants.$MQTT_CLEAN_SESSION_WD)
+	private boolean mqttCleanSession;
+	
+	@Value(ApplicationCommonConstants.$MQTT_OFFLINE_BUFFER_DIRECTORY_WD)
+	private String mqttOfflineBufferDirectory;
+	
+	@Value(ApplicationCommonConstants.$MQTT_OFFLINE_BUFFER_SEGMENT_SIZE_WD)
+	private int mqttOfflineBufferSegmentSize;
+	
+	@Value(ApplicationCommonConstants.$MQTT_OFFLINE_BUFFER_MAX_SIZE_WD)
+	private long mqttOfflineBufferMaxSize;
+	
+	@Value(ApplicationCommonConstants.$MQTT_OFFLINE_BUFFER_OVERFLOW_POLICY_WD)
+	private OverflowPolicy mqttOfflineBufferOverflowPolicy;
+	
+	@Value(ApplicationCommonConstants.$MQTT_OFFLINE_BUFFER_BLOCK_TIMEOUT_WD)
+	private long mqttOfflineBufferBlockTimeout;
+	
+	@Value(ApplicationCommonConstants.$MQTT_OFFLINE_BUFFER_FORCE_INTERVAL_WD)
+	private long mqttOfflineBufferForceInterval;
+	
+	@Value(ApplicationCommonConstants.$MQTT_OFFLINE_BUFFER_DRAIN_RATE_WD)
+	private int mqttOfflineBufferDrainRate;
+	
+	@Value(ApplicationCommonConstants.$MQTT_RECONNECT_ENABLED_WD)
+	private boolean mqttReconnectEnabled;
+	
+	@Value(ApplicationCommonConstants.$MQTT_RECONNECT_INITIAL_DELAY_WD)
+	private long mqttReconnectInitialDelay;
+	
+	@Value(ApplicationCommonConstants.$MQTT_RECONNECT_MAX_DELAY_WD)
+	private long mqttReconnectMaxDelay;
+	
+	@Value(ApplicationCommonConstants.$MQTT_RECONNECT_MAX_ATTEMPTS_WD)
+	private int mqttReconnectMaxAttempts;
+	
+	@Value(ApplicationCommonConstants.$MQTT_HANDLER_THREAD_NUM_WD)
+	private int mqttHandlerThreadNum;
+	
+	@Value(ApplicationCommonConstants.$MQTT_HANDLER_QUEUE_CAPACITY_WD)
+	private int mqttHandlerQueueCapacity;
+	
+	@Value(ApplicationCommonConstants.$MQTT_HANDLER_OVERFLOW_POLICY_WD)
+	private OverflowPolicy mqttHandlerOverflowPolicy;
+	
+	@Value(ApplicationCommonConstants.$MQTT_HANDLER_BLOCK_TIMEOUT_WD)
+	private long mqttHandlerBlockTimeout;
+	
+	@Value(ApplicationCommonConstants.$WS_RECONNECT_ENABLED_WD)
+	private boolean wsReconnectEnabled;
+	
+	@Value(ApplicationCommonConstants.$WS_RECONNECT_INITIAL_DELAY_WD)
+	private long wsReconnectInitialDelay;
+	
+	@Value(ApplicationCommonConstants.$WS_RECONNECT_MAX_DELAY_WD)
+	private long wsReconnectMaxDelay;
+	
+	@Value(ApplicationCommonConstants.$WS_RECONNECT_MULTIPLIER_WD)
+	private double wsReconnectMultiplier;
+	
+	@Value(ApplicationCommonConstants.$WS_RECONNECT_MAX_ATTEMPTS_WD)
+	private int wsReconnectMaxAttempts;
+	
+	@Value(ApplicationCommonConstants.$WS_SEND_QUEUE_CAPACITY_WD)
+	private int wsSendQueueCapacity;
+	
+	@Value(ApplicationCommonConstants.$WS_SEND_OVERFLOW_POLICY_WD)
+	private OverflowPolicy wsSendOverflowPolicy;
+	
+	@Value(ApplicationCommonConstants.$WS_SEND_BLOCK_TIMEOUT_WD)
+	private long wsSendBlockTimeout;
+	
+	@Value(ApplicationCommonConstants.$WS_SEND_COALESCING_ENABLED_WD)
+	private boolean wsSendCoalescingEnabled;
+	
+	@Value(ApplicationCommonConstants.$WS_SEND_BATCH_MAX_SIZE_WD)
+	private int wsSendBatchMaxSize;
+	
+	@Value(ApplicationCommonConstants.$WS_SEND_THREAD_NUM_WD)
+	private int wsSendThreadNum;
+	
+	@Value(ApplicationCommonConstants.$WS_BUFFER_SIZE_WD)
+	private int wsBufferSize;
+	
+	@Value(ApplicationCommonConstants.$WS_BUFFER_POOL_MAX_SIZE_WD)
+	private int wsBufferPoolMaxSize;
+	
+	@Value(ApplicationCommonConstants.$WS_HEARTBEAT_ENABLED_WD)
+	private boolean wsHeartbeatEnabled;
+	
+	@Value(ApplicationCommonConstants.$WS_HEARTBEAT_INTERVAL_WD)
+	private long wsHeartbeatInterval;
+	
+	@Value(ApplicationCommonConstants.$WS_HEARTBEAT_MAX_MISSED_PONGS_WD)
+	private int wsHeartbeatMaxMissedPongs;
+	
+	@Value(ApplicationCommonConstants.$TOKEN_SECURITY_FILTER_ENABLED_WD)
+	private boolean tokenSecurityFilterEnabled;
+	
+	@Value(ApplicationCommonConstants.$TOKEN_CACHE_MAX_SIZE_WD)
+	private int tokenCacheMaxSize;
+	
+	@Value(ApplicationCommonConstants.$TOKEN_CACHE_MAX_TTL_WD)
+	private long tokenCacheMaxTtl;
+	
+	@Value(ApplicationCommonConstants.$AUTHORIZATION_PUBLIC_KEY_REFRESH_INTERVAL_WD)
+	private long authorizationPublicKeyRefreshInterval;
+	
 	@Resource(name = CommonConstants.ARROWHEAD_CONTEXT)
 	private Map<String,Object> arrowheadContext;
 
@@ -125,26 +365,124 @@ public class ArrowheadService {
 	private final static String INTERFACE_SECURE_FLAG = "SECURE";
 	private final static String INTERFACE_INSECURE_FLAG = "INSECURE";
 	
+	private final Set<CoreSystemService> publicCoreSystemServices = EnumSet.noneOf(CoreSystemService.class);
+	private CoreServiceUriCache coreServiceUriCache;
+	private OrchestrationResponseCache orchestrationResponseCache;
+	private CircuitBreakerRegistry circuitBreakerRegistry;
+	private TlsMaterialProvider tlsMaterialProvider;
+	private KeyStoreWatcher keyStoreWatcher;
+	private AuthorizationPublicKeyCache authorizationPublicKeyCache;
+	private VerifiedTokenCache verifiedTokenCache;
+	private WebSocketConnectionRegistry webSocketConnectionRegistry;
+	private volatile MqttConnectionManager mqttConnectionManager; // created on first use
+	private MqttReconnectSettings mqttReconnectSettings;
+	private volatile ScheduledExecutorService mqttScheduler; // created on first use
+	private MqttHandlerSettings mqttHandlerSettings;
+	private final List<MqttTopicDispatcher> mqttTopicDispatchers = new CopyOnWriteArrayList<>();
+	private final List<BufferedMqttPublisher> bufferedMqttPublishers = new CopyOnWriteArrayList<>();
+	
 	private final Logger logger = LogManager.getLogger(ArrowheadService.class);
 	
+	//=================================================================================================
+	// methods
+	
+	//-------------------------------------------------------------------------------------------------
+	@PostConstruct
+	public void init() {
+		publicCoreSystemServices.addAll(CommonConstants.PUBLIC_CORE_SYSTEM_SERVICES);
+		tlsMaterialProvider = new TlsMaterialProvider(sslProperties);
+		if (sslProperties.isSslEnabled()) {
+			tlsMaterialProvider.addReloadListener(this::storeServerKeyMaterialInContext);
+			if (keystoreReloadEnabled) {
+				keyStoreWatcher = new KeyStoreWatcher(tlsMaterialProvider, sslProperties, keystoreReloadInterval);
+				keyStoreWatcher.start();
+			}
+			if (tokenSecurityFilterEnabled) {
+				authorizationPublicKeyCache = new AuthorizationPublicKeyCache(this::queryAuthorizationPublicKey, key -> verifiedTokenCache.invalidateAll(), authorizationPublicKeyRefreshInterval);
+				verifiedTokenCache = new VerifiedTokenCache(this::getMyPrivateKey, authorizationPublicKeyCache::get, tokenCacheMaxSize, tokenCacheMaxTtl);
+				tlsMaterialProvider.addReloadListener(material -> verifiedTokenCache.invalidateAll());
+			}
+		}
+		coreServiceUriCache = new CoreServiceUriCache(this::queryCoreServiceUri, this::storeCoreServiceUriInContext, getUriScheme(), coreServiceUriTtl, coreServiceUriRefreshAhead,
+													  coreServiceUriNegativeTtl);
+		if (orchestrationCacheEnabled) {
+			orchestrationResponseCache = new OrchestrationResponseCache(orchestrationCacheMaxSize, orchestrationCacheTtl, Arrays.asList(orchestrationCacheInvalidationEventTypes),
+																		Arrays.asList(orchestrationCacheFlushEventTypes));
+		}
+		if (circuitBreakerEnabled) {
+			final CircuitBreakerSettings settings = new CircuitBreakerSettings(circuitBreakerFailureThreshold, circuitBreakerOpenDuration, circuitBreakerTimeoutMin, circuitBreakerTimeoutMax,
+																			   circuitBreakerTimeoutPercentile, circuitBreakerTimeoutMultiplier);
+			circuitBreakerRegistry = new CircuitBreakerRegistry(settings, circuitBreakerTimeoutThreadNum);
+		}
+		final WebSocketReconnectSettings reconnectSettings = new WebSocketReconnectSettings(wsReconnectEnabled, wsReconnectInitialDelay, wsReconnectMaxDelay, wsReconnectMultiplier,
+																							 wsReconnectMaxAttempts);
+		final WebSocketSenderSettings senderSettings = new WebSocketSenderSettings(wsSendQueueCapacity, wsSendOverflowPolicy, wsSendBlockTimeout, wsSendCoalescingEnabled, wsSendBatchMaxSize,
+																				  WebSocketSenderSettings.DEFAULT_BATCH_DELIMITER);
+		webSocketConnectionRegistry = new WebSocketConnectionRegistry(this::getWebSocketClient, reconnectSettings, senderSettings, wsSendThreadNum,
+																	  new DirectBufferPool(wsBufferSize, wsBufferPoolMaxSize),
+																	  new WebSocketHeartbeatSettings(wsHeartbeatEnabled, wsHeartbeatInterval, wsHeartbeatMaxMissedPongs));
+		mqttReconnectSettings = new MqttReconnectSettings(mqttReconnectEnabled, mqttReconnectInitialDelay, mqttReconnectMaxDelay, mqttReconnectMaxAttempts);
+		mqttHandlerSettings = new MqttHandlerSettings(mqttHandlerThreadNum, mqttHandlerQueueCapacity, mqttHandlerOverflowPolicy, mqttHandlerBlockTimeout);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@PreDestroy
+	public void destroy() {
+		coreServiceUriCache.shutdown();
+		if (keyStoreWatcher != null) {
+			keyStoreWatcher.stop();
+		}
+		if (authorizationPublicKeyCache != null) {
+			authorizationPublicKeyCache.shutdown();
+		}
+		if (circuitBreakerRegistry != null) {
+			circuitBreakerRegistry.shutdown();
+		}
+		webSocketConnectionRegistry.shutdown();
+		if (mqttConnectionManager != null) {
+			mqttConnectionManager.shutdown();
+		}
+		for (final BufferedMqttPublisher publisher : bufferedMqttPublishers) {
+			publisher.close();
+		}
+		for (final MqttTopicDispatcher dispatcher : mqttTopicDispatchers) {
+			dispatcher.shutdown();
+		}
+		if (mqttScheduler != null) {
+			mqttScheduler.shutdownNow();
+		}
+	}
+	
 	//=================================================================================================
 	// General Core System services and support methods
 
 	//------------------------------------------------------------------------------------------------
 	/**
+	 * If the core service has not been resolved yet, then it is queried from Service Registry on demand (unless the 'core.service.lazy.resolution.enabled'
+	 * property is false). Concurrent first callers share one query and an unsuccessful lookup is repeated only after 'core.service.uri.negative.ttl'.
+	 * Resolved URIs are served from a cache which is refreshed in the background when the 'core.service.uri.ttl' property is set.
+	 * 
 	 * @param coreSystemService CoreSystemService enum which represents an Arrowhead Core System Service
-	 * @return the URI details of the Arrowhead Core System or null when the specified coreSystemService is not a public one or ArrowhedContext component not contains the the given core service.
+	 * @return the URI details of the Arrowhead Core System or null when the specified coreSystemService is not a public one or it couldn't be retrieved from Service Registry.
 	 */
 	public CoreServiceUri getCoreServiceUri(final CoreSystemService coreSystemService) {
-		if (!CommonConstants.PUBLIC_CORE_SYSTEM_SERVICES.contains(coreSystemService)) {
+		if (!publicCoreSystemServices.contains(coreSystemService)) {
 			logger.debug("'{}' core service is not a public service.", coreSystemService);
 			return null;
-		} else if (!arrowheadContext.containsKey(coreSystemService.getServiceDefinition() + ApplicationCommonConstants.CORE_SERVICE_DEFINITION_SUFFIX)) {
+		}
+		
+		final CoreServiceUri uri = coreServiceUriCache.get(coreSystemService);
+		if (uri != null) {
+			return uri;
+		}
+		
+		if (!coreServiceLazyResolutionEnabled) {
 			logger.debug("'{}' core service is not contained by Arrowhead Context.", coreSystemService);
 			return null;
-		} else {
-			return (CoreServiceUri) arrowheadContext.get(coreSystemService.getServiceDefinition() + ApplicationCommonConstants.CORE_SERVICE_DEFINITION_SUFFIX);
-		}		
+		}
+		
+		logger.debug("'{}' core service is not contained by Arrowhead Context, on-demand lookup started.", coreSystemService);
+		return coreServiceUriCache.resolve(coreSystemService).getCoreServiceUri();
 	}
 	
 	//-------------------------------------------------------------------------------------------------
@@ -162,23 +500,69 @@ public class ArrowheadService {
 		}
 		
 		for (final CoreSystemService coreService : publicServices) {			
-			try {	
-				final ResponseEntity<ServiceQueryResultDTO> response = queryServiceReqistryByCoreService(coreService);
-				
-				if (response.getBody().getServiceQueryData().isEmpty()) {
-					logger.info("'{}' core service couldn't be retrieved due to the following reason: not registered by Serivce Registry", coreService.getServiceDefinition());
-					arrowheadContext.remove(coreService.getServiceDefinition() + ApplicationCommonConstants.CORE_SERVICE_DEFINITION_SUFFIX);
-					
+			coreServiceUriCache.load(coreService);
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Queries and stores the public service URIs of the given Arrowhead Core Systems in the ArrowheadContext component. 
+	 * The Service Registry queries are executed concurrently on a thread pool bounded by the 'core.service.discovery.max.parallelism' property 
+	 * and the whole process is limited by the 'core.service.discovery.timeout' deadline. Services not resolved until the deadline are reported as timed out.
+	 * 
+	 * @param coreSystems set of CoreSystem enums which represent Arrowhead Core Systems
+	 * @return the outcome of the discovery per public core service
+	 * @throws InvalidParameterException when coreSystems is null
+	 */
+	public Map<CoreSystemService,CoreServiceDiscoveryResult> updateCoreServiceURIs(final Set<CoreSystem> coreSystems) {
+		if (coreSystems == null) {
+			throw new InvalidParameterException("coreSystems cannot be null.");
+		}
+		
+		final Set<CoreSystemService> publicServices = EnumSet.noneOf(CoreSystemService.class);
+		for (final CoreSystem coreSystem : coreSystems) {
+			final List<CoreSystemService> services = getPublicServicesOfCoreSystem(coreSystem);
+			if (services.isEmpty()) {
+				logger.info("'{}' core system has no public service.", coreSystem.name());
+			}
+			publicServices.addAll(services);
+		}
+		
+		final Map<CoreSystemService,CoreServiceDiscoveryResult> results = new EnumMap<>(CoreSystemService.class);
+		if (publicServices.isEmpty()) {
+			return results;
+		}
+		
+		final List<CoreSystemService> services = new ArrayList<>(publicServices);
+		final List<Callable<CoreServiceDiscoveryResult>> tasks = new ArrayList<>(services.size());
+		for (final CoreSystemService coreService : services) {
+			tasks.add(() -> coreServiceUriCache.load(coreService));
+		}
+		
+		try {
+			final List<Future<CoreServiceDiscoveryResult>> futures = invokeAll(tasks, coreServiceDiscoveryMaxParallelism, coreServiceDiscoveryTimeout);
+			for (int i = 0; i < services.size(); ++i) {
+				final CoreSystemService coreService = services.get(i);
+				final Future<CoreServiceDiscoveryResult> future = futures.get(i);
+				if (future.isCancelled()) {
+					logger.info("'{}' core service couldn't be retrieved due to the following reason: discovery deadline exceeded", coreService.getServiceDefinition());
+					results.put(coreService, CoreServiceDiscoveryResult.timedOut(coreService));
 				} else {
-					final ServiceRegistryResponseDTO serviceRegistryResponseDTO = response.getBody().getServiceQueryData().get(0);
-					arrowheadContext.put(coreService.getServiceDefinition() + ApplicationCommonConstants.CORE_SERVICE_DEFINITION_SUFFIX, new CoreServiceUri(serviceRegistryResponseDTO.getProvider().getAddress(),
-							serviceRegistryResponseDTO.getProvider().getPort(), serviceRegistryResponseDTO.getServiceUri()));					
+					try {
+						results.put(coreService, future.get());
+					} catch (final ExecutionException ex) {
+						results.put(coreService, CoreServiceDiscoveryResult.failed(coreService, ex.getCause().getMessage()));
+					}
 				}
-				
-			} catch (final  ArrowheadException ex) {
-				logger.debug("'{}' core service couldn't be retrieved due to the following reason: {}", coreService.getServiceDefinition(), ex.getMessage());
-			}			
+			}
+		} catch (final InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			for (final CoreSystemService coreService : services) {
+				results.putIfAbsent(coreService, CoreServiceDiscoveryResult.failed(coreService, "discovery interrupted"));
+			}
 		}
+		
+		return results;
 	}
 	
 	//-------------------------------------------------------------------------------------------------
@@ -302,6 +686,37 @@ public class ArrowheadService {
 		httpService.sendRequest(unregisterUri, HttpMethod.DELETE, Void.class);
 	}
 	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Sends http(s) 'register' requests to Service Registry Core System for all the given services concurrently. The number of parallel requests
+	 * is limited by the 'service.registration.max.parallelism' property. A failing registration doesn't affect the others.
+	 * 
+	 * @param requests collection of ServiceRegistryRequestDTO which represent the required payloads of the http(s) requests
+	 * @param force if true, then the already registered services are overwritten (see {@link #forceRegisterServiceToServiceRegistry(ServiceRegistryRequestDTO)})
+	 * @return the result of the registration per request in the iteration order of the given collection
+	 * @throws InvalidParameterException when requests is null
+	 */
+	public List<ServiceRegistryOperationResult> registerServices(final Collection<ServiceRegistryRequestDTO> requests, final boolean force) {
+		return executeServiceRegistryOperations(requests, request -> force ? forceRegisterServiceToServiceRegistry(request) : registerServiceToServiceRegistry(request));
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Sends http(s) 'unregister' requests to Service Registry Core System for all the given services concurrently. The services are identified by 
+	 * their service definition and service URI. The number of parallel requests is limited by the 'service.registration.max.parallelism' property. 
+	 * A failing deregistration doesn't affect the others.
+	 * 
+	 * @param requests collection of ServiceRegistryRequestDTO which represent the services being deleted from service registry
+	 * @return the result of the deregistration per request in the iteration order of the given collection
+	 * @throws InvalidParameterException when requests is null
+	 */
+	public List<ServiceRegistryOperationResult> unregisterServices(final Collection<ServiceRegistryRequestDTO> requests) {
+		return executeServiceRegistryOperations(requests, request -> {
+			unregisterServiceFromServiceRegistry(request.getServiceDefinition(), request.getServiceUri());
+			return null;
+		});
+	}
+	
 	//-------------------------------------------------------------------------------------------------
 	/**
 	 * Sends a http(s) 'register-system' request to Service Registry Core System.
@@ -379,24 +794,65 @@ public class ArrowheadService {
 	 * @throws UnavailableServerException when Authorization Core System is not available
 	 */
 	public PublicKey queryAuthorizationPublicKey() {
-		final CoreServiceUri uri = getCoreServiceUri(CoreSystemService.AUTH_PUBLIC_KEY_SERVICE);
+		final UriComponents uri = getCoreServiceUriComponents(CoreSystemService.AUTH_PUBLIC_KEY_SERVICE);
 		if (uri == null) {
 			logger.debug("Authorization Public Key couldn't be retrieved due to the following reason: " +  CoreSystemService.AUTH_PUBLIC_KEY_SERVICE.name() + " not known by Arrowhead Context");
 			return null;
 		}
 		
-		final ResponseEntity<String> response = httpService.sendRequest(Utilities.createURI(getUriScheme(), uri.getAddress(), uri.getPort(), uri.getPath()), HttpMethod.GET, String.class);
+		final ResponseEntity<String> response = httpService.sendRequest(uri, HttpMethod.GET, String.class);
 				
 		final String encodedKey = Utilities.fromJson(response.getBody(), String.class);
 		return Utilities.getPublicKeyFromBase64EncodedString(encodedKey);
 	}
 	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Returns the public key of Authorization Core System from the cache that is refreshed in the background. Falls back to 
+	 * {@link #queryAuthorizationPublicKey()} when the token security filter is disabled.
+	 * 
+	 * @return the public key of Authorization Core System or null when the public key core service URI is not known by ArrowheadContext component.
+	 * @throws AuthException when you are not authorized by Authorization Core System
+	 * @throws ArrowheadException when internal server error happened at Authorization Core System
+	 * @throws UnavailableServerException when Authorization Core System is not available
+	 */
+	public PublicKey getAuthorizationPublicKey() {
+		return authorizationPublicKeyCache != null ? authorizationPublicKeyCache.get() : queryAuthorizationPublicKey();
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Decrypts and verifies an access token issued by Authorization Core System. Tokens already verified are served from a cache.
+	 * The caller still has to check whether the claims (consumer, service, interface) permit the actual request.
+	 * 
+	 * @param token String value which represents the token received in the request.
+	 * @return the claims of the token. The returned object is shared between the requests with the same token, so it must not be modified.
+	 * 
+	 * @throws AuthException when the token is invalid or the token security filter is disabled.
+	 */
+	public JwtClaims verifyToken(final String token) {
+		if (verifiedTokenCache == null) {
+			throw new AuthException("Token verification requires secure mode and enabled token security filter.");
+		}
+		
+		return verifiedTokenCache.verify(token);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @return the cache of the verified tokens or null if the token security filter is disabled
+	 */
+	public VerifiedTokenCache getVerifiedTokenCache() {
+		return verifiedTokenCache;
+	}
+	
 	//=================================================================================================
 	// Orchestrator Services
 	
 	//-------------------------------------------------------------------------------------------------
 	/**
-	 * Sends a http(s) 'orchestration' request to Orchestrator Core System.
+	 * Sends a http(s) 'orchestration' request to Orchestrator Core System. When the 'orchestration.cache.enabled' property is true, 
+	 * then a still valid response for the same orchestration form is returned from the cache instead.
 	 * 
 	 * @param request OrchestrationFormRequestDTO which represents the required payload of the http(s) request
 	 * @return the OrchestrationResponseDTO received from Orchestrator Core System or null when the orchestration service URI is not known by Arrowhead Context
@@ -407,13 +863,55 @@ public class ArrowheadService {
 	 * @throws UnavailableServerException when one of the core system involved in orchestration process is not available 
 	 */
 	public OrchestrationResponseDTO proceedOrchestration(final OrchestrationFormRequestDTO request) {
-		final CoreServiceUri uri = getCoreServiceUri(CoreSystemService.ORCHESTRATION_SERVICE);
+		final UriComponents uri = getCoreServiceUriComponents(CoreSystemService.ORCHESTRATION_SERVICE);
 		if (uri == null) {
 			logger.debug("Orchestration couldn't be proceeded due to the following reason: " +  CoreSystemService.ORCHESTRATION_SERVICE.name() + " not known by Arrowhead Context");
 			return null;
 		}
 		
-		return httpService.sendRequest(Utilities.createURI(getUriScheme(), uri.getAddress(), uri.getPort(), uri.getPath()), HttpMethod.POST, OrchestrationResponseDTO.class, request).getBody();
+		final long cacheGeneration = orchestrationResponseCache == null ? 0 : orchestrationResponseCache.getGeneration();
+		if (orchestrationResponseCache != null) {
+			final OrchestrationResponseDTO cached = orchestrationResponseCache.get(request);
+			if (cached != null) {
+				return cached;
+			}
+		}
+		
+		final OrchestrationResponseDTO response = httpService.sendRequest(uri, HttpMethod.POST, OrchestrationResponseDTO.class, request).getBody();
+		if (orchestrationResponseCache != null) {
+			orchestrationResponseCache.put(request, response, cacheGeneration);
+		}
+		
+		return response;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Invalidates the cached orchestration responses of the service definition in the event payload if the type of the given event is listed in the
+	 * 'orchestration.cache.invalidation.event.types' property, or every cached response if it is listed in the 'orchestration.cache.flush.event.types' property.
+	 * Call it from the notification end point of your Event Handler subscription.
+	 * 
+	 * @param event EventDTO received from Event Handler Core System
+	 * @return true if the event type is an invalidation or flush event type, false if it is neither of them or the cache is disabled
+	 */
+	public boolean handleOrchestrationCacheEvent(final EventDTO event) {
+		return orchestrationResponseCache != null && orchestrationResponseCache.onEvent(event);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @return the orchestration response cache (with hit, miss and eviction counters) or null when the 'orchestration.cache.enabled' property is false
+	 */
+	public OrchestrationResponseCache getOrchestrationResponseCache() {
+		return orchestrationResponseCache;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @return the circuit breakers of the consumed service endpoints or null if circuit breaking is disabled
+	 */
+	public CircuitBreakerRegistry getCircuitBreakerRegistry() {
+		return circuitBreakerRegistry;
 	}
 	
 	//-------------------------------------------------------------------------------------------------
@@ -454,13 +952,13 @@ public class ArrowheadService {
 	 * @throws UnavailableServerException when System Registry Core System is not available
 	 */
 	public SystemRegistryResponseDTO registerSystemToSystemRegistry(final SystemRegistryRequestDTO request) {
-		final CoreServiceUri uri = getCoreServiceUri(CoreSystemService.SYSTEMREGISTRY_REGISTER_SERVICE);
+		final UriComponents uri = getCoreServiceUriComponents(CoreSystemService.SYSTEMREGISTRY_REGISTER_SERVICE);
 		if (uri == null) {
 			logger.debug("System registration couldn't be proceeded due to the following reason: " +  CoreSystemService.SYSTEMREGISTRY_REGISTER_SERVICE.name() + " not known by Arrowhead Context");
 			return null;
 		}
 		
-		return httpService.sendRequest(Utilities.createURI(getUriScheme(), uri.getAddress(), uri.getPort(), uri.getPath()), HttpMethod.POST, SystemRegistryResponseDTO.class, request).getBody();
+		return httpService.sendRequest(uri, HttpMethod.POST, SystemRegistryResponseDTO.class, request).getBody();
 	}
 	
 	//-------------------------------------------------------------------------------------------------
@@ -524,13 +1022,13 @@ public class ArrowheadService {
 	 * @throws UnavailableServerException when System Registry Core System is not available
 	 */
 	public SystemRegistryOnboardingWithNameResponseDTO onboardSystemWithName(final SystemRegistryOnboardingWithNameRequestDTO request) {
-		final CoreServiceUri uri = getCoreServiceUri(CoreSystemService.SYSTEMREGISTRY_ONBOARDING_WITH_NAME_SERVICE);
+		final UriComponents uri = getCoreServiceUriComponents(CoreSystemService.SYSTEMREGISTRY_ONBOARDING_WITH_NAME_SERVICE);
 		if (uri == null) {
 			logger.debug("Onboarding of system couldn't be proceeded due to the following reason: " +  CoreSystemService.SYSTEMREGISTRY_ONBOARDING_WITH_NAME_SERVICE.name() + " not known by Arrowhead Context");
 			return null;
 		}
 		
-		return httpService.sendRequest(Utilities.createURI(getUriScheme(), uri.getAddress(), uri.getPort(), uri.getPath()), HttpMethod.POST, SystemRegistryOnboardingWithNameResponseDTO.class, request).getBody();
+		return httpService.sendRequest(uri, HttpMethod.POST, SystemRegistryOnboardingWithNameResponseDTO.class, request).getBody();
 	}
 	
 	//-------------------------------------------------------------------------------------------------
@@ -545,13 +1043,13 @@ public class ArrowheadService {
 	 * @throws UnavailableServerException when System Registry Core System is not available
 	 */
 	public SystemRegistryOnboardingWithCsrRequestDTO onboardSystemWithCSR(final SystemRegistryOnboardingWithCsrRequestDTO request) {
-		final CoreServiceUri uri = getCoreServiceUri(CoreSystemService.SYSTEMREGISTRY_ONBOARDING_WITH_CSR_SERVICE);
+		final UriComponents uri = getCoreServiceUriComponents(CoreSystemService.SYSTEMREGISTRY_ONBOARDING_WITH_CSR_SERVICE);
 		if (uri == null) {
 			logger.debug("Onboarding of system couldn't be proceeded due to the following reason: " +  CoreSystemService.SYSTEMREGISTRY_ONBOARDING_WITH_CSR_SERVICE.name() + " not known by Arrowhead Context");
 			return null;
 		}
 		
-		return httpService.sendRequest(Utilities.createURI(getUriScheme(), uri.getAddress(), uri.getPort(), uri.getPath()), HttpMethod.POST, SystemRegistryOnboardingWithCsrRequestDTO.class, request).getBody();
+		return httpService.sendRequest(uri, HttpMethod.POST, SystemRegistryOnboardingWithCsrRequestDTO.class, request).getBody();
 	}
 	
 	//=================================================================================================
@@ -570,13 +1068,13 @@ public class ArrowheadService {
 	 * @throws UnavailableServerException when Device Registry Core System is not available
 	 */
 	public DeviceRegistryResponseDTO registerDeviceToDeviceRegistry(final DeviceRegistryRequestDTO request) {
-		final CoreServiceUri uri = getCoreServiceUri(CoreSystemService.DEVICEREGISTRY_REGISTER_SERVICE);
+		final UriComponents uri = getCoreServiceUriComponents(CoreSystemService.DEVICEREGISTRY_REGISTER_SERVICE);
 		if (uri == null) {
 			logger.debug("Device registration couldn't be proceeded due to the following reason: " +  CoreSystemService.DEVICEREGISTRY_REGISTER_SERVICE.name() + " not known by Arrowhead Context");
 			return null;
 		}
 		
-		return httpService.sendRequest(Utilities.createURI(getUriScheme(), uri.getAddress(), uri.getPort(), uri.getPath()), HttpMethod.POST, DeviceRegistryResponseDTO.class, request).getBody();
+		return httpService.sendRequest(uri, HttpMethod.POST, DeviceRegistryResponseDTO.class, request).getBody();
 	}
 	
 	//-------------------------------------------------------------------------------------------------
@@ -618,13 +1116,13 @@ public class ArrowheadService {
 	 * @throws UnavailableServerException when Device Registry Core System is not available
 	 */
 	public DeviceRegistryOnboardingWithNameResponseDTO onboardDeviceWithName(final DeviceRegistryOnboardingWithNameRequestDTO request) {
-		final CoreServiceUri uri = getCoreServiceUri(CoreSystemService.DEVICEREGISTRY_ONBOARDING_WITH_NAME_SERVICE);
+		final UriComponents uri = getCoreServiceUriComponents(CoreSystemService.DEVICEREGISTRY_ONBOARDING_WITH_NAME_SERVICE);
 		if (uri == null) {
 			logger.debug("Onboarding of device couldn't be proceeded due to the following reason: " +  CoreSystemService.DEVICEREGISTRY_ONBOARDING_WITH_NAME_SERVICE.name() + " not known by Arrowhead Context");
 			return null;
 		}
 		
-		return httpService.sendRequest(Utilities.createURI(getUriScheme(), uri.getAddress(), uri.getPort(), uri.getPath()), HttpMethod.POST, DeviceRegistryOnboardingWithNameResponseDTO.class, request).getBody();
+		return httpService.sendRequest(uri, HttpMethod.POST, DeviceRegistryOnboardingWithNameResponseDTO.class, request).getBody();
 	}
 	
 	//-------------------------------------------------------------------------------------------------
@@ -639,13 +1137,13 @@ public class ArrowheadService {
 	 * @throws UnavailableServerException when Device Registry Core System is not available
 	 */
 	public DeviceRegistryOnboardingWithCsrResponseDTO onboardDeviceWithCSR(final DeviceRegistryOnboardingWithCsrRequestDTO request) {
-		final CoreServiceUri uri = getCoreServiceUri(CoreSystemService.DEVICEREGISTRY_ONBOARDING_WITH_CSR_SERVICE);
+		final UriComponents uri = getCoreServiceUriComponents(CoreSystemService.DEVICEREGISTRY_ONBOARDING_WITH_CSR_SERVICE);
 		if (uri == null) {
 			logger.debug("Onboarding of device couldn't be proceeded due to the following reason: " +  CoreSystemService.DEVICEREGISTRY_ONBOARDING_WITH_CSR_SERVICE.name() + " not known by Arrowhead Context");
 			return null;
 		}
 		
-		return httpService.sendRequest(Utilities.createURI(getUriScheme(), uri.getAddress(), uri.getPort(), uri.getPath()), HttpMethod.POST, DeviceRegistryOnboardingWithCsrResponseDTO.class, request).getBody();
+		return httpService.sendRequest(uri, HttpMethod.POST, DeviceRegistryOnboardingWithCsrResponseDTO.class, request).getBody();
 	}
 	
 	//=================================================================================================
@@ -663,13 +1161,13 @@ public class ArrowheadService {
 	 * @throws UnavailableServerException when Event Handler Core System is not available
 	 */
 	public void subscribeToEventHandler(final SubscriptionRequestDTO request) {
-		final CoreServiceUri uri = getCoreServiceUri(CoreSystemService.EVENT_SUBSCRIBE_SERVICE);
+		final UriComponents uri = getCoreServiceUriComponents(CoreSystemService.EVENT_SUBSCRIBE_SERVICE);
 		if (uri == null) {
 			logger.debug("Subscription couldn't be proceeded due to the following reason: " +  CoreSystemService.EVENT_SUBSCRIBE_SERVICE.name() + " not known by Arrowhead Context");
 			return;
 		}
 		
-		httpService.sendRequest(Utilities.createURI(getUriScheme(), uri.getAddress(), uri.getPort(), uri.getPath()), HttpMethod.POST, Void.class, request);
+		httpService.sendRequest(uri, HttpMethod.POST, Void.class, request);
 	}
 	
 	//-------------------------------------------------------------------------------------------------
@@ -715,13 +1213,13 @@ public class ArrowheadService {
 	 * @throws UnavailableServerException when Event Handler Core System is not available
 	 */
 	public void publishToEventHandler(final EventPublishRequestDTO request) {
-		final CoreServiceUri uri = getCoreServiceUri(CoreSystemService.EVENT_PUBLISH_SERVICE);
+		final UriComponents uri = getCoreServiceUriComponents(CoreSystemService.EVENT_PUBLISH_SERVICE);
 		if (uri == null) {
 			logger.debug("Publishing couldn't be proceeded due to the following reason: " +  CoreSystemService.EVENT_PUBLISH_SERVICE.name() + " not known by Arrowhead Context");
 			return;
 		}
 		
-		httpService.sendRequest(Utilities.createURI(getUriScheme(), uri.getAddress(), uri.getPort(), uri.getPath()), HttpMethod.POST, Void.class, request);
+		httpService.sendRequest(uri, HttpMethod.POST, Void.class, request);
 	}
 	
 	//=================================================================================================
@@ -787,6 +1285,7 @@ public class ArrowheadService {
 	 * @throws AuthException when ssl context or access control related issue happened.
 	 * @throws ArrowheadException when the communication is managed via Gateway Core System and internal server error happened.
 	 * @throws UnavailableServerException when the specified server is not available.
+	 * @throws CircuitBreakerOpenException when circuit breaking is enabled and the breaker of the specified endpoint is open.
 	 */
 	public <T> T consumeServiceHTTP(final Class<T> responseType, final HttpMethod httpMethod, final String address, final int port, final String serviceUri, final String interfaceName, final String token,
 								  final Object payload, final String... queryParams) {
@@ -815,17 +1314,15 @@ public class ArrowheadService {
 		
 		UriComponents uri;
 		if(!Utilities.isEmpty(token)) {
-			final List<String> query = new ArrayList<>();
-			query.addAll(Arrays.asList(validatedQueryParams));
-			query.add(CommonConstants.REQUEST_PARAM_TOKEN);
-			query.add(token);
-			uri = Utilities.createURI(getUriSchemeFromInterfaceName(interfaceName), address, port, serviceUri, query.toArray(new String[query.size()]));
+			final String[] query = Arrays.copyOf(validatedQueryParams, validatedQueryParams.length + 2);
+			query[validatedQueryParams.length] = CommonConstants.REQUEST_PARAM_TOKEN;
+			query[validatedQueryParams.length + 1] = token;
+			uri = Utilities.createURI(getUriSchemeFromInterfaceName(interfaceName), address, port, serviceUri, query);
 		} else {
 			uri = Utilities.createURI(getUriSchemeFromInterfaceName(interfaceName), address, port, serviceUri, validatedQueryParams);
 		}
 		
-		final ResponseEntity<T> response = httpService.sendRequest(uri, httpMethod, responseType, payload);
-		return response.getBody();
+		return sendConsumerRequest(uri, null, httpMethod, responseType, payload);
 	}
 	
 	//-------------------------------------------------------------------------------------------------
@@ -843,6 +1340,7 @@ public class ArrowheadService {
 	 * @throws AuthException when ssl context or access control related issue happened.
 	 * @throws ArrowheadException when the communication is managed via Gateway Core System and internal server error happened.
 	 * @throws UnavailableServerException when the specified server is not available.
+	 * @throws CircuitBreakerOpenException when circuit breaking is enabled and the breaker of the specified endpoint is open.
 	 */
 	public <T> T consumeServiceHTTP(final Class<T> responseType, final HttpMethod httpMethod, final UriComponents uriComponents, final String token, final Object payload) {
 		UriComponents uri = uriComponents;
@@ -857,18 +1355,120 @@ public class ArrowheadService {
 		}
 		
 		if (!Utilities.isEmpty(token)) {
-			final String uriToExpand = uri.toUriString();
-			final UriComponentsBuilder builder = UriComponentsBuilder.fromUriString(uriToExpand);
-			uri = builder.queryParam(CommonConstants.REQUEST_PARAM_TOKEN, token).build();
+			uri = UriComponentsBuilder.newInstance().uriComponents(uri).queryParam(CommonConstants.REQUEST_PARAM_TOKEN, token).build();
 		} 
 		
-		final ResponseEntity<T> response = httpService.sendRequest(uri, httpMethod, responseType, payload);
-		return response.getBody();
+		return sendConsumerRequest(uri, null, httpMethod, responseType, payload);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Sends a http(s) request to the specified prepared service endpoint.
+	 * 
+	 * @param <T> responseType which represents the expected response body.
+	 * @param httpMethod HttpMethod enum which represents the method how the service is available.
+	 * @param endpoint PreparedServiceEndpoint object which represents the service reachability details and the token (if any).
+	 * @param payload (nullable) Object type which represents the required payload of the http(s) request if any necessary.
+	 * @param queryParams (nullable) String... variable arguments which represent the additional key-value http(s) query parameters if any necessary. E.g.: "k1", "v1", "k2", "v2".  
+	 * @return the response received from the provider 
+	 * 
+	 * @throws InvalidParameterException when service URL can't be assembled.
+	 * @throws AuthException when ssl context or access control related issue happened.
+	 * @throws ArrowheadException when the communication is managed via Gateway Core System and internal server error happened.
+	 * @throws UnavailableServerException when the specified server is not available.
+	 * @throws CircuitBreakerOpenException when circuit breaking is enabled and the breaker of the specified endpoint is open.
+	 */
+	public <T> T consumeServiceHTTP(final Class<T> responseType, final HttpMethod httpMethod, final PreparedServiceEndpoint endpoint, final Object payload, final String... queryParams) {
+		if (responseType == null) {
+			throw new InvalidParameterException("responseType cannot be null.");
+		}
+		if (httpMethod == null) {
+			throw new InvalidParameterException("httpMethod cannot be null.");
+		}
+		if (endpoint == null) {
+			throw new InvalidParameterException("endpoint cannot be null.");
+		}
+		
+		return sendConsumerRequest(endpoint.buildUri(queryParams), endpoint.getEndpointKey(), httpMethod, responseType, payload);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Creates a reusable service endpoint from the specified service reachability details. The URI scheme is resolved from the interface name.
+	 * 
+	 * @param address String value which represents the host where the service is available.
+	 * @param port int value which represents the port where the service is available
+	 * @param serviceUri String value which represents the URI where the service is available.
+	 * @param interfaceName String value which represents the name of the interface used for the communication.
+	 * @param token (nullable) String value which represents the token for being authorized at the provider side if necessary.
+	 * @return the prepared service endpoint
+	 * 
+	 * @throws InvalidParameterException when service URL can't be assembled.
+	 */
+	public PreparedServiceEndpoint prepareServiceEndpoint(final String address, final int port, final String serviceUri, final String interfaceName, final String token) {
+		if (Utilities.isEmpty(interfaceName)) {
+			throw new InvalidParameterException("interfaceName cannot be null or blank.");
+		}
+		
+		return new PreparedServiceEndpoint(getUriSchemeFromInterfaceName(interfaceName), address, port, serviceUri, token);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Creates a reusable service endpoint from an orchestration result. The token belonging to the given interface is bound to the endpoint (if any).
+	 * 
+	 * @param result OrchestrationResultDTO which represents one provider of an orchestration response.
+	 * @param interfaceName String value which represents the name of the interface used for the communication.
+	 * @return the prepared service endpoint
+	 * 
+	 * @throws InvalidParameterException when service URL can't be assembled.
+	 */
+	public PreparedServiceEndpoint prepareServiceEndpoint(final OrchestrationResultDTO result, final String interfaceName) {
+		if (result == null) {
+			throw new InvalidParameterException("result cannot be null.");
+		}
+		if (result.getProvider() == null) {
+			throw new InvalidParameterException("result provider cannot be null.");
+		}
+		
+		final String token = result.getAuthorizationTokens() == null || interfaceName == null ? null : result.getAuthorizationTokens().get(interfaceName);
+		return prepareServiceEndpoint(result.getProvider().getAddress(), result.getProvider().getPort(), result.getServiceUri(), interfaceName, token);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Creates a provider group from all the providers of an orchestration response which spreads the service consumption over them according to the given strategy.
+	 * Providers failing repeatedly are ejected from the group temporarily (see 'provider.group.ejection.failure.threshold' and 'provider.group.ejection.time' properties).
+	 * 
+	 * @param response OrchestrationResponseDTO which contains the providers of the service.
+	 * @param interfaceName String value which represents the name of the interface used for the communication.
+	 * @param strategy LoadBalancingStrategy enum which represents how the next provider is selected.
+	 * @return the provider group
+	 * 
+	 * @throws InvalidParameterException when the response contains no provider or the service URL of a provider can't be assembled.
+	 */
+	public ServiceProviderGroup createServiceProviderGroup(final OrchestrationResponseDTO response, final String interfaceName, final LoadBalancingStrategy strategy) {
+		if (response == null || response.getResponse() == null || response.getResponse().isEmpty()) {
+			throw new InvalidParameterException("response cannot be null or empty.");
+		}
+		if (strategy == null) {
+			throw new InvalidParameterException("strategy cannot be null.");
+		}
+		
+		final List<PreparedServiceEndpoint> endpoints = new ArrayList<>(response.getResponse().size());
+		for (final OrchestrationResultDTO result : response.getResponse()) {
+			endpoints.add(prepareServiceEndpoint(result, interfaceName));
+		}
+		
+		return new ServiceProviderGroup(this, endpoints, strategy, providerGroupEjectionFailureThreshold, providerGroupEjectionTime);
 	}
 	
 	//-------------------------------------------------------------------------------------------------
 	/**
 	 * Make WS(S) connection with the specified service reachability details.
+	 * The connection is registered in the WebSocket connection registry and it is re-established automatically when dropped (if the 
+	 * 'ws.reconnect.enabled' property is true). The arrowheadContext contains the {@link WebSocketConnection} handle under the returned ID (earlier
+	 * versions stored a WebSocketConnectionManager there).
 	 *
 	 * @param handler WebSocket handler to use for message exchanges
 	 * @param address String value which represents the host where the service is available.
@@ -876,12 +1476,35 @@ public class ArrowheadService {
 	 * @param serviceUri String value which represents the URI where the service is available.
 	 * @param token (nullable) String value which represents the token for being authorized at the provider side if necessary. Token could be received in orchestration response per interface type.
 	 * @param queryParams (nullable) String... variable arguments which represent the additional key-value http(s) query parameters if any necessary. E.g.: "k1", "v1", "k2", "v2".
-	 * @return A string ID for the WebSocketConnection manager created and used for the full-duplex communication
+	 * @return A string ID of the connection used for the full-duplex communication
 	 *
 	 * @throws InvalidParameterException when service URL can't be assembled.
 	 * @throws ArrowheadException when WSS connection failed or the communication is managed via Gateway Core System and internal server error happened.
 	 */
 	public String connnectServiceWS(final WebSocketHandler handler, final String address, final int port, final String serviceUri, final String token, final String... queryParams) {
+		return connectServiceWebSocket(handler, address, port, serviceUri, token, queryParams).getId();
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Make WS(S) connection with the specified service reachability details.
+	 * The connection is registered in the WebSocket connection registry (and in the arrowheadContext under its ID) and it is re-established
+	 * automatically when dropped (if the 'ws.reconnect.enabled' property is true) or when it stops answering the heartbeat pings (if the 'ws.heartbeat.enabled' property is true, see the other 'ws.heartbeat.*' properties). Outgoing messages should be sent via the sender of the returned handle which is safe to 
+	 * use from multiple threads (see the 'ws.send.*' properties).
+	 *
+	 * @param handler WebSocket handler to use for message exchanges
+	 * @param address String value which represents the host where the service is available.
+	 * @param port int value which represents the port where the service is available
+	 * @param serviceUri String value which represents the URI where the service is available.
+	 * @param token (nullable) String value which represents the token for being authorized at the provider side if necessary. Token could be received in orchestration response per interface type.
+	 * @param queryParams (nullable) String... variable arguments which represent the additional key-value http(s) query parameters if any necessary. E.g.: "k1", "v1", "k2", "v2".
+	 * @return the handle of the connection
+	 *
+	 * @throws InvalidParameterException when service URL can't be assembled.
+	 * @throws ArrowheadException when WSS connection failed or the communication is managed via Gateway Core System and internal server error happened.
+	 */
+	public WebSocketConnection connectServiceWebSocket(final WebSocketHandler handler, final String address, final int port, final String serviceUri, final String token,
+													   final String... queryParams) {
 		if (handler == null) {
 			throw new InvalidParameterException("handler cannot be null.");
 		}
@@ -915,34 +1538,21 @@ public class ArrowheadService {
 			uri = Utilities.createURI(getUriSchemeWS(), address, port, serviceUri, validatedQueryParams);
 		}
 
-		// try to establish WS(S) connection
-		final StandardWebSocketClient wsClient = new StandardWebSocketClient();
-		if(sslProperties.isSslEnabled()) {
-			try {
-				final KeyStore trustStore = getTrustStore(); 
-				final KeyStore keyStore = getKeyStore();
-				final TrustStrategy acceptingTrustStrategy = (final X509Certificate[] chain, final String authType) -> true;
-				final SSLContext sslContext = SSLContexts.custom().loadTrustMaterial(trustStore, acceptingTrustStrategy).loadKeyMaterial(keyStore, sslProperties.getKeyStorePassword().toCharArray()).build();
-
-				wsClient.getUserProperties().clear();
-				wsClient.getUserProperties().put(ApplicationCommonConstants.TOMCAT_WS_SSL_CONTEXT, sslContext);
-			} catch(final Exception e) {
-				throw new ArrowheadException("WSS connection failed: " + e.getMessage());
-			}
-		}
+		// fail fast if the client can't be created, later attempts are retried by the registry
+		getWebSocketClient();
+		
+		// same URI handling as WebSocketConnectionManager
+		final WebSocketConnection connection = webSocketConnectionRegistry.connect(handler, UriComponentsBuilder.fromUriString(uri.toString()).buildAndExpand().encode().toUri());
+		arrowheadContext.put(connection.getId(), connection);
 		
-		final WebSocketConnectionManager manager = new WebSocketConnectionManager(wsClient, handler, uri.toString());
-		manager.start();
-		final String managerId = ApplicationCommonConstants.WS_MANAGER_ID_PREFIX + UUID.randomUUID().toString();
-		arrowheadContext.put(managerId, manager);
-		return managerId;
+		return connection;
 	}
 	
 	//-------------------------------------------------------------------------------------------------
 	/**
-	 * Close the WS(S) connection by the given WebSocketConnectionManager ID if any.
+	 * Close the WS(S) connection by the given connection ID if any.
 	 *
-	 * @param wsManagerId string id of the WebSocketConnectionManager
+	 * @param wsManagerId string id of the connection
 	 * @return true if and only if the connection was alive, otherwise false
 	 * @throws InvalidParameterException when wsManagerId is null or blank..
 	 */
@@ -951,22 +1561,59 @@ public class ArrowheadService {
 			throw new InvalidParameterException("wsManagerId cannot be null or blank.");
 		}
 		
-		if (arrowheadContext.containsKey(wsManagerId)) {
-			final WebSocketConnectionManager manager = (WebSocketConnectionManager) arrowheadContext.get(wsManagerId);
-			final boolean alive = manager.isRunning();
-			if (alive) {
-				manager.stop();
-			}			
-			arrowheadContext.remove(wsManagerId);
-			return alive;
+		arrowheadContext.remove(wsManagerId);
+		return webSocketConnectionRegistry.close(wsManagerId);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Queue a text message for sending over the WS(S) connection with the given ID. Safe to call from multiple threads.
+	 *
+	 * @param wsManagerId string id of the connection
+	 * @param payload the message to send
+	 * @throws InvalidParameterException when wsManagerId is null or blank, or there is no such connection
+	 * @throws ArrowheadException when the send queue is full (according to the 'ws.send.overflow.policy' property)
+	 */
+	public void sendWSMessage(final String wsManagerId, final String payload) {
+		if (Utilities.isEmpty(wsManagerId)) {
+			throw new InvalidParameterException("wsManagerId cannot be null or blank.");
 		}
 		
-		return false;
+		final WebSocketConnection connection = webSocketConnectionRegistry.getConnection(wsManagerId);
+		if (connection == null) {
+			throw new InvalidParameterException("Unknown WebSocket connection: " + wsManagerId);
+		}
+		connection.getSender().sendText(payload);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Close all the WS(S) connections opened by this service.
+	 *
+	 * @return the number of connections that were alive
+	 */
+	public int closeAllWSConnections() {
+		arrowheadContext.keySet().removeIf(key -> key.startsWith(ApplicationCommonConstants.WS_MANAGER_ID_PREFIX));
+		return webSocketConnectionRegistry.closeAll();
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @return the registry of the WS(S) connections (handles, states and connection metrics)
+	 */
+	public WebSocketConnectionRegistry getWebSocketConnectionRegistry() {
+		return webSocketConnectionRegistry;
 	}
 
 	//-------------------------------------------------------------------------------------------------
 	/**
 	 * Connect to MQTT broker.
+	 * If the 'mqtt.shared.socket.factory.enabled' property is true, the TLS socket factory shared by all the MQTT clients (built from the 
+	 * already loaded stores) is used instead of letting the client read the store files on every connect.
+	 * If the 'mqtt.reconnect.enabled' property is true, the returned client is a {@link ManagedMqttClient}: a lost connection is re-established
+	 * with jittered backoff and the subscriptions made through the client are restored.
+	 * Instead of writing the topic routing in the handler, a dispatcher created by {@link #createMqttTopicDispatcher(MqttCallback)} can be used as
+	 * handler.
 	 *
 	 * @param handler string id of the MqttCallback handler
 	 * @param brokerAddress address to the broker
@@ -993,33 +1640,9 @@ public class ArrowheadService {
 			throw new InvalidParameterException("Port must be between " + CommonConstants.SYSTEM_PORT_RANGE_MIN + " and " + CommonConstants.SYSTEM_PORT_RANGE_MAX + ".");
 		}
 
-		final MemoryPersistence persistence = new MemoryPersistence();
-		final MqttClient client = new MqttClient(brokerAddress, clientId, persistence);
-		final MqttConnectOptions connOpts = new MqttConnectOptions();
-
-		if(!Utilities.isEmpty(mqttBrokerUsername) && !Utilities.isEmpty(mqttBrokerPassword)) {
-			connOpts.setUserName(mqttBrokerUsername);
-			connOpts.setPassword(mqttBrokerPassword.toCharArray());
-		}
-
-		if(sslProperties.isSslEnabled()) {
-			try {
-				final Properties sslMQTTProperties = new Properties();
-				sslMQTTProperties.put(SSLSocketFactoryFactory.KEYSTORE, sslProperties.getKeyStore().getFile().getAbsolutePath());
-				sslMQTTProperties.put(SSLSocketFactoryFactory.KEYSTOREPWD, sslProperties.getKeyPassword());
-				sslMQTTProperties.put(SSLSocketFactoryFactory.KEYSTORETYPE, sslProperties.getKeyStoreType());
-
-				sslMQTTProperties.put(SSLSocketFactoryFactory.TRUSTSTORE, sslProperties.getTrustStore().getFile().getAbsolutePath());
-				sslMQTTProperties.put(SSLSocketFactoryFactory.TRUSTSTOREPWD, sslProperties.getTrustStorePassword());
-				sslMQTTProperties.put(SSLSocketFactoryFactory.TRUSTSTORETYPE, sslProperties.getKeyStoreType()); //intentionally the same
-
-				connOpts.setSSLProperties(sslMQTTProperties);
-			} catch(final Exception err) {
-				logger.error("MQTTS security exception: " + err);
-				throw new ArrowheadException("Bad certificate settings");
-			}
-		}
-		connOpts.setCleanSession(true);
+		final MqttConnectOptions connOpts = createMqttConnectOptions(mqttBrokerUsername, mqttBrokerPassword);
+		final MqttClient client = mqttReconnectSettings.isEnabled() ? new ManagedMqttClient(brokerAddress, clientId, createMqttPersistence(), mqttReconnectSettings, getMqttScheduler())
+																	: new MqttClient(brokerAddress, clientId, createMqttPersistence());
 		client.setCallback(handler);
 		
 		logger.info("Connecting to MQTT(S) broker: " + brokerAddress);
@@ -1028,6 +1651,97 @@ public class ArrowheadService {
 		return client;
 	}
 
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Connect to MQTT broker in non-blocking mode.
+	 * Publishing on the returned connection doesn't wait for the acknowledgement of the broker; at most 'mqtt.async.max.inflight' messages can be
+	 * unacknowledged at the same time.
+	 *
+	 * @param handler the MqttCallback handler
+	 * @param brokerAddress address to the broker
+	 * @param mqttBrokerUsername user name to the broker if necessary
+	 * @param mqttBrokerPassword password to the broker if necessary
+	 * @param clientId the client name to use
+	 * @return a future of the connection which completes when the connection is established
+	 * @throws MqttException if the client can't be created
+	 * @throws InvalidParameterException if a parameter error occurs
+	 * @throws ArrowheadException if a certificate error occurs
+	 */
+	public CompletableFuture<AsyncMqttConnection> connectMQTTBrokerAsync(final MqttCallback handler, final String brokerAddress, final String mqttBrokerUsername, 
+																		 final String mqttBrokerPassword, final String clientId) throws MqttException {
+		if (handler == null) {
+			throw new InvalidParameterException("handler cannot be null.");
+		}
+		if (Utilities.isEmpty(brokerAddress)) {
+			throw new InvalidParameterException("brokerAddress cannot be null or blank.");
+		}
+		if (Utilities.isEmpty(clientId)) {
+			throw new InvalidParameterException("clientId cannot be null or blank.");
+		}
+		
+		final MqttConnectOptions connOpts = createMqttConnectOptions(mqttBrokerUsername, mqttBrokerPassword);
+		final MqttAsyncClient client = new MqttAsyncClient(brokerAddress, clientId, createMqttPersistence());
+		client.setCallback(handler);
+		
+		final AsyncMqttConnection connection = new AsyncMqttConnection(client, connOpts, mqttAsyncMaxInflight, mqttAsyncPublishTimeout, getMqttScheduler());
+		return connection.connect().whenComplete((result, error) -> {
+			if (error != null) {
+				logger.warn("Connecting to MQTT(S) broker {} failed: {}", brokerAddress, error.getMessage());
+				try {
+					connection.close();
+				} catch (final MqttException ex) {
+					logger.debug("Closing MQTT client failed: {}", ex.getMessage());
+				}
+			}
+		}).thenApply(result -> connection);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Create a publisher which buffers the messages on the disk while the client is offline and replays them in order (at most 
+	 * 'mqtt.offline.buffer.drain.rate' messages per second) when the client is connected again. The buffer is a memory-mapped segment log in the
+	 * 'mqtt.offline.buffer.directory'/bufferName directory, its size is capped by 'mqtt.offline.buffer.max.size' and the
+	 * 'mqtt.offline.buffer.overflow.policy' decides what happens when it is full. Messages left in the buffer are replayed after restart too; the
+	 * changes are forced to the disk every 'mqtt.offline.buffer.force.interval' milliseconds, so an OS crash or a power loss can lose the messages of
+	 * the last interval.
+	 *
+	 * @param client the client to publish with
+	 * @param bufferName the name of the buffer directory, unique per client
+	 * @return the publisher (closed automatically on shutdown)
+	 * @throws InvalidParameterException if a parameter error occurs
+	 * @throws ArrowheadException if the buffer can't be opened
+	 */
+	public BufferedMqttPublisher createBufferedMQTTPublisher(final IMqttClient client, final String bufferName) {
+		if (client == null) {
+			throw new InvalidParameterException("client cannot be null.");
+		}
+		if (Utilities.isEmpty(bufferName) || bufferName.contains("/") || bufferName.contains("\\") || bufferName.contains("..")) {
+			throw new InvalidParameterException("bufferName must be a valid directory name.");
+		}
+		
+		final MqttOfflineBuffer buffer = new MqttOfflineBuffer(Paths.get(mqttOfflineBufferDirectory, bufferName), mqttOfflineBufferSegmentSize, mqttOfflineBufferMaxSize,
+															   mqttOfflineBufferOverflowPolicy, mqttOfflineBufferBlockTimeout, mqttOfflineBufferForceInterval);
+		final BufferedMqttPublisher publisher = new BufferedMqttPublisher(client, buffer, mqttOfflineBufferDrainRate);
+		bufferedMqttPublishers.add(publisher);
+		return publisher;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Create an MQTT callback which routes the messages to the handlers registered for the matching topic filters (wildcards included). Every handler
+	 * runs on its own executor with 'mqtt.handler.thread.num' threads and a queue of 'mqtt.handler.queue.capacity' messages, so slow handlers don't
+	 * block the client; 'mqtt.handler.overflow.policy' decides what happens when a queue is full. The default BLOCK policy slows down the client
+	 * (so the broker) while the queue is full; the dropping policies lose QoS 1 and 2 messages that are already acknowledged to the broker.
+	 *
+	 * @param delegate (nullable) gets the connection events and the messages without a registered handler
+	 * @return the dispatcher (shut down automatically on shutdown)
+	 */
+	public MqttTopicDispatcher createMqttTopicDispatcher(final MqttCallback delegate) {
+		final MqttTopicDispatcher dispatcher = new MqttTopicDispatcher(mqttHandlerSettings, delegate);
+		mqttTopicDispatchers.add(dispatcher);
+		return dispatcher;
+	}
+	
 	//-------------------------------------------------------------------------------------------------
 	/**
 	 * Close connection and release resources
@@ -1060,6 +1774,53 @@ public class ArrowheadService {
 		client.disconnect();
 	}
 	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Acquire a lease of the connection shared by every component which uses the same broker and credentials. Subscriptions are multiplexed on the
+	 * shared connection and the messages are dispatched to the handlers registered through the leases. The connection is opened on demand and closed
+	 * when its last lease is released, so the lease replaces {@link #disconnectMQTTBroker(MqttClient)} and {@link #closeMQTTBroker(MqttClient)}.
+	 *
+	 * @param brokerAddress address to the broker
+	 * @param mqttBrokerUsername user name to the broker if necessary
+	 * @param mqttBrokerPassword password to the broker if necessary
+	 * @return a lease which must be released when not needed anymore
+	 * @throws MqttException if communication related error occurs
+	 * @throws InvalidParameterException if a parameter error occurs
+	 * @throws ArrowheadException if a certificate error occurs
+	 */
+	public MqttConnectionLease acquireMQTTConnection(final String brokerAddress, final String mqttBrokerUsername, final String mqttBrokerPassword) throws MqttException {
+		return getMqttConnectionManager().acquire(brokerAddress, mqttBrokerUsername, mqttBrokerPassword);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @return the manager of the shared MQTT connections
+	 */
+	public synchronized MqttConnectionManager getMqttConnectionManager() {
+		if (mqttConnectionManager == null) {
+			mqttConnectionManager = new MqttConnectionManager(applicationSystemName, this::createMqttConnectOptions, mqttReconnectSettings, getMqttScheduler(),
+															  mqttHandlerSettings);
+		}
+		
+		return mqttConnectionManager;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @return the provider of the shared TLS material (stores, SSL context and WebSocket client) used by the WS(S) connections
+	 */
+	public TlsMaterialProvider getTlsMaterialProvider() {
+		return tlsMaterialProvider;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @return the watcher of the key and trust stores or null if hot reload is disabled
+	 */
+	public KeyStoreWatcher getKeyStoreWatcher() {
+		return keyStoreWatcher;
+	}
+	
 	//-------------------------------------------------------------------------------------------------
 	/**
 	 * Get the serverCN from arrowheadContext
@@ -1082,11 +1843,183 @@ public class ArrowheadService {
 									   HttpMethod.POST, ServiceQueryResultDTO.class, request);
 	}
 	
+	//-------------------------------------------------------------------------------------------------
+	private <T> T sendConsumerRequest(final UriComponents uri, final String endpointKey, final HttpMethod httpMethod, final Class<T> responseType, final Object payload) {
+		if (circuitBreakerRegistry == null) {
+			return httpService.sendRequest(uri, httpMethod, responseType, payload).getBody();
+		}
+		
+		final String key = endpointKey != null ? endpointKey : CircuitBreakerRegistry.getEndpointKey(uri);
+		return circuitBreakerRegistry.execute(key, () -> httpService.sendRequest(uri, httpMethod, responseType, payload).getBody());
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private List<ServiceRegistryOperationResult> executeServiceRegistryOperations(final Collection<ServiceRegistryRequestDTO> requests, 
+																				  final Function<ServiceRegistryRequestDTO,ServiceRegistryResponseDTO> operation) {
+		if (requests == null) {
+			throw new InvalidParameterException("requests cannot be null.");
+		}
+		
+		final List<ServiceRegistryRequestDTO> requestList = new ArrayList<>(requests);
+		final List<Callable<ServiceRegistryResponseDTO>> tasks = new ArrayList<>(requestList.size());
+		for (final ServiceRegistryRequestDTO request : requestList) {
+			tasks.add(() -> operation.apply(request));
+		}
+		
+		final List<ServiceRegistryOperationResult> results = new ArrayList<>(requestList.size());
+		try {
+			final List<Future<ServiceRegistryResponseDTO>> futures = invokeAll(tasks, serviceRegistrationMaxParallelism, 0);
+			for (int i = 0; i < requestList.size(); ++i) {
+				final ServiceRegistryRequestDTO request = requestList.get(i);
+				try {
+					results.add(ServiceRegistryOperationResult.success(request, futures.get(i).get()));
+				} catch (final ExecutionException ex) {
+					logger.debug("Service Registry operation failed for '{}' service: {}", request.getServiceDefinition(), ex.getCause().getMessage());
+					results.add(ServiceRegistryOperationResult.failure(request, ex.getCause()));
+				}
+			}
+		} catch (final InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new ArrowheadException("Service Registry operations interrupted.", ex);
+		}
+		
+		return results;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	// timeout is in milliseconds, zero or negative value means no timeout
+	private <T> List<Future<T>> invokeAll(final List<Callable<T>> tasks, final int maxParallelism, final long timeout) throws InterruptedException {
+		if (tasks.isEmpty()) {
+			return new ArrayList<>();
+		}
+		
+		final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(maxParallelism, tasks.size())));
+		try {
+			return timeout > 0 ? executor.invokeAll(tasks, timeout, TimeUnit.MILLISECONDS) : executor.invokeAll(tasks);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private UriComponents getCoreServiceUriComponents(final CoreSystemService coreSystemService) {
+		final UriComponents uri = coreServiceUriCache.getUriComponents(coreSystemService);
+		if (uri != null) {
+			return uri;
+		}
+		
+		return getCoreServiceUri(coreSystemService) == null ? null : coreServiceUriCache.getUriComponents(coreSystemService);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private CoreServiceDiscoveryResult queryCoreServiceUri(final CoreSystemService coreService) {
+		try {	
+			final ResponseEntity<ServiceQueryResultDTO> response = queryServiceReqistryByCoreService(coreService);
+			
+			if (response.getBody().getServiceQueryData().isEmpty()) {
+				logger.info("'{}' core service couldn't be retrieved due to the following reason: not registered by Serivce Registry", coreService.getServiceDefinition());
+				return CoreServiceDiscoveryResult.notRegistered(coreService);
+			} 
+			
+			final ServiceRegistryResponseDTO serviceRegistryResponseDTO = response.getBody().getServiceQueryData().get(0);
+			return CoreServiceDiscoveryResult.resolved(coreService, new CoreServiceUri(serviceRegistryResponseDTO.getProvider().getAddress(), serviceRegistryResponseDTO.getProvider().getPort(),
+																					   serviceRegistryResponseDTO.getServiceUri()));
+		} catch (final ArrowheadException ex) {
+			logger.debug("'{}' core service couldn't be retrieved due to the following reason: {}", coreService.getServiceDefinition(), ex.getMessage());
+			return CoreServiceDiscoveryResult.failed(coreService, ex.getMessage());
+		}			
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private synchronized ScheduledExecutorService getMqttScheduler() {
+		if (mqttScheduler == null) {
+			final AtomicInteger threadCounter = new AtomicInteger();
+			mqttScheduler = Executors.newScheduledThreadPool(MQTT_SCHEDULER_THREAD_NUM, r -> {
+				final Thread thread = new Thread(r, "mqtt-scheduler-" + threadCounter.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		
+		return mqttScheduler;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private void storeServerKeyMaterialInContext(final TlsMaterial material) {
+		final ServerKeyMaterial keyMaterial = material.getServerKeyMaterial();
+		arrowheadContext.put(CommonConstants.SERVER_COMMON_NAME, keyMaterial.getServerCN());
+		arrowheadContext.put(CommonConstants.SERVER_PUBLIC_KEY, keyMaterial.getPublicKey());
+		arrowheadContext.put(CommonConstants.SERVER_PRIVATE_KEY, keyMaterial.getPrivateKey());
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private void storeCoreServiceUriInContext(final CoreSystemService coreService, final CoreServiceUri uri) {
+		final String key = coreService.getServiceDefinition() + ApplicationCommonConstants.CORE_SERVICE_DEFINITION_SUFFIX;
+		if (uri == null) {
+			arrowheadContext.remove(key);
+		} else {
+			arrowheadContext.put(key, uri);
+		}
+	}
+	
 	//-------------------------------------------------------------------------------------------------
 	private String getUriScheme() {
 		return sslProperties.isSslEnabled() ? CommonConstants.HTTPS : CommonConstants.HTTP;
 	}
 
+	//-------------------------------------------------------------------------------------------------
+	private MqttClientPersistence createMqttPersistence() {
+		// file persistence keeps the inflight QoS 1/2 messages across restarts (together with 'mqtt.clean.session=false')
+		return Utilities.isEmpty(mqttPersistenceDirectory) ? new MemoryPersistence() : new MqttDefaultFilePersistence(mqttPersistenceDirectory);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private MqttConnectOptions createMqttConnectOptions(final String username, final String password) {
+		final MqttConnectOptions connOpts = new MqttConnectOptions();
+
+		if(!Utilities.isEmpty(username) && !Utilities.isEmpty(password)) {
+			connOpts.setUserName(username);
+			connOpts.setPassword(password.toCharArray());
+		}
+
+		if (sslProperties.isSslEnabled() && mqttSharedSocketFactoryEnabled) {
+			try {
+				connOpts.setSocketFactory(tlsMaterialProvider.getMqttSocketFactory());
+			} catch (final ServiceConfigurationError err) {
+				logger.error("MQTTS security exception: " + err);
+				throw new ArrowheadException("Bad certificate settings");
+			}
+		} else if(sslProperties.isSslEnabled()) {
+			try {
+				final Properties sslMQTTProperties = new Properties();
+				sslMQTTProperties.put(SSLSocketFactoryFactory.KEYSTORE, sslProperties.getKeyStore().getFile().getAbsolutePath());
+				sslMQTTProperties.put(SSLSocketFactoryFactory.KEYSTOREPWD, sslProperties.getKeyPassword());
+				sslMQTTProperties.put(SSLSocketFactoryFactory.KEYSTORETYPE, sslProperties.getKeyStoreType());
+
+				sslMQTTProperties.put(SSLSocketFactoryFactory.TRUSTSTORE, sslProperties.getTrustStore().getFile().getAbsolutePath());
+				sslMQTTProperties.put(SSLSocketFactoryFactory.TRUSTSTOREPWD, sslProperties.getTrustStorePassword());
+				sslMQTTProperties.put(SSLSocketFactoryFactory.TRUSTSTORETYPE, sslProperties.getKeyStoreType()); //intentionally the same
+
+				connOpts.setSSLProperties(sslMQTTProperties);
+			} catch(final Exception err) {
+				logger.error("MQTTS security exception: " + err);
+				throw new ArrowheadException("Bad certificate settings");
+			}
+		}
+		connOpts.setCleanSession(mqttCleanSession);
+		
+		return connOpts;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private StandardWebSocketClient getWebSocketClient() {
+		try {
+			return tlsMaterialProvider.getWebSocketClient();
+		} catch (final ServiceConfigurationError e) {
+			throw new ArrowheadException("WSS connection failed: " + e.getMessage());
+		}
+	}
+	
 	//-------------------------------------------------------------------------------------------------
 	private String getUriSchemeWS() {
 		return sslProperties.isSslEnabled() ? CommonConstants.WSS : CommonConstants.WS;
@@ -1117,26 +2050,4 @@ public class ArrowheadService {
 		publicServices.retainAll(CommonConstants.PUBLIC_CORE_SYSTEM_SERVICES);
 		return publicServices;
 	}
-
-	//-------------------------------------------------------------------------------------------------
-	private KeyStore getKeyStore() {
-        try {
-            final KeyStore keystore = KeyStore.getInstance(sslProperties.getKeyStoreType());
-            keystore.load(sslProperties.getKeyStore().getInputStream(), sslProperties.getKeyStorePassword().toCharArray());
-            return keystore;
-        } catch (final KeyStoreException | IOException | CertificateException | NoSuchAlgorithmException e) {
-            throw new ServiceConfigurationError("Cannot open keystore: " + e.getMessage());
-        }
-    }
-
-	//-------------------------------------------------------------------------------------------------
-    private KeyStore getTrustStore() {
-        try {
-            final KeyStore truststore = KeyStore.getInstance(sslProperties.getKeyStoreType());
-            truststore.load(sslProperties.getTrustStore().getInputStream(), sslProperties.getTrustStorePassword().toCharArray());
-            return truststore;
-        } catch (final KeyStoreException | IOException | CertificateException | NoSuchAlgorithmException e) {
-            throw new ServiceConfigurationError("Cannot open truststore: " + e.getMessage());
-        }
-    }
 }
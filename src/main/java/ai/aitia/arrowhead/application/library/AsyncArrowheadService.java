@@ -0,0 +1,762 @@
+/********************************************************************************
+ * Copyright (c) 2020 AITIA
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *   AITIA - implementation
+ ********************************************************************************/
+
+package ai.aitia.arrowhead.application.library;
+
+import java.security.PublicKey;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.eclipse.paho.client.mqttv3.MqttCallback;
+import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.UriComponents;
+
+import ai.aitia.arrowhead.application.library.util.ApplicationCommonConstants;
+import ai.aitia.arrowhead.application.library.util.CircuitBreakerOpenException;
+import ai.aitia.arrowhead.application.library.util.CoreServiceDiscoveryResult;
+import ai.aitia.arrowhead.application.library.util.CoreServiceUri;
+import ai.aitia.arrowhead.application.library.util.PreparedServiceEndpoint;
+import ai.aitia.arrowhead.application.library.util.ServiceRegistryOperationResult;
+import eu.arrowhead.common.core.CoreSystem;
+import eu.arrowhead.common.core.CoreSystemService;
+import eu.arrowhead.common.dto.shared.DeviceRegistryOnboardingWithCsrRequestDTO;
+import eu.arrowhead.common.dto.shared.DeviceRegistryOnboardingWithCsrResponseDTO;
+import eu.arrowhead.common.dto.shared.DeviceRegistryOnboardingWithNameRequestDTO;
+import eu.arrowhead.common.dto.shared.DeviceRegistryOnboardingWithNameResponseDTO;
+import eu.arrowhead.common.dto.shared.DeviceRegistryRequestDTO;
+import eu.arrowhead.common.dto.shared.DeviceRegistryResponseDTO;
+import eu.arrowhead.common.dto.shared.EventPublishRequestDTO;
+import eu.arrowhead.common.dto.shared.OrchestrationFormRequestDTO;
+import eu.arrowhead.common.dto.shared.OrchestrationResponseDTO;
+import eu.arrowhead.common.dto.shared.ServiceRegistryRequestDTO;
+import eu.arrowhead.common.dto.shared.ServiceRegistryResponseDTO;
+import eu.arrowhead.common.dto.shared.SubscriptionRequestDTO;
+import eu.arrowhead.common.dto.shared.SystemRegistryOnboardingWithCsrRequestDTO;
+import eu.arrowhead.common.dto.shared.SystemRegistryOnboardingWithNameRequestDTO;
+import eu.arrowhead.common.dto.shared.SystemRegistryOnboardingWithNameResponseDTO;
+import eu.arrowhead.common.dto.shared.SystemRegistryRequestDTO;
+import eu.arrowhead.common.dto.shared.SystemRegistryResponseDTO;
+import eu.arrowhead.common.dto.shared.SystemRequestDTO;
+import eu.arrowhead.common.dto.shared.SystemResponseDTO;
+import eu.arrowhead.common.exception.ArrowheadException;
+import eu.arrowhead.common.exception.AuthException;
+import eu.arrowhead.common.exception.BadPayloadException;
+import eu.arrowhead.common.exception.InvalidParameterException;
+import eu.arrowhead.common.exception.UnavailableServerException;
+
+/**
+ * Non-blocking twin of {@link ArrowheadService}. Every method delegates to the corresponding ArrowheadService method on an executor and 
+ * returns a CompletableFuture. The futures are completed exceptionally with the very same exception (e.g. AuthException, InvalidParameterException, 
+ * UnavailableServerException) the blocking method would throw.
+ * 
+ * The executor is a bounded thread pool configured by the 'async.executor.thread.num' and 'async.executor.queue.size' properties, unless an 
+ * Executor bean named 'arrowheadAsyncExecutor' is defined. When the executor rejects a task, the returned future is completed with the RejectedExecutionException.
+ */
+@Component("AsyncArrowheadService")
+public class AsyncArrowheadService {
+	
+	//=================================================================================================
+	// members
+	
+	@Autowired
+	private ArrowheadService arrowheadService;
+	
+	@Autowired(required = false)
+	@Qualifier(ApplicationCommonConstants.ASYNC_EXECUTOR_BEAN)
+	private Executor customExecutor;
+	
+	@Value(ApplicationCommonConstants.$ASYNC_EXECUTOR_THREAD_NUM_WD)
+	private int threadNum;
+	
+	@Value(ApplicationCommonConstants.$ASYNC_EXECUTOR_QUEUE_SIZE_WD)
+	private int queueSize;
+	
+	private Executor executor;
+	private ThreadPoolExecutor ownExecutor;
+	
+	//=================================================================================================
+	// methods
+	
+	//-------------------------------------------------------------------------------------------------
+	@PostConstruct
+	public void init() {
+		if (customExecutor != null) {
+			executor = customExecutor;
+		} else {
+			final AtomicInteger counter = new AtomicInteger();
+			ownExecutor = new ThreadPoolExecutor(threadNum, threadNum, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(queueSize), runnable -> {
+				final Thread thread = new Thread(runnable, "arrowhead-async-" + counter.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+			ownExecutor.allowCoreThreadTimeOut(true);
+			executor = ownExecutor;
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@PreDestroy
+	public void destroy() {
+		if (ownExecutor != null) {
+			ownExecutor.shutdownNow();
+		}
+	}
+	
+	//=================================================================================================
+	// General Core System services and support methods
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Asynchronous version of {@link ArrowheadService#getCoreServiceUri(CoreSystemService)}, running on the executor of this service.
+	 * If the core service has not been resolved yet, then it is queried from Service Registry on demand (unless the 'core.service.lazy.resolution.enabled'
+	 * property is false). Concurrent first callers share one query and an unsuccessful lookup is repeated only after 'core.service.uri.negative.ttl'.
+	 * Resolved URIs are served from a cache which is refreshed in the background when the 'core.service.uri.ttl' property is set.
+	 * 
+	 * @param coreSystemService CoreSystemService enum which represents an Arrowhead Core System Service
+	 * @return a future of the URI details of the Arrowhead Core System or null when the specified coreSystemService is not a public one or it couldn't be retrieved from Service Registry.
+	 */
+	public CompletableFuture<CoreServiceUri> getCoreServiceUri(final CoreSystemService coreSystemService) {
+		return supply(() -> arrowheadService.getCoreServiceUri(coreSystemService));
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Asynchronous version of {@link ArrowheadService#updateCoreServiceURIs(CoreSystem)}, running on the executor of this service.
+	 * Queries and stores the public service URIs of the given Arrowhead Core System in the ArrowheadContext component.
+	 * If the specified Core System has no public service or the server is not available, then ArrowheadContext won't contain the core service and a log info message will be triggered.
+	 * 
+	 * @param coreSystem CoreSystem enum which represents an Arrowhead Core System
+	 * @return a future which is completed when the request is done
+	 */
+	public CompletableFuture<Void> updateCoreServiceURIs(final CoreSystem coreSystem) {
+		return run(() -> arrowheadService.updateCoreServiceURIs(coreSystem));
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Asynchronous version of {@link ArrowheadService#updateCoreServiceURIs(Set)}, running on the executor of this service.
+	 * Queries and stores the public service URIs of the given Arrowhead Core Systems in the ArrowheadContext component.
+	 * The Service Registry queries are executed concurrently on a thread pool bounded by the 'core.service.discovery.max.parallelism' property
+	 * and the whole process is limited by the 'core.service.discovery.timeout' deadline. Services not resolved until the deadline are reported as timed out.
+	 * If the request fails, the returned future is completed exceptionally with one of the exceptions below.
+	 * 
+	 * @param coreSystems set of CoreSystem enums which represent Arrowhead Core Systems
+	 * @return a future of the outcome of the discovery per public core service
+	 * @throws InvalidParameterException when coreSystems is null
+	 */
+	public CompletableFuture<Map<CoreSystemService,CoreServiceDiscoveryResult>> updateCoreServiceURIs(final Set<CoreSystem> coreSystems) {
+		return supply(() -> arrowheadService.updateCoreServiceURIs(coreSystems));
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Asynchronous version of {@link ArrowheadService#echoCoreSystem(CoreSystem)}, running on the executor of this service.
+	 * Sends a http(s) request to the 'echo' end point of the given Arrowhead Core System.
+	 * 
+	 * @param coreSystem CoreSystem enum which represents an Arrowhead Core System
+	 * @return a future of the result: true if answer received from core system server and false if not or the specified core system has no public service or it is not known by Service Registry Core System
+	 */
+	public CompletableFuture<Boolean> echoCoreSystem(final CoreSystem coreSystem) {
+		return supply(() -> arrowheadService.echoCoreSystem(coreSystem));
+	}
+	
+	//=================================================================================================
+	// Service Registry Services
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Asynchronous version of {@link ArrowheadService#registerServiceToServiceRegistry(ServiceRegistryRequestDTO)}, running on the executor of this service.
+	 * Sends a http(s) 'register' request to Service Registry Core System.
+	 * If the request fails, the returned future is completed exceptionally with one of the exceptions below.
+	 * 
+	 * @param request ServiceRegistryRequestDTO which represents the required payload of the http(s) request
+	 * @return a future of the ServiceRegistryResponseDTO received from Service Registry Core System
+	 * @throws AuthException when you are not authorized by Service Registry Core System
+	 * @throws BadPayloadException when the payload couldn't be validated by Service Registry Core System
+	 * @throws InvalidParameterException when the payload content couldn't be validated by Service Registry Core System
+	 * @throws ArrowheadException when internal server error happened at Service Registry Core System
+	 * @throws UnavailableServerException when Service Registry Core System is not available
+	 */
+	public CompletableFuture<ServiceRegistryResponseDTO> registerServiceToServiceRegistry(final ServiceRegistryRequestDTO request) {
+		return supply(() -> arrowheadService.registerServiceToServiceRegistry(request));
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Asynchronous version of {@link ArrowheadService#forceRegisterServiceToServiceRegistry(ServiceRegistryRequestDTO)}, running on the executor of this service.
+	 * Sends a http(s) 'register' request to Service Registry Core System. In the case of service already registered, then the old service registry entry will be overwritten.
+	 * If the request fails, the returned future is completed exceptionally with one of the exceptions below.
+	 * 
+	 * @param request ServiceRegistryRequestDTO which represents the required payload of the http(s) request
+	 * @return a future of the ServiceRegistryResponseDTO received from Service Registry Core System
+	 * @throws AuthException when you are not authorized by Service Registry Core System
+	 * @throws BadPayloadException when the payload couldn't be validated by Service Registry Core System
+	 * @throws InvalidParameterException when the payload content couldn't be validated by Service Registry Core System
+	 * @throws ArrowheadException when internal server error happened at Service Registry Core System
+	 * @throws UnavailableServerException when Service Registry Core System is not available
+	 */
+	public CompletableFuture<ServiceRegistryResponseDTO> forceRegisterServiceToServiceRegistry(final ServiceRegistryRequestDTO request) {
+		return supply(() -> arrowheadService.forceRegisterServiceToServiceRegistry(request));
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Asynchronous version of {@link ArrowheadService#unregisterServiceFromServiceRegistry(String, String)}, running on the executor of this service.
+	 * Sends a http(s) 'unregister' request to Service Registry Core System.
+	 * If the request fails, the returned future is completed exceptionally with one of the exceptions below.
+	 * 
+	 * @param serviceDefinition String value which represents the service being deleted from service registry
+	 * @param serviceUri String value which represents the service URI (path after the hostname and port) of the service being deleted from service registry
+	 * @return a future which is completed when the request is done
+	 * @throws AuthException when you are not authorized by Service Registry Core System
+	 * @throws BadPayloadException when the payload couldn't be validated by Service Registry Core System
+	 * @throws InvalidParameterException when the payload content couldn't be validated by Service Registry Core System
+	 * @throws ArrowheadException when internal server error happened at Service Registry Core System
+	 * @throws UnavailableServerException when Service Registry Core System is not available
+	 */
+	public CompletableFuture<Void> unregisterServiceFromServiceRegistry(final String serviceDefinition, final String serviceUri) {
+		return run(() -> arrowheadService.unregisterServiceFromServiceRegistry(serviceDefinition, serviceUri));
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Asynchronous version of {@link ArrowheadService#registerServices(Collection, boolean)}, running on the executor of this service.
+	 * Sends http(s) 'register' requests to Service Registry Core System for all the given services concurrently. A failing registration doesn't 
+	 * affect the others, its failure is in the result.
+	 * If the request fails, the returned future is completed exceptionally with one of the exceptions below.
+	 * 
+	 * @param requests collection of ServiceRegistryRequestDTO which represent the required payloads of the http(s) requests
+	 * @param force if true, then the already registered services are overwritten
+	 * @return a future of the result of the registration per request in the iteration order of the given collection
+	 * @throws InvalidParameterException when requests is null
+	 */
+	public CompletableFuture<List<ServiceRegistryOperationResult>> registerServices(final Collection<ServiceRegistryRequestDTO> requests, final boolean force) {
+		return supply(() -> arrowheadService.registerServices(requests, force));
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Asynchronous version of {@link ArrowheadService#unregisterServices(Collection)}, running on the executor of this service.
+	 * Sends http(s) 'unregister' requests to Service Registry Core System for all the given services concurrently. The services are identified by 
+	 * their service definition and service URI. A failing deregistration doesn't affect the others, its failure is in the result.
+	 * If the request fails, the returned future is completed exceptionally with one of the exceptions below.
+	 * 
+	 * @param requests collection of ServiceRegistryRequestDTO which represent the services being deleted from service registry
+	 * @return a future of the result of the deregistration per request in the iteration order of the given collection
+	 * @throws InvalidParameterException when requests is null
+	 */
+	public CompletableFuture<List<ServiceRegistryOperationResult>> unregisterServices(final Collection<ServiceRegistryRequestDTO> requests) {
+		return supply(() -> arrowheadService.unregisterServices(requests));
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Asynchronous version of {@link ArrowheadService#registerSystemToServiceRegistry(SystemRequestDTO)}, running on the executor of this service.
+	 * Sends a http(s) 'register-system' request to Service Registry Core System.
+	 * If the request fails, the returned future is completed exceptionally with one of the exceptions below.
+	 * 
+	 * @param request SystemRequestDTO which represents the required payload of the http(s) request
+	 * @return a future of the SystemResponseDTO received from Service Registry Core System
+	 * @throws AuthException when you are not authorized by Service Registry Core System
+	 * @throws BadPayloadException when the payload couldn't be validated by Service Registry Core System
+	 * @throws InvalidParameterException when the payload content couldn't be validated by Service Registry Core System
+	 * @throws ArrowheadException when internal server error happened at Service Registry Core System
+	 * @throws UnavailableServerException when Service Registry Core System is not available
+	 */
+	public CompletableFuture<SystemResponseDTO> registerSystemToServiceRegistry(final SystemRequestDTO request) {
+		return supply(() -> arrowheadService.registerSystemToServiceRegistry(request));
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Asynchronous version of {@link ArrowheadService#forceRegisterSystemToServiceRegistry(SystemRequestDTO)}, running on the executor of this service.
+	 * Sends a http(s) 'register-system' request to Service Registry Core System. In the case of service already registered, then the old service registry entry will be overwritten.
+	 * If the request fails, the returned future is completed exceptionally with one of the exceptions below.
+	 * 
+	 * @param request SystemRequestDTO which represents the required payload of the http(s) request
+	 * @return a future of the SystemResponseDTO received from Service Registry Core System
+	 * @throws AuthException when you are not authorized by Service Registry Core System
+	 * @throws BadPayloadException when the payload couldn't be validated by Service Registry Core System
+	 * @throws InvalidParameterException when the payload content couldn't be validated by Service Registry Core System
+	 * @throws ArrowheadException when internal server error happened at Service Registry Core System
+	 * @throws UnavailableServerException when Service Registry Core System is not available
+	 */
+	public CompletableFuture<SystemResponseDTO> forceRegisterSystemToServiceRegistry(final SystemRequestDTO request) {
+		return supply(() -> arrowheadService.forceRegisterSystemToServiceRegistry(request));
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Asynchronous version of {@link ArrowheadService#unregisterSystemFromServiceRegistry()}, running on the executor of this service.
+	 * Sends a http(s) 'unregister-system' request to Service Registry Core System.
+	 * If the request fails, the returned future is completed exceptionally with one of the exceptions below.
+	 * 
+	 * @return a future which is completed when the request is done
+	 * @throws AuthException when you are not authorized by Service Registry Core System
+	 * @throws BadPayloadException when the payload couldn't be validated by Service Registry Core System
+	 * @throws InvalidParameterException when the payload content couldn't be validated by Service Registry Core System
+	 * @throws ArrowheadException when internal server error happened at Service Registry Core System
+	 * @throws UnavailableServerException when Service Registry Core System is not available
+	 */
+	public CompletableFuture<Void> unregisterSystemFromServiceRegistry() {
+		return run(() -> arrowheadService.unregisterSystemFromServiceRegistry());
+	}
+	
+	//=================================================================================================
+	// Authorization Services
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Asynchronous version of {@link ArrowheadService#queryAuthorizationPublicKey()}, running on the executor of this service.
+	 * Queries its public key from Authorization Core System.
+	 * If the request fails, the returned future is completed exceptionally with one of the exceptions below.
+	 * 
+	 * @return a future of the public key of Authorization Core System or null when the public key core service URI is not known by ArrowheadContext component.
+	 * @throws AuthException when you are not authorized by Authorization Core System
+	 * @throws ArrowheadException when internal server error happened at Authorization Core System
+	 * @throws UnavailableServerException when Authorization Core System is not available
+	 */
+	public CompletableFuture<PublicKey> queryAuthorizationPublicKey() {
+		return supply(() -> arrowheadService.queryAuthorizationPublicKey());
+	}
+	
+	//=================================================================================================
+	// Orchestrator Services
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Asynchronous version of {@link ArrowheadService#proceedOrchestration(OrchestrationFormRequestDTO)}, running on the executor of this service.
+	 * Sends a http(s) 'orchestration' request to Orchestrator Core System. When the 'orchestration.cache.enabled' property is true,
+	 * then a still valid response for the same orchestration form is returned from the cache instead.
+	 * If the request fails, the returned future is completed exceptionally with one of the exceptions below.
+	 * 
+	 * @param request OrchestrationFormRequestDTO which represents the required payload of the http(s) request
+	 * @return a future of the OrchestrationResponseDTO received from Orchestrator Core System or null when the orchestration service URI is not known by Arrowhead Context
+	 * @throws AuthException when you are not authorized by Orchestrator Core System
+	 * @throws BadPayloadException when the payload couldn't be validated by Orchestrator Core System
+	 * @throws InvalidParameterException when the payload content couldn't be validated by Orchestrator Core System
+	 * @throws ArrowheadException when internal server error happened at one of the core system involved in orchestration process
+	 * @throws UnavailableServerException when one of the core system involved in orchestration process is not available
+	 */
+	public CompletableFuture<OrchestrationResponseDTO> proceedOrchestration(final OrchestrationFormRequestDTO request) {
+		return supply(() -> arrowheadService.proceedOrchestration(request));
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Asynchronous version of {@link ArrowheadService#queryOrchestrationStore(long)}, running on the executor of this service.
+	 * Sends a http(s) 'orchestration/{systemId}' request to Orchestrator Core System.
+	 * If the request fails, the returned future is completed exceptionally with one of the exceptions below.
+	 * 
+	 * @param systemId long value which represents the required system id path variable
+	 * @return a future of the OrchestrationResponseDTO with all top priority provider from Orchestration Store or null when the orchestration service URI is not known by Arrowhead Context
+	 * @throws AuthException when you are not authorized by Orchestrator Core System
+	 * @throws BadPayloadException when the systemId couldn't be validated by Orchestrator Core System
+	 * @throws InvalidParameterException when the system is not found by Service Registry Core System
+	 * @throws ArrowheadException when internal server error happened at one of the core system involved in orchestration process
+	 * @throws UnavailableServerException when one of the core system involved in orchestration process is not available
+	 */
+	public CompletableFuture<OrchestrationResponseDTO> queryOrchestrationStore(final long systemId) {
+		return supply(() -> arrowheadService.queryOrchestrationStore(systemId));
+	}
+	
+	//=================================================================================================
+	// System Registry Services
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Asynchronous version of {@link ArrowheadService#registerSystemToSystemRegistry(SystemRegistryRequestDTO)}, running on the executor of this service.
+	 * Sends a http(s) 'system-register' request to System Registry Core System.
+	 * If the request fails, the returned future is completed exceptionally with one of the exceptions below.
+	 * 
+	 * @param request SystemRegistryRequestDTO which represents the required payload of the http(s) request
+	 * @return a future of the SystemRegistryResponseDTO received from System Registry Core System
+	 * @throws AuthException when you are not authorized by System Registry Core System
+	 * @throws BadPayloadException when the payload couldn't be validated by System Registry Core System
+	 * @throws InvalidParameterException when the payload content couldn't be validated by System Registry Core System
+	 * @throws ArrowheadException when internal server error happened at System Registry Core System
+	 * @throws UnavailableServerException when System Registry Core System is not available
+	 */
+	public CompletableFuture<SystemRegistryResponseDTO> registerSystemToSystemRegistry(final SystemRegistryRequestDTO request) {
+		return supply(() -> arrowheadService.registerSystemToSystemRegistry(request));
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Asynchronous version of {@link ArrowheadService#forceRegisterSystemToSystemRegistry(SystemRegistryRequestDTO)}, running on the executor of this service.
+	 * Sends a http(s) 'system-register' request to System Registry Core System. In the case of system is already registered, then the old system registry entry will be overwritten.
+	 * If the request fails, the returned future is completed exceptionally with one of the exceptions below.
+	 * 
+	 * @param request SystemRegistryRequestDTO which represents the required payload of the http(s) request
+	 * @return a future of the SystemRegistryResponseDTO received from System Registry Core System
+	 * @throws AuthException when you are not authorized by System Registry Core System
+	 * @throws BadPayloadException when the payload couldn't be validated by System Registry Core System
+	 * @throws InvalidParameterException when the payload content couldn't be validated by System Registry Core System
+	 * @throws ArrowheadException when internal server error happened at System Registry Core System
+	 * @throws UnavailableServerException when System Registry Core System is not available
+	 */
+	public CompletableFuture<SystemRegistryResponseDTO> forceRegisterSystemToSystemRegistry(final SystemRegistryRequestDTO request) {
+		return supply(() -> arrowheadService.forceRegisterSystemToSystemRegistry(request));
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Asynchronous version of {@link ArrowheadService#unregisterSystemFromSystemRegistry()}, running on the executor of this service.
+	 * Sends a http(s) 'system-unregister' request to System Registry Core System.
+	 * If the request fails, the returned future is completed exceptionally with one of the exceptions below.
+	 * 
+	 * @return a future of the result: true if successfully deregistered or false if the service is not known by Arrowhead Context
+	 * @throws AuthException when you are not authorized by System Registry Core System
+	 * @throws BadPayloadException when the payload couldn't be validated by System Registry Core System
+	 * @throws InvalidParameterException when the payload content couldn't be validated by System Registry Core System
+	 * @throws ArrowheadException when internal server error happened at System Registry Core System
+	 * @throws UnavailableServerException when System Registry Core System is not available
+	 */
+	public CompletableFuture<Boolean> unregisterSystemFromSystemRegistry() {
+		return supply(() -> arrowheadService.unregisterSystemFromSystemRegistry());
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Asynchronous version of {@link ArrowheadService#onboardSystemWithName(SystemRegistryOnboardingWithNameRequestDTO)}, running on the executor of this service.
+	 * Sends a http(s) 'system-onboarding-with-name' request to System Registry Core System.
+	 * If the request fails, the returned future is completed exceptionally with one of the exceptions below.
+	 * 
+	 * @param request SystemRegistryOnboardingWithNameRequestDTO which represents the required payload of the http(s) request
+	 * @return a future of the DeviceRegistryOnboardingWithNameResponseDTO received from System Registry Core System
+	 * @throws AuthException when you are not authorized by System Registry Core System
+	 * @throws BadPayloadException when the payload couldn't be validated by System Registry Core System
+	 * @throws ArrowheadException when internal server error happened at System Registry Core System
+	 * @throws UnavailableServerException when System Registry Core System is not available
+	 */
+	public CompletableFuture<SystemRegistryOnboardingWithNameResponseDTO> onboardSystemWithName(final SystemRegistryOnboardingWithNameRequestDTO request) {
+		return supply(() -> arrowheadService.onboardSystemWithName(request));
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Asynchronous version of {@link ArrowheadService#onboardSystemWithCSR(SystemRegistryOnboardingWithCsrRequestDTO)}, running on the executor of this service.
+	 * Sends a http(s) 'system-onboarding-with-csr' request to System Registry Core System.
+	 * If the request fails, the returned future is completed exceptionally with one of the exceptions below.
+	 * 
+	 * @param request SystemRegistryOnboardingWithCsrRequestDTO which represents the required payload of the http(s) request
+	 * @return a future of the SystemRegistryOnboardingWithCsrRequestDTO received from System Registry Core System
+	 * @throws AuthException when you are not authorized by System Registry Core System
+	 * @throws BadPayloadException when the payload couldn't be validated by System Registry Core System
+	 * @throws ArrowheadException when internal server error happened at System Registry Core System
+	 * @throws UnavailableServerException when System Registry Core System is not available
+	 */
+	public CompletableFuture<SystemRegistryOnboardingWithCsrRequestDTO> onboardSystemWithCSR(final SystemRegistryOnboardingWithCsrRequestDTO request) {
+		return supply(() -> arrowheadService.onboardSystemWithCSR(request));
+	}
+	
+	//=================================================================================================
+	// Device Registry Services
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Asynchronous version of {@link ArrowheadService#registerDeviceToDeviceRegistry(DeviceRegistryRequestDTO)}, running on the executor of this service.
+	 * Sends a http(s) 'device-register' request to Device Registry Core System.
+	 * If the request fails, the returned future is completed exceptionally with one of the exceptions below.
+	 * 
+	 * @param request DeviceRegistryRequestDTO which represents the required payload of the http(s) request
+	 * @return a future of the DeviceRegistryResponseDTO received from Device Registry Core System
+	 * @throws AuthException when you are not authorized by Device Registry Core System
+	 * @throws BadPayloadException when the payload couldn't be validated by Device Registry Core System
+	 * @throws InvalidParameterException when the payload content couldn't be validated by Device Registry Core System
+	 * @throws ArrowheadException when internal server error happened at Device Registry Core System
+	 * @throws UnavailableServerException when Device Registry Core System is not available
+	 */
+	public CompletableFuture<DeviceRegistryResponseDTO> registerDeviceToDeviceRegistry(final DeviceRegistryRequestDTO request) {
+		return supply(() -> arrowheadService.registerDeviceToDeviceRegistry(request));
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Asynchronous version of {@link ArrowheadService#unregisterDeviceFromDeviceRegistry(String, String)}, running on the executor of this service.
+	 * Sends a http(s) 'device-unregister' request to Device Registry Core System.
+	 * If the request fails, the returned future is completed exceptionally with one of the exceptions below.
+	 * 
+	 * @return a future of the result: true if successfully deregistered or false if the service is not known by Arrowhead Context
+	 * @throws AuthException when you are not authorized by Device Registry Core System
+	 * @throws BadPayloadException when the payload couldn't be validated by Device Registry Core System
+	 * @throws InvalidParameterException when the payload content couldn't be validated by Device Registry Core System
+	 * @throws ArrowheadException when internal server error happened at Device Registry Core System
+	 * @throws UnavailableServerException when Device Registry Core System is not available
+	 */
+	public CompletableFuture<Boolean> unregisterDeviceFromDeviceRegistry(final String deviceName, final String macAdders) {
+		return supply(() -> arrowheadService.unregisterDeviceFromDeviceRegistry(deviceName, macAdders));
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Asynchronous version of {@link ArrowheadService#onboardDeviceWithName(DeviceRegistryOnboardingWithNameRequestDTO)}, running on the executor of this service.
+	 * Sends a http(s) 'device-onboarding-with-name' request to Device Registry Core System.
+	 * If the request fails, the returned future is completed exceptionally with one of the exceptions below.
+	 * 
+	 * @param request DeviceRegistryOnboardingWithNameRequestDTO which represents the required payload of the http(s) request
+	 * @return a future of the DeviceRegistryOnboardingWithNameResponseDTO received from Device Registry Core System
+	 * @throws AuthException when you are not authorized by Device Registry Core System
+	 * @throws BadPayloadException when the payload couldn't be validated by Device Registry Core System
+	 * @throws ArrowheadException when internal server error happened at Device Registry Core System
+	 * @throws UnavailableServerException when Device Registry Core System is not available
+	 */
+	public CompletableFuture<DeviceRegistryOnboardingWithNameResponseDTO> onboardDeviceWithName(final DeviceRegistryOnboardingWithNameRequestDTO request) {
+		return supply(() -> arrowheadService.onboardDeviceWithName(request));
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Asynchronous version of {@link ArrowheadService#onboardDeviceWithCSR(DeviceRegistryOnboardingWithCsrRequestDTO)}, running on the executor of this service.
+	 * Sends a http(s) 'device-onboarding-with-csr' request to Device Registry Core System.
+	 * If the request fails, the returned future is completed exceptionally with one of the exceptions below.
+	 * 
+	 * @param request DeviceRegistryOnboardingWithCsrRequestDTO which represents the required payload of the http(s) request
+	 * @return a future of the DeviceRegistryOnboardingWithCsrResponseDTO received from Device Registry Core System
+	 * @throws AuthException when you are not authorized by Device Registry Core System
+	 * @throws BadPayloadException when the payload couldn't be validated by Device Registry Core System
+	 * @throws ArrowheadException when internal server error happened at Device Registry Core System
+	 * @throws UnavailableServerException when Device Registry Core System is not available
+	 */
+	public CompletableFuture<DeviceRegistryOnboardingWithCsrResponseDTO> onboardDeviceWithCSR(final DeviceRegistryOnboardingWithCsrRequestDTO request) {
+		return supply(() -> arrowheadService.onboardDeviceWithCSR(request));
+	}
+	
+	//=================================================================================================
+	// Event Handler Services
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Asynchronous version of {@link ArrowheadService#subscribeToEventHandler(SubscriptionRequestDTO)}, running on the executor of this service.
+	 * Sends a http(s) 'subscription' request to Event Handler Core System.
+	 * If the request fails, the returned future is completed exceptionally with one of the exceptions below.
+	 * 
+	 * @param request SubscriptionRequestDTO which represents the required payload of the http(s) request
+	 * @return a future which is completed when the request is done
+	 * @throws AuthException when you are not authorized by Event Handler Core System
+	 * @throws BadPayloadException when the payload couldn't be validated by Event Handler Core System
+	 * @throws InvalidParameterException when the payload content couldn't be validated by Event Handler Core System
+	 * @throws ArrowheadException when internal server error happened at Event Handler Core System
+	 * @throws UnavailableServerException when Event Handler Core System is not available
+	 */
+	public CompletableFuture<Void> subscribeToEventHandler(final SubscriptionRequestDTO request) {
+		return run(() -> arrowheadService.subscribeToEventHandler(request));
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Asynchronous version of {@link ArrowheadService#unsubscribeFromEventHandler(String, String, String, int)}, running on the executor of this service.
+	 * Sends a http(s) 'unsubscription' request to Event Handler Core System.
+	 * If the request fails, the returned future is completed exceptionally with one of the exceptions below.
+	 * 
+	 * @param eventType String which represents the required eventType parameter of the http(s) request
+	 * @param subscriberName String which represents the required subscriberName parameter of the http(s) request
+	 * @param subscriberAddress String which represents the required subscriberAddress parameter of the http(s) request
+	 * @param subscriberPort int which represents the required subscriberPort parameter of the http(s) request
+	 * @return a future which is completed when the request is done
+	 * @throws AuthException when you are not authorized by Event Handler Core System
+	 * @throws BadPayloadException when the payload couldn't be validated by Event Handler Core System
+	 * @throws InvalidParameterException when the payload content couldn't be validated by Event Handler Core System
+	 * @throws ArrowheadException when internal server error happened at Event Handler Core System
+	 * @throws UnavailableServerException when Event Handler Core System is not available
+	 */
+	public CompletableFuture<Void> unsubscribeFromEventHandler(final String eventType, final String subscriberName, final String subscriberAddress, final int subscriberPort) {
+		return run(() -> arrowheadService.unsubscribeFromEventHandler(eventType, subscriberName, subscriberAddress, subscriberPort));
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Asynchronous version of {@link ArrowheadService#publishToEventHandler(EventPublishRequestDTO)}, running on the executor of this service.
+	 * Sends a http(s) 'publish' request to Event Handler Core System.
+	 * If the request fails, the returned future is completed exceptionally with one of the exceptions below.
+	 * 
+	 * @param request EventPublishRequestDTO which represents the required payload of the http(s) request
+	 * @return a future which is completed when the request is done
+	 * @throws AuthException when you are not authorized by Event Handler Core System
+	 * @throws BadPayloadException when the payload couldn't be validated by Event Handler Core System
+	 * @throws InvalidParameterException when the payload content couldn't be validated by Event Handler Core System
+	 * @throws ArrowheadException when internal server error happened at Event Handler Core System
+	 * @throws UnavailableServerException when Event Handler Core System is not available
+	 */
+	public CompletableFuture<Void> publishToEventHandler(final EventPublishRequestDTO request) {
+		return run(() -> arrowheadService.publishToEventHandler(request));
+	}
+	
+	//=================================================================================================
+	// Application System support methods
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Asynchronous version of {@link ArrowheadService#consumeServiceHTTP(Class, HttpMethod, String, int, String, String, String, Object, String...)}, running on the executor of this service.
+	 * Sends a http(s) request with the specified service reachability details.
+	 * If the request fails, the returned future is completed exceptionally with one of the exceptions below.
+	 * 
+	 * @param <T> responseType which represents the expected response body.
+	 * @param httpMethod HttpMethod enum which represents the method how the service is available.
+	 * @param address String value which represents the host where the service is available.
+	 * @param port int value which represents the port where the service is available
+	 * @param serviceUri String value which represents the URI where the service is available.
+	 * @param interfaceName String value which represents the name of the interface used for the communication. Usable interfaces could be received in orchestration response.
+	 * @param token (nullable) String value which represents the token for being authorized at the provider side if necessary. Token could be received in orchestration response per interface type.
+	 * @param payload (nullable) Object type which represents the required payload of the http(s) request if any necessary.
+	 * @param queryParams (nullable) String... variable arguments which represent the additional key-value http(s) query parameters if any necessary. E.g.: "k1", "v1", "k2", "v2".
+	 * @return a future of the response received from the provider
+	 * @throws InvalidParameterException when service URL can't be assembled.
+	 * @throws AuthException when ssl context or access control related issue happened.
+	 * @throws ArrowheadException when the communication is managed via Gateway Core System and internal server error happened.
+	 * @throws UnavailableServerException when the specified server is not available.
+	 * @throws CircuitBreakerOpenException when circuit breaking is enabled and the breaker of the specified endpoint is open.
+	 */
+	public <T> CompletableFuture<T> consumeServiceHTTP(final Class<T> responseType, final HttpMethod httpMethod, final String address, final int port, final String serviceUri, 
+													   final String interfaceName, final String token, final Object payload, final String... queryParams) {
+		return supply(() -> arrowheadService.consumeServiceHTTP(responseType, httpMethod, address, port, serviceUri, interfaceName, token, payload, queryParams));
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Asynchronous version of {@link ArrowheadService#consumeServiceHTTP(Class, HttpMethod, UriComponents, String, Object)}, running on the executor of this service.
+	 * Sends a http(s) request with the specified service reachability details.
+	 * If the request fails, the returned future is completed exceptionally with one of the exceptions below.
+	 * 
+	 * @param <T> responseType which represents the expected response body.
+	 * @param httpMethod HttpMethod enum which represents the method how the service is available.
+	 * @param uriComponents UriComponents object which represents the URI where the service is available.
+	 * @param token (nullable) String value which represents the token for being authorized at the provider side if necessary. Token could be received in orchestration response per interface type.
+	 * @param payload (nullable) Object type which represents the required payload of the http(s) request if any necessary.
+	 * @return a future of the response received from the provider
+	 * @throws InvalidParameterException when service URL can't be assembled.
+	 * @throws AuthException when ssl context or access control related issue happened.
+	 * @throws ArrowheadException when the communication is managed via Gateway Core System and internal server error happened.
+	 * @throws UnavailableServerException when the specified server is not available.
+	 * @throws CircuitBreakerOpenException when circuit breaking is enabled and the breaker of the specified endpoint is open.
+	 */
+	public <T> CompletableFuture<T> consumeServiceHTTP(final Class<T> responseType, final HttpMethod httpMethod, final UriComponents uriComponents, final String token, final Object payload) {
+		return supply(() -> arrowheadService.consumeServiceHTTP(responseType, httpMethod, uriComponents, token, payload));
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Asynchronous version of {@link ArrowheadService#consumeServiceHTTP(Class, HttpMethod, PreparedServiceEndpoint, Object, String...)}, running on the executor of this service.
+	 * Sends a http(s) request to the specified prepared service endpoint.
+	 * If the request fails, the returned future is completed exceptionally with one of the exceptions below.
+	 * 
+	 * @param <T> responseType which represents the expected response body.
+	 * @param httpMethod HttpMethod enum which represents the method how the service is available.
+	 * @param endpoint PreparedServiceEndpoint object which represents the service reachability details and the token (if any).
+	 * @param payload (nullable) Object type which represents the required payload of the http(s) request if any necessary.
+	 * @param queryParams (nullable) String... variable arguments which represent the additional key-value http(s) query parameters if any necessary. E.g.: "k1", "v1", "k2", "v2".
+	 * @return a future of the response received from the provider
+	 * @throws InvalidParameterException when service URL can't be assembled.
+	 * @throws AuthException when ssl context or access control related issue happened.
+	 * @throws ArrowheadException when the communication is managed via Gateway Core System and internal server error happened.
+	 * @throws UnavailableServerException when the specified server is not available.
+	 * @throws CircuitBreakerOpenException when circuit breaking is enabled and the breaker of the specified endpoint is open.
+	 */
+	public <T> CompletableFuture<T> consumeServiceHTTP(final Class<T> responseType, final HttpMethod httpMethod, final PreparedServiceEndpoint endpoint, final Object payload,
+													   final String... queryParams) {
+		return supply(() -> arrowheadService.consumeServiceHTTP(responseType, httpMethod, endpoint, payload, queryParams));
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Asynchronous version of {@link ArrowheadService#connectMQTTBroker(MqttCallback, String, String, String, int, String)}, running on the executor of this service.
+	 * Connect to MQTT broker.
+	 * If the 'mqtt.shared.socket.factory.enabled' property is true, the TLS socket factory shared by all the MQTT clients (built from the
+	 * already loaded stores) is used instead of letting the client read the store files on every connect.
+	 * If the 'mqtt.reconnect.enabled' property is true, the returned client is a {@link ai.aitia.arrowhead.application.library.mqtt.ManagedMqttClient}: a lost connection is re-established
+	 * with jittered backoff and the subscriptions made through the client are restored.
+	 * Instead of writing the topic routing in the handler, a dispatcher created by {@link ArrowheadService#createMqttTopicDispatcher(MqttCallback)} can be used as
+	 * handler.
+	 * If the request fails, the returned future is completed exceptionally with one of the exceptions below, or with the MqttException if
+	 * communication related error occurs.
+	 * 
+	 * @param handler the MqttCallback which gets the connection events and the arrived messages
+	 * @param brokerAddress address to the broker
+	 * @param mqttBrokerUsername user name to the broker if necessary
+	 * @param mqttBrokerPassword password to the broker if necessary
+	 * @param port port to the broker
+	 * @param clientId the client name to use
+	 * @return a future of the connected MQTT client
+	 * @throws InvalidParameterException if a parameter error occurs
+	 * @throws ArrowheadException if a certificate error occurs
+	 */
+	public CompletableFuture<MqttClient> connectMQTTBroker(final MqttCallback handler, final String brokerAddress, final String mqttBrokerUsername, final String mqttBrokerPassword, final int port,
+														   final String clientId) {
+		return call(() -> arrowheadService.connectMQTTBroker(handler, brokerAddress, mqttBrokerUsername, mqttBrokerPassword, port, clientId));
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @return the executor used for running the requests
+	 */
+	public Executor getExecutor() {
+		return executor;
+	}
+	
+	//=================================================================================================
+	// assistant methods
+	
+	//-------------------------------------------------------------------------------------------------
+	private <T> CompletableFuture<T> supply(final Supplier<T> task) {
+		return call(task::get);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private CompletableFuture<Void> run(final Runnable task) {
+		return call(() -> {
+			task.run();
+			return null;
+		});
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private <T> CompletableFuture<T> call(final Callable<T> task) {
+		final CompletableFuture<T> future = new CompletableFuture<>();
+		try {
+			executor.execute(() -> {
+				if (future.isDone()) {
+					return;
+				}
+				
+				try {
+					future.complete(task.call());
+				} catch (final Throwable ex) {
+					future.completeExceptionally(ex);
+				}
+			});
+		} catch (final RejectedExecutionException ex) {
+			future.completeExceptionally(ex);
+		}
+		
+		return future;
+	}
+}
@@ -20,14 +20,20 @@ import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 import javax.annotation.PreDestroy;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.DependsOn;
@@ -37,11 +43,17 @@ import org.springframework.core.annotation.Order;
 import org.springframework.util.Assert;
 
 import ai.aitia.arrowhead.application.library.ArrowheadService;
+import ai.aitia.arrowhead.application.library.util.ApplicationCommonConstants;
+import ai.aitia.arrowhead.application.library.util.InitTaskOutcome;
+import ai.aitia.arrowhead.application.library.util.InitTaskRunner;
+import ai.aitia.arrowhead.application.library.util.ServiceRegistryOperationResult;
+import ai.aitia.arrowhead.application.library.util.ServerKeyMaterial;
 import eu.arrowhead.common.CommonConstants;
 import eu.arrowhead.common.SSLProperties;
 import eu.arrowhead.common.Utilities;
 import eu.arrowhead.common.core.CoreSystem;
-import eu.arrowhead.common.exception.AuthException;
+import eu.arrowhead.common.dto.shared.ServiceRegistryRequestDTO;
+import eu.arrowhead.common.exception.ArrowheadException;
 
 public abstract class ApplicationInitListener {
 
@@ -54,6 +66,18 @@ public abstract class ApplicationInitListener {
 	@Autowired
 	protected SSLProperties sslProperties;
 	
+	@Value(ApplicationCommonConstants.$FAST_START_ENABLED_WD)
+	private boolean fastStartEnabled;
+	
+	@Value(ApplicationCommonConstants.$FAST_START_DEADLINE_WD)
+	private long fastStartDeadline;
+	
+	@Value(ApplicationCommonConstants.$FAST_START_THREAD_NUM_WD)
+	private int fastStartThreadNum;
+	
+	private InitTaskRunner initTaskRunner;
+	private CompletableFuture<InitTaskOutcome> keysTask = CompletableFuture.completedFuture(null);
+	
 	protected final Logger logger = LogManager.getLogger(ApplicationInitListener.class);
 	
 	//=================================================================================================
@@ -64,14 +88,30 @@ public abstract class ApplicationInitListener {
 	@Order(10)
 	public void onApplicationEvent(final ContextRefreshedEvent event) throws KeyStoreException, NoSuchAlgorithmException, CertificateException, IOException, InterruptedException {
 		logger.info("Security mode: {}", getModeString());
+		if (fastStartEnabled) {
+			logger.info("Fast-start mode, deadline: {} ms", fastStartDeadline);
+		}
 		
-		if (sslProperties.isSslEnabled()) {
-			final KeyStore keyStore = initializeKeyStore();
-			checkServerCertificate(keyStore, event.getApplicationContext());
-			obtainKeys(keyStore, event.getApplicationContext());
+		final long start = System.currentTimeMillis();
+		initTaskRunner = new InitTaskRunner(fastStartEnabled ? fastStartThreadNum : 0);
+		try {
+			if (sslProperties.isSslEnabled()) {
+				final KeyStore keyStore = initializeKeyStore();
+				checkServerCertificate(keyStore, event.getApplicationContext());
+				keysTask = initTaskRunner.submit("obtainKeys", true, () -> obtainKeys(keyStore, event.getApplicationContext()));
+			}
+			
+			// in fast-start mode customInit() only submits its tasks, so they run concurrently with the key extraction
+			customInit(event);
+			
+			initTaskRunner.awaitRequired(getRemainingTime(start));
+		} finally {
+			initTaskRunner.shutdown(this::onInitTasksCompleted);
 		}
 		
-		customInit(event);
+		if (fastStartEnabled) {
+			logger.info("Required initialization tasks are finished in {} ms.", System.currentTimeMillis() - start);
+		}
 	}
 	
 	//-------------------------------------------------------------------------------------------------
@@ -79,11 +119,22 @@ public abstract class ApplicationInitListener {
 	public void destroy() throws InterruptedException {
 		customDestroy();
 	}	
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @return the outcomes of the initialization tasks finished so far
+	 */
+	public List<InitTaskOutcome> getInitTaskOutcomes() {
+		return initTaskRunner == null ? Collections.emptyList() : initTaskRunner.getOutcomes();
+	}
 
 	//=================================================================================================
 	// assistant methods
 	
 	//-------------------------------------------------------------------------------------------------
+	/**
+	 * In fast-start mode the server keys may not be in the Arrowhead context yet when this method is called (see {@link #awaitServerKeys()}).
+	 */
 	protected void customInit(final ContextRefreshedEvent event) {}
 	
 	//-------------------------------------------------------------------------------------------------
@@ -95,7 +146,105 @@ public abstract class ApplicationInitListener {
 	}
 	
 	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Adds an initialization task. Intended to be called from {@link #customInit(ContextRefreshedEvent)}.
+	 * 
+	 * Normally the task runs immediately on the caller thread. In fast-start mode it runs concurrently with the other tasks: the 
+	 * application becomes ready when the required tasks are finished (startup fails if they fail or don't finish before the deadline),
+	 * while the optional ones go on in the background. 
+	 * 
+	 * @param name the name of the task used in the logs and the outcomes
+	 * @param required whether the application can't work without the task
+	 * @param task the task
+	 * @throws ArrowheadException when a required task fails (in fast-start mode only at the end of the initialization)
+	 */
+	protected void addInitTask(final String name, final boolean required, final Runnable task) {
+		initTaskRunner.submit(name, required, task);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Queries the URIs of the public services of the specified core system as an initialization task.
+	 */
+	protected void discoverCoreSystem(final CoreSystem coreSystem, final boolean required) {
+		addInitTask("discover " + coreSystem.name(), required, () -> arrowheadService.updateCoreServiceURIs(coreSystem));
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Checks whether the specified core system is reachable. In fast-start mode the check is an optional initialization task.
+	 */
 	protected void checkCoreSystemReachability(final CoreSystem coreSystem) {
+		if (fastStartEnabled) {
+			addInitTask("echo " + coreSystem.name(), false, () -> doCheckCoreSystemReachability(coreSystem));
+		} else {
+			doCheckCoreSystemReachability(coreSystem);
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Registers the given services into the Service Registry as an initialization task. The requests are created when the server keys are 
+	 * already in the Arrowhead context, so the supplier may use {@link ArrowheadService#getMyPublicKey()}.
+	 * 
+	 * @param requests supplies the registration requests
+	 * @param force if true, then the already registered services are overwritten
+	 * @param required whether the application can't work without the services being registered
+	 * @throws ArrowheadException when a registration fails and the task is required (in fast-start mode only at the end of the initialization)
+	 */
+	protected void registerServices(final Supplier<Collection<ServiceRegistryRequestDTO>> requests, final boolean force, final boolean required) {
+		Assert.notNull(requests, "requests is null");
+		addInitTask("register services", required, () -> {
+			awaitServerKeys();
+			for (final ServiceRegistryOperationResult result : arrowheadService.registerServices(requests.get(), force)) {
+				if (!result.isSuccessful()) {
+					throw new ArrowheadException("Registration of service '" + result.getRequest().getServiceDefinition() + "' failed: " + result.getError().getMessage(),
+												 result.getError());
+				}
+			}
+		});
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Waits until the server keys are in the Arrowhead context. In fast-start mode the keys are extracted concurrently with 
+	 * {@link #customInit(ContextRefreshedEvent)}, so a subclass must call this method before it uses them directly.
+	 * 
+	 * @throws ArrowheadException when the keys can't be obtained
+	 */
+	protected void awaitServerKeys() {
+		final InitTaskOutcome outcome = keysTask.join();
+		if (outcome != null && !outcome.isSucceeded()) {
+			throw new ArrowheadException("Server keys are not available: " + outcome.getError().getMessage(), outcome.getError());
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Called with the outcomes of all the initialization tasks when the last one is finished.
+	 */
+	protected void onInitTasksCompleted(final List<InitTaskOutcome> outcomes) {
+		long failed = 0;
+		for (final InitTaskOutcome outcome : outcomes) {
+			if (!outcome.isSucceeded()) {
+				++failed;
+			}
+		}
+		
+		if (failed > 0) {
+			logger.warn("Initialization is finished, {} of {} tasks failed: {}", failed, outcomes.size(), outcomes);
+		} else {
+			logger.debug("Initialization is finished, all {} tasks succeeded.", outcomes.size());
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private long getRemainingTime(final long start) {
+		return Math.max(0, fastStartDeadline - (System.currentTimeMillis() - start));
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private void doCheckCoreSystemReachability(final CoreSystem coreSystem) {
 		if (arrowheadService.echoCoreSystem(coreSystem)) {
 			logger.info("'{}' core system is reachable.", coreSystem.name());
 		} else {
@@ -123,11 +272,7 @@ public abstract class ApplicationInitListener {
 	private void checkServerCertificate(final KeyStore keyStore, final ApplicationContext appContext) {
 		logger.debug("checkServerCertificate started...");
 		final X509Certificate serverCertificate = Utilities.getSystemCertFromKeyStore(keyStore);
-		final String serverCN = Utilities.getCertCNFromSubject(serverCertificate.getSubjectDN().getName());
-		if (!Utilities.isKeyStoreCNArrowheadValid(serverCN)) {
-			logger.info("Application system CN ({}) is not compliant with the Arrowhead certificate structure, since it does not have 5 parts, or does not end with \"arrowhead.eu\".", serverCN);
-			throw new AuthException("Server CN (" + serverCN + ") is not compliant with the Arrowhead certificate structure, since it does not have 5 parts, or does not end with \"arrowhead.eu\".");
-		}
+		final String serverCN = ServerKeyMaterial.getValidatedServerCN(serverCertificate);
 		logger.info("Application system CN: {}", serverCN);
 		
 		@SuppressWarnings("unchecked")
@@ -0,0 +1,407 @@
+/********************************************************************************
+ * Copyright (c) 2020 AITIA
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *   AITIA - implementation
+ ********************************************************************************/
+
+package ai.aitia.arrowhead.application.library.mqtt;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttMessageListener;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.springframework.util.Assert;
+
+import ai.aitia.arrowhead.application.library.util.LatencySampler;
+import eu.arrowhead.common.Utilities;
+import eu.arrowhead.common.exception.InvalidParameterException;
+
+/**
+ * Non-blocking broker connection based on {@link MqttAsyncClient}. Publishing returns immediately with a future which completes when the broker
+ * acknowledges the message (or when the message is written, at QoS 0), so the throughput is not limited by the per-message round trips. The number
+ * of unacknowledged messages is limited by the max inflight window: when it is full, the message waits in a queue for a free slot (up to the publish
+ * timeout, checked periodically). Publishing never blocks the caller, so it can be chained to the futures, which complete on the callback thread of the client.
+ */
+public class AsyncMqttConnection {
+	
+	//=================================================================================================
+	// members
+	
+	private static final int LATENCY_SAMPLE_SIZE = 1024;
+	private static final long MIN_SWEEP_PERIOD = 10; // ms
+	private static final long MAX_SWEEP_PERIOD = 1000; // ms
+	
+	private final MqttAsyncClient client;
+	private final MqttConnectOptions options;
+	private final int maxInflight;
+	private final long publishTimeout;
+	private final Semaphore inflightWindow;
+	private final ConcurrentLinkedQueue<PendingPublish> waiting = new ConcurrentLinkedQueue<>(); // messages waiting for a free inflight slot
+	private final ScheduledFuture<?> sweeper; // fails the expired waiting messages even if no slot becomes free
+	
+	private final AtomicLong publishedCount = new AtomicLong();
+	private final AtomicLong acknowledgedCount = new AtomicLong();
+	private final AtomicLong failedCount = new AtomicLong();
+	private final LatencySampler ackLatencies = new LatencySampler(LATENCY_SAMPLE_SIZE);
+	private volatile int maxObservedInflight = 0;
+	
+	private final Logger logger = LogManager.getLogger(AsyncMqttConnection.class);
+	
+	//=================================================================================================
+	// methods
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @param client the not yet connected client (its callback should already be set)
+	 * @param options the connect options; its max inflight value is overwritten
+	 * @param maxInflight the maximum number of published but not yet acknowledged messages
+	 * @param publishTimeout how long a message may wait for a free inflight slot in milliseconds
+	 * @param scheduler runs the periodic check of the waiting messages (may be shared between connections)
+	 */
+	public AsyncMqttConnection(final MqttAsyncClient client, final MqttConnectOptions options, final int maxInflight, final long publishTimeout,
+							   final ScheduledExecutorService scheduler) {
+		Assert.notNull(client, "client is null");
+		Assert.notNull(options, "options is null");
+		Assert.notNull(scheduler, "scheduler is null");
+		Assert.isTrue(maxInflight > 0, "maxInflight must be positive");
+		Assert.isTrue(publishTimeout >= 0, "publishTimeout must not be negative");
+		
+		this.client = client;
+		this.options = options;
+		this.maxInflight = maxInflight;
+		this.publishTimeout = publishTimeout;
+		this.inflightWindow = new Semaphore(maxInflight);
+		this.options.setMaxInflight(maxInflight);
+		
+		final long sweepPeriod = Math.max(MIN_SWEEP_PERIOD, Math.min(MAX_SWEEP_PERIOD, publishTimeout / 2));
+		this.sweeper = scheduler.scheduleWithFixedDelay(this::sweepExpired, sweepPeriod, sweepPeriod, TimeUnit.MILLISECONDS);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public CompletableFuture<Void> connect() {
+		logger.info("Connecting to MQTT(S) broker: " + client.getServerURI());
+		final CompletableFuture<Void> result = new CompletableFuture<>();
+		try {
+			client.connect(options, null, new FutureActionListener(result));
+		} catch (final MqttException ex) {
+			result.completeExceptionally(ex);
+		}
+		
+		return result;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Publishes the message without waiting for the acknowledgement. If the inflight window is full, the message is queued and published when a 
+	 * slot becomes free; the call itself never blocks.
+	 * 
+	 * @return a future which completes when the message is acknowledged by the broker (or fails, also if it waited for a free slot longer than the
+	 *         publish timeout)
+	 */
+	public CompletableFuture<Void> publish(final String topic, final MqttMessage message) {
+		if (Utilities.isEmpty(topic)) {
+			throw new InvalidParameterException("topic cannot be null or blank.");
+		}
+		if (message == null) {
+			throw new InvalidParameterException("message cannot be null.");
+		}
+		
+		final PendingPublish pending = new PendingPublish(topic, message, System.nanoTime());
+		if (waiting.isEmpty() && inflightWindow.tryAcquire()) {
+			send(pending);
+		} else {
+			// keeps the order of the messages: they are sent when the earlier ones are
+			waiting.add(pending);
+		}
+		sendWaiting(); // the slot may have been freed since
+		
+		return pending.result;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Publishes every message to the same topic, keeping as many of them inflight as the window allows.
+	 * 
+	 * @return a future which completes when all the messages are acknowledged, or fails if any of them fails
+	 */
+	public CompletableFuture<Void> publishAll(final String topic, final Collection<MqttMessage> messages) {
+		if (messages == null) {
+			throw new InvalidParameterException("messages cannot be null.");
+		}
+		
+		final List<CompletableFuture<Void>> futures = new ArrayList<>(messages.size());
+		for (final MqttMessage message : messages) {
+			futures.add(publish(topic, message));
+		}
+		
+		return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()]));
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Publishes one message per topic (e.g. the latest reading of several sensors), keeping as many of them inflight as the window allows.
+	 * 
+	 * @return a future which completes when all the messages are acknowledged, or fails if any of them fails
+	 */
+	public CompletableFuture<Void> publishAll(final Map<String,MqttMessage> messagesByTopic) {
+		if (messagesByTopic == null) {
+			throw new InvalidParameterException("messagesByTopic cannot be null.");
+		}
+		
+		final List<CompletableFuture<Void>> futures = new ArrayList<>(messagesByTopic.size());
+		for (final Entry<String,MqttMessage> entry : messagesByTopic.entrySet()) {
+			futures.add(publish(entry.getKey(), entry.getValue()));
+		}
+		
+		return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()]));
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public CompletableFuture<Void> subscribe(final String topicFilter, final int qos, final IMqttMessageListener handler) {
+		if (Utilities.isEmpty(topicFilter)) {
+			throw new InvalidParameterException("topicFilter cannot be null or blank.");
+		}
+		if (handler == null) {
+			throw new InvalidParameterException("handler cannot be null.");
+		}
+		
+		final CompletableFuture<Void> result = new CompletableFuture<>();
+		try {
+			client.subscribe(topicFilter, qos, null, new FutureActionListener(result), handler);
+		} catch (final MqttException ex) {
+			result.completeExceptionally(ex);
+		}
+		
+		return result;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public CompletableFuture<Void> unsubscribe(final String topicFilter) {
+		final CompletableFuture<Void> result = new CompletableFuture<>();
+		try {
+			client.unsubscribe(topicFilter, null, new FutureActionListener(result));
+		} catch (final MqttException ex) {
+			result.completeExceptionally(ex);
+		}
+		
+		return result;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public CompletableFuture<Void> disconnect() {
+		logger.info("Disconnecting from MQTT broker: " + client.getServerURI());
+		final CompletableFuture<Void> result = new CompletableFuture<>();
+		try {
+			client.disconnect(null, new FutureActionListener(result));
+		} catch (final MqttException ex) {
+			result.completeExceptionally(ex);
+		}
+		
+		return result;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Releases the resources of the client. It must be disconnected first. The messages still waiting for a free slot fail.
+	 */
+	public void close() throws MqttException {
+		sweeper.cancel(false);
+		PendingPublish pending;
+		while ((pending = waiting.poll()) != null) {
+			failedCount.incrementAndGet();
+			pending.result.completeExceptionally(new MqttException(MqttException.REASON_CODE_CLIENT_CLOSED));
+		}
+		client.close();
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public MqttAsyncClient getClient() { return client; }
+	public boolean isConnected() { return client.isConnected(); }
+	public int getMaxInflight() { return maxInflight; }
+	public int getInflight() { return maxInflight - inflightWindow.availablePermits(); }
+	public int getMaxObservedInflight() { return maxObservedInflight; }
+	public int getWaitingCount() { return waiting.size(); }
+	public long getPublishedCount() { return publishedCount.get(); }
+	public long getAcknowledgedCount() { return acknowledgedCount.get(); }
+	public long getFailedCount() { return failedCount.get(); }
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @return the samples of the time elapsed between publishing a message and its acknowledgement
+	 */
+	public LatencySampler getAckLatencies() {
+		return ackLatencies;
+	}
+	
+	//=================================================================================================
+	// assistant methods
+	
+	//-------------------------------------------------------------------------------------------------
+	private void send(final PendingPublish pending) {
+		final int inflight = getInflight();
+		if (inflight > maxObservedInflight) {
+			maxObservedInflight = inflight;
+		}
+		
+		final long startedAt = System.nanoTime();
+		try {
+			client.publish(pending.topic, pending.message, null, new IMqttActionListener() {
+				
+				//-------------------------------------------------------------------------------------------------
+				@Override
+				public void onSuccess(final IMqttToken token) {
+					ackLatencies.record(System.nanoTime() - startedAt);
+					acknowledgedCount.incrementAndGet();
+					releaseSlot();
+					pending.result.complete(null);
+				}
+				
+				//-------------------------------------------------------------------------------------------------
+				@Override
+				public void onFailure(final IMqttToken token, final Throwable ex) {
+					failedCount.incrementAndGet();
+					releaseSlot();
+					pending.result.completeExceptionally(ex);
+				}
+			});
+			publishedCount.incrementAndGet();
+		} catch (final MqttException | RuntimeException ex) {
+			// the caller sends the waiting messages, so a disconnected client doesn't fail them recursively
+			inflightWindow.release();
+			failedCount.incrementAndGet();
+			pending.result.completeExceptionally(ex);
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private void releaseSlot() {
+		inflightWindow.release();
+		sendWaiting();
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private void sendWaiting() {
+		while (!waiting.isEmpty() && inflightWindow.tryAcquire()) {
+			final PendingPublish pending = waiting.poll();
+			if (pending == null) {
+				// taken by an other thread, which also had a free slot
+				inflightWindow.release();
+				return;
+			}
+			
+			if (isExpired(pending, System.nanoTime())) {
+				inflightWindow.release();
+				failExpired(pending);
+			} else {
+				send(pending);
+			}
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private void sweepExpired() {
+		try {
+			// the queue is in arrival order, so only its head can be expired
+			final long now = System.nanoTime();
+			PendingPublish head;
+			while ((head = waiting.peek()) != null && isExpired(head, now)) {
+				if (waiting.remove(head)) {
+					failExpired(head);
+				}
+			}
+		} catch (final RuntimeException ex) {
+			// the scheduled task must not die
+			logger.warn("Checking the waiting MQTT messages failed: {}", ex.getMessage());
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private boolean isExpired(final PendingPublish pending, final long now) {
+		return now - pending.queuedAt > TimeUnit.MILLISECONDS.toNanos(publishTimeout);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private void failExpired(final PendingPublish pending) {
+		failedCount.incrementAndGet();
+		pending.result.completeExceptionally(new MqttException(MqttException.REASON_CODE_MAX_INFLIGHT));
+	}
+	
+	//=================================================================================================
+	// nested classes
+	
+	//-------------------------------------------------------------------------------------------------
+	private static class PendingPublish {
+		
+		//=================================================================================================
+		// members
+		
+		private final String topic;
+		private final MqttMessage message;
+		private final long queuedAt;
+		private final CompletableFuture<Void> result = new CompletableFuture<>();
+		
+		//=================================================================================================
+		// methods
+		
+		//-------------------------------------------------------------------------------------------------
+		public PendingPublish(final String topic, final MqttMessage message, final long queuedAt) {
+			this.topic = topic;
+			this.message = message;
+			this.queuedAt = queuedAt;
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private static class FutureActionListener implements IMqttActionListener {
+		
+		//=================================================================================================
+		// members
+		
+		private final CompletableFuture<Void> future;
+		
+		//=================================================================================================
+		// methods
+		
+		//-------------------------------------------------------------------------------------------------
+		public FutureActionListener(final CompletableFuture<Void> future) {
+			this.future = future;
+		}
+		
+		//-------------------------------------------------------------------------------------------------
+		@Override
+		public void onSuccess(final IMqttToken token) {
+			future.complete(null);
+		}
+		
+		//-------------------------------------------------------------------------------------------------
+		@Override
+		public void onFailure(final IMqttToken token, final Throwable ex) {
+			future.completeExceptionally(ex);
+		}
+	}
+}
@@ -0,0 +1,190 @@
+/********************************************************************************
+ * Copyright (c) 2020 AITIA
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *   AITIA - implementation
+ ********************************************************************************/
+
+package ai.aitia.arrowhead.application.library.mqtt;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.paho.client.mqttv3.IMqttClient;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.springframework.util.Assert;
+
+import eu.arrowhead.common.Utilities;
+import eu.arrowhead.common.exception.InvalidParameterException;
+
+/**
+ * Publishes through the client while it is connected and into an {@link MqttOfflineBuffer} while it is not. The buffered messages are replayed in
+ * order after the client is connected again, at most 'drainRate' messages per second, so the broker is not flooded after an outage. New messages
+ * are buffered as long as the buffer is not empty, so the order of the messages is kept.
+ */
+public class BufferedMqttPublisher {
+	
+	//=================================================================================================
+	// members
+	
+	private static final long DRAIN_PERIOD = 100; // ms
+	
+	private final IMqttClient client;
+	private final MqttOfflineBuffer buffer;
+	private final double tokensPerDrain; // drainRate * DRAIN_PERIOD, can be less than one message
+	private final ScheduledExecutorService drainer;
+	
+	private double tokens = 0; // accessed only by the drainer thread
+	
+	private final AtomicLong directCount = new AtomicLong();
+	private final AtomicLong bufferedCount = new AtomicLong();
+	private final AtomicLong replayedCount = new AtomicLong();
+	
+	private final Logger logger = LogManager.getLogger(BufferedMqttPublisher.class);
+	
+	//=================================================================================================
+	// methods
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @param client the client to publish with (it is not connected, disconnected or closed by the publisher)
+	 * @param buffer the buffer of the messages published while the client is offline
+	 * @param drainRate the maximum number of buffered messages replayed per second
+	 */
+	public BufferedMqttPublisher(final IMqttClient client, final MqttOfflineBuffer buffer, final int drainRate) {
+		Assert.notNull(client, "client is null");
+		Assert.notNull(buffer, "buffer is null");
+		Assert.isTrue(drainRate > 0, "drainRate must be positive");
+		
+		this.client = client;
+		this.buffer = buffer;
+		this.tokensPerDrain = (double) drainRate * DRAIN_PERIOD / TimeUnit.SECONDS.toMillis(1);
+		this.drainer = Executors.newSingleThreadScheduledExecutor(r -> {
+			final Thread thread = new Thread(r, "mqtt-offline-drain-" + client.getClientId());
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.drainer.scheduleWithFixedDelay(this::drain, DRAIN_PERIOD, DRAIN_PERIOD, TimeUnit.MILLISECONDS);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Publishes the message if the client is connected and there is no buffered message, otherwise appends it to the offline buffer.
+	 * 
+	 * @throws MqttException if the message is rejected for a reason other than the connection state
+	 * @throws eu.arrowhead.common.exception.ArrowheadException if the message can't be buffered (see the overflow policy of the buffer)
+	 */
+	public void publish(final String topic, final MqttMessage message) throws MqttException {
+		if (Utilities.isEmpty(topic)) {
+			throw new InvalidParameterException("topic cannot be null or blank.");
+		}
+		if (message == null) {
+			throw new InvalidParameterException("message cannot be null.");
+		}
+		
+		if (buffer.isEmpty() && client.isConnected()) {
+			try {
+				client.publish(topic, message);
+				directCount.incrementAndGet();
+				return;
+			} catch (final MqttException ex) {
+				if (!isConnectionProblem(ex)) {
+					throw ex;
+				}
+				logger.debug("Publishing to {} failed, buffering the message: {}", topic, ex.getMessage());
+			}
+		}
+		
+		buffer.append(topic, message);
+		bufferedCount.incrementAndGet();
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Stops replaying and closes the buffer. The messages not replayed yet are kept on the disk for the next run.
+	 */
+	public void close() {
+		drainer.shutdownNow();
+		try {
+			drainer.awaitTermination(DRAIN_PERIOD, TimeUnit.MILLISECONDS);
+		} catch (final InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+		buffer.close();
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public MqttOfflineBuffer getBuffer() { return buffer; }
+	public long getDirectCount() { return directCount.get(); }
+	public long getBufferedCount() { return bufferedCount.get(); }
+	public long getReplayedCount() { return replayedCount.get(); }
+	
+	//=================================================================================================
+	// assistant methods
+	
+	//-------------------------------------------------------------------------------------------------
+	private void drain() {
+		buffer.forceIfDue(); // the periodic force of the buffer doesn't wait for the next change
+		
+		// token bucket: a rate below 1000 / DRAIN_PERIOD messages per second replays a message only at every few runs
+		tokens = Math.min(Math.max(1, tokensPerDrain), tokens + tokensPerDrain);
+		try {
+			while (tokens >= 1 && client.isConnected()) {
+				final MqttOfflineBuffer.BufferedMessage next = buffer.peek();
+				if (next == null) {
+					return;
+				}
+				
+				try {
+					client.publish(next.getTopic(), next.getMessage());
+				} catch (final MqttException ex) {
+					if (!isConnectionProblem(ex)) {
+						// would be rejected forever
+						logger.warn("Buffered message to {} is rejected, discarding it: {}", next.getTopic(), ex.getMessage());
+						buffer.remove(next);
+						tokens -= 1;
+						continue;
+					}
+					logger.debug("Replaying buffered message failed: {}", ex.getMessage());
+					return;
+				}
+				
+				buffer.remove(next);
+				tokens -= 1;
+				replayedCount.incrementAndGet();
+			}
+		} catch (final RuntimeException ex) {
+			// the scheduled task must not die
+			logger.warn("Replaying MQTT offline buffer failed: {}", ex.getMessage());
+			logger.debug("Exception:", ex);
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private boolean isConnectionProblem(final MqttException ex) {
+		switch (ex.getReasonCode()) {
+		case MqttException.REASON_CODE_CLIENT_NOT_CONNECTED:
+		case MqttException.REASON_CODE_CONNECTION_LOST:
+		case MqttException.REASON_CODE_CLIENT_DISCONNECTING:
+		case MqttException.REASON_CODE_CLIENT_CLOSED:
+		case MqttException.REASON_CODE_CLIENT_TIMEOUT:
+		case MqttException.REASON_CODE_MAX_INFLIGHT:
+		case MqttException.REASON_CODE_SERVER_CONNECT_ERROR:
+		case MqttException.REASON_CODE_WRITE_TIMEOUT:
+			return true;
+		default:
+			return false;
+		}
+	}
+}
@@ -0,0 +1,483 @@
+/********************************************************************************
+ * Copyright (c) 2020 AITIA
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *   AITIA - implementation
+ ********************************************************************************/
+
+package ai.aitia.arrowhead.application.library.mqtt;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.IMqttMessageListener;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttCallback;
+import org.eclipse.paho.client.mqttv3.MqttCallbackExtended;
+import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.MqttClientPersistence;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.springframework.util.Assert;
+
+import ai.aitia.arrowhead.application.library.util.LatencySampler;
+
+/**
+ * {@link MqttClient} which re-establishes the lost connection by itself and restores the subscriptions made through it (clean sessions lose them
+ * on the broker side). The attempts are spread with full-jitter exponential backoff. An explicit disconnect or close stops reconnecting. If the
+ * callback is an {@link MqttCallbackExtended}, its connectComplete method is called after every successful reconnect (with the subscriptions already
+ * restored).
+ */
+public class ManagedMqttClient extends MqttClient {
+	
+	//=================================================================================================
+	// members
+	
+	private static final int LATENCY_SAMPLE_SIZE = 128;
+	
+	private final MqttReconnectSettings settings;
+	private final ScheduledExecutorService scheduler;
+	private final Map<String,Subscription> subscriptions = Collections.synchronizedMap(new LinkedHashMap<>());
+	private final Object reconnectLock = new Object();
+	
+	private volatile MqttCallback callback;
+	private volatile MqttConnectOptions options;
+	private volatile boolean stopped = true;
+	private volatile long connectionLostAt = 0;
+	private volatile boolean suppressConnectComplete = false; // Paho's report of a managed reconnect is replaced by the one of reconnectAndRestore()
+	private ScheduledFuture<?> pendingReconnect; // guarded by reconnectLock
+	
+	private final AtomicInteger failedAttempts = new AtomicInteger();
+	private final AtomicLong connectionLostCount = new AtomicLong();
+	private final AtomicLong reconnectCount = new AtomicLong();
+	private final AtomicLong failedAttemptCount = new AtomicLong();
+	private final AtomicLong totalDowntime = new AtomicLong();
+	private final LatencySampler downtimes = new LatencySampler(LATENCY_SAMPLE_SIZE);
+	
+	private final Logger logger = LogManager.getLogger(ManagedMqttClient.class);
+	
+	//=================================================================================================
+	// methods
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @param serverURI the address of the broker
+	 * @param clientId the client id
+	 * @param persistence the persistence of the inflight messages
+	 * @param settings the reconnect settings
+	 * @param scheduler runs the reconnect attempts (may be shared between clients)
+	 * @throws MqttException if the client can't be created
+	 */
+	public ManagedMqttClient(final String serverURI, final String clientId, final MqttClientPersistence persistence, final MqttReconnectSettings settings,
+							 final ScheduledExecutorService scheduler) throws MqttException {
+		super(serverURI, clientId, persistence);
+		Assert.notNull(settings, "settings is null");
+		Assert.notNull(scheduler, "scheduler is null");
+		
+		this.settings = settings;
+		this.scheduler = scheduler;
+		super.setCallback(new ReconnectingCallback());
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@Override
+	public void setCallback(final MqttCallback callback) {
+		this.callback = callback;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@Override
+	public void connect(final MqttConnectOptions options) throws MqttException {
+		connectWithResult(options);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@Override
+	public IMqttToken connectWithResult(final MqttConnectOptions options) throws MqttException {
+		this.options = options;
+		final IMqttToken token = super.connectWithResult(options);
+		stopped = false;
+		return token;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@Override
+	public void subscribe(final String[] topicFilters, final int[] qos, final IMqttMessageListener[] messageListeners) throws MqttException {
+		super.subscribe(topicFilters, qos, messageListeners);
+		remember(topicFilters, qos, messageListeners);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@Override
+	public IMqttToken subscribeWithResponse(final String[] topicFilters, final int[] qos, final IMqttMessageListener[] messageListeners) throws MqttException {
+		final IMqttToken token = super.subscribeWithResponse(topicFilters, qos, messageListeners);
+		remember(topicFilters, qos, messageListeners);
+		return token;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@Override
+	public void unsubscribe(final String[] topicFilters) throws MqttException {
+		for (final String topicFilter : topicFilters) {
+			subscriptions.remove(topicFilter);
+		}
+		super.unsubscribe(topicFilters);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Drops the topic filters from the subscriptions restored after reconnect without unsubscribing on the broker. Useful while the client is
+	 * disconnected, as the broker has already dropped the subscriptions of the clean session.
+	 */
+	public void forget(final String... topicFilters) {
+		for (final String topicFilter : topicFilters) {
+			subscriptions.remove(topicFilter);
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@Override
+	public void disconnect() throws MqttException {
+		stop();
+		super.disconnect();
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@Override
+	public void disconnect(final long quiesceTimeout) throws MqttException {
+		stop();
+		super.disconnect(quiesceTimeout);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@Override
+	public void disconnectForcibly() throws MqttException {
+		stop();
+		super.disconnectForcibly();
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@Override
+	public void disconnectForcibly(final long disconnectTimeout) throws MqttException {
+		stop();
+		super.disconnectForcibly(disconnectTimeout);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@Override
+	public void disconnectForcibly(final long quiesceTimeout, final long disconnectTimeout) throws MqttException {
+		stop();
+		super.disconnectForcibly(quiesceTimeout, disconnectTimeout);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@Override
+	public void disconnectForcibly(final long quiesceTimeout, final long disconnectTimeout, final boolean sendDisconnectPacket) throws MqttException {
+		stop();
+		super.disconnectForcibly(quiesceTimeout, disconnectTimeout, sendDisconnectPacket);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@Override
+	public void close() throws MqttException {
+		stop();
+		super.close();
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@Override
+	public void close(final boolean force) throws MqttException {
+		stop();
+		super.close(force);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @return the topic filters restored after reconnect
+	 */
+	public List<String> getTopicFilters() {
+		synchronized (subscriptions) {
+			return new ArrayList<>(subscriptions.keySet());
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public MqttReconnectSettings getSettings() { return settings; }
+	public long getConnectionLostCount() { return connectionLostCount.get(); }
+	public long getReconnectCount() { return reconnectCount.get(); }
+	public long getFailedAttemptCount() { return failedAttemptCount.get(); }
+	public long getTotalDowntimeMillis() { return TimeUnit.NANOSECONDS.toMillis(totalDowntime.get()); }
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @return true while the connection is lost and not given up
+	 */
+	public boolean isReconnecting() {
+		return !stopped && connectionLostAt != 0;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @return the samples of the time elapsed between losing the connection and having it (and its subscriptions) back
+	 */
+	public LatencySampler getDowntimes() {
+		return downtimes;
+	}
+	
+	//=================================================================================================
+	// assistant methods
+	
+	//-------------------------------------------------------------------------------------------------
+	private void remember(final String[] topicFilters, final int[] qos, final IMqttMessageListener[] messageListeners) {
+		for (int i = 0; i < topicFilters.length; ++i) {
+			subscriptions.put(topicFilters[i], new Subscription(qos[i], messageListeners == null ? null : messageListeners[i]));
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private void stop() {
+		stopped = true;
+		connectionLostAt = 0;
+		// waits for the running attempt, which disconnects again when it sees the stop
+		synchronized (reconnectLock) {
+			if (pendingReconnect != null) {
+				pendingReconnect.cancel(false);
+				pendingReconnect = null;
+			}
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private void onConnectionLost() {
+		if (stopped || options == null || options.isAutomaticReconnect()) {
+			// Paho reconnects by itself in the latter case
+			return;
+		}
+		
+		connectionLostCount.incrementAndGet();
+		connectionLostAt = System.nanoTime();
+		failedAttempts.set(0);
+		scheduleReconnect();
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private void scheduleReconnect() {
+		final int attempt = failedAttempts.get() + 1;
+		if (!settings.isAttemptAllowed(attempt)) {
+			logger.warn("Reconnecting MQTT client {} to {} is given up after {} failed attempt(s).", getClientId(), getServerURI(), failedAttempts.get());
+			stopped = true;
+			return;
+		}
+		
+		final long delay = settings.getDelay(attempt);
+		logger.debug("Reconnecting MQTT client {} in {} ms (attempt {}).", getClientId(), delay, attempt);
+		synchronized (reconnectLock) {
+			if (stopped) {
+				return;
+			}
+			try {
+				pendingReconnect = scheduler.schedule(this::reconnectAndRestore, delay, TimeUnit.MILLISECONDS);
+			} catch (final RejectedExecutionException ex) {
+				// shutting down
+				stopped = true;
+			}
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private void reconnectAndRestore() {
+		synchronized (reconnectLock) {
+			if (stopped || isConnected()) {
+				return;
+			}
+			
+			boolean connected = false;
+			try {
+				suppressConnectComplete = true;
+				super.connectWithResult(options);
+				connected = true; // Paho reports the connect (and clears the suppression) sooner or later
+				if (stopped) {
+					// disconnected or closed by the application during the attempt
+					disconnectQuietly();
+					return;
+				}
+				restoreSubscriptions();
+			} catch (final MqttException ex) {
+				if (!connected) {
+					suppressConnectComplete = false;
+				}
+				logger.debug("Reconnecting MQTT client {} failed: {}", getClientId(), ex.getMessage());
+				failedAttemptCount.incrementAndGet();
+				failedAttempts.incrementAndGet();
+				if (isConnected()) {
+					// connected, but the subscriptions could not be restored
+					disconnectQuietly();
+				}
+				scheduleReconnect();
+				return;
+			}
+		}
+		
+		final long lostAt = connectionLostAt;
+		connectionLostAt = 0;
+		if (lostAt != 0) {
+			final long downtime = System.nanoTime() - lostAt;
+			downtimes.record(downtime);
+			totalDowntime.addAndGet(downtime);
+		}
+		reconnectCount.incrementAndGet();
+		logger.info("MQTT client {} reconnected to {} ({} subscription(s) restored).", getClientId(), getServerURI(), subscriptions.size());
+		
+		final MqttCallback current = callback;
+		if (current instanceof MqttCallbackExtended) {
+			((MqttCallbackExtended) current).connectComplete(true, getServerURI());
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private void disconnectQuietly() {
+		try {
+			super.disconnectForcibly();
+		} catch (final MqttException ex) {
+			logger.debug("Disconnecting MQTT client {} failed: {}", getClientId(), ex.getMessage());
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private void restoreSubscriptions() throws MqttException {
+		final List<Entry<String,Subscription>> entries;
+		synchronized (subscriptions) {
+			entries = new ArrayList<>(subscriptions.entrySet());
+		}
+		
+		// Paho doesn't accept null listeners in a listener array, so the subscriptions with and without listener are restored separately
+		final List<String> plainFilters = new ArrayList<>();
+		final List<Integer> plainQos = new ArrayList<>();
+		final List<String> listenedFilters = new ArrayList<>();
+		final List<Integer> listenedQos = new ArrayList<>();
+		final List<IMqttMessageListener> listeners = new ArrayList<>();
+		for (final Entry<String,Subscription> entry : entries) {
+			if (entry.getValue().listener == null) {
+				plainFilters.add(entry.getKey());
+				plainQos.add(entry.getValue().qos);
+			} else {
+				listenedFilters.add(entry.getKey());
+				listenedQos.add(entry.getValue().qos);
+				listeners.add(entry.getValue().listener);
+			}
+		}
+		
+		if (!plainFilters.isEmpty()) {
+			super.subscribe(plainFilters.toArray(new String[plainFilters.size()]), toIntArray(plainQos), null);
+		}
+		if (!listenedFilters.isEmpty()) {
+			super.subscribe(listenedFilters.toArray(new String[listenedFilters.size()]), toIntArray(listenedQos), listeners.toArray(new IMqttMessageListener[listeners.size()]));
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private int[] toIntArray(final List<Integer> values) {
+		final int[] result = new int[values.size()];
+		for (int i = 0; i < result.length; ++i) {
+			result[i] = values.get(i);
+		}
+		
+		return result;
+	}
+	
+	//=================================================================================================
+	// nested classes
+	
+	//-------------------------------------------------------------------------------------------------
+	private static class Subscription {
+		
+		//=================================================================================================
+		// members
+		
+		private final int qos;
+		private final IMqttMessageListener listener;
+		
+		//=================================================================================================
+		// methods
+		
+		//-------------------------------------------------------------------------------------------------
+		public Subscription(final int qos, final IMqttMessageListener listener) {
+			this.qos = qos;
+			this.listener = listener;
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private class ReconnectingCallback implements MqttCallbackExtended {
+		
+		//=================================================================================================
+		// methods
+		
+		//-------------------------------------------------------------------------------------------------
+		@Override
+		public void connectionLost(final Throwable cause) {
+			final MqttCallback current = callback;
+			try {
+				if (current != null) {
+					current.connectionLost(cause);
+				}
+			} finally {
+				onConnectionLost();
+			}
+		}
+		
+		//-------------------------------------------------------------------------------------------------
+		@Override
+		public void messageArrived(final String topic, final MqttMessage message) throws Exception {
+			final MqttCallback current = callback;
+			if (current != null) {
+				current.messageArrived(topic, message);
+			}
+		}
+		
+		//-------------------------------------------------------------------------------------------------
+		@Override
+		public void deliveryComplete(final IMqttDeliveryToken token) {
+			final MqttCallback current = callback;
+			if (current != null) {
+				current.deliveryComplete(token);
+			}
+		}
+		
+		//-------------------------------------------------------------------------------------------------
+		@Override
+		public void connectComplete(final boolean reconnect, final String serverURI) {
+			// Paho reports a managed reconnect as a fresh connect (its reconnect flag is set only by its own automatic reconnect), and possibly
+			// before the subscriptions are restored, so it is suppressed: reconnectAndRestore() reports it when the subscriptions are back
+			if (suppressConnectComplete) {
+				suppressConnectComplete = false;
+				return;
+			}
+			
+			final MqttCallback current = callback;
+			if (current instanceof MqttCallbackExtended) {
+				((MqttCallbackExtended) current).connectComplete(reconnect, serverURI);
+			}
+		}
+	}
+}
@@ -0,0 +1,126 @@
+/********************************************************************************
+ * Copyright (c) 2020 AITIA
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *   AITIA - implementation
+ ********************************************************************************/
+
+package ai.aitia.arrowhead.application.library.mqtt;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.paho.client.mqttv3.IMqttMessageListener;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+
+import eu.arrowhead.common.exception.ArrowheadException;
+
+/**
+ * A reference to a shared broker connection held by one component of the application. The subscriptions made through the lease are removed when
+ * the lease is released, and the underlying connection is closed when its last lease is released.
+ */
+public class MqttConnectionLease implements AutoCloseable {
+	
+	//=================================================================================================
+	// members
+	
+	private final SharedMqttConnection connection;
+	private final List<SharedMqttConnection.Subscription> subscriptions = new ArrayList<>();
+	private boolean released = false;
+	
+	//=================================================================================================
+	// methods
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Registers a handler for the messages of the topics matching the filter. The broker is subscribed only for the first handler of a filter.
+	 * 
+	 * @param topicFilter topic filter, may contain '+' and '#' wildcards
+	 * @param qos the requested quality of service
+	 * @param handler called with the topic and the message (on its own executor, see {@link MqttTopicDispatcher})
+	 * @throws MqttException if the broker refuses the subscription
+	 */
+	public synchronized void subscribe(final String topicFilter, final int qos, final IMqttMessageListener handler) throws MqttException {
+		checkNotReleased();
+		subscriptions.add(connection.subscribe(this, topicFilter, qos, handler));
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Removes every handler registered through this lease for the filter.
+	 * 
+	 * @throws MqttException if the broker refuses to unsubscribe
+	 */
+	public synchronized void unsubscribe(final String topicFilter) throws MqttException {
+		checkNotReleased();
+		final List<SharedMqttConnection.Subscription> removed = new ArrayList<>();
+		for (final SharedMqttConnection.Subscription subscription : subscriptions) {
+			if (subscription.getTopicFilter().equals(topicFilter)) {
+				removed.add(subscription);
+			}
+		}
+		
+		subscriptions.removeAll(removed);
+		connection.unsubscribe(removed);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @throws MqttException if the message could not be published
+	 */
+	public void publish(final String topic, final MqttMessage message) throws MqttException {
+		checkNotReleased();
+		connection.publish(topic, message);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public SharedMqttConnection getConnection() {
+		return connection;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Removes the subscriptions of this lease and gives back the reference to the shared connection. Calling it again has no effect.
+	 */
+	public void release() {
+		final List<SharedMqttConnection.Subscription> toRemove;
+		synchronized (this) {
+			if (released) {
+				return;
+			}
+			released = true;
+			toRemove = new ArrayList<>(subscriptions);
+			subscriptions.clear();
+		}
+		
+		connection.release(toRemove);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@Override
+	public void close() {
+		release();
+	}
+	
+	//=================================================================================================
+	// assistant methods
+	
+	//-------------------------------------------------------------------------------------------------
+	MqttConnectionLease(final SharedMqttConnection connection) {
+		this.connection = connection;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private void checkNotReleased() {
+		if (released) {
+			throw new ArrowheadException("MQTT connection lease is already released.");
+		}
+	}
+}
@@ -0,0 +1,188 @@
+/********************************************************************************
+ * Copyright (c) 2020 AITIA
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *   AITIA - implementation
+ ********************************************************************************/
+
+package ai.aitia.arrowhead.application.library.mqtt;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.BiFunction;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.springframework.util.Assert;
+
+import eu.arrowhead.common.Utilities;
+import eu.arrowhead.common.exception.ArrowheadException;
+import eu.arrowhead.common.exception.InvalidParameterException;
+
+/**
+ * Shares one client connection per broker and credential set between the components of the application. Every component acquires its own
+ * {@link MqttConnectionLease}; the connection is opened by the first acquire and closed when the last lease is released. A lost connection is
+ * re-established (with the subscriptions of the leases) in the background, see {@link ManagedMqttClient}.
+ */
+public class MqttConnectionManager {
+	
+	//=================================================================================================
+	// members
+	
+	private final String clientIdPrefix;
+	private final BiFunction<String,String,MqttConnectOptions> optionsFactory;
+	private final MqttReconnectSettings reconnectSettings;
+	private final ScheduledExecutorService reconnectScheduler;
+	private final MqttHandlerSettings handlerSettings;
+	private final ConcurrentMap<String,SharedMqttConnection> connections = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String,Object> keyLocks = new ConcurrentHashMap<>(); // one per broker and credential set, connecting to a broker doesn't block the others
+	
+	private final Logger logger = LogManager.getLogger(MqttConnectionManager.class);
+	
+	//=================================================================================================
+	// methods
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @param clientIdPrefix the shared clients get a unique id starting with this prefix
+	 * @param optionsFactory creates the connect options (including the TLS settings) from the user name and password
+	 * @param reconnectSettings the backoff of reconnecting the shared clients (a disabled setting is replaced by the default one, as the leases can't
+	 *        reconnect on their own)
+	 * @param reconnectScheduler runs the reconnect attempts
+	 * @param handlerSettings the executor settings of the handlers subscribed through the leases
+	 */
+	public MqttConnectionManager(final String clientIdPrefix, final BiFunction<String,String,MqttConnectOptions> optionsFactory, final MqttReconnectSettings reconnectSettings,
+								 final ScheduledExecutorService reconnectScheduler, final MqttHandlerSettings handlerSettings) {
+		Assert.hasText(clientIdPrefix, "clientIdPrefix is empty");
+		Assert.notNull(optionsFactory, "optionsFactory is null");
+		Assert.notNull(reconnectScheduler, "reconnectScheduler is null");
+		Assert.notNull(handlerSettings, "handlerSettings is null");
+		
+		this.clientIdPrefix = clientIdPrefix;
+		this.optionsFactory = optionsFactory;
+		this.reconnectSettings = reconnectSettings == null || !reconnectSettings.isEnabled() ? MqttReconnectSettings.DEFAULT : reconnectSettings;
+		this.reconnectScheduler = reconnectScheduler;
+		this.handlerSettings = handlerSettings;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Returns a lease of the connection belonging to the broker and credentials. The connection is opened if there is none yet.
+	 * 
+	 * @param brokerAddress the URI of the broker (e.g. ssl://host:port)
+	 * @param username (nullable) user name to the broker
+	 * @param password (nullable) password to the broker
+	 * @return a new lease that must be released when the component doesn't need the connection anymore
+	 * @throws MqttException if connecting to the broker fails
+	 */
+	public MqttConnectionLease acquire(final String brokerAddress, final String username, final String password) throws MqttException {
+		if (Utilities.isEmpty(brokerAddress)) {
+			throw new InvalidParameterException("brokerAddress cannot be null or blank.");
+		}
+		
+		final String key = getKey(brokerAddress, username, password);
+		while (true) {
+			final Object lock = keyLocks.computeIfAbsent(key, k -> new Object());
+			synchronized (lock) {
+				if (keyLocks.get(key) != lock) {
+					continue; // the last lease of the connection was released meanwhile and the lock is removed
+				}
+				
+				final SharedMqttConnection existing = connections.get(key);
+				if (existing != null) {
+					final MqttConnectionLease lease = existing.newLease();
+					if (lease != null) {
+						return lease;
+					}
+				}
+				
+				final ManagedMqttClient client = new ManagedMqttClient(brokerAddress, clientIdPrefix + "-" + UUID.randomUUID().toString(), new MemoryPersistence(), reconnectSettings,
+																	   reconnectScheduler);
+				final MqttConnectOptions options = optionsFactory.apply(username, password);
+				options.setCleanSession(true); // the client ids are random, so a persistent session could never be resumed
+				final SharedMqttConnection connection = new SharedMqttConnection(this, key, client, options, handlerSettings);
+				try {
+					connection.connect();
+				} catch (final MqttException ex) {
+					connection.close();
+					if (!connections.containsKey(key)) {
+						keyLocks.remove(key, lock);
+					}
+					throw ex;
+				}
+				
+				connections.put(key, connection);
+				return connection.newLease();
+			}
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public Collection<SharedMqttConnection> getConnections() {
+		return new ArrayList<>(connections.values());
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Closes every shared connection regardless of the outstanding leases.
+	 */
+	public void shutdown() {
+		for (final SharedMqttConnection connection : getConnections()) {
+			connections.remove(connection.getKey(), connection);
+			connection.close();
+		}
+		keyLocks.clear();
+	}
+	
+	//=================================================================================================
+	// assistant methods
+	
+	//-------------------------------------------------------------------------------------------------
+	void remove(final SharedMqttConnection connection) {
+		final String key = connection.getKey();
+		final Object lock = keyLocks.get(key);
+		if (lock == null) {
+			connections.remove(key, connection);
+		} else {
+			synchronized (lock) {
+				if (connections.remove(key, connection)) {
+					keyLocks.remove(key, lock);
+				}
+			}
+		}
+		logger.debug("Last lease of MQTT connection {} released.", connection.getClientId());
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private String getKey(final String brokerAddress, final String username, final String password) {
+		// the password itself is not kept
+		return brokerAddress + "|" + (username == null ? "" : username) + "|" + (Utilities.isEmpty(password) ? "" : digest(password));
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private String digest(final String value) {
+		try {
+			final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			return Base64.getEncoder().encodeToString(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+		} catch (final NoSuchAlgorithmException ex) {
+			throw new ArrowheadException("SHA-256 is not supported.", ex);
+		}
+	}
+}
@@ -0,0 +1,208 @@
+/********************************************************************************
+ * Copyright (c) 2020 AITIA
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *   AITIA - implementation
+ ********************************************************************************/
+
+package ai.aitia.arrowhead.application.library.mqtt;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.paho.client.mqttv3.IMqttMessageListener;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+
+import ai.aitia.arrowhead.application.library.util.LatencySampler;
+
+/**
+ * A handler registered in a {@link MqttTopicDispatcher} for a topic filter. The handler runs on its own executor with a bounded queue, so a slow
+ * handler delays only its own messages. The counters are the throughput of the filter, and the queue size shows how far the handler is behind.
+ */
+public class MqttHandlerRegistration {
+	
+	//=================================================================================================
+	// members
+	
+	private static final int LATENCY_SAMPLE_SIZE = 256;
+	private static final long IDLE_THREAD_KEEP_ALIVE = 60; // seconds
+	
+	private final String topicFilter;
+	private final IMqttMessageListener handler;
+	private final MqttHandlerSettings settings;
+	private final ThreadPoolExecutor executor;
+	private final Object queueLock = new Object();
+	
+	private final AtomicLong deliveredCount = new AtomicLong();
+	private final AtomicLong handledCount = new AtomicLong();
+	private final AtomicLong failedCount = new AtomicLong();
+	private final AtomicLong droppedCount = new AtomicLong();
+	private final LatencySampler handlingTimes = new LatencySampler(LATENCY_SAMPLE_SIZE);
+	private volatile int maxQueueSize = 0;
+	
+	private final Logger logger = LogManager.getLogger(MqttHandlerRegistration.class);
+	
+	//=================================================================================================
+	// methods
+	
+	//-------------------------------------------------------------------------------------------------
+	public String getTopicFilter() { return topicFilter; }
+	public IMqttMessageListener getHandler() { return handler; }
+	public MqttHandlerSettings getSettings() { return settings; }
+	public long getDeliveredCount() { return deliveredCount.get(); }
+	public long getHandledCount() { return handledCount.get(); }
+	public long getFailedCount() { return failedCount.get(); }
+	public long getDroppedCount() { return droppedCount.get(); }
+	public int getQueueSize() { return executor.getQueue().size(); }
+	public int getMaxQueueSize() { return maxQueueSize; }
+	public boolean isActive() { return !executor.isShutdown(); }
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @return the samples of the time elapsed between the arrival of a message and the end of its handling
+	 */
+	public LatencySampler getHandlingTimes() {
+		return handlingTimes;
+	}
+	
+	//=================================================================================================
+	// assistant methods
+	
+	//-------------------------------------------------------------------------------------------------
+	MqttHandlerRegistration(final String topicFilter, final IMqttMessageListener handler, final MqttHandlerSettings settings, final String threadNamePrefix) {
+		this.topicFilter = topicFilter;
+		this.handler = handler;
+		this.settings = settings;
+		
+		final AtomicInteger counter = new AtomicInteger();
+		this.executor = new ThreadPoolExecutor(settings.getThreads(), settings.getThreads(), IDLE_THREAD_KEEP_ALIVE, TimeUnit.SECONDS,
+											   new ArrayBlockingQueue<>(settings.getQueueCapacity()), r -> {
+			final Thread thread = new Thread(r, threadNamePrefix + "-" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.executor.allowCoreThreadTimeOut(true); // rarely used filters don't keep threads
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Queues the message for the handler. Never throws: an exception would make the MQTT client disconnect.
+	 */
+	void deliver(final String topic, final MqttMessage message) {
+		deliveredCount.incrementAndGet();
+		final long arrivedAt = System.nanoTime();
+		final Runnable task = () -> handle(topic, message, arrivedAt);
+		
+		switch (settings.getOverflowPolicy()) {
+		case BLOCK:
+			executeOrBlock(task);
+			break;
+		case DROP_OLDEST:
+			executeOrDropOldest(task);
+			break;
+		default:
+			executeOrDrop(task);
+		}
+		
+		final int size = executor.getQueue().size();
+		if (size > maxQueueSize) {
+			maxQueueSize = size;
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Stops the handler threads. The queued messages are discarded, the messages being handled are finished.
+	 */
+	void shutdown() {
+		executor.shutdown(); // not shutdownNow(), that would interrupt the running handlers
+		final List<Runnable> queued = new ArrayList<>();
+		executor.getQueue().drainTo(queued);
+		final int discarded = queued.size();
+		if (discarded > 0) {
+			droppedCount.addAndGet(discarded);
+			logger.debug("{} queued MQTT message(s) of {} discarded.", discarded, topicFilter);
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private void handle(final String topic, final MqttMessage message, final long arrivedAt) {
+		try {
+			handler.messageArrived(topic, message);
+			handledCount.incrementAndGet();
+		} catch (final Exception ex) {
+			failedCount.incrementAndGet();
+			logger.warn("MQTT handler of {} failed on topic {}: {}", topicFilter, topic, ex.getMessage());
+			logger.debug("Exception:", ex);
+		} finally {
+			handlingTimes.record(System.nanoTime() - arrivedAt);
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private void executeOrBlock(final Runnable task) {
+		try {
+			executor.execute(task);
+		} catch (final RejectedExecutionException ex) {
+			if (executor.isShutdown()) {
+				droppedCount.incrementAndGet();
+				return;
+			}
+			
+			// the queue is full, so the workers are alive and will take the task
+			try {
+				if (!executor.getQueue().offer(task, settings.getBlockTimeout(), TimeUnit.MILLISECONDS)) {
+					droppedCount.incrementAndGet();
+					logger.debug("Queue of MQTT handler {} is full, message dropped.", topicFilter);
+				}
+			} catch (final InterruptedException interruptedEx) {
+				Thread.currentThread().interrupt();
+				droppedCount.incrementAndGet();
+			}
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private void executeOrDropOldest(final Runnable task) {
+		synchronized (queueLock) {
+			while (!executor.isShutdown()) {
+				try {
+					executor.execute(task);
+					return;
+				} catch (final RejectedExecutionException ex) {
+					final BlockingQueue<Runnable> queue = executor.getQueue();
+					if (queue.poll() != null) {
+						droppedCount.incrementAndGet();
+					}
+				}
+			}
+			
+			droppedCount.incrementAndGet();
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private void executeOrDrop(final Runnable task) {
+		try {
+			executor.execute(task);
+		} catch (final RejectedExecutionException ex) {
+			droppedCount.incrementAndGet();
+			logger.debug("Queue of MQTT handler {} is full, message dropped.", topicFilter);
+		}
+	}
+}
@@ -0,0 +1,60 @@
+/********************************************************************************
+ * Copyright (c) 2020 AITIA
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *   AITIA - implementation
+ ********************************************************************************/
+
+package ai.aitia.arrowhead.application.library.mqtt;
+
+import org.springframework.util.Assert;
+
+import ai.aitia.arrowhead.application.library.util.OverflowPolicy;
+
+public class MqttHandlerSettings {
+	
+	//=================================================================================================
+	// members
+	
+	public static final MqttHandlerSettings DEFAULT = new MqttHandlerSettings(1, 1000, OverflowPolicy.BLOCK, 5000);
+	
+	private final int threads;
+	private final int queueCapacity;
+	private final OverflowPolicy overflowPolicy;
+	private final long blockTimeout;
+	
+	//=================================================================================================
+	// methods
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @param threads the number of threads running the handler (with 1 the messages are handled in arrival order)
+	 * @param queueCapacity the maximum number of messages waiting for the handler
+	 * @param overflowPolicy what to do when the queue is full (FAIL drops the new message, as the client thread can't be failed); only BLOCK keeps
+	 *        the delivery guarantee of QoS 1 and 2, the other policies drop messages that are already acknowledged to the broker
+	 * @param blockTimeout how long the client thread may wait for free space in milliseconds (BLOCK policy only)
+	 */
+	public MqttHandlerSettings(final int threads, final int queueCapacity, final OverflowPolicy overflowPolicy, final long blockTimeout) {
+		Assert.isTrue(threads > 0, "threads must be positive");
+		Assert.isTrue(queueCapacity > 0, "queueCapacity must be positive");
+		Assert.notNull(overflowPolicy, "overflowPolicy is null");
+		Assert.isTrue(blockTimeout >= 0, "blockTimeout must not be negative");
+		
+		this.threads = threads;
+		this.queueCapacity = queueCapacity;
+		this.overflowPolicy = overflowPolicy;
+		this.blockTimeout = blockTimeout;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public int getThreads() { return threads; }
+	public int getQueueCapacity() { return queueCapacity; }
+	public OverflowPolicy getOverflowPolicy() { return overflowPolicy; }
+	public long getBlockTimeout() { return blockTimeout; }
+}
@@ -0,0 +1,571 @@
+/********************************************************************************
+ * Copyright (c) 2020 AITIA
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *   AITIA - implementation
+ ********************************************************************************/
+
+package ai.aitia.arrowhead.application.library.mqtt;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.springframework.util.Assert;
+
+import ai.aitia.arrowhead.application.library.util.OverflowPolicy;
+import eu.arrowhead.common.Utilities;
+import eu.arrowhead.common.exception.ArrowheadException;
+import eu.arrowhead.common.exception.InvalidParameterException;
+
+/**
+ * Disk-backed FIFO of MQTT messages: an append-only log of fixed size, memory-mapped segment files plus a small cursor file which stores the
+ * position of the oldest message not yet delivered. Records are written through the mapping (no heap copy of the log is kept), so the buffer
+ * survives the restart of the application; a record torn by a crash is detected by its checksum and discarded. Surviving an OS crash or a power
+ * loss depends on the force interval: the mapped pages are written to the disk after every change (0), at most once per interval (positive value) or
+ * only when the buffer is closed (negative value), and the messages changed since the last force may be lost. The total size is capped at the
+ * configured number of segments, and the overflow policy decides what happens when the cap is reached.
+ */
+public class MqttOfflineBuffer {
+	
+	//=================================================================================================
+	// members
+	
+	private static final String SEGMENT_PREFIX = "segment-";
+	private static final String SEGMENT_SUFFIX = ".log";
+	private static final String CURSOR_FILE = "cursor";
+	private static final int RECORD_HEADER_SIZE = 2 * Integer.BYTES; // length + checksum
+	private static final int RECORD_FIXED_BODY_SIZE = 2 + Short.BYTES; // qos + retained + topic length
+	private static final int CURSOR_SIZE = Long.BYTES + Integer.BYTES;
+	
+	private final Path directory;
+	private final int segmentSize;
+	private final int maxSegments;
+	private final OverflowPolicy overflowPolicy;
+	private final long blockTimeout;
+	private final long forceInterval;
+	
+	private final Deque<Segment> segments = new ArrayDeque<>();
+	private FileChannel cursorChannel;
+	private MappedByteBuffer cursor;
+	private int readOffset = 0;
+	private long count = 0;
+	private boolean closed = false;
+	private boolean cursorDirty = false;
+	private long lastForcedAt = System.currentTimeMillis();
+	
+	private long appendedCount = 0;
+	private long deliveredCount = 0;
+	private long droppedCount = 0;
+	
+	private final Logger logger = LogManager.getLogger(MqttOfflineBuffer.class);
+	
+	//=================================================================================================
+	// methods
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Opens the buffer in the directory, continuing with the messages left there by a previous run (if any).
+	 * 
+	 * @param directory the directory of the segment files (created if necessary), must not be shared with other buffers
+	 * @param segmentSize the size of one segment file in bytes
+	 * @param maxSize the maximum size of all the segment files together in bytes (at least two segments)
+	 * @param overflowPolicy what to do when the buffer is full
+	 * @param blockTimeout how long appending may wait for free space in milliseconds (BLOCK policy only)
+	 * @param forceInterval how often the changes are forced to the disk in milliseconds (0: after every change, negative: only at closing)
+	 * @throws ArrowheadException if the files can't be opened
+	 */
+	public MqttOfflineBuffer(final Path directory, final int segmentSize, final long maxSize, final OverflowPolicy overflowPolicy, final long blockTimeout,
+							 final long forceInterval) {
+		Assert.notNull(directory, "directory is null");
+		Assert.isTrue(segmentSize > RECORD_HEADER_SIZE + RECORD_FIXED_BODY_SIZE, "segmentSize is too small");
+		Assert.isTrue(maxSize >= 2L * segmentSize, "maxSize must be at least two segments");
+		Assert.notNull(overflowPolicy, "overflowPolicy is null");
+		Assert.isTrue(blockTimeout >= 0, "blockTimeout must not be negative");
+		
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		this.maxSegments = (int) Math.min(Integer.MAX_VALUE, maxSize / segmentSize);
+		this.overflowPolicy = overflowPolicy;
+		this.blockTimeout = blockTimeout;
+		this.forceInterval = forceInterval;
+		
+		try {
+			open();
+		} catch (final IOException ex) {
+			close();
+			throw new ArrowheadException("Opening MQTT offline buffer in " + directory + " failed: " + ex.getMessage(), ex);
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Appends a message to the end of the log.
+	 * 
+	 * @throws InvalidParameterException if the message doesn't fit into a segment
+	 * @throws ArrowheadException if the buffer is full (FAIL policy, or BLOCK policy after the timeout) or it can't be written
+	 */
+	public synchronized void append(final String topic, final MqttMessage message) {
+		if (Utilities.isEmpty(topic)) {
+			throw new InvalidParameterException("topic cannot be null or blank.");
+		}
+		if (message == null) {
+			throw new InvalidParameterException("message cannot be null.");
+		}
+		checkNotClosed();
+		
+		final byte[] topicBytes = topic.getBytes(StandardCharsets.UTF_8);
+		final byte[] payload = message.getPayload();
+		final int bodyLength = RECORD_FIXED_BODY_SIZE + topicBytes.length + payload.length;
+		if (topicBytes.length > Short.MAX_VALUE || RECORD_HEADER_SIZE + bodyLength > segmentSize) {
+			throw new InvalidParameterException("Message is too large for the MQTT offline buffer.");
+		}
+		
+		Segment segment = segments.peekLast();
+		if (segment.writePosition + RECORD_HEADER_SIZE + bodyLength > segmentSize) {
+			makeRoomForSegment();
+			segment = newSegment(segments.peekLast().sequence + 1);
+		}
+		
+		final ByteBuffer body = ByteBuffer.allocate(bodyLength);
+		body.put((byte) message.getQos());
+		body.put((byte) (message.isRetained() ? 1 : 0));
+		body.putShort((short) topicBytes.length);
+		body.put(topicBytes);
+		body.put(payload);
+		final CRC32 crc = new CRC32();
+		crc.update(body.array(), 0, bodyLength);
+		
+		// the length is written last, so a partially written record is never considered complete
+		final MappedByteBuffer data = segment.data;
+		final int position = segment.writePosition;
+		body.flip();
+		data.position(position + RECORD_HEADER_SIZE);
+		data.put(body);
+		data.putInt(position + Integer.BYTES, (int) crc.getValue());
+		data.putInt(position, bodyLength);
+		segment.writePosition += RECORD_HEADER_SIZE + bodyLength;
+		segment.dirty = true;
+		
+		++count;
+		++appendedCount;
+		forceIfDue();
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @return the oldest not yet delivered message or null if the buffer is empty
+	 */
+	public synchronized BufferedMessage peek() {
+		checkNotClosed();
+		while (true) {
+			final Segment segment = segments.peekFirst();
+			if (readOffset < segment.writePosition) {
+				return readRecord(segment, readOffset);
+			}
+			if (segments.size() == 1) {
+				return null;
+			}
+			
+			// the segment is fully delivered
+			deleteFirstSegment();
+			readOffset = 0;
+			storeCursor();
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Marks the message as delivered. Nothing happens if the message is not the oldest one anymore (i.e. it was dropped in the meantime).
+	 */
+	public synchronized void remove(final BufferedMessage delivered) {
+		if (closed || delivered == null) {
+			return;
+		}
+		
+		final Segment segment = segments.peekFirst();
+		if (segment.sequence != delivered.segmentSequence || readOffset != delivered.offset) {
+			return;
+		}
+		
+		readOffset += delivered.recordLength;
+		--count;
+		++deliveredCount;
+		storeCursor();
+		forceIfDue();
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Writes the changed pages of the buffer to the disk if the force interval has elapsed since the last force. Called after every change, and
+	 * should be called periodically too, so the last changes are not left in the memory until the next one.
+	 */
+	public synchronized void forceIfDue() {
+		if (closed || forceInterval < 0 || (!cursorDirty && !isAnySegmentDirty())) {
+			return;
+		}
+		
+		final long now = System.currentTimeMillis();
+		if (now - lastForcedAt >= forceInterval) {
+			force();
+			lastForcedAt = now;
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Flushes the mapped segments to the disk and releases the files. The undelivered messages are kept for the next run.
+	 */
+	public synchronized void close() {
+		if (closed) {
+			return;
+		}
+		
+		closed = true;
+		for (final Segment segment : segments) {
+			segment.data.force();
+			closeQuietly(segment.channel);
+		}
+		segments.clear();
+		if (cursor != null) {
+			cursor.force();
+		}
+		closeQuietly(cursorChannel);
+		notifyAll();
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public synchronized boolean isEmpty() { return count == 0; }
+	public synchronized long getCount() { return count; }
+	public synchronized int getSegmentCount() { return segments.size(); }
+	public synchronized long getAppendedCount() { return appendedCount; }
+	public synchronized long getDeliveredCount() { return deliveredCount; }
+	public synchronized long getDroppedCount() { return droppedCount; }
+	public Path getDirectory() { return directory; }
+	public int getMaxSegments() { return maxSegments; }
+	
+	//=================================================================================================
+	// assistant methods
+	
+	//-------------------------------------------------------------------------------------------------
+	private void open() throws IOException {
+		Files.createDirectories(directory);
+		
+		final Path cursorPath = directory.resolve(CURSOR_FILE);
+		cursorChannel = FileChannel.open(cursorPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		cursor = cursorChannel.map(MapMode.READ_WRITE, 0, CURSOR_SIZE);
+		final long cursorSequence = cursor.getLong(0);
+		readOffset = cursor.getInt(Long.BYTES);
+		
+		final List<Long> sequences = new ArrayList<>();
+		try (final DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+			for (final Path path : stream) {
+				final String name = path.getFileName().toString();
+				sequences.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+			}
+		}
+		Collections.sort(sequences);
+		
+		for (final long sequence : sequences) {
+			if (sequence < cursorSequence) {
+				// delivered before the previous shutdown
+				Files.deleteIfExists(getSegmentPath(sequence));
+			} else {
+				final Segment segment = mapSegment(sequence);
+				segment.writePosition = scan(segment, 0, false);
+				segments.addLast(segment);
+			}
+		}
+		
+		if (segments.isEmpty() || segments.peekFirst().sequence != cursorSequence) {
+			readOffset = 0;
+		}
+		if (segments.isEmpty()) {
+			segments.addLast(mapSegment(cursorSequence));
+		}
+		
+		readOffset = Math.min(readOffset, segments.peekFirst().writePosition);
+		storeCursor();
+		for (final Segment segment : segments) {
+			count += scan(segment, segment == segments.peekFirst() ? readOffset : 0, true);
+		}
+		
+		if (count > 0) {
+			logger.info("MQTT offline buffer {} contains {} undelivered message(s).", directory, count);
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @return the number of the valid records from the offset if countRecords is true, otherwise the position after the last valid record
+	 */
+	private int scan(final Segment segment, final int from, final boolean countRecords) {
+		int position = from;
+		int records = 0;
+		while (true) {
+			final int length = readRecordLength(segment, position);
+			if (length < 0) {
+				return countRecords ? records : position;
+			}
+			
+			position += RECORD_HEADER_SIZE + length;
+			++records;
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @return the body length of the valid record at the position or -1 if there is no valid record there
+	 */
+	private int readRecordLength(final Segment segment, final int position) {
+		final MappedByteBuffer data = segment.data;
+		if (position + RECORD_HEADER_SIZE + RECORD_FIXED_BODY_SIZE > segmentSize) {
+			return -1;
+		}
+		
+		final int length = data.getInt(position);
+		if (length < RECORD_FIXED_BODY_SIZE || position + RECORD_HEADER_SIZE + length > segmentSize) {
+			return -1;
+		}
+		
+		final byte[] body = new byte[length];
+		final ByteBuffer view = data.duplicate();
+		view.position(position + RECORD_HEADER_SIZE);
+		view.get(body);
+		final CRC32 crc = new CRC32();
+		crc.update(body, 0, length);
+		
+		return (int) crc.getValue() == data.getInt(position + Integer.BYTES) ? length : -1;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private BufferedMessage readRecord(final Segment segment, final int offset) {
+		final ByteBuffer view = segment.data.duplicate();
+		final int length = view.getInt(offset);
+		view.position(offset + RECORD_HEADER_SIZE);
+		
+		final int qos = view.get();
+		final boolean retained = view.get() == 1;
+		final byte[] topic = new byte[view.getShort()];
+		view.get(topic);
+		final byte[] payload = new byte[length - RECORD_FIXED_BODY_SIZE - topic.length];
+		view.get(payload);
+		
+		final MqttMessage message = new MqttMessage(payload);
+		message.setQos(qos);
+		message.setRetained(retained);
+		
+		return new BufferedMessage(new String(topic, StandardCharsets.UTF_8), message, segment.sequence, offset, RECORD_HEADER_SIZE + length);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private void makeRoomForSegment() {
+		if (segments.size() < maxSegments) {
+			return;
+		}
+		
+		switch (overflowPolicy) {
+		case DROP_OLDEST:
+			final Segment oldest = segments.peekFirst();
+			final long dropped = scan(oldest, readOffset, true);
+			droppedCount += dropped;
+			count -= dropped;
+			logger.warn("MQTT offline buffer {} is full, {} message(s) dropped.", directory, dropped);
+			deleteFirstSegment();
+			readOffset = 0;
+			storeCursor();
+			break;
+		case BLOCK:
+			final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(blockTimeout);
+			try {
+				while (segments.size() >= maxSegments && !closed) {
+					final long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+					if (remaining <= 0) {
+						throw new ArrowheadException("MQTT offline buffer " + directory + " is full.");
+					}
+					wait(remaining);
+				}
+			} catch (final InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new ArrowheadException("Interrupted while waiting for the MQTT offline buffer " + directory + ".");
+			}
+			checkNotClosed();
+			break;
+		default:
+			throw new ArrowheadException("MQTT offline buffer " + directory + " is full.");
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private Segment newSegment(final long sequence) {
+		try {
+			final Segment segment = mapSegment(sequence);
+			segments.addLast(segment);
+			return segment;
+		} catch (final IOException ex) {
+			throw new ArrowheadException("Creating MQTT offline buffer segment failed: " + ex.getMessage(), ex);
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private Segment mapSegment(final long sequence) throws IOException {
+		final FileChannel channel = FileChannel.open(getSegmentPath(sequence), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			return new Segment(sequence, channel, channel.map(MapMode.READ_WRITE, 0, segmentSize));
+		} catch (final IOException ex) {
+			closeQuietly(channel);
+			throw ex;
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private void deleteFirstSegment() {
+		final Segment segment = segments.pollFirst();
+		closeQuietly(segment.channel);
+		try {
+			Files.deleteIfExists(getSegmentPath(segment.sequence));
+		} catch (final IOException ex) {
+			logger.warn("Deleting MQTT offline buffer segment {} failed: {}", segment.sequence, ex.getMessage());
+		}
+		if (segments.isEmpty()) {
+			newSegment(segment.sequence + 1);
+		}
+		notifyAll();
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private void storeCursor() {
+		cursor.putLong(0, segments.peekFirst().sequence);
+		cursor.putInt(Long.BYTES, readOffset);
+		cursorDirty = true;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private boolean isAnySegmentDirty() {
+		for (final Segment segment : segments) {
+			if (segment.dirty) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private void force() {
+		// the segments first, so the cursor on the disk never points past the forced records
+		for (final Segment segment : segments) {
+			if (segment.dirty) {
+				segment.data.force();
+				segment.dirty = false;
+			}
+		}
+		if (cursorDirty) {
+			cursor.force();
+			cursorDirty = false;
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private Path getSegmentPath(final long sequence) {
+		return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX));
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private void checkNotClosed() {
+		if (closed) {
+			throw new ArrowheadException("MQTT offline buffer " + directory + " is closed.");
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private void closeQuietly(final FileChannel channel) {
+		if (channel == null) {
+			return;
+		}
+		
+		try {
+			channel.close();
+		} catch (final IOException ex) {
+			logger.debug("Closing file channel failed: {}", ex.getMessage());
+		}
+	}
+	
+	//=================================================================================================
+	// nested classes
+	
+	//-------------------------------------------------------------------------------------------------
+	public static class BufferedMessage {
+		
+		//=================================================================================================
+		// members
+		
+		private final String topic;
+		private final MqttMessage message;
+		private final long segmentSequence;
+		private final int offset;
+		private final int recordLength;
+		
+		//=================================================================================================
+		// methods
+		
+		//-------------------------------------------------------------------------------------------------
+		public BufferedMessage(final String topic, final MqttMessage message, final long segmentSequence, final int offset, final int recordLength) {
+			this.topic = topic;
+			this.message = message;
+			this.segmentSequence = segmentSequence;
+			this.offset = offset;
+			this.recordLength = recordLength;
+		}
+		
+		//-------------------------------------------------------------------------------------------------
+		public String getTopic() { return topic; }
+		public MqttMessage getMessage() { return message; }
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private static class Segment {
+		
+		//=================================================================================================
+		// members
+		
+		private final long sequence;
+		private final FileChannel channel;
+		private final MappedByteBuffer data;
+		private int writePosition = 0;
+		private boolean dirty = false; // changed since the last force
+		
+		//=================================================================================================
+		// methods
+		
+		//-------------------------------------------------------------------------------------------------
+		public Segment(final long sequence, final FileChannel channel, final MappedByteBuffer data) {
+			this.sequence = sequence;
+			this.channel = channel;
+			this.data = data;
+		}
+	}
+}
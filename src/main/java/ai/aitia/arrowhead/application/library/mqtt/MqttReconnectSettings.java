@@ -0,0 +1,73 @@
+/********************************************************************************
+ * Copyright (c) 2020 AITIA
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *   AITIA - implementation
+ ********************************************************************************/
+
+package ai.aitia.arrowhead.application.library.mqtt;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.springframework.util.Assert;
+
+public class MqttReconnectSettings {
+	
+	//=================================================================================================
+	// members
+	
+	public static final MqttReconnectSettings DEFAULT = new MqttReconnectSettings(true, 1000, 120000, 0);
+	
+	private final boolean enabled;
+	private final long initialDelay;
+	private final long maxDelay;
+	private final int maxAttempts;
+	
+	//=================================================================================================
+	// methods
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @param enabled whether lost connections are re-established automatically
+	 * @param initialDelay the upper bound of the delay before the first reconnect attempt in milliseconds
+	 * @param maxDelay the upper bound of the delay between the attempts in milliseconds
+	 * @param maxAttempts the maximum number of consecutive attempts, 0 means unlimited
+	 */
+	public MqttReconnectSettings(final boolean enabled, final long initialDelay, final long maxDelay, final int maxAttempts) {
+		Assert.isTrue(initialDelay > 0 && initialDelay <= maxDelay, "initialDelay must be positive and not greater than maxDelay");
+		Assert.isTrue(maxAttempts >= 0, "maxAttempts must not be negative");
+		
+		this.enabled = enabled;
+		this.initialDelay = initialDelay;
+		this.maxDelay = maxDelay;
+		this.maxAttempts = maxAttempts;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @param attempt the number of the attempt (starting from 1)
+	 * @return a random delay between 0 and the exponential backoff of the attempt in milliseconds ("full jitter"), so the clients dropped by the 
+	 * same broker failover spread their reconnects over the whole backoff window instead of reconnecting in lockstep
+	 */
+	public long getDelay(final int attempt) {
+		final long exponential = (long) Math.min(maxDelay, initialDelay * Math.pow(2, Math.max(0, attempt - 1)));
+		return ThreadLocalRandom.current().nextLong(exponential + 1);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public boolean isAttemptAllowed(final int attempt) {
+		return enabled && (maxAttempts == 0 || attempt <= maxAttempts);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public boolean isEnabled() { return enabled; }
+	public long getInitialDelay() { return initialDelay; }
+	public long getMaxDelay() { return maxDelay; }
+	public int getMaxAttempts() { return maxAttempts; }
+}
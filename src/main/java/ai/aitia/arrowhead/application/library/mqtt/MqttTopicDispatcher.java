@@ -0,0 +1,242 @@
+/********************************************************************************
+ * Copyright (c) 2020 AITIA
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *   AITIA - implementation
+ ********************************************************************************/
+
+package ai.aitia.arrowhead.application.library.mqtt;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.IMqttMessageListener;
+import org.eclipse.paho.client.mqttv3.MqttCallback;
+import org.eclipse.paho.client.mqttv3.MqttCallbackExtended;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.eclipse.paho.client.mqttv3.MqttTopic;
+import org.springframework.util.Assert;
+
+import eu.arrowhead.common.Utilities;
+import eu.arrowhead.common.exception.ArrowheadException;
+import eu.arrowhead.common.exception.InvalidParameterException;
+
+/**
+ * {@link MqttCallback} which routes the incoming messages to the handlers registered for the matching topic filters ('+' and '#' wildcards
+ * included). The filters are kept in a {@link MqttTopicTrie} that is rebuilt on registration, so matching needs no locking. Every handler runs on
+ * its own executor: the thread of the MQTT client only queues the messages, so a slow handler doesn't stall the connection or the other handlers.
+ * <p>
+ * The dispatcher only routes; the topic filters still have to be subscribed at the broker through the client.
+ */
+public class MqttTopicDispatcher implements MqttCallbackExtended {
+	
+	//=================================================================================================
+	// members
+	
+	private static final AtomicInteger instanceCounter = new AtomicInteger();
+	
+	private final MqttHandlerSettings defaultSettings;
+	private final MqttCallback delegate;
+	private final String threadNamePrefix;
+	private final AtomicInteger handlerCounter = new AtomicInteger();
+	private final List<MqttHandlerRegistration> registrations = new CopyOnWriteArrayList<>();
+	private final Object registrationLock = new Object();
+	
+	private volatile MqttTopicTrie<MqttHandlerRegistration> trie = MqttTopicTrie.empty();
+	private volatile boolean shutdown = false;
+	
+	private final AtomicLong receivedCount = new AtomicLong();
+	private final AtomicLong unhandledCount = new AtomicLong();
+	
+	private final Logger logger = LogManager.getLogger(MqttTopicDispatcher.class);
+	
+	//=================================================================================================
+	// methods
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @param defaultSettings the executor settings of the handlers registered without own settings
+	 * @param delegate (nullable) gets the connection events and the messages no handler is registered for (on the thread of the MQTT client)
+	 */
+	public MqttTopicDispatcher(final MqttHandlerSettings defaultSettings, final MqttCallback delegate) {
+		Assert.notNull(defaultSettings, "defaultSettings is null");
+		
+		this.defaultSettings = defaultSettings;
+		this.delegate = delegate;
+		this.threadNamePrefix = "mqtt-handler-" + instanceCounter.incrementAndGet();
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Registers a handler with the default executor settings.
+	 * 
+	 * @param topicFilter topic filter, may contain '+' and '#' wildcards
+	 * @param handler called with the topic and the message on the executor of the registration
+	 * @return the registration (to unregister and to read the metrics of the handler)
+	 */
+	public MqttHandlerRegistration register(final String topicFilter, final IMqttMessageListener handler) {
+		return register(topicFilter, handler, defaultSettings);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @param topicFilter topic filter, may contain '+' and '#' wildcards
+	 * @param handler called with the topic and the message on the executor of the registration
+	 * @param settings the executor settings of the handler
+	 * @return the registration (to unregister and to read the metrics of the handler)
+	 * @throws InvalidParameterException if a parameter is invalid
+	 * @throws ArrowheadException if the dispatcher is already shut down
+	 */
+	public MqttHandlerRegistration register(final String topicFilter, final IMqttMessageListener handler, final MqttHandlerSettings settings) {
+		if (Utilities.isEmpty(topicFilter)) {
+			throw new InvalidParameterException("topicFilter cannot be null or blank.");
+		}
+		if (handler == null) {
+			throw new InvalidParameterException("handler cannot be null.");
+		}
+		if (settings == null) {
+			throw new InvalidParameterException("settings cannot be null.");
+		}
+		try {
+			MqttTopic.validate(topicFilter, true);
+		} catch (final IllegalArgumentException ex) {
+			throw new InvalidParameterException("Invalid topic filter: " + topicFilter, ex);
+		}
+		
+		synchronized (registrationLock) {
+			if (shutdown) {
+				throw new ArrowheadException("MQTT topic dispatcher is already shut down.");
+			}
+			
+			final MqttHandlerRegistration registration = new MqttHandlerRegistration(topicFilter, handler, settings, threadNamePrefix + "-" + handlerCounter.incrementAndGet());
+			registrations.add(registration);
+			trie = trie.with(topicFilter, registration);
+			return registration;
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Removes the handler and stops its threads. The messages still queued for the handler are discarded.
+	 * 
+	 * @return false if the registration doesn't belong to this dispatcher (or is already removed)
+	 */
+	public boolean unregister(final MqttHandlerRegistration registration) {
+		synchronized (registrationLock) {
+			if (registration == null || !registrations.remove(registration)) {
+				return false;
+			}
+			
+			trie = trie.without(registration.getTopicFilter(), registration);
+		}
+		registration.shutdown();
+		
+		return true;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @return true if a registered filter matches the topic
+	 */
+	public boolean hasHandler(final String topic) {
+		return !trie.match(topic).isEmpty();
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public List<MqttHandlerRegistration> getRegistrations() {
+		return new ArrayList<>(registrations);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public long getReceivedCount() { return receivedCount.get(); }
+	public long getUnhandledCount() { return unhandledCount.get(); }
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @return the number of messages waiting for any of the handlers
+	 */
+	public int getQueueSize() {
+		int result = 0;
+		for (final MqttHandlerRegistration registration : registrations) {
+			result += registration.getQueueSize();
+		}
+		
+		return result;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Unregisters every handler. The dispatcher can't be used afterwards.
+	 */
+	public void shutdown() {
+		final List<MqttHandlerRegistration> toStop;
+		synchronized (registrationLock) {
+			shutdown = true;
+			toStop = new ArrayList<>(registrations);
+			registrations.clear();
+			trie = MqttTopicTrie.empty();
+		}
+		
+		for (final MqttHandlerRegistration registration : toStop) {
+			registration.shutdown();
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@Override
+	public void messageArrived(final String topic, final MqttMessage message) throws Exception {
+		receivedCount.incrementAndGet();
+		final List<MqttHandlerRegistration> matching = trie.match(topic);
+		if (matching.isEmpty()) {
+			unhandledCount.incrementAndGet();
+			if (delegate != null) {
+				delegate.messageArrived(topic, message);
+			} else {
+				logger.debug("No MQTT handler is registered for topic {}.", topic);
+			}
+			return;
+		}
+		
+		for (final MqttHandlerRegistration registration : matching) {
+			registration.deliver(topic, message);
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@Override
+	public void connectionLost(final Throwable cause) {
+		if (delegate != null) {
+			delegate.connectionLost(cause);
+		} else {
+			logger.warn("Connection to MQTT broker lost: {}", cause == null ? null : cause.getMessage());
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@Override
+	public void deliveryComplete(final IMqttDeliveryToken token) {
+		if (delegate != null) {
+			delegate.deliveryComplete(token);
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@Override
+	public void connectComplete(final boolean reconnect, final String serverURI) {
+		if (delegate instanceof MqttCallbackExtended) {
+			((MqttCallbackExtended) delegate).connectComplete(reconnect, serverURI);
+		}
+	}
+}
@@ -0,0 +1,218 @@
+/********************************************************************************
+ * Copyright (c) 2020 AITIA
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *   AITIA - implementation
+ ********************************************************************************/
+
+package ai.aitia.arrowhead.application.library.mqtt;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable trie of MQTT topic filters (with '+' and '#' wildcards). Matching a topic visits only the levels of the topic instead of testing every
+ * filter. Adding or removing a filter copies only the path of the filter, so a published trie can be read without locking while the owner builds
+ * the next one.
+ * 
+ * @param <T> the type of the values registered for the filters
+ */
+public class MqttTopicTrie<T> {
+	
+	//=================================================================================================
+	// members
+	
+	private static final String SEPARATOR = "/";
+	private static final String SINGLE_LEVEL_WILDCARD = "+";
+	private static final String MULTI_LEVEL_WILDCARD = "#";
+	private static final String SYSTEM_TOPIC_PREFIX = "$";
+	
+	private static final MqttTopicTrie<?> EMPTY = new MqttTopicTrie<>(Node.EMPTY, 0);
+	
+	private final Node<T> root;
+	private final int size;
+	
+	//=================================================================================================
+	// methods
+	
+	//-------------------------------------------------------------------------------------------------
+	@SuppressWarnings("unchecked")
+	public static <T> MqttTopicTrie<T> empty() {
+		return (MqttTopicTrie<T>) EMPTY;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @return the number of registered values
+	 */
+	public int size() {
+		return size;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @param topicFilter valid topic filter (see {@link org.eclipse.paho.client.mqttv3.MqttTopic#validate(String, boolean)})
+	 * @param value the value to register (the same value may be registered for more filters)
+	 * @return a new trie which also contains the value under the filter
+	 */
+	public MqttTopicTrie<T> with(final String topicFilter, final T value) {
+		return new MqttTopicTrie<>(add(root, topicFilter.split(SEPARATOR, -1), 0, value), size + 1);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @return a new trie without the value under the filter, or this trie if the value is not registered under the filter
+	 */
+	public MqttTopicTrie<T> without(final String topicFilter, final T value) {
+		final Node<T> newRoot = remove(root, topicFilter.split(SEPARATOR, -1), 0, value);
+		if (newRoot == root) {
+			return this;
+		}
+		
+		return new MqttTopicTrie<>(newRoot == null ? Node.empty() : newRoot, size - 1);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @param topic the topic of a message (without wildcards)
+	 * @return the values of every filter matching the topic (a value registered under more matching filters is listed for each of them)
+	 */
+	public List<T> match(final String topic) {
+		if (size == 0) {
+			return Collections.emptyList();
+		}
+		
+		final List<T> result = new ArrayList<>();
+		final String[] levels = topic.split(SEPARATOR, -1);
+		// topics starting with '$' are not matched by filters starting with a wildcard
+		collect(root, levels, 0, !topic.startsWith(SYSTEM_TOPIC_PREFIX), result);
+		
+		return result;
+	}
+	
+	//=================================================================================================
+	// assistant methods
+	
+	//-------------------------------------------------------------------------------------------------
+	private MqttTopicTrie(final Node<T> root, final int size) {
+		this.root = root;
+		this.size = size;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private static <T> void collect(final Node<T> node, final String[] levels, final int index, final boolean wildcardsAllowed, final List<T> result) {
+		if (wildcardsAllowed) {
+			// '#' also matches the parent level ("a/#" matches "a")
+			final Node<T> multiLevel = node.children.get(MULTI_LEVEL_WILDCARD);
+			if (multiLevel != null) {
+				result.addAll(multiLevel.values);
+			}
+		}
+		
+		if (index == levels.length) {
+			result.addAll(node.values);
+			return;
+		}
+		
+		final Node<T> exact = node.children.get(levels[index]);
+		if (exact != null) {
+			collect(exact, levels, index + 1, true, result);
+		}
+		
+		if (wildcardsAllowed) {
+			final Node<T> singleLevel = node.children.get(SINGLE_LEVEL_WILDCARD);
+			if (singleLevel != null) {
+				collect(singleLevel, levels, index + 1, true, result);
+			}
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private static <T> Node<T> add(final Node<T> node, final String[] levels, final int index, final T value) {
+		if (index == levels.length) {
+			final List<T> values = new ArrayList<>(node.values);
+			values.add(value);
+			return new Node<>(node.children, values);
+		}
+		
+		final Node<T> child = node.children.get(levels[index]);
+		final Map<String,Node<T>> children = new HashMap<>(node.children);
+		children.put(levels[index], add(child == null ? Node.empty() : child, levels, index + 1, value));
+		
+		return new Node<>(children, node.values);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @return the same node if the value is not found, null if the node became empty, otherwise the copy of the node without the value
+	 */
+	private static <T> Node<T> remove(final Node<T> node, final String[] levels, final int index, final T value) {
+		if (index == levels.length) {
+			if (!node.values.contains(value)) {
+				return node;
+			}
+			
+			final List<T> values = new ArrayList<>(node.values);
+			values.remove(value);
+			return values.isEmpty() && node.children.isEmpty() ? null : new Node<>(node.children, values);
+		}
+		
+		final Node<T> child = node.children.get(levels[index]);
+		if (child == null) {
+			return node;
+		}
+		
+		final Node<T> newChild = remove(child, levels, index + 1, value);
+		if (newChild == child) {
+			return node;
+		}
+		
+		final Map<String,Node<T>> children = new HashMap<>(node.children);
+		if (newChild == null) {
+			children.remove(levels[index]);
+		} else {
+			children.put(levels[index], newChild);
+		}
+		
+		return children.isEmpty() && node.values.isEmpty() ? null : new Node<>(children, node.values);
+	}
+	
+	//=================================================================================================
+	// nested classes
+	
+	//-------------------------------------------------------------------------------------------------
+	private static class Node<T> {
+		
+		//=================================================================================================
+		// members
+		
+		private static final Node<?> EMPTY = new Node<>(Collections.emptyMap(), Collections.emptyList());
+		
+		private final Map<String,Node<T>> children;
+		private final List<T> values;
+		
+		//=================================================================================================
+		// methods
+		
+		//-------------------------------------------------------------------------------------------------
+		@SuppressWarnings("unchecked")
+		public static <T> Node<T> empty() {
+			return (Node<T>) EMPTY;
+		}
+		
+		//-------------------------------------------------------------------------------------------------
+		public Node(final Map<String,Node<T>> children, final List<T> values) {
+			this.children = children.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap(children);
+			this.values = values.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(values);
+		}
+	}
+}
@@ -0,0 +1,341 @@
+/********************************************************************************
+ * Copyright (c) 2020 AITIA
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *   AITIA - implementation
+ ********************************************************************************/
+
+package ai.aitia.arrowhead.application.library.mqtt;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.paho.client.mqttv3.IMqttMessageListener;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.eclipse.paho.client.mqttv3.MqttTopic;
+
+import eu.arrowhead.common.Utilities;
+import eu.arrowhead.common.exception.InvalidParameterException;
+
+/**
+ * One client connection to a broker shared by every {@link MqttConnectionLease} of the same broker and credentials. The broker subscriptions are
+ * reference counted per topic filter, and the incoming messages are dispatched to the handlers whose filter matches the topic by a
+ * {@link MqttTopicDispatcher}, so every handler runs on its own executor.
+ */
+public class SharedMqttConnection {
+	
+	//=================================================================================================
+	// members
+	
+	private final MqttConnectionManager manager;
+	private final String key;
+	private final ManagedMqttClient client;
+	private final MqttConnectOptions options;
+	private final MqttTopicDispatcher dispatcher;
+	
+	private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+	private final Map<String,Integer> brokerSubscriptions = new HashMap<>(); // topic filter -> subscribed QoS, guarded by this
+	private final Object brokerLock = new Object(); // serializes the (un)subscribe calls to the broker, which are made outside of the monitor
+	private int referenceCount = 0; // guarded by this
+	private boolean closed = false; // guarded by this
+	
+	private final AtomicLong publishedCount = new AtomicLong();
+	
+	private final Logger logger = LogManager.getLogger(SharedMqttConnection.class);
+	
+	//=================================================================================================
+	// methods
+	
+	//-------------------------------------------------------------------------------------------------
+	public String getBrokerAddress() { return client.getServerURI(); }
+	public String getClientId() { return client.getClientId(); }
+	public boolean isConnected() { return client.isConnected(); }
+	public long getReceivedCount() { return dispatcher.getReceivedCount(); }
+	public long getUnhandledCount() { return dispatcher.getUnhandledCount(); }
+	public int getQueueSize() { return dispatcher.getQueueSize(); }
+	public long getPublishedCount() { return publishedCount.get(); }
+	
+	//-------------------------------------------------------------------------------------------------
+	public synchronized int getReferenceCount() {
+		return referenceCount;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @return the topic filters currently subscribed at the broker
+	 */
+	public synchronized Collection<String> getTopicFilters() {
+		return new ArrayList<>(brokerSubscriptions.keySet());
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public int getHandlerCount() {
+		return subscriptions.size();
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @return the handlers of the leases with their per-filter throughput and queue metrics
+	 */
+	public List<MqttHandlerRegistration> getHandlerRegistrations() {
+		return subscriptions.stream().map(Subscription::getRegistration).collect(Collectors.toList());
+	}
+	
+	//=================================================================================================
+	// assistant methods
+	
+	//-------------------------------------------------------------------------------------------------
+	SharedMqttConnection(final MqttConnectionManager manager, final String key, final ManagedMqttClient client, final MqttConnectOptions options, final MqttHandlerSettings handlerSettings) {
+		this.manager = manager;
+		this.key = key;
+		this.client = client;
+		this.options = options;
+		this.dispatcher = new MqttTopicDispatcher(handlerSettings, null);
+		this.client.setCallback(dispatcher);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	String getKey() {
+		return key;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	void connect() throws MqttException {
+		logger.info("Connecting to MQTT(S) broker: " + client.getServerURI());
+		client.connect(options);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @return a new lease or null if the connection is already closed (its last lease was released concurrently)
+	 */
+	synchronized MqttConnectionLease newLease() {
+		if (closed) {
+			return null;
+		}
+		
+		++referenceCount;
+		return new MqttConnectionLease(this);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	Subscription subscribe(final MqttConnectionLease lease, final String topicFilter, final int qos, final IMqttMessageListener handler) throws MqttException {
+		if (Utilities.isEmpty(topicFilter)) {
+			throw new InvalidParameterException("topicFilter cannot be null or blank.");
+		}
+		if (qos < 0 || qos > 2) {
+			throw new InvalidParameterException("qos must be 0, 1 or 2.");
+		}
+		if (handler == null) {
+			throw new InvalidParameterException("handler cannot be null.");
+		}
+		MqttTopic.validate(topicFilter, true);
+		
+		synchronized (brokerLock) {
+			final boolean brokerSubscribe;
+			synchronized (this) {
+				checkNotClosed();
+				final Integer subscribedQos = brokerSubscriptions.get(topicFilter);
+				brokerSubscribe = subscribedQos == null || subscribedQos < qos;
+			}
+			
+			if (brokerSubscribe) {
+				client.subscribe(topicFilter, qos);
+			}
+			
+			synchronized (this) {
+				checkNotClosed();
+				if (brokerSubscribe) {
+					brokerSubscriptions.put(topicFilter, qos);
+				}
+				
+				final Subscription subscription = new Subscription(lease, qos, dispatcher.register(topicFilter, handler));
+				subscriptions.add(subscription);
+				return subscription;
+			}
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	void unsubscribe(final Collection<Subscription> toRemove) throws MqttException {
+		synchronized (brokerLock) {
+			final Map<String,Integer> changes = new HashMap<>(); // topic filter -> new QoS, or null if it is not needed anymore
+			synchronized (this) {
+				subscriptions.removeAll(toRemove);
+				for (final Subscription removed : toRemove) {
+					dispatcher.unregister(removed.getRegistration());
+				}
+				for (final Subscription removed : toRemove) {
+					final String filter = removed.getTopicFilter();
+					final Integer subscribedQos = brokerSubscriptions.get(filter);
+					if (subscribedQos != null && !changes.containsKey(filter)) {
+						final Integer requiredQos = getRequiredQos(filter);
+						if (requiredQos == null) {
+							brokerSubscriptions.remove(filter);
+							changes.put(filter, null);
+						} else if (requiredQos < subscribedQos) {
+							brokerSubscriptions.put(filter, requiredQos);
+							changes.put(filter, requiredQos);
+						}
+					}
+				}
+			}
+			
+			MqttException error = null;
+			for (final Map.Entry<String,Integer> change : changes.entrySet()) {
+				final String filter = change.getKey();
+				try {
+					if (change.getValue() == null) {
+						// not restored after reconnect even if it can't be unsubscribed now (a lost connection has dropped it on the broker anyway)
+						client.forget(filter);
+						if (client.isConnected()) {
+							client.unsubscribe(filter);
+						}
+					} else if (client.isConnected()) {
+						// subscribing again replaces the QoS of the existing subscription
+						client.subscribe(filter, change.getValue());
+					}
+				} catch (final MqttException ex) {
+					error = ex;
+				}
+			}
+			
+			if (error != null) {
+				throw error;
+			}
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	void publish(final String topic, final MqttMessage message) throws MqttException {
+		client.publish(topic, message);
+		publishedCount.incrementAndGet();
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	void release(final Collection<Subscription> toRemove) {
+		try {
+			unsubscribe(toRemove);
+		} catch (final MqttException ex) {
+			logger.warn("Unsubscribing from MQTT broker {} failed: {}", client.getServerURI(), ex.getMessage());
+		}
+		
+		synchronized (this) {
+			--referenceCount;
+			if (referenceCount > 0 || !markClosed()) {
+				return;
+			}
+		}
+		
+		manager.remove(this);
+		closeClient();
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	void close() {
+		synchronized (this) {
+			if (!markClosed()) {
+				return;
+			}
+		}
+		
+		closeClient();
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @return false if the connection was already closed
+	 */
+	private boolean markClosed() { // guarded by this
+		if (closed) {
+			return false;
+		}
+		
+		closed = true;
+		subscriptions.clear();
+		brokerSubscriptions.clear();
+		return true;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private void closeClient() {
+		dispatcher.shutdown();
+		try {
+			if (client.isConnected()) {
+				logger.info("Disconnecting from MQTT broker: " + client.getServerURI());
+				client.disconnect();
+			}
+			client.close();
+		} catch (final MqttException ex) {
+			logger.warn("Closing MQTT client {} failed: {}", client.getClientId(), ex.getMessage());
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private void checkNotClosed() throws MqttException { // guarded by this
+		if (closed) {
+			throw new MqttException(MqttException.REASON_CODE_CLIENT_CLOSED);
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @return the highest QoS requested by the handlers of the filter, or null if it has no handler
+	 */
+	private Integer getRequiredQos(final String topicFilter) { // guarded by this
+		Integer result = null;
+		for (final Subscription subscription : subscriptions) {
+			if (subscription.getTopicFilter().equals(topicFilter) && (result == null || subscription.getQos() > result)) {
+				result = subscription.getQos();
+			}
+		}
+		
+		return result;
+	}
+	
+	//=================================================================================================
+	// nested classes
+	//-------------------------------------------------------------------------------------------------
+	static class Subscription {
+		
+		//=================================================================================================
+		// members
+		
+		private final MqttConnectionLease lease;
+		private final int qos;
+		private final MqttHandlerRegistration registration;
+		
+		//=================================================================================================
+		// methods
+		
+		//-------------------------------------------------------------------------------------------------
+		public Subscription(final MqttConnectionLease lease, final int qos, final MqttHandlerRegistration registration) {
+			this.lease = lease;
+			this.qos = qos;
+			this.registration = registration;
+		}
+		
+		//-------------------------------------------------------------------------------------------------
+		public MqttConnectionLease getLease() { return lease; }
+		public int getQos() { return qos; }
+		public MqttHandlerRegistration getRegistration() { return registration; }
+		public String getTopicFilter() { return registration.getTopicFilter(); }
+		public IMqttMessageListener getHandler() { return registration.getHandler(); }
+	}
+}
@@ -27,6 +27,144 @@ public class ApplicationCommonConstants {
 	public static final String TOKEN_SECURITY_FILTER_ENABLED = "token.security.filter.enabled";
 	public static final String $TOKEN_SECURITY_FILTER_ENABLED_WD = "${" + TOKEN_SECURITY_FILTER_ENABLED + ":true" + "}";
 	public static final String CORE_SERVICE_DEFINITION_SUFFIX = "-ah.core";
+	public static final String CORE_SERVICE_DISCOVERY_MAX_PARALLELISM = "core.service.discovery.max.parallelism";
+	public static final String $CORE_SERVICE_DISCOVERY_MAX_PARALLELISM_WD = "${" + CORE_SERVICE_DISCOVERY_MAX_PARALLELISM + ":8" + "}";
+	public static final String CORE_SERVICE_DISCOVERY_TIMEOUT = "core.service.discovery.timeout"; // in milliseconds
+	public static final String $CORE_SERVICE_DISCOVERY_TIMEOUT_WD = "${" + CORE_SERVICE_DISCOVERY_TIMEOUT + ":10000" + "}";
+	public static final String SERVICE_REGISTRATION_MAX_PARALLELISM = "service.registration.max.parallelism";
+	public static final String $SERVICE_REGISTRATION_MAX_PARALLELISM_WD = "${" + SERVICE_REGISTRATION_MAX_PARALLELISM + ":8" + "}";
+	public static final String CORE_SERVICE_URI_TTL = "core.service.uri.ttl"; // in milliseconds, 0 means no expiration
+	public static final String $CORE_SERVICE_URI_TTL_WD = "${" + CORE_SERVICE_URI_TTL + ":0" + "}";
+	public static final String CORE_SERVICE_URI_REFRESH_AHEAD = "core.service.uri.refresh.ahead"; // in milliseconds
+	public static final String $CORE_SERVICE_URI_REFRESH_AHEAD_WD = "${" + CORE_SERVICE_URI_REFRESH_AHEAD + ":5000" + "}";
+	public static final String CORE_SERVICE_LAZY_RESOLUTION_ENABLED = "core.service.lazy.resolution.enabled";
+	public static final String $CORE_SERVICE_LAZY_RESOLUTION_ENABLED_WD = "${" + CORE_SERVICE_LAZY_RESOLUTION_ENABLED + ":true" + "}";
+	public static final String CORE_SERVICE_URI_NEGATIVE_TTL = "core.service.uri.negative.ttl"; // in milliseconds, 0 means no negative caching
+	public static final String $CORE_SERVICE_URI_NEGATIVE_TTL_WD = "${" + CORE_SERVICE_URI_NEGATIVE_TTL + ":1000" + "}";
+	public static final String ORCHESTRATION_CACHE_ENABLED = "orchestration.cache.enabled";
+	public static final String $ORCHESTRATION_CACHE_ENABLED_WD = "${" + ORCHESTRATION_CACHE_ENABLED + ":false" + "}";
+	public static final String ORCHESTRATION_CACHE_MAX_SIZE = "orchestration.cache.max.size";
+	public static final String $ORCHESTRATION_CACHE_MAX_SIZE_WD = "${" + ORCHESTRATION_CACHE_MAX_SIZE + ":1000" + "}";
+	public static final String ORCHESTRATION_CACHE_TTL = "orchestration.cache.ttl"; // in milliseconds
+	public static final String $ORCHESTRATION_CACHE_TTL_WD = "${" + ORCHESTRATION_CACHE_TTL + ":60000" + "}";
+	public static final String ORCHESTRATION_CACHE_INVALIDATION_EVENT_TYPES = "orchestration.cache.invalidation.event.types"; // comma separated list
+	public static final String $ORCHESTRATION_CACHE_INVALIDATION_EVENT_TYPES_WD = "${" + ORCHESTRATION_CACHE_INVALIDATION_EVENT_TYPES + ":" + "}";
+	public static final String ORCHESTRATION_CACHE_FLUSH_EVENT_TYPES = "orchestration.cache.flush.event.types"; // comma separated list
+	public static final String $ORCHESTRATION_CACHE_FLUSH_EVENT_TYPES_WD = "${" + ORCHESTRATION_CACHE_FLUSH_EVENT_TYPES + ":" + "}";
+	public static final String PROVIDER_GROUP_EJECTION_FAILURE_THRESHOLD = "provider.group.ejection.failure.threshold";
+	public static final String $PROVIDER_GROUP_EJECTION_FAILURE_THRESHOLD_WD = "${" + PROVIDER_GROUP_EJECTION_FAILURE_THRESHOLD + ":3" + "}";
+	public static final String PROVIDER_GROUP_EJECTION_TIME = "provider.group.ejection.time"; // in milliseconds
+	public static final String $PROVIDER_GROUP_EJECTION_TIME_WD = "${" + PROVIDER_GROUP_EJECTION_TIME + ":30000" + "}";
+	public static final String CIRCUIT_BREAKER_ENABLED = "circuit.breaker.enabled";
+	public static final String $CIRCUIT_BREAKER_ENABLED_WD = "${" + CIRCUIT_BREAKER_ENABLED + ":false" + "}";
+	public static final String CIRCUIT_BREAKER_FAILURE_THRESHOLD = "circuit.breaker.failure.threshold";
+	public static final String $CIRCUIT_BREAKER_FAILURE_THRESHOLD_WD = "${" + CIRCUIT_BREAKER_FAILURE_THRESHOLD + ":5" + "}";
+	public static final String CIRCUIT_BREAKER_OPEN_DURATION = "circuit.breaker.open.duration"; // in milliseconds
+	public static final String $CIRCUIT_BREAKER_OPEN_DURATION_WD = "${" + CIRCUIT_BREAKER_OPEN_DURATION + ":30000" + "}";
+	public static final String CIRCUIT_BREAKER_TIMEOUT_MIN = "circuit.breaker.timeout.min"; // in milliseconds
+	public static final String $CIRCUIT_BREAKER_TIMEOUT_MIN_WD = "${" + CIRCUIT_BREAKER_TIMEOUT_MIN + ":100" + "}";
+	public static final String CIRCUIT_BREAKER_TIMEOUT_MAX = "circuit.breaker.timeout.max"; // in milliseconds
+	public static final String $CIRCUIT_BREAKER_TIMEOUT_MAX_WD = "${" + CIRCUIT_BREAKER_TIMEOUT_MAX + ":30000" + "}";
+	public static final String CIRCUIT_BREAKER_TIMEOUT_PERCENTILE = "circuit.breaker.timeout.percentile";
+	public static final String $CIRCUIT_BREAKER_TIMEOUT_PERCENTILE_WD = "${" + CIRCUIT_BREAKER_TIMEOUT_PERCENTILE + ":99" + "}";
+	public static final String CIRCUIT_BREAKER_TIMEOUT_MULTIPLIER = "circuit.breaker.timeout.multiplier";
+	public static final String $CIRCUIT_BREAKER_TIMEOUT_MULTIPLIER_WD = "${" + CIRCUIT_BREAKER_TIMEOUT_MULTIPLIER + ":2" + "}";
+	public static final String CIRCUIT_BREAKER_TIMEOUT_THREAD_NUM = "circuit.breaker.timeout.thread.num"; // max concurrent calls with enforced timeout, 0 means timeouts are not enforced
+	public static final String $CIRCUIT_BREAKER_TIMEOUT_THREAD_NUM_WD = "${" + CIRCUIT_BREAKER_TIMEOUT_THREAD_NUM + ":32" + "}";
+	public static final String KEYSTORE_RELOAD_ENABLED = "keystore.reload.enabled"; // WS(S), MQTT(S) and token checks only, the HTTP(S) calls of HttpService keep the SSL context built at startup
+	public static final String $KEYSTORE_RELOAD_ENABLED_WD = "${" + KEYSTORE_RELOAD_ENABLED + ":false" + "}";
+	public static final String KEYSTORE_RELOAD_INTERVAL = "keystore.reload.interval"; // in milliseconds
+	public static final String $KEYSTORE_RELOAD_INTERVAL_WD = "${" + KEYSTORE_RELOAD_INTERVAL + ":10000" + "}";
+	public static final String TOKEN_CACHE_MAX_SIZE = "token.cache.max.size";
+	public static final String $TOKEN_CACHE_MAX_SIZE_WD = "${" + TOKEN_CACHE_MAX_SIZE + ":10000" + "}";
+	public static final String TOKEN_CACHE_MAX_TTL = "token.cache.max.ttl"; // in milliseconds
+	public static final String $TOKEN_CACHE_MAX_TTL_WD = "${" + TOKEN_CACHE_MAX_TTL + ":300000" + "}";
+	public static final String AUTHORIZATION_PUBLIC_KEY_REFRESH_INTERVAL = "authorization.public.key.refresh.interval"; // in milliseconds, 0 means no background refresh
+	public static final String $AUTHORIZATION_PUBLIC_KEY_REFRESH_INTERVAL_WD = "${" + AUTHORIZATION_PUBLIC_KEY_REFRESH_INTERVAL + ":600000" + "}";
+	public static final String AUTHORIZATION_TOKEN_ISSUER = "Authorization";
+	public static final String FAST_START_ENABLED = "fast.start.enabled";
+	public static final String $FAST_START_ENABLED_WD = "${" + FAST_START_ENABLED + ":false" + "}";
+	public static final String FAST_START_DEADLINE = "fast.start.deadline"; // in milliseconds
+	public static final String $FAST_START_DEADLINE_WD = "${" + FAST_START_DEADLINE + ":30000" + "}";
+	public static final String FAST_START_THREAD_NUM = "fast.start.thread.num";
+	public static final String $FAST_START_THREAD_NUM_WD = "${" + FAST_START_THREAD_NUM + ":8" + "}";
+	public static final String MQTT_SHARED_SOCKET_FACTORY_ENABLED = "mqtt.shared.socket.factory.enabled";
+	public static final String $MQTT_SHARED_SOCKET_FACTORY_ENABLED_WD = "${" + MQTT_SHARED_SOCKET_FACTORY_ENABLED + ":false" + "}";
+	public static final String MQTT_ASYNC_MAX_INFLIGHT = "mqtt.async.max.inflight";
+	public static final String $MQTT_ASYNC_MAX_INFLIGHT_WD = "${" + MQTT_ASYNC_MAX_INFLIGHT + ":100" + "}";
+	public static final String MQTT_ASYNC_PUBLISH_TIMEOUT = "mqtt.async.publish.timeout";
+	public static final String $MQTT_ASYNC_PUBLISH_TIMEOUT_WD = "${" + MQTT_ASYNC_PUBLISH_TIMEOUT + ":30000" + "}";
+	public static final String MQTT_PERSISTENCE_DIRECTORY = "mqtt.persistence.directory";
+	public static final String $MQTT_PERSISTENCE_DIRECTORY_WD = "${" + MQTT_PERSISTENCE_DIRECTORY + ":" + "}";
+	public static final String MQTT_CLEAN_SESSION = "mqtt.clean.session";
+	public static final String $MQTT_CLEAN_SESSION_WD = "${" + MQTT_CLEAN_SESSION + ":true" + "}";
+	public static final String MQTT_OFFLINE_BUFFER_DIRECTORY = "mqtt.offline.buffer.directory";
+	public static final String $MQTT_OFFLINE_BUFFER_DIRECTORY_WD = "${" + MQTT_OFFLINE_BUFFER_DIRECTORY + ":mqtt-offline-buffer" + "}";
+	public static final String MQTT_OFFLINE_BUFFER_SEGMENT_SIZE = "mqtt.offline.buffer.segment.size";
+	public static final String $MQTT_OFFLINE_BUFFER_SEGMENT_SIZE_WD = "${" + MQTT_OFFLINE_BUFFER_SEGMENT_SIZE + ":16777216" + "}";
+	public static final String MQTT_OFFLINE_BUFFER_MAX_SIZE = "mqtt.offline.buffer.max.size";
+	public static final String $MQTT_OFFLINE_BUFFER_MAX_SIZE_WD = "${" + MQTT_OFFLINE_BUFFER_MAX_SIZE + ":268435456" + "}";
+	public static final String MQTT_OFFLINE_BUFFER_OVERFLOW_POLICY = "mqtt.offline.buffer.overflow.policy";
+	public static final String $MQTT_OFFLINE_BUFFER_OVERFLOW_POLICY_WD = "${" + MQTT_OFFLINE_BUFFER_OVERFLOW_POLICY + ":DROP_OLDEST" + "}";
+	public static final String MQTT_OFFLINE_BUFFER_BLOCK_TIMEOUT = "mqtt.offline.buffer.block.timeout";
+	public static final String $MQTT_OFFLINE_BUFFER_BLOCK_TIMEOUT_WD = "${" + MQTT_OFFLINE_BUFFER_BLOCK_TIMEOUT + ":5000" + "}";
+	public static final String MQTT_OFFLINE_BUFFER_FORCE_INTERVAL = "mqtt.offline.buffer.force.interval";
+	public static final String $MQTT_OFFLINE_BUFFER_FORCE_INTERVAL_WD = "${" + MQTT_OFFLINE_BUFFER_FORCE_INTERVAL + ":1000" + "}";
+	public static final String MQTT_OFFLINE_BUFFER_DRAIN_RATE = "mqtt.offline.buffer.drain.rate";
+	public static final String $MQTT_OFFLINE_BUFFER_DRAIN_RATE_WD = "${" + MQTT_OFFLINE_BUFFER_DRAIN_RATE + ":100" + "}";
+	public static final String MQTT_RECONNECT_ENABLED = "mqtt.reconnect.enabled";
+	public static final String $MQTT_RECONNECT_ENABLED_WD = "${" + MQTT_RECONNECT_ENABLED + ":false" + "}";
+	public static final String MQTT_RECONNECT_INITIAL_DELAY = "mqtt.reconnect.initial.delay";
+	public static final String $MQTT_RECONNECT_INITIAL_DELAY_WD = "${" + MQTT_RECONNECT_INITIAL_DELAY + ":1000" + "}";
+	public static final String MQTT_RECONNECT_MAX_DELAY = "mqtt.reconnect.max.delay";
+	public static final String $MQTT_RECONNECT_MAX_DELAY_WD = "${" + MQTT_RECONNECT_MAX_DELAY + ":120000" + "}";
+	public static final String MQTT_RECONNECT_MAX_ATTEMPTS = "mqtt.reconnect.max.attempts";
+	public static final String $MQTT_RECONNECT_MAX_ATTEMPTS_WD = "${" + MQTT_RECONNECT_MAX_ATTEMPTS + ":0" + "}";
+	public static final String MQTT_HANDLER_THREAD_NUM = "mqtt.handler.thread.num";
+	public static final String $MQTT_HANDLER_THREAD_NUM_WD = "${" + MQTT_HANDLER_THREAD_NUM + ":1" + "}";
+	public static final String MQTT_HANDLER_QUEUE_CAPACITY = "mqtt.handler.queue.capacity";
+	public static final String $MQTT_HANDLER_QUEUE_CAPACITY_WD = "${" + MQTT_HANDLER_QUEUE_CAPACITY + ":1000" + "}";
+	public static final String MQTT_HANDLER_OVERFLOW_POLICY = "mqtt.handler.overflow.policy";
+	public static final String $MQTT_HANDLER_OVERFLOW_POLICY_WD = "${" + MQTT_HANDLER_OVERFLOW_POLICY + ":BLOCK" + "}";
+	public static final String MQTT_HANDLER_BLOCK_TIMEOUT = "mqtt.handler.block.timeout";
+	public static final String $MQTT_HANDLER_BLOCK_TIMEOUT_WD = "${" + MQTT_HANDLER_BLOCK_TIMEOUT + ":5000" + "}";
+	public static final String WS_RECONNECT_ENABLED = "ws.reconnect.enabled";
+	public static final String $WS_RECONNECT_ENABLED_WD = "${" + WS_RECONNECT_ENABLED + ":false" + "}";
+	public static final String WS_RECONNECT_INITIAL_DELAY = "ws.reconnect.initial.delay";
+	public static final String $WS_RECONNECT_INITIAL_DELAY_WD = "${" + WS_RECONNECT_INITIAL_DELAY + ":1000" + "}";
+	public static final String WS_RECONNECT_MAX_DELAY = "ws.reconnect.max.delay";
+	public static final String $WS_RECONNECT_MAX_DELAY_WD = "${" + WS_RECONNECT_MAX_DELAY + ":60000" + "}";
+	public static final String WS_RECONNECT_MULTIPLIER = "ws.reconnect.multiplier";
+	public static final String $WS_RECONNECT_MULTIPLIER_WD = "${" + WS_RECONNECT_MULTIPLIER + ":2" + "}";
+	public static final String WS_RECONNECT_MAX_ATTEMPTS = "ws.reconnect.max.attempts";
+	public static final String $WS_RECONNECT_MAX_ATTEMPTS_WD = "${" + WS_RECONNECT_MAX_ATTEMPTS + ":0" + "}";
+	public static final String WS_SEND_QUEUE_CAPACITY = "ws.send.queue.capacity";
+	public static final String $WS_SEND_QUEUE_CAPACITY_WD = "${" + WS_SEND_QUEUE_CAPACITY + ":1000" + "}";
+	public static final String WS_SEND_OVERFLOW_POLICY = "ws.send.overflow.policy";
+	public static final String $WS_SEND_OVERFLOW_POLICY_WD = "${" + WS_SEND_OVERFLOW_POLICY + ":BLOCK" + "}";
+	public static final String WS_SEND_BLOCK_TIMEOUT = "ws.send.block.timeout";
+	public static final String $WS_SEND_BLOCK_TIMEOUT_WD = "${" + WS_SEND_BLOCK_TIMEOUT + ":5000" + "}";
+	public static final String WS_SEND_COALESCING_ENABLED = "ws.send.coalescing.enabled";
+	public static final String $WS_SEND_COALESCING_ENABLED_WD = "${" + WS_SEND_COALESCING_ENABLED + ":false" + "}";
+	public static final String WS_SEND_BATCH_MAX_SIZE = "ws.send.batch.max.size";
+	public static final String $WS_SEND_BATCH_MAX_SIZE_WD = "${" + WS_SEND_BATCH_MAX_SIZE + ":65536" + "}";
+	public static final String WS_SEND_THREAD_NUM = "ws.send.thread.num";
+	public static final String $WS_SEND_THREAD_NUM_WD = "${" + WS_SEND_THREAD_NUM + ":2" + "}";
+	public static final String WS_BUFFER_SIZE = "ws.buffer.size";
+	public static final String $WS_BUFFER_SIZE_WD = "${" + WS_BUFFER_SIZE + ":65536" + "}";
+	public static final String WS_BUFFER_POOL_MAX_SIZE = "ws.buffer.pool.max.size";
+	public static final String $WS_BUFFER_POOL_MAX_SIZE_WD = "${" + WS_BUFFER_POOL_MAX_SIZE + ":64" + "}";
+	public static final String WS_HEARTBEAT_ENABLED = "ws.heartbeat.enabled";
+	public static final String $WS_HEARTBEAT_ENABLED_WD = "${" + WS_HEARTBEAT_ENABLED + ":false" + "}";
+	public static final String WS_HEARTBEAT_INTERVAL = "ws.heartbeat.interval";
+	public static final String $WS_HEARTBEAT_INTERVAL_WD = "${" + WS_HEARTBEAT_INTERVAL + ":30000" + "}";
+	public static final String WS_HEARTBEAT_MAX_MISSED_PONGS = "ws.heartbeat.max.missed.pongs";
+	public static final String $WS_HEARTBEAT_MAX_MISSED_PONGS_WD = "${" + WS_HEARTBEAT_MAX_MISSED_PONGS + ":3" + "}";
+	public static final String ASYNC_EXECUTOR_THREAD_NUM = "async.executor.thread.num";
+	public static final String $ASYNC_EXECUTOR_THREAD_NUM_WD = "${" + ASYNC_EXECUTOR_THREAD_NUM + ":16" + "}";
+	public static final String ASYNC_EXECUTOR_QUEUE_SIZE = "async.executor.queue.size";
+	public static final String $ASYNC_EXECUTOR_QUEUE_SIZE_WD = "${" + ASYNC_EXECUTOR_QUEUE_SIZE + ":1000" + "}";
+	public static final String ASYNC_EXECUTOR_BEAN = "arrowheadAsyncExecutor"; // name of an optional custom executor bean
 
 	public static final String TOMCAT_WS_SSL_CONTEXT = "org.apache.tomcat.websocket.SSL_CONTEXT";
 	public static final String WS_MANAGER_ID_PREFIX = "ws.manager.";
@@ -0,0 +1,146 @@
+/********************************************************************************
+ * Copyright (c) 2020 AITIA
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *   AITIA - implementation
+ ********************************************************************************/
+
+package ai.aitia.arrowhead.application.library.util;
+
+import java.security.PublicKey;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.util.Assert;
+
+/**
+ * Keeps the public key of the Authorization Core System. The key is queried on first use and refreshed periodically in the background;
+ * when a refresh fails the previous key remains in use. The refresh thread is started when the key is queried first.
+ */
+public class AuthorizationPublicKeyCache {
+	
+	//=================================================================================================
+	// members
+	
+	private final Supplier<PublicKey> loader;
+	private final Consumer<PublicKey> changeListener;
+	private final long refreshInterval;
+	private ScheduledExecutorService scheduler; // guarded by this
+	private boolean shutdown = false; // guarded by this
+	
+	private volatile PublicKey publicKey;
+	
+	private final Logger logger = LogManager.getLogger(AuthorizationPublicKeyCache.class);
+	
+	//=================================================================================================
+	// methods
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @param loader queries the key, returns null if the Authorization Core System is not known yet
+	 * @param changeListener (nullable) called when a refresh returns a different key
+	 * @param refreshInterval background refresh interval in milliseconds, 0 means no background refresh
+	 */
+	public AuthorizationPublicKeyCache(final Supplier<PublicKey> loader, final Consumer<PublicKey> changeListener, final long refreshInterval) {
+		Assert.notNull(loader, "loader is null");
+		Assert.isTrue(refreshInterval >= 0, "refreshInterval must not be negative");
+		
+		this.loader = loader;
+		this.changeListener = changeListener;
+		this.refreshInterval = refreshInterval;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @return the cached key, or the queried one if there is no key yet (null if it can't be queried)
+	 */
+	public PublicKey get() {
+		PublicKey result = publicKey;
+		if (result == null) {
+			synchronized (this) {
+				result = publicKey;
+				if (result == null) {
+					result = loader.get();
+					publicKey = result;
+					if (result != null) {
+						startRefresh();
+					}
+				}
+			}
+		}
+		
+		return result;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Queries the key again. Does nothing if no key has been queried yet (the next {@link #get()} will do it).
+	 */
+	public void refresh() {
+		if (publicKey == null) {
+			return;
+		}
+		
+		try {
+			final PublicKey newKey = loader.get();
+			if (newKey == null) {
+				return;
+			}
+			
+			final PublicKey oldKey;
+			synchronized (this) {
+				oldKey = publicKey;
+				publicKey = newKey;
+			}
+			
+			if (changeListener != null && !newKey.equals(oldKey)) {
+				logger.info("Authorization public key has changed.");
+				changeListener.accept(newKey);
+			}
+		} catch (final Exception ex) {
+			logger.warn("Authorization public key refresh failed, the previous key remains in use: {}", ex.getMessage());
+			logger.debug("Exception: ", ex);
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public void invalidate() {
+		publicKey = null;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public synchronized void shutdown() {
+		shutdown = true;
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+		}
+	}
+	
+	//=================================================================================================
+	// assistant methods
+	
+	//-------------------------------------------------------------------------------------------------
+	private void startRefresh() { // guarded by this
+		if (refreshInterval <= 0 || scheduler != null || shutdown) {
+			return;
+		}
+		
+		scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+			final Thread thread = new Thread(r, "authorization-public-key-refresh");
+			thread.setDaemon(true);
+			return thread;
+		});
+		scheduler.scheduleWithFixedDelay(this::refresh, refreshInterval, refreshInterval, TimeUnit.MILLISECONDS);
+	}
+}
@@ -0,0 +1,189 @@
+/********************************************************************************
+ * Copyright (c) 2020 AITIA
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *   AITIA - implementation
+ ********************************************************************************/
+
+package ai.aitia.arrowhead.application.library.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Circuit breaker of one service endpoint.
+ * 
+ * The breaker opens after the configured number of consecutive failures. Calls slower than the adaptive timeout count as failures too.
+ * After the open duration one trial call is let through (half-open state): its success closes the breaker, its failure opens it again.
+ * 
+ * The adaptive timeout is the configured percentile of the recent latencies multiplied by the configured multiplier and clamped between
+ * the minimum and maximum timeout. Until enough samples are collected the maximum timeout is used. As calculating a percentile sorts
+ * the samples, the timeout is recalculated only after every 32 new samples.
+ */
+public class CircuitBreaker {
+	
+	//=================================================================================================
+	// members
+	
+	public enum State { CLOSED, OPEN, HALF_OPEN }
+	
+	private static final int SAMPLE_CAPACITY = 256;
+	private static final int MIN_SAMPLES = 20;
+	private static final int TIMEOUT_RECALCULATION_INTERVAL = 32;
+	
+	private final String endpoint;
+	private final CircuitBreakerSettings settings;
+	private final LatencySampler latencySampler = new LatencySampler(SAMPLE_CAPACITY);
+	private volatile long timeout;
+	private volatile long timeoutSampleCount = 0; // the number of samples when the timeout was calculated
+	
+	private State state = State.CLOSED;
+	private int consecutiveFailures = 0;
+	private long openedAt = 0;
+	private boolean trialInFlight = false;
+	private long rejectedCount = 0;
+	private long openCount = 0;
+	
+	private final Logger logger = LogManager.getLogger(CircuitBreaker.class);
+	
+	//=================================================================================================
+	// methods
+	
+	//-------------------------------------------------------------------------------------------------
+	public CircuitBreaker(final String endpoint, final CircuitBreakerSettings settings) {
+		this.endpoint = endpoint;
+		this.settings = settings;
+		this.timeout = settings.getMaxTimeout();
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @throws CircuitBreakerOpenException when the breaker is open or a half-open trial is already in progress
+	 */
+	public synchronized void acquirePermission() {
+		if (state == State.OPEN && System.currentTimeMillis() - openedAt >= settings.getOpenDuration()) {
+			transition(State.HALF_OPEN);
+		}
+		
+		if (state == State.CLOSED) {
+			return;
+		}
+		
+		if (state == State.HALF_OPEN && !trialInFlight) {
+			trialInFlight = true;
+			return;
+		}
+		
+		++rejectedCount;
+		throw new CircuitBreakerOpenException(endpoint);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Gives back the permission of a call that was not made (so it is neither a success nor a failure).
+	 */
+	public synchronized void releasePermission() {
+		if (state == State.HALF_OPEN) {
+			trialInFlight = false;
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public void onSuccess(final long latencyNanos) {
+		latencySampler.record(latencyNanos);
+		if (latencyNanos > TimeUnit.MILLISECONDS.toNanos(getTimeout())) {
+			onFailure();
+			return;
+		}
+		
+		synchronized (this) {
+			consecutiveFailures = 0;
+			if (state == State.HALF_OPEN) {
+				trialInFlight = false;
+				transition(State.CLOSED);
+			}
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public void onFailure(final long latencyNanos) {
+		latencySampler.record(latencyNanos);
+		onFailure();
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @return the current adaptive timeout in milliseconds
+	 */
+	public long getTimeout() {
+		final long count = latencySampler.getCount();
+		if (count < MIN_SAMPLES) {
+			return settings.getMaxTimeout();
+		}
+		
+		if (timeoutSampleCount == 0 || count - timeoutSampleCount >= TIMEOUT_RECALCULATION_INTERVAL) {
+			// concurrent callers may recalculate it at the same time, which is harmless
+			final long adaptive = (long) Math.ceil(latencySampler.getPercentileMillis(settings.getTimeoutPercentile()) * settings.getTimeoutMultiplier());
+			timeout = Math.max(settings.getMinTimeout(), Math.min(settings.getMaxTimeout(), adaptive));
+			timeoutSampleCount = count;
+		}
+		
+		return timeout;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public synchronized State getState() {
+		if (state == State.OPEN && System.currentTimeMillis() - openedAt >= settings.getOpenDuration()) {
+			return State.HALF_OPEN;
+		}
+		
+		return state;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public String getEndpoint() { return endpoint; }
+	public LatencySampler getLatencySampler() { return latencySampler; }
+	public synchronized int getConsecutiveFailures() { return consecutiveFailures; }
+	public synchronized long getRejectedCount() { return rejectedCount; }
+	public synchronized long getOpenCount() { return openCount; }
+	
+	//-------------------------------------------------------------------------------------------------
+	@Override
+	public String toString() {
+		return "CircuitBreaker [endpoint=" + endpoint + ", state=" + getState() + ", timeout=" + getTimeout() + "]";
+	}
+	
+	//=================================================================================================
+	// assistant methods
+	
+	//-------------------------------------------------------------------------------------------------
+	private synchronized void onFailure() {
+		++consecutiveFailures;
+		if (state == State.HALF_OPEN) {
+			trialInFlight = false;
+			transition(State.OPEN);
+		} else if (state == State.CLOSED && consecutiveFailures >= settings.getFailureThreshold()) {
+			transition(State.OPEN);
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private void transition(final State newState) {
+		logger.info("Circuit breaker of {}: {} -> {}", endpoint, state, newState);
+		state = newState;
+		if (newState == State.OPEN) {
+			openedAt = System.currentTimeMillis();
+			++openCount;
+		} else if (newState == State.CLOSED) {
+			consecutiveFailures = 0;
+		}
+	}
+}
@@ -0,0 +1,41 @@
+/********************************************************************************
+ * Copyright (c) 2020 AITIA
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *   AITIA - implementation
+ ********************************************************************************/
+
+package ai.aitia.arrowhead.application.library.util;
+
+import eu.arrowhead.common.exception.UnavailableServerException;
+
+/**
+ * Thrown without sending any request when the circuit breaker of the target endpoint is open.
+ */
+public class CircuitBreakerOpenException extends UnavailableServerException {
+	
+	//=================================================================================================
+	// members
+	
+	private static final long serialVersionUID = 3861426183451203547L;
+	
+	private final String endpoint;
+	
+	//=================================================================================================
+	// methods
+	
+	//-------------------------------------------------------------------------------------------------
+	public CircuitBreakerOpenException(final String endpoint) {
+		super("Circuit breaker is open for " + endpoint);
+		this.endpoint = endpoint;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public String getEndpoint() { return endpoint; }
+}
@@ -0,0 +1,183 @@
+/********************************************************************************
+ * Copyright (c) 2020 AITIA
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *   AITIA - implementation
+ ********************************************************************************/
+
+package ai.aitia.arrowhead.application.library.util;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.springframework.web.util.UriComponents;
+
+import eu.arrowhead.common.exception.ArrowheadException;
+import eu.arrowhead.common.exception.UnavailableServerException;
+
+/**
+ * Holds one circuit breaker per service endpoint (address, port and service URI) and executes the calls through them.
+ * 
+ * Only {@link UnavailableServerException} and plain {@link ArrowheadException} (internal server error) count as failures, the other 
+ * Arrowhead exceptions (authorization, invalid parameter, etc.) are the caller's faults and don't affect the breaker.
+ * 
+ * When timeout enforcement is enabled, the calls run on a bounded thread pool and the caller gets an {@link UnavailableServerException}
+ * when the adaptive timeout elapses. Otherwise the calls run on the caller thread and slow calls are only counted as failures.
+ * 
+ * Interrupting the pool thread can't abort a blocking HTTP read, so a timed out call keeps its thread until the socket timeout of the HTTP 
+ * client elapses. When all the threads are busy, the call fails fast with an {@link UnavailableServerException} instead of running without 
+ * timeout; such a rejection doesn't count as a failure of the endpoint.
+ */
+public class CircuitBreakerRegistry {
+	
+	//=================================================================================================
+	// members
+	
+	private final CircuitBreakerSettings settings;
+	private final ConcurrentMap<String,CircuitBreaker> breakers = new ConcurrentHashMap<>();
+	private final ExecutorService timeoutExecutor;
+	
+	//=================================================================================================
+	// methods
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @param settings the settings of the created breakers
+	 * @param timeoutEnforcementThreads the number of threads used for timeout enforcement, 0 means no enforcement
+	 */
+	public CircuitBreakerRegistry(final CircuitBreakerSettings settings, final int timeoutEnforcementThreads) {
+		this.settings = settings;
+		if (timeoutEnforcementThreads > 0) {
+			final AtomicInteger counter = new AtomicInteger();
+			this.timeoutExecutor = new ThreadPoolExecutor(timeoutEnforcementThreads, timeoutEnforcementThreads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(timeoutEnforcementThreads), r -> {
+				final Thread thread = new Thread(r, "circuit-breaker-" + counter.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+		} else {
+			this.timeoutExecutor = null;
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public static String getEndpointKey(final UriComponents uri) {
+		return uri.getHost() + ":" + uri.getPort() + uri.getPath();
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public CircuitBreaker getCircuitBreaker(final String endpointKey) {
+		return breakers.computeIfAbsent(endpointKey, key -> new CircuitBreaker(key, settings));
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @throws CircuitBreakerOpenException when the breaker of the endpoint is open
+	 * @throws UnavailableServerException when timeout enforcement is enabled and the call doesn't finish within the adaptive timeout or all
+	 *         the enforcement threads are busy
+	 */
+	public <T> T execute(final String endpointKey, final Supplier<T> call) {
+		final CircuitBreaker breaker = getCircuitBreaker(endpointKey);
+		breaker.acquirePermission();
+		
+		Future<T> future = null;
+		if (timeoutExecutor != null) {
+			try {
+				future = timeoutExecutor.submit(call::get);
+			} catch (final RejectedExecutionException ex) {
+				// not the fault of the endpoint
+				breaker.releasePermission();
+				throw new UnavailableServerException("No free thread to call " + breaker.getEndpoint() + " with timeout.");
+			}
+		}
+		
+		final long start = System.nanoTime();
+		try {
+			final T result = future == null ? call.get() : waitFor(breaker, future);
+			breaker.onSuccess(System.nanoTime() - start);
+			return result;
+		} catch (final ArrowheadException ex) {
+			if (ex instanceof UnavailableServerException || ex.getClass() == ArrowheadException.class) {
+				breaker.onFailure(System.nanoTime() - start);
+			} else {
+				breaker.onSuccess(System.nanoTime() - start);
+			}
+			throw ex;
+		} catch (final RuntimeException | Error ex) {
+			breaker.onFailure(System.nanoTime() - start);
+			throw ex;
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public Collection<CircuitBreaker> getCircuitBreakers() {
+		return Collections.unmodifiableCollection(breakers.values());
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @return snapshot of the breaker states, ordered by endpoint
+	 */
+	public Map<String,CircuitBreaker.State> getStates() {
+		final Map<String,CircuitBreaker.State> result = new TreeMap<>();
+		for (final CircuitBreaker breaker : breakers.values()) {
+			result.put(breaker.getEndpoint(), breaker.getState());
+		}
+		
+		return result;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public void shutdown() {
+		if (timeoutExecutor != null) {
+			timeoutExecutor.shutdownNow();
+		}
+	}
+	
+	//=================================================================================================
+	// assistant methods
+	
+	//-------------------------------------------------------------------------------------------------
+	private <T> T waitFor(final CircuitBreaker breaker, final Future<T> future) {
+		final long timeout = breaker.getTimeout();
+		try {
+			return future.get(timeout, TimeUnit.MILLISECONDS);
+		} catch (final TimeoutException ex) {
+			future.cancel(true);
+			throw new UnavailableServerException("No response from " + breaker.getEndpoint() + " within " + timeout + " ms.");
+		} catch (final InterruptedException ex) {
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new ArrowheadException("Interrupted while waiting for " + breaker.getEndpoint(), ex);
+		} catch (final ExecutionException ex) {
+			final Throwable cause = ex.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			
+			throw new ArrowheadException(cause.getMessage(), cause);
+		}
+	}
+}
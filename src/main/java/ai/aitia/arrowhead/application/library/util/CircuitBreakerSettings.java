@@ -0,0 +1,65 @@
+/********************************************************************************
+ * Copyright (c) 2020 AITIA
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *   AITIA - implementation
+ ********************************************************************************/
+
+package ai.aitia.arrowhead.application.library.util;
+
+import org.springframework.util.Assert;
+
+public class CircuitBreakerSettings {
+	
+	//=================================================================================================
+	// members
+	
+	private final int failureThreshold;
+	private final long openDuration;
+	private final long minTimeout;
+	private final long maxTimeout;
+	private final double timeoutPercentile;
+	private final double timeoutMultiplier;
+	
+	//=================================================================================================
+	// methods
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @param failureThreshold number of consecutive failures which opens the breaker
+	 * @param openDuration time in milliseconds while an open breaker rejects every call
+	 * @param minTimeout lower bound of the adaptive timeout in milliseconds
+	 * @param maxTimeout upper bound of the adaptive timeout in milliseconds
+	 * @param timeoutPercentile the latency percentile the adaptive timeout is based on
+	 * @param timeoutMultiplier the multiplier applied to the latency percentile
+	 */
+	public CircuitBreakerSettings(final int failureThreshold, final long openDuration, final long minTimeout, final long maxTimeout, final double timeoutPercentile,
+								  final double timeoutMultiplier) {
+		Assert.isTrue(failureThreshold > 0, "failureThreshold must be positive");
+		Assert.isTrue(openDuration >= 0, "openDuration must not be negative");
+		Assert.isTrue(minTimeout > 0 && minTimeout <= maxTimeout, "minTimeout must be positive and not greater than maxTimeout");
+		Assert.isTrue(timeoutPercentile > 0 && timeoutPercentile <= 100, "timeoutPercentile must be between 0 and 100");
+		Assert.isTrue(timeoutMultiplier >= 1, "timeoutMultiplier must be at least 1");
+		
+		this.failureThreshold = failureThreshold;
+		this.openDuration = openDuration;
+		this.minTimeout = minTimeout;
+		this.maxTimeout = maxTimeout;
+		this.timeoutPercentile = timeoutPercentile;
+		this.timeoutMultiplier = timeoutMultiplier;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public int getFailureThreshold() { return failureThreshold; }
+	public long getOpenDuration() { return openDuration; }
+	public long getMinTimeout() { return minTimeout; }
+	public long getMaxTimeout() { return maxTimeout; }
+	public double getTimeoutPercentile() { return timeoutPercentile; }
+	public double getTimeoutMultiplier() { return timeoutMultiplier; }
+}
@@ -0,0 +1,85 @@
+/********************************************************************************
+ * Copyright (c) 2020 AITIA
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *   AITIA - implementation
+ ********************************************************************************/
+
+package ai.aitia.arrowhead.application.library.util;
+
+import org.springframework.util.Assert;
+
+import eu.arrowhead.common.core.CoreSystemService;
+
+public class CoreServiceDiscoveryResult {
+	
+	//=================================================================================================
+	// members
+	
+	public enum Status { RESOLVED, NOT_REGISTERED, FAILED, TIMED_OUT }
+	
+	private final CoreSystemService coreSystemService;
+	private final Status status;
+	private final CoreServiceUri coreServiceUri;
+	private final String errorMessage;
+	
+	//=================================================================================================
+	// methods
+	
+	//-------------------------------------------------------------------------------------------------
+	public static CoreServiceDiscoveryResult resolved(final CoreSystemService coreSystemService, final CoreServiceUri coreServiceUri) {
+		Assert.notNull(coreServiceUri, "coreServiceUri is null");
+		return new CoreServiceDiscoveryResult(coreSystemService, Status.RESOLVED, coreServiceUri, null);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public static CoreServiceDiscoveryResult notRegistered(final CoreSystemService coreSystemService) {
+		return new CoreServiceDiscoveryResult(coreSystemService, Status.NOT_REGISTERED, null, "not registered by Service Registry");
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public static CoreServiceDiscoveryResult failed(final CoreSystemService coreSystemService, final String errorMessage) {
+		return new CoreServiceDiscoveryResult(coreSystemService, Status.FAILED, null, errorMessage);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public static CoreServiceDiscoveryResult timedOut(final CoreSystemService coreSystemService) {
+		return new CoreServiceDiscoveryResult(coreSystemService, Status.TIMED_OUT, null, "discovery deadline exceeded");
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public CoreSystemService getCoreSystemService() { return coreSystemService; }
+	public Status getStatus() { return status; }
+	public CoreServiceUri getCoreServiceUri() { return coreServiceUri; }
+	public String getErrorMessage() { return errorMessage; }
+	
+	//-------------------------------------------------------------------------------------------------
+	public boolean isResolved() {
+		return status == Status.RESOLVED;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@Override
+	public String toString() {
+		return "CoreServiceDiscoveryResult [coreSystemService=" + coreSystemService + ", status=" + status + ", errorMessage=" + errorMessage + "]";
+	}
+	
+	//=================================================================================================
+	// assistant methods
+	
+	//-------------------------------------------------------------------------------------------------
+	private CoreServiceDiscoveryResult(final CoreSystemService coreSystemService, final Status status, final CoreServiceUri coreServiceUri, final String errorMessage) {
+		Assert.notNull(coreSystemService, "coreSystemService is null");
+		
+		this.coreSystemService = coreSystemService;
+		this.status = status;
+		this.coreServiceUri = coreServiceUri;
+		this.errorMessage = errorMessage;
+	}
+}
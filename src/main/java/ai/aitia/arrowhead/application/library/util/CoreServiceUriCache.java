@@ -0,0 +1,365 @@
+/********************************************************************************
+ * Copyright (c) 2020 AITIA
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *   AITIA - implementation
+ ********************************************************************************/
+
+package ai.aitia.arrowhead.application.library.util;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.util.Assert;
+import org.springframework.web.util.UriComponents;
+
+import eu.arrowhead.common.Utilities;
+import eu.arrowhead.common.core.CoreSystemService;
+
+/**
+ * Holds the resolved core service URIs. When a positive TTL is configured, every entry is refreshed in the background 
+ * before it expires and an expired entry is still served until the refresh succeeds (stale-while-revalidate), so readers 
+ * never have to wait for a Service Registry query once a service has been resolved.
+ * 
+ * The entries are kept in an immutable EnumMap snapshot which is replaced atomically on every modification, so lookups 
+ * are lock-free and allocation-free. Every entry contains the pre-built UriComponents of the core service endpoint as well.
+ * 
+ * Service Registry queries are deduplicated (single-flight): concurrent callers of the same core service (including the background 
+ * refresh) share one query.
+ * Unsuccessful lookups made by {@link #resolve(CoreSystemService)} are remembered for a short time (negative caching), so 
+ * an unavailable or unregistered core service doesn't cause a query on every call.
+ */
+public class CoreServiceUriCache {
+	
+	//=================================================================================================
+	// members
+	
+	private final AtomicReference<Map<CoreSystemService,Entry>> entries = new AtomicReference<>(Collections.emptyMap());
+	private final Set<CoreSystemService> refreshing = ConcurrentHashMap.newKeySet();
+	private final ConcurrentMap<CoreSystemService,CompletableFuture<CoreServiceDiscoveryResult>> inflight = new ConcurrentHashMap<>();
+	private final ConcurrentMap<CoreSystemService,NegativeEntry> negativeEntries = new ConcurrentHashMap<>();
+	private final Function<CoreSystemService,CoreServiceDiscoveryResult> loader;
+	private final BiConsumer<CoreSystemService,CoreServiceUri> updateListener;
+	private final String scheme;
+	private final long ttl;
+	private final long refreshDelay;
+	private final long retryDelay;
+	private final long negativeTtl;
+	private final ScheduledExecutorService scheduler;
+	
+	private final Logger logger = LogManager.getLogger(CoreServiceUriCache.class);
+	
+	//=================================================================================================
+	// methods
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @param loader queries the Service Registry for the given core service
+	 * @param updateListener (nullable) notified with the new URI or with null when a core service is removed
+	 * @param scheme the URI scheme used for building the endpoint UriComponents
+	 * @param ttl time-to-live of an entry in milliseconds, zero or negative value means entries never expire
+	 * @param refreshAhead how many milliseconds before expiration the background refresh should start
+	 * @param negativeTtl how many milliseconds an unsuccessful lookup is remembered by {@link #resolve(CoreSystemService)}, zero or negative value means no negative caching
+	 */
+	public CoreServiceUriCache(final Function<CoreSystemService,CoreServiceDiscoveryResult> loader, final BiConsumer<CoreSystemService,CoreServiceUri> updateListener, final String scheme,
+							   final long ttl, final long refreshAhead, final long negativeTtl) {
+		Assert.notNull(loader, "loader is null");
+		Assert.isTrue(!Utilities.isEmpty(scheme), "scheme is null or blank");
+		
+		this.loader = loader;
+		this.updateListener = updateListener;
+		this.scheme = scheme;
+		this.ttl = ttl;
+		this.refreshDelay = ttl > refreshAhead && refreshAhead > 0 ? ttl - refreshAhead : ttl / 2;
+		this.retryDelay = Math.max(1, ttl - refreshDelay);
+		this.negativeTtl = negativeTtl;
+		this.scheduler = ttl > 0 ? Executors.newSingleThreadScheduledExecutor(runnable -> {
+			final Thread thread = new Thread(runnable, "core-service-uri-refresh");
+			thread.setDaemon(true);
+			return thread;
+		}) : null;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Returns the cached URI without blocking. An expired entry is returned as well, but it also triggers a background refresh.
+	 * 
+	 * @param coreSystemService the requested core service
+	 * @return the cached URI or null if the core service has not been resolved yet
+	 */
+	public CoreServiceUri get(final CoreSystemService coreSystemService) {
+		final Entry entry = getEntry(coreSystemService);
+		return entry == null ? null : entry.uri;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Same as {@link #get(CoreSystemService)}, but returns the pre-built endpoint of the core service.
+	 * 
+	 * @param coreSystemService the requested core service
+	 * @return the endpoint of the core service or null if the core service has not been resolved yet
+	 */
+	public UriComponents getUriComponents(final CoreSystemService coreSystemService) {
+		final Entry entry = getEntry(coreSystemService);
+		return entry == null ? null : entry.uriComponents;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Returns the cached URI or resolves it on demand. Concurrent callers share one Service Registry query and an unsuccessful 
+	 * lookup is repeated only after the negative caching time.
+	 * 
+	 * @param coreSystemService the requested core service
+	 * @return the outcome of the lookup
+	 */
+	public CoreServiceDiscoveryResult resolve(final CoreSystemService coreSystemService) {
+		final CoreServiceUri uri = get(coreSystemService);
+		if (uri != null) {
+			return CoreServiceDiscoveryResult.resolved(coreSystemService, uri);
+		}
+		
+		final NegativeEntry negativeEntry = negativeEntries.get(coreSystemService);
+		if (negativeEntry != null) {
+			if (System.currentTimeMillis() < negativeEntry.expiresAt) {
+				return negativeEntry.result;
+			}
+			negativeEntries.remove(coreSystemService, negativeEntry);
+		}
+		
+		final CoreServiceDiscoveryResult result = load(coreSystemService);
+		if (!result.isResolved() && negativeTtl > 0) {
+			negativeEntries.put(coreSystemService, new NegativeEntry(result, System.currentTimeMillis() + negativeTtl));
+		}
+		
+		return result;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Queries the Service Registry for the given core service and stores the result. If a query of the same core service is already
+	 * in progress, its result is waited for instead of starting a new one.
+	 * 
+	 * @param coreSystemService the requested core service
+	 * @return the outcome of the query
+	 */
+	public CoreServiceDiscoveryResult load(final CoreSystemService coreSystemService) {
+		final CompletableFuture<CoreServiceDiscoveryResult> future = new CompletableFuture<>();
+		final CompletableFuture<CoreServiceDiscoveryResult> existing = inflight.putIfAbsent(coreSystemService, future);
+		if (existing != null) {
+			try {
+				return existing.join();
+			} catch (final CompletionException ex) {
+				// the waiters get the same exception as the thread that ran the query
+				if (ex.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) ex.getCause();
+				}
+				if (ex.getCause() instanceof Error) {
+					throw (Error) ex.getCause();
+				}
+				throw ex;
+			}
+		}
+		
+		try {
+			final CoreServiceDiscoveryResult result = loader.apply(coreSystemService);
+			apply(result);
+			future.complete(result);
+			
+			return result;
+		} catch (final RuntimeException | Error ex) {
+			future.completeExceptionally(ex);
+			throw ex;
+		} finally {
+			inflight.remove(coreSystemService, future);
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public void put(final CoreSystemService coreSystemService, final CoreServiceUri uri) {
+		Assert.notNull(coreSystemService, "coreSystemService is null");
+		Assert.notNull(uri, "uri is null");
+		
+		negativeEntries.remove(coreSystemService);
+		final Entry entry = new Entry(uri, Utilities.createURI(scheme, uri.getAddress(), uri.getPort(), uri.getPath()), ttl > 0 ? System.currentTimeMillis() + ttl : Long.MAX_VALUE);
+		if (scheduler != null) {
+			entry.refreshTask = schedule(coreSystemService, refreshDelay);
+		}
+		
+		cancelRefresh(swap(coreSystemService, entry));
+		if (updateListener != null) {
+			updateListener.accept(coreSystemService, uri);
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public void remove(final CoreSystemService coreSystemService) {
+		cancelRefresh(swap(coreSystemService, null));
+		if (updateListener != null) {
+			updateListener.accept(coreSystemService, null);
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public void shutdown() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+		}
+	}
+	
+	//=================================================================================================
+	// assistant methods
+	
+	//-------------------------------------------------------------------------------------------------
+	private void apply(final CoreServiceDiscoveryResult result) {
+		switch (result.getStatus()) {
+		case RESOLVED:
+			put(result.getCoreSystemService(), result.getCoreServiceUri());
+			break;
+		case NOT_REGISTERED:
+			remove(result.getCoreSystemService());
+			break;
+		default:
+			// keep the stale entry (if any) and try again later
+			final Entry entry = entries.get().get(result.getCoreSystemService());
+			if (entry != null && scheduler != null) {
+				cancelRefresh(entry);
+				entry.refreshTask = schedule(result.getCoreSystemService(), retryDelay);
+			}
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private Entry getEntry(final CoreSystemService coreSystemService) {
+		final Entry entry = entries.get().get(coreSystemService);
+		if (entry != null && ttl > 0 && System.currentTimeMillis() >= entry.expiresAt) {
+			triggerRefresh(coreSystemService);
+		}
+		
+		return entry;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private Entry swap(final CoreSystemService coreSystemService, final Entry entry) {
+		Map<CoreSystemService,Entry> current;
+		Map<CoreSystemService,Entry> next;
+		do {
+			current = entries.get();
+			final EnumMap<CoreSystemService,Entry> copy = new EnumMap<>(CoreSystemService.class);
+			copy.putAll(current);
+			if (entry == null) {
+				copy.remove(coreSystemService);
+			} else {
+				copy.put(coreSystemService, entry);
+			}
+			next = Collections.unmodifiableMap(copy);
+		} while (!entries.compareAndSet(current, next));
+		
+		return current.get(coreSystemService);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private void triggerRefresh(final CoreSystemService coreSystemService) {
+		if (refreshing.add(coreSystemService)) {
+			try {
+				scheduler.execute(() -> refresh(coreSystemService));
+			} catch (final RuntimeException ex) {
+				refreshing.remove(coreSystemService);
+				logger.debug("Refreshing '{}' core service couldn't be scheduled: {}", coreSystemService, ex.getMessage());
+			}
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private void refresh(final CoreSystemService coreSystemService) {
+		try {
+			logger.debug("Refreshing '{}' core service URI...", coreSystemService);
+			load(coreSystemService); // shares the query with the concurrent on-demand lookups
+		} catch (final RuntimeException ex) {
+			logger.debug("Refreshing '{}' core service URI failed: {}", coreSystemService, ex.getMessage());
+		} finally {
+			refreshing.remove(coreSystemService);
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private ScheduledFuture<?> schedule(final CoreSystemService coreSystemService, final long delay) {
+		try {
+			return scheduler.schedule(() -> triggerRefresh(coreSystemService), delay, TimeUnit.MILLISECONDS);
+		} catch (final RuntimeException ex) {
+			logger.debug("Refreshing '{}' core service couldn't be scheduled: {}", coreSystemService, ex.getMessage());
+			return null;
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private void cancelRefresh(final Entry entry) {
+		if (entry != null && entry.refreshTask != null) {
+			entry.refreshTask.cancel(false);
+		}
+	}
+	
+	//=================================================================================================
+	// nested classes
+	
+	//-------------------------------------------------------------------------------------------------
+	private static class Entry {
+		
+		//=================================================================================================
+		// members
+		
+		private final CoreServiceUri uri;
+		private final UriComponents uriComponents;
+		private final long expiresAt;
+		private volatile ScheduledFuture<?> refreshTask;
+		
+		//=================================================================================================
+		// methods
+		
+		//-------------------------------------------------------------------------------------------------
+		public Entry(final CoreServiceUri uri, final UriComponents uriComponents, final long expiresAt) {
+			this.uri = uri;
+			this.uriComponents = uriComponents;
+			this.expiresAt = expiresAt;
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private static class NegativeEntry {
+		
+		//=================================================================================================
+		// members
+		
+		private final CoreServiceDiscoveryResult result;
+		private final long expiresAt;
+		
+		//=================================================================================================
+		// methods
+		
+		//-------------------------------------------------------------------------------------------------
+		public NegativeEntry(final CoreServiceDiscoveryResult result, final long expiresAt) {
+			this.result = result;
+			this.expiresAt = expiresAt;
+		}
+	}
+}
@@ -0,0 +1,88 @@
+/********************************************************************************
+ * Copyright (c) 2020 AITIA
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *   AITIA - implementation
+ ********************************************************************************/
+
+package ai.aitia.arrowhead.application.library.util;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.util.Assert;
+
+/**
+ * Bounded pool of equally sized direct buffers. Allocating direct memory is expensive and its release depends on the garbage collector, so
+ * the buffers of the high-rate outbound paths are reused instead.
+ */
+public class DirectBufferPool {
+	
+	//=================================================================================================
+	// members
+	
+	private final int bufferSize;
+	private final BlockingQueue<ByteBuffer> pool;
+	
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong allocationCount = new AtomicLong();
+	
+	//=================================================================================================
+	// methods
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @param bufferSize the capacity of every buffer in bytes
+	 * @param maxPooled the maximum number of idle buffers kept
+	 */
+	public DirectBufferPool(final int bufferSize, final int maxPooled) {
+		Assert.isTrue(bufferSize > 0, "bufferSize must be positive");
+		Assert.isTrue(maxPooled > 0, "maxPooled must be positive");
+		
+		this.bufferSize = bufferSize;
+		this.pool = new ArrayBlockingQueue<>(maxPooled);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @return a cleared buffer (a pooled one if any, otherwise a newly allocated one)
+	 */
+	public ByteBuffer acquire() {
+		final ByteBuffer buffer = pool.poll();
+		if (buffer != null) {
+			hitCount.incrementAndGet();
+			return buffer;
+		}
+		
+		allocationCount.incrementAndGet();
+		return ByteBuffer.allocateDirect(bufferSize);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Gives back a buffer obtained from {@link #acquire()}. The buffer must not be used by the caller afterwards. Foreign buffers and the ones
+	 * exceeding the pool size are left to the garbage collector.
+	 */
+	public void release(final ByteBuffer buffer) {
+		if (buffer == null || !buffer.isDirect() || buffer.capacity() != bufferSize) {
+			return;
+		}
+		
+		buffer.clear();
+		pool.offer(buffer);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public int getBufferSize() { return bufferSize; }
+	public int getPooledCount() { return pool.size(); }
+	public long getHitCount() { return hitCount.get(); }
+	public long getAllocationCount() { return allocationCount.get(); }
+}
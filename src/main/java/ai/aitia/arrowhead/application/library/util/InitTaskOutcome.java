@@ -0,0 +1,65 @@
+/********************************************************************************
+ * Copyright (c) 2020 AITIA
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *   AITIA - implementation
+ ********************************************************************************/
+
+package ai.aitia.arrowhead.application.library.util;
+
+/**
+ * The result of an initialization task run by {@link InitTaskRunner}: whether it succeeded, how long it ran and why it failed.
+ */
+public class InitTaskOutcome {
+	
+	//=================================================================================================
+	// members
+	
+	public enum Status { SUCCEEDED, FAILED }
+	
+	private final String name;
+	private final boolean required;
+	private final Status status;
+	private final long duration;
+	private final Throwable error;
+	
+	//=================================================================================================
+	// methods
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @param duration the running time of the task in milliseconds
+	 */
+	public InitTaskOutcome(final String name, final boolean required, final Status status, final long duration, final Throwable error) {
+		this.name = name;
+		this.required = required;
+		this.status = status;
+		this.duration = duration;
+		this.error = error;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public String getName() { return name; }
+	public boolean isRequired() { return required; }
+	public Status getStatus() { return status; }
+	public long getDuration() { return duration; }
+	public Throwable getError() { return error; }
+	
+	//-------------------------------------------------------------------------------------------------
+	public boolean isSucceeded() {
+		return status == Status.SUCCEEDED;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@Override
+	public String toString() {
+		return "InitTaskOutcome [name=" + name + ", required=" + required + ", status=" + status + ", duration=" + duration + " ms" + 
+			   (error != null ? ", error=" + error.getMessage() : "") + "]";
+	}
+}
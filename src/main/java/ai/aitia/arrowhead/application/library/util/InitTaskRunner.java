@@ -0,0 +1,194 @@
+/********************************************************************************
+ * Copyright (c) 2020 AITIA
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *   AITIA - implementation
+ ********************************************************************************/
+
+package ai.aitia.arrowhead.application.library.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.util.Assert;
+
+import eu.arrowhead.common.exception.ArrowheadException;
+
+/**
+ * Runs the initialization tasks of an application system.
+ * 
+ * In sequential mode (no threads) every task runs on the caller thread when it is added. In concurrent mode the tasks run on a
+ * thread pool, {@link #awaitRequired(long)} blocks until the required tasks are finished and the optional ones go on in the background.
+ * The outcome of every task is logged and collected.
+ */
+public class InitTaskRunner {
+	
+	//=================================================================================================
+	// members
+	
+	private final ExecutorService executor;
+	private final List<CompletableFuture<InitTaskOutcome>> requiredTasks = new ArrayList<>();
+	private final List<CompletableFuture<InitTaskOutcome>> allTasks = new ArrayList<>();
+	private final List<InitTaskOutcome> outcomes = Collections.synchronizedList(new ArrayList<>());
+	
+	private final Logger logger = LogManager.getLogger(InitTaskRunner.class);
+	
+	//=================================================================================================
+	// methods
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @param threads the number of threads running the tasks, 0 means sequential mode
+	 */
+	public InitTaskRunner(final int threads) {
+		Assert.isTrue(threads >= 0, "threads must not be negative");
+		if (threads > 0) {
+			final AtomicInteger counter = new AtomicInteger();
+			this.executor = Executors.newFixedThreadPool(threads, r -> {
+				final Thread thread = new Thread(r, "app-init-" + counter.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+		} else {
+			this.executor = null;
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public boolean isConcurrent() {
+		return executor != null;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @param name the name of the task (used in the logs and the outcomes)
+	 * @param required whether the application can't work without the task
+	 * @param task the task
+	 * @return the future outcome of the task, which never completes exceptionally
+	 * @throws ArrowheadException in sequential mode when a required task fails
+	 */
+	public synchronized CompletableFuture<InitTaskOutcome> submit(final String name, final boolean required, final Runnable task) {
+		Assert.notNull(task, "task is null");
+		
+		final CompletableFuture<InitTaskOutcome> future;
+		if (executor == null || executor.isShutdown()) {
+			future = CompletableFuture.completedFuture(run(name, required, task));
+			if (required && !future.join().isSucceeded()) {
+				final Throwable error = future.join().getError();
+				throw new ArrowheadException("Required initialization task '" + name + "' failed: " + error.getMessage(), error);
+			}
+		} else {
+			future = CompletableFuture.supplyAsync(() -> run(name, required, task), executor);
+		}
+		
+		allTasks.add(future);
+		if (required) {
+			requiredTasks.add(future);
+		}
+		
+		return future;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Waits for the required tasks.
+	 * 
+	 * @param timeout the maximum waiting time in milliseconds
+	 * @throws ArrowheadException when a required task fails or the required tasks don't finish in time
+	 */
+	public void awaitRequired(final long timeout) {
+		final List<CompletableFuture<InitTaskOutcome>> tasks;
+		synchronized (this) {
+			tasks = new ArrayList<>(requiredTasks);
+		}
+		
+		final long deadline = System.currentTimeMillis() + timeout;
+		for (final CompletableFuture<InitTaskOutcome> future : tasks) {
+			final InitTaskOutcome outcome;
+			try {
+				outcome = future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+			} catch (final TimeoutException ex) {
+				throw new ArrowheadException("Required initialization tasks are not finished within " + timeout + " ms.");
+			} catch (final InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new ArrowheadException("Interrupted while waiting for the required initialization tasks.");
+			} catch (final ExecutionException ex) {
+				throw new ArrowheadException(ex.getMessage(), ex.getCause()); // never happens, run() doesn't throw
+			}
+			
+			if (!outcome.isSucceeded()) {
+				throw new ArrowheadException("Required initialization task '" + outcome.getName() + "' failed: " + outcome.getError().getMessage(), outcome.getError());
+			}
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * No more tasks are run concurrently after this call (the already submitted ones are finished) and the given callback is called 
+	 * with all the outcomes when every task is done.
+	 */
+	public void shutdown(final Consumer<List<InitTaskOutcome>> onCompleted) {
+		final CompletableFuture<?>[] tasks;
+		synchronized (this) {
+			tasks = allTasks.toArray(new CompletableFuture<?>[allTasks.size()]);
+			if (executor != null) {
+				executor.shutdown();
+			}
+		}
+		
+		CompletableFuture.allOf(tasks).thenRun(() -> {
+			if (onCompleted != null) {
+				onCompleted.accept(getOutcomes());
+			}
+		});
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @return the outcomes of the finished tasks in the order of their completion
+	 */
+	public List<InitTaskOutcome> getOutcomes() {
+		synchronized (outcomes) {
+			return new ArrayList<>(outcomes);
+		}
+	}
+	
+	//=================================================================================================
+	// assistant methods
+	
+	//-------------------------------------------------------------------------------------------------
+	private InitTaskOutcome run(final String name, final boolean required, final Runnable task) {
+		final long start = System.currentTimeMillis();
+		InitTaskOutcome outcome;
+		try {
+			task.run();
+			outcome = new InitTaskOutcome(name, required, InitTaskOutcome.Status.SUCCEEDED, System.currentTimeMillis() - start, null);
+			logger.debug("Initialization task '{}' finished in {} ms.", name, outcome.getDuration());
+		} catch (final Throwable ex) {
+			outcome = new InitTaskOutcome(name, required, InitTaskOutcome.Status.FAILED, System.currentTimeMillis() - start, ex);
+			logger.log(required ? Level.ERROR : Level.WARN, "Initialization task '{}' failed: {}", name, ex.getMessage());
+			logger.debug("Exception: ", ex);
+		}
+		
+		outcomes.add(outcome);
+		return outcome;
+	}
+}
@@ -0,0 +1,241 @@
+/********************************************************************************
+ * Copyright (c) 2020 AITIA
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *   AITIA - implementation
+ ********************************************************************************/
+
+package ai.aitia.arrowhead.application.library.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.core.io.Resource;
+import org.springframework.util.Assert;
+
+import eu.arrowhead.common.SSLProperties;
+
+/**
+ * Polls the keystore and truststore files and reloads the TLS material through {@link TlsMaterialProvider} when their content changes.
+ * 
+ * A change is only applied when the files are unchanged for a whole polling interval (so half-written files are not loaded) and their 
+ * content really differs from the applied one (touching a file doesn't trigger a reload). A failed reload leaves the current material 
+ * in use and is not retried until the files change again.
+ * 
+ * Stores that are not plain files (e.g. packaged into the application jar) can't be watched.
+ */
+public class KeyStoreWatcher {
+	
+	//=================================================================================================
+	// members
+	
+	private static final String DIGEST_ALGORITHM = "SHA-256";
+	
+	private final TlsMaterialProvider tlsMaterialProvider;
+	private final SSLProperties sslProperties;
+	private final long interval;
+	
+	private ScheduledExecutorService scheduler;
+	private List<File> files;
+	private List<FileState> lastSeen;
+	private List<FileState> applied;
+	private byte[] appliedDigest;
+	
+	private final AtomicLong reloadCount = new AtomicLong();
+	private final AtomicLong failedReloadCount = new AtomicLong();
+	private volatile long lastReloadAt = 0;
+	
+	private final Logger logger = LogManager.getLogger(KeyStoreWatcher.class);
+	
+	//=================================================================================================
+	// methods
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @param interval polling interval in milliseconds
+	 */
+	public KeyStoreWatcher(final TlsMaterialProvider tlsMaterialProvider, final SSLProperties sslProperties, final long interval) {
+		Assert.notNull(tlsMaterialProvider, "tlsMaterialProvider is null");
+		Assert.notNull(sslProperties, "sslProperties is null");
+		Assert.isTrue(interval > 0, "interval must be positive");
+		
+		this.tlsMaterialProvider = tlsMaterialProvider;
+		this.sslProperties = sslProperties;
+		this.interval = interval;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @return true if watching is started, false if the stores are not plain files
+	 */
+	public synchronized boolean start() {
+		if (scheduler != null) {
+			return true;
+		}
+		
+		try {
+			files = Arrays.asList(getFile(sslProperties.getKeyStore()), getFile(sslProperties.getTrustStore()));
+			applied = getStates();
+			appliedDigest = digest();
+			lastSeen = applied;
+		} catch (final IOException | NoSuchAlgorithmException ex) {
+			logger.warn("Keystore watching is disabled: {}", ex.getMessage());
+			return false;
+		}
+		
+		scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+			final Thread thread = new Thread(r, "keystore-watcher");
+			thread.setDaemon(true);
+			return thread;
+		});
+		scheduler.scheduleWithFixedDelay(this::poll, interval, interval, TimeUnit.MILLISECONDS);
+		logger.info("Watching {} for changes in every {} ms.", files, interval);
+		
+		return true;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public synchronized void stop() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+			scheduler = null;
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public long getReloadCount() { return reloadCount.get(); }
+	public long getFailedReloadCount() { return failedReloadCount.get(); }
+	public long getLastReloadAt() { return lastReloadAt; }
+	
+	//=================================================================================================
+	// assistant methods
+	
+	//-------------------------------------------------------------------------------------------------
+	private synchronized void poll() {
+		try {
+			final List<FileState> current = getStates();
+			if (!current.equals(lastSeen)) {
+				// still changing, wait until it settles down
+				lastSeen = current;
+				return;
+			}
+			
+			if (current.equals(applied)) {
+				return;
+			}
+			
+			applied = current;
+			final byte[] digest = digest();
+			if (Arrays.equals(digest, appliedDigest)) {
+				return;
+			}
+			appliedDigest = digest;
+			
+			logger.info("Change detected in {}, reloading TLS material.", files);
+			tlsMaterialProvider.reload();
+			reloadCount.incrementAndGet();
+			lastReloadAt = System.currentTimeMillis();
+		} catch (final Throwable ex) {
+			failedReloadCount.incrementAndGet();
+			logger.error("TLS material reload failed, the previous material remains in use: {}", ex.getMessage());
+			logger.debug("Exception: ", ex);
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private File getFile(final Resource resource) throws IOException {
+		if (resource == null || !resource.isFile()) {
+			throw new IOException(resource + " is not a file.");
+		}
+		
+		return resource.getFile();
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private List<FileState> getStates() {
+		final List<FileState> result = new ArrayList<>(files.size());
+		for (final File file : files) {
+			result.add(new FileState(file.lastModified(), file.length()));
+		}
+		
+		return result;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private byte[] digest() throws IOException, NoSuchAlgorithmException {
+		final MessageDigest messageDigest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+		final byte[] buffer = new byte[8192];
+		for (final File file : files) {
+			try (final InputStream in = Files.newInputStream(file.toPath())) {
+				int read;
+				while ((read = in.read(buffer)) != -1) {
+					messageDigest.update(buffer, 0, read);
+				}
+			}
+		}
+		
+		return messageDigest.digest();
+	}
+	
+	//=================================================================================================
+	// nested classes
+	
+	//-------------------------------------------------------------------------------------------------
+	private static class FileState {
+		
+		//=================================================================================================
+		// members
+		
+		private final long lastModified;
+		private final long length;
+		
+		//=================================================================================================
+		// methods
+		
+		//-------------------------------------------------------------------------------------------------
+		public FileState(final long lastModified, final long length) {
+			this.lastModified = lastModified;
+			this.length = length;
+		}
+		
+		//-------------------------------------------------------------------------------------------------
+		@Override
+		public boolean equals(final Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof FileState)) {
+				return false;
+			}
+			
+			final FileState other = (FileState) obj;
+			return lastModified == other.lastModified && length == other.length;
+		}
+		
+		//-------------------------------------------------------------------------------------------------
+		@Override
+		public int hashCode() {
+			return Objects.hash(lastModified, length);
+		}
+	}
+}
@@ -0,0 +1,92 @@
+/********************************************************************************
+ * Copyright (c) 2020 AITIA
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *   AITIA - implementation
+ ********************************************************************************/
+
+package ai.aitia.arrowhead.application.library.util;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.util.Assert;
+
+/**
+ * Keeps the last N latency samples (in nanoseconds) in a ring buffer and calculates percentiles over them.
+ */
+public class LatencySampler {
+	
+	//=================================================================================================
+	// members
+	
+	private final long[] samples;
+	private long count = 0;
+	private long max = 0;
+	
+	//=================================================================================================
+	// methods
+	
+	//-------------------------------------------------------------------------------------------------
+	public LatencySampler(final int capacity) {
+		Assert.isTrue(capacity > 0, "capacity must be positive");
+		this.samples = new long[capacity];
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public synchronized void record(final long latencyNanos) {
+		samples[(int) (count % samples.length)] = latencyNanos;
+		++count;
+		if (latencyNanos > max) {
+			max = latencyNanos;
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @return the total number of recorded samples (including the ones already overwritten)
+	 */
+	public synchronized long getCount() {
+		return count;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @return the maximum of all the recorded samples in nanoseconds
+	 */
+	public synchronized long getMax() {
+		return max;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @param percentile value between 0 and 100
+	 * @return the given percentile of the retained samples in nanoseconds or 0 if there is no sample yet
+	 */
+	public long getPercentile(final double percentile) {
+		Assert.isTrue(percentile >= 0 && percentile <= 100, "percentile must be between 0 and 100");
+		
+		final long[] copy;
+		synchronized (this) {
+			if (count == 0) {
+				return 0;
+			}
+			copy = Arrays.copyOf(samples, (int) Math.min(count, samples.length));
+		}
+		
+		Arrays.sort(copy);
+		final int index = (int) Math.ceil(percentile / 100 * copy.length) - 1;
+		return copy[Math.max(0, Math.min(index, copy.length - 1))];
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public double getPercentileMillis(final double percentile) {
+		return (double) getPercentile(percentile) / TimeUnit.MILLISECONDS.toNanos(1);
+	}
+}
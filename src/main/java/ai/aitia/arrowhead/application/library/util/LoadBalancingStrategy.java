@@ -0,0 +1,26 @@
+/********************************************************************************
+ * Copyright (c) 2020 AITIA
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *   AITIA - implementation
+ ********************************************************************************/
+
+package ai.aitia.arrowhead.application.library.util;
+
+public enum LoadBalancingStrategy {
+	
+	/** Providers are used one after the other. */
+	ROUND_ROBIN,
+	
+	/** Two random providers are picked and the one with less outstanding requests is used (power of two choices). */
+	LEAST_OUTSTANDING_REQUESTS,
+	
+	/** Two random providers are picked and the one with lower EWMA latency weighted by its outstanding requests is used. */
+	EWMA_LATENCY
+}
@@ -0,0 +1,354 @@
+/********************************************************************************
+ * Copyright (c) 2020 AITIA
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *   AITIA - implementation
+ ********************************************************************************/
+
+package ai.aitia.arrowhead.application.library.util;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.util.Assert;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+
+import eu.arrowhead.common.Utilities;
+import eu.arrowhead.common.dto.shared.EventDTO;
+import eu.arrowhead.common.dto.shared.OrchestrationFormRequestDTO;
+import eu.arrowhead.common.dto.shared.OrchestrationResponseDTO;
+import eu.arrowhead.common.dto.shared.OrchestrationResultDTO;
+import eu.arrowhead.common.dto.shared.OrchestratorWarnings;
+
+/**
+ * Size-bounded LRU cache of orchestration responses keyed by the normalized orchestration form.
+ * 
+ * The authorization tokens of an orchestration result are encrypted with the public key of the provider, so their expiration
+ * time can't be read by the consumer. Because of that the TTL of an entry is the configured TTL (which should not exceed the token 
+ * duration of the Authorization Core System), and responses containing providers with expired or expiring Service Registry entries 
+ * are not cached at all.
+ * 
+ * The responses are stored in serialized form and every hit returns a new copy, so the callers may modify the returned DTOs freely.
+ * 
+ * Every invalidation increments the generation of the cache. A response is cached only if no invalidation happened since its request 
+ * was sent (see {@link #getGeneration()}), so a response that was already stale when it arrived is not put back after the invalidation.
+ */
+public class OrchestrationResponseCache {
+	
+	//=================================================================================================
+	// members
+	
+	private final int maxSize;
+	private final long ttl;
+	private final Set<String> invalidationEventTypes;
+	private final Set<String> flushEventTypes;
+	private final Map<String,Entry> entries;
+	private long generation = 0; // guarded by entries
+	private final ObjectMapper keyMapper = JsonMapper.builder()
+													 .enable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY)
+													 .enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+													 .build();
+	private final ObjectMapper copyMapper = JsonMapper.builder()
+													  .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+													  .build();
+	
+	private final LongAdder hitCount = new LongAdder();
+	private final LongAdder missCount = new LongAdder();
+	private final LongAdder evictionCount = new LongAdder();
+	private final LongAdder expirationCount = new LongAdder();
+	private final LongAdder invalidationCount = new LongAdder();
+	
+	private final Logger logger = LogManager.getLogger(OrchestrationResponseCache.class);
+	
+	//=================================================================================================
+	// methods
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @param maxSize the maximum number of cached responses, the least recently used one is evicted above it
+	 * @param ttl time-to-live of an entry in milliseconds
+	 * @param invalidationEventTypes event types which invalidate the cached responses of the service definition in their payload when received from Event Handler
+	 * @param flushEventTypes event types which invalidate every cached response when received from Event Handler
+	 */
+	public OrchestrationResponseCache(final int maxSize, final long ttl, final Collection<String> invalidationEventTypes, final Collection<String> flushEventTypes) {
+		Assert.isTrue(maxSize > 0, "maxSize must be positive");
+		Assert.isTrue(ttl > 0, "ttl must be positive");
+		
+		this.maxSize = maxSize;
+		this.ttl = ttl;
+		this.invalidationEventTypes = normalizeEventTypes(invalidationEventTypes);
+		this.flushEventTypes = normalizeEventTypes(flushEventTypes);
+		this.entries = new LinkedHashMap<String,Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<String,Entry> eldest) {
+				if (size() > OrchestrationResponseCache.this.maxSize) {
+					evictionCount.increment();
+					return true;
+				}
+				
+				return false;
+			}
+		};
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @param request the orchestration form
+	 * @return a copy of the cached response or null if there is no valid cached response for the given form
+	 */
+	public OrchestrationResponseDTO get(final OrchestrationFormRequestDTO request) {
+		final String key = createKey(request);
+		if (key == null) {
+			missCount.increment();
+			return null;
+		}
+		
+		final byte[] response;
+		synchronized (entries) {
+			final Entry entry = entries.get(key);
+			if (entry == null) {
+				missCount.increment();
+				return null;
+			}
+			
+			if (System.currentTimeMillis() >= entry.expiresAt) {
+				entries.remove(key);
+				expirationCount.increment();
+				missCount.increment();
+				return null;
+			}
+			
+			response = entry.response;
+		}
+		
+		try {
+			final OrchestrationResponseDTO result = copyMapper.readValue(response, OrchestrationResponseDTO.class);
+			hitCount.increment();
+			return result;
+		} catch (final IOException ex) {
+			logger.debug("Cached orchestration response couldn't be restored: {}", ex.getMessage());
+			missCount.increment();
+			return null;
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @return the current generation, which has to be read before the orchestration request is sent and passed to 
+	 * {@link #put(OrchestrationFormRequestDTO, OrchestrationResponseDTO, long)}
+	 */
+	public long getGeneration() {
+		synchronized (entries) {
+			return generation;
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Caches the response if it is cacheable: it contains at least one provider and none of the providers' Service Registry entry is expired or expiring.
+	 * The response is dropped if the cache was invalidated after the given generation was read.
+	 * 
+	 * @param request the orchestration form
+	 * @param response the response received from Orchestrator Core System
+	 * @param requestGeneration the generation of the cache before the request was sent
+	 */
+	public void put(final OrchestrationFormRequestDTO request, final OrchestrationResponseDTO response, final long requestGeneration) {
+		if (!isCacheable(response)) {
+			return;
+		}
+		
+		final String key = createKey(request);
+		if (key == null) {
+			return;
+		}
+		
+		final byte[] serialized;
+		try {
+			serialized = copyMapper.writeValueAsBytes(response);
+		} catch (final JsonProcessingException ex) {
+			logger.debug("Orchestration response couldn't be cached: {}", ex.getMessage());
+			return;
+		}
+		
+		final String serviceDefinition = request.getRequestedService() == null ? null : request.getRequestedService().getServiceDefinitionRequirement();
+		synchronized (entries) {
+			if (generation != requestGeneration) {
+				logger.debug("Orchestration response is not cached, the cache was invalidated while it was requested.");
+				return;
+			}
+			entries.put(key, new Entry(serialized, serviceDefinition, System.currentTimeMillis() + ttl));
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Invalidates the cached responses according to the type of the given event. A flush event type invalidates every cached response.
+	 * An invalidation event type invalidates the responses of the service definition in the payload only (an event without payload 
+	 * can't be scoped, so it invalidates every response); if no cached response belongs to that service, nothing happens.
+	 * 
+	 * @param event event received from Event Handler Core System
+	 * @return true if the event type is an invalidation or flush event type
+	 */
+	public boolean onEvent(final EventDTO event) {
+		if (event == null || Utilities.isEmpty(event.getEventType())) {
+			return false;
+		}
+		
+		final String eventType = event.getEventType().trim().toUpperCase();
+		if (flushEventTypes.contains(eventType)) {
+			logger.debug("Orchestration cache flush triggered by '{}' event.", event.getEventType());
+			invalidateAll();
+			return true;
+		}
+		
+		if (!invalidationEventTypes.contains(eventType)) {
+			return false;
+		}
+		
+		logger.debug("Orchestration cache invalidation triggered by '{}' event.", event.getEventType());
+		if (Utilities.isEmpty(event.getPayload())) {
+			invalidateAll();
+		} else {
+			invalidate(event.getPayload());
+		}
+		
+		return true;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @param serviceDefinition the requested service definition
+	 * @return the number of invalidated responses
+	 */
+	public int invalidate(final String serviceDefinition) {
+		if (Utilities.isEmpty(serviceDefinition)) {
+			return 0;
+		}
+		
+		final String normalized = serviceDefinition.trim();
+		int count = 0;
+		synchronized (entries) {
+			++generation; // even if nothing is removed, a response of the service may be on its way
+			final Iterator<Entry> it = entries.values().iterator();
+			while (it.hasNext()) {
+				final Entry entry = it.next();
+				if (normalized.equalsIgnoreCase(entry.serviceDefinition)) {
+					it.remove();
+					++count;
+				}
+			}
+		}
+		
+		invalidationCount.add(count);
+		return count;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public void invalidateAll() {
+		synchronized (entries) {
+			++generation;
+			invalidationCount.add(entries.size());
+			entries.clear();
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public long getHitCount() { return hitCount.sum(); }
+	public long getMissCount() { return missCount.sum(); }
+	public long getEvictionCount() { return evictionCount.sum(); }
+	public long getExpirationCount() { return expirationCount.sum(); }
+	public long getInvalidationCount() { return invalidationCount.sum(); }
+	
+	//=================================================================================================
+	// assistant methods
+	
+	//-------------------------------------------------------------------------------------------------
+	private Set<String> normalizeEventTypes(final Collection<String> eventTypes) {
+		return eventTypes == null ? Set.of() : eventTypes.stream()
+														 .filter(type -> !Utilities.isEmpty(type))
+														 .map(type -> type.trim().toUpperCase())
+														 .collect(Collectors.toUnmodifiableSet());
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private String createKey(final OrchestrationFormRequestDTO request) {
+		if (request == null) {
+			return null;
+		}
+		
+		try {
+			return keyMapper.writeValueAsString(request);
+		} catch (final JsonProcessingException ex) {
+			logger.debug("Orchestration form couldn't be normalized: {}", ex.getMessage());
+			return null;
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private boolean isCacheable(final OrchestrationResponseDTO response) {
+		if (response == null || response.getResponse() == null || response.getResponse().isEmpty()) {
+			return false;
+		}
+		
+		for (final OrchestrationResultDTO result : response.getResponse()) {
+			if (result.getWarnings() != null && (result.getWarnings().contains(OrchestratorWarnings.TTL_EXPIRED) || result.getWarnings().contains(OrchestratorWarnings.TTL_EXPIRING))) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	//=================================================================================================
+	// nested classes
+	
+	//-------------------------------------------------------------------------------------------------
+	private static class Entry {
+		
+		//=================================================================================================
+		// members
+		
+		private final byte[] response;
+		private final String serviceDefinition;
+		private final long expiresAt;
+		
+		//=================================================================================================
+		// methods
+		
+		//-------------------------------------------------------------------------------------------------
+		public Entry(final byte[] response, final String serviceDefinition, final long expiresAt) {
+			this.response = response;
+			this.serviceDefinition = serviceDefinition;
+			this.expiresAt = expiresAt;
+		}
+	}
+}
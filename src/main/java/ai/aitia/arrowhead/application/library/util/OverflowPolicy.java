@@ -0,0 +1,23 @@
+/********************************************************************************
+ * Copyright (c) 2020 AITIA
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *   AITIA - implementation
+ ********************************************************************************/
+
+package ai.aitia.arrowhead.application.library.util;
+
+/**
+ * What to do when a bounded buffer is full.
+ */
+public enum OverflowPolicy {
+	BLOCK, // the producer waits until there is free space (or a timeout elapses)
+	DROP_OLDEST, // the oldest buffered item is discarded to make room for the new one
+	FAIL // the new item is rejected with an exception
+}
@@ -0,0 +1,117 @@
+/********************************************************************************
+ * Copyright (c) 2020 AITIA
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *   AITIA - implementation
+ ********************************************************************************/
+
+package ai.aitia.arrowhead.application.library.util;
+
+import org.springframework.web.util.UriComponents;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import eu.arrowhead.common.CommonConstants;
+import eu.arrowhead.common.Utilities;
+import eu.arrowhead.common.exception.InvalidParameterException;
+
+/**
+ * Immutable, reusable service endpoint. The scheme, host, port, path and the (optional) authorization token are resolved once, 
+ * so sending a request only requires binding the variable query parameters (if any).
+ */
+public class PreparedServiceEndpoint {
+	
+	//=================================================================================================
+	// members
+	
+	private final String scheme;
+	private final String address;
+	private final int port;
+	private final String serviceUri;
+	private final String token;
+	private final UriComponents uri;
+	private final String endpointKey;
+	
+	//=================================================================================================
+	// methods
+	
+	//-------------------------------------------------------------------------------------------------
+	public PreparedServiceEndpoint(final String scheme, final String address, final int port, final String serviceUri, final String token) {
+		if (Utilities.isEmpty(scheme)) {
+			throw new InvalidParameterException("scheme cannot be null or blank.");
+		}
+		if (Utilities.isEmpty(address)) {
+			throw new InvalidParameterException("address cannot be null or blank.");
+		}
+		if (Utilities.isEmpty(serviceUri)) {
+			throw new InvalidParameterException("serviceUri cannot be null or blank.");
+		}
+		
+		this.scheme = scheme;
+		this.address = address;
+		this.port = port;
+		this.serviceUri = serviceUri;
+		this.token = Utilities.isEmpty(token) ? null : token;
+		this.uri = this.token == null ? Utilities.createURI(scheme, address, port, serviceUri) : Utilities.createURI(scheme, address, port, serviceUri, CommonConstants.REQUEST_PARAM_TOKEN, this.token);
+		this.endpointKey = CircuitBreakerRegistry.getEndpointKey(this.uri);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public String getScheme() { return scheme; }
+	public String getAddress() { return address; }
+	public int getPort() { return port; }
+	public String getServiceUri() { return serviceUri; }
+	public String getToken() { return token; }
+	public String getEndpointKey() { return endpointKey; }
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @return the pre-built URI of the endpoint (including the token if any)
+	 */
+	public UriComponents getUri() {
+		return uri;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @param queryParams (nullable) variable arguments which represent the additional key-value query parameters. E.g.: "k1", "v1", "k2", "v2".
+	 * @return the pre-built URI when there is no query parameter, otherwise a copy of it extended with the given query parameters
+	 * @throws InvalidParameterException when a query parameter key has no value
+	 */
+	public UriComponents buildUri(final String... queryParams) {
+		if (queryParams == null || queryParams.length == 0) {
+			return uri;
+		}
+		
+		if (queryParams.length % 2 != 0) {
+			throw new InvalidParameterException("queryParams variable arguments contains a key without value");
+		}
+		
+		final UriComponentsBuilder builder = UriComponentsBuilder.newInstance().uriComponents(uri);
+		for (int i = 0; i < queryParams.length; i += 2) {
+			builder.queryParam(queryParams[i], queryParams[i + 1]);
+		}
+		
+		return builder.build();
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @param newToken (nullable) the token for being authorized at the provider side
+	 * @return a new endpoint which differs from this one only in its token
+	 */
+	public PreparedServiceEndpoint withToken(final String newToken) {
+		return new PreparedServiceEndpoint(scheme, address, port, serviceUri, newToken);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@Override
+	public String toString() {
+		return "PreparedServiceEndpoint [scheme=" + scheme + ", address=" + address + ", port=" + port + ", serviceUri=" + serviceUri + "]";
+	}
+}
@@ -0,0 +1,80 @@
+/********************************************************************************
+ * Copyright (c) 2020 AITIA
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *   AITIA - implementation
+ ********************************************************************************/
+
+package ai.aitia.arrowhead.application.library.util;
+
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.cert.X509Certificate;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import eu.arrowhead.common.Utilities;
+import eu.arrowhead.common.exception.AuthException;
+
+/**
+ * The identity of the application system derived from its keystore: the common name of the system certificate and the key pair.
+ */
+public class ServerKeyMaterial {
+	
+	//=================================================================================================
+	// members
+	
+	private static final Logger logger = LogManager.getLogger(ServerKeyMaterial.class);
+	
+	private final String serverCN;
+	private final PublicKey publicKey;
+	private final PrivateKey privateKey;
+	
+	//=================================================================================================
+	// methods
+	
+	//-------------------------------------------------------------------------------------------------
+	public ServerKeyMaterial(final String serverCN, final PublicKey publicKey, final PrivateKey privateKey) {
+		this.serverCN = serverCN;
+		this.publicKey = publicKey;
+		this.privateKey = privateKey;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @throws AuthException when the CN of the system certificate is not compliant with the Arrowhead certificate structure
+	 */
+	public static ServerKeyMaterial fromKeyStore(final KeyStore keyStore, final String keyPassword) {
+		final X509Certificate serverCertificate = Utilities.getSystemCertFromKeyStore(keyStore);
+		final String serverCN = getValidatedServerCN(serverCertificate);
+		
+		return new ServerKeyMaterial(serverCN, serverCertificate.getPublicKey(), Utilities.getPrivateKey(keyStore, keyPassword));
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @throws AuthException when the CN of the certificate is not compliant with the Arrowhead certificate structure
+	 */
+	public static String getValidatedServerCN(final X509Certificate serverCertificate) {
+		final String serverCN = Utilities.getCertCNFromSubject(serverCertificate.getSubjectDN().getName());
+		if (!Utilities.isKeyStoreCNArrowheadValid(serverCN)) {
+			logger.info("Application system CN ({}) is not compliant with the Arrowhead certificate structure, since it does not have 5 parts, or does not end with \"arrowhead.eu\".", serverCN);
+			throw new AuthException("Server CN (" + serverCN + ") is not compliant with the Arrowhead certificate structure, since it does not have 5 parts, or does not end with \"arrowhead.eu\".");
+		}
+		
+		return serverCN;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public String getServerCN() { return serverCN; }
+	public PublicKey getPublicKey() { return publicKey; }
+	public PrivateKey getPrivateKey() { return privateKey; }
+}
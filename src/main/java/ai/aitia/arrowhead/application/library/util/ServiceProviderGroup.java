@@ -0,0 +1,299 @@
+/********************************************************************************
+ * Copyright (c) 2020 AITIA
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *   AITIA - implementation
+ ********************************************************************************/
+
+package ai.aitia.arrowhead.application.library.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.http.HttpMethod;
+import org.springframework.util.Assert;
+
+import ai.aitia.arrowhead.application.library.ArrowheadService;
+import eu.arrowhead.common.exception.ArrowheadException;
+import eu.arrowhead.common.exception.InvalidParameterException;
+import eu.arrowhead.common.exception.UnavailableServerException;
+
+/**
+ * Spreads the service consumption over the providers of an orchestration response. 
+ * 
+ * A provider is ejected from the group for a while after a configured number of consecutive failures (UnavailableServerException). 
+ * The ejection time grows linearly with the number of subsequent ejections (up to ten times of the base time) and is reset by a successful call.
+ * When every provider is ejected, all of them are used again. A rejection by the provider's open circuit breaker is not counted as a failure, 
+ * as no request was sent.
+ * 
+ * A provider without latency samples (a new one, or one that comes back from ejection) is assumed to be as fast as the median of the others, 
+ * so it neither attracts all the requests nor gets starved.
+ */
+public class ServiceProviderGroup {
+	
+	//=================================================================================================
+	// members
+	
+	private static final double EWMA_ALPHA = 0.3;
+	private static final int MAX_EJECTION_MULTIPLIER = 10;
+	
+	private final ArrowheadService arrowheadService;
+	private final LoadBalancingStrategy strategy;
+	private final List<Provider> providers;
+	private final int failureThreshold;
+	private final long ejectionTime;
+	private final AtomicInteger roundRobinCounter = new AtomicInteger();
+	
+	private final Logger logger = LogManager.getLogger(ServiceProviderGroup.class);
+	
+	//=================================================================================================
+	// methods
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @param arrowheadService the service used for the consumption
+	 * @param endpoints the endpoints of the providers
+	 * @param strategy the load balancing strategy
+	 * @param failureThreshold number of consecutive failures after a provider is ejected
+	 * @param ejectionTime base ejection time in milliseconds
+	 */
+	public ServiceProviderGroup(final ArrowheadService arrowheadService, final List<PreparedServiceEndpoint> endpoints, final LoadBalancingStrategy strategy, final int failureThreshold,
+								final long ejectionTime) {
+		Assert.notNull(arrowheadService, "arrowheadService is null");
+		Assert.notNull(strategy, "strategy is null");
+		if (endpoints == null || endpoints.isEmpty()) {
+			throw new InvalidParameterException("endpoints cannot be null or empty.");
+		}
+		
+		this.arrowheadService = arrowheadService;
+		this.strategy = strategy;
+		this.failureThreshold = Math.max(1, failureThreshold);
+		this.ejectionTime = Math.max(0, ejectionTime);
+		
+		final List<Provider> list = new ArrayList<>(endpoints.size());
+		for (final PreparedServiceEndpoint endpoint : endpoints) {
+			Assert.notNull(endpoint, "endpoint is null");
+			list.add(new Provider(endpoint));
+		}
+		this.providers = Collections.unmodifiableList(list);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Sends a http(s) request to one of the providers selected by the load balancing strategy.
+	 * 
+	 * @see ArrowheadService#consumeServiceHTTP(Class, HttpMethod, PreparedServiceEndpoint, Object, String...)
+	 */
+	public <T> T consumeServiceHTTP(final Class<T> responseType, final HttpMethod httpMethod, final Object payload, final String... queryParams) {
+		final Provider provider = select();
+		provider.outstanding.incrementAndGet();
+		final long start = System.nanoTime();
+		try {
+			final T result = arrowheadService.consumeServiceHTTP(responseType, httpMethod, provider.endpoint, payload, queryParams);
+			provider.onSuccess(System.nanoTime() - start);
+			return result;
+		} catch (final CircuitBreakerOpenException ex) {
+			// rejected locally, nothing is known about the provider
+			throw ex;
+		} catch (final UnavailableServerException ex) {
+			provider.onFailure(System.nanoTime() - start);
+			throw ex;
+		} catch (final ArrowheadException ex) {
+			// the provider answered, so it is considered healthy
+			provider.onSuccess(System.nanoTime() - start);
+			throw ex;
+		} finally {
+			provider.outstanding.decrementAndGet();
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @return the provider chosen by the load balancing strategy for the next request
+	 */
+	public Provider select() {
+		final long now = System.currentTimeMillis();
+		final int size = providers.size();
+		if (size == 1) {
+			return providers.get(0);
+		}
+		
+		switch (strategy) {
+		case ROUND_ROBIN:
+			return selectRoundRobin(now, size);
+		case LEAST_OUTSTANDING_REQUESTS:
+		case EWMA_LATENCY:
+			final Provider first = selectRandomHealthy(now, size, null);
+			final Provider second = selectRandomHealthy(now, size, first);
+			if (second == null) {
+				return first;
+			}
+			
+			return cost(first) <= cost(second) ? first : second;
+		default:
+			throw new IllegalStateException("Unknown load balancing strategy: " + strategy);
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public LoadBalancingStrategy getStrategy() { return strategy; }
+	public List<Provider> getProviders() { return providers; }
+	
+	//=================================================================================================
+	// assistant methods
+	
+	//-------------------------------------------------------------------------------------------------
+	private Provider selectRoundRobin(final long now, final int size) {
+		final int start = Math.floorMod(roundRobinCounter.getAndIncrement(), size);
+		for (int i = 0; i < size; ++i) {
+			final Provider candidate = providers.get((start + i) % size);
+			if (candidate.isHealthy(now)) {
+				return candidate;
+			}
+		}
+		
+		return providers.get(start);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private Provider selectRandomHealthy(final long now, final int size, final Provider excluded) {
+		final ThreadLocalRandom random = ThreadLocalRandom.current();
+		final int start = random.nextInt(size);
+		for (int i = 0; i < size; ++i) {
+			final Provider candidate = providers.get((start + i) % size);
+			if (candidate != excluded && candidate.isHealthy(now)) {
+				return candidate;
+			}
+		}
+		
+		if (excluded != null) {
+			return null;
+		}
+		
+		// every provider is ejected
+		return providers.get(start);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private double cost(final Provider provider) {
+		final int outstanding = provider.outstanding.get();
+		if (strategy == LoadBalancingStrategy.LEAST_OUTSTANDING_REQUESTS) {
+			return outstanding;
+		}
+		
+		final double latency = provider.ewmaLatency;
+		return (latency == 0 ? getMedianLatency(provider) : latency) * (outstanding + 1);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @return the median of the EWMA latencies of the other providers which have any, or 0 if none of them has
+	 */
+	private double getMedianLatency(final Provider excluded) {
+		final double[] latencies = new double[providers.size()];
+		int count = 0;
+		for (final Provider provider : providers) {
+			final double latency = provider.ewmaLatency;
+			if (provider != excluded && latency > 0) {
+				latencies[count++] = latency;
+			}
+		}
+		if (count == 0) {
+			return 0;
+		}
+		
+		Arrays.sort(latencies, 0, count);
+		return count % 2 == 1 ? latencies[count / 2] : (latencies[count / 2 - 1] + latencies[count / 2]) / 2;
+	}
+	
+	//=================================================================================================
+	// nested classes
+	
+	//-------------------------------------------------------------------------------------------------
+	public class Provider {
+		
+		//=================================================================================================
+		// members
+		
+		private final PreparedServiceEndpoint endpoint;
+		private final AtomicInteger outstanding = new AtomicInteger();
+		private final AtomicInteger consecutiveFailures = new AtomicInteger();
+		private volatile double ewmaLatency = 0; // in nanoseconds, 0 means no samples
+		private volatile long ejectedUntil = 0;
+		private volatile int ejectionCount = 0;
+		
+		//=================================================================================================
+		// methods
+		
+		//-------------------------------------------------------------------------------------------------
+		public PreparedServiceEndpoint getEndpoint() { return endpoint; }
+		public int getOutstandingRequests() { return outstanding.get(); }
+		public int getConsecutiveFailures() { return consecutiveFailures.get(); }
+		public int getEjectionCount() { return ejectionCount; }
+		
+		//-------------------------------------------------------------------------------------------------
+		public double getEwmaLatencyMillis() {
+			return ewmaLatency / TimeUnit.MILLISECONDS.toNanos(1);
+		}
+		
+		//-------------------------------------------------------------------------------------------------
+		public boolean isHealthy() {
+			return isHealthy(System.currentTimeMillis());
+		}
+		
+		//=================================================================================================
+		// assistant methods
+		
+		//-------------------------------------------------------------------------------------------------
+		private Provider(final PreparedServiceEndpoint endpoint) {
+			this.endpoint = endpoint;
+		}
+		
+		//-------------------------------------------------------------------------------------------------
+		private boolean isHealthy(final long now) {
+			return now >= ejectedUntil;
+		}
+		
+		//-------------------------------------------------------------------------------------------------
+		private void onSuccess(final long latency) {
+			recordLatency(latency);
+			consecutiveFailures.set(0);
+			ejectionCount = 0;
+		}
+		
+		//-------------------------------------------------------------------------------------------------
+		private void onFailure(final long latency) {
+			recordLatency(latency);
+			if (consecutiveFailures.incrementAndGet() >= failureThreshold) {
+				synchronized (this) {
+					if (consecutiveFailures.get() >= failureThreshold) {
+						ejectionCount = Math.min(ejectionCount + 1, MAX_EJECTION_MULTIPLIER);
+						ejectedUntil = System.currentTimeMillis() + ejectionTime * ejectionCount;
+						consecutiveFailures.set(0);
+						ewmaLatency = 0; // its latency after the ejection is unknown
+						logger.info("Provider {}:{} is ejected for {} ms.", endpoint.getAddress(), endpoint.getPort(), ejectionTime * ejectionCount);
+					}
+				}
+			}
+		}
+		
+		//-------------------------------------------------------------------------------------------------
+		private synchronized void recordLatency(final long latency) {
+			final double previous = ewmaLatency == 0 ? getMedianLatency(this) : ewmaLatency;
+			ewmaLatency = previous == 0 ? latency : EWMA_ALPHA * latency + (1 - EWMA_ALPHA) * previous;
+		}
+	}
+}
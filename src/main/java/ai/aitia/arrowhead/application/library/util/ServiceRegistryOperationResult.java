@@ -0,0 +1,67 @@
+/********************************************************************************
+ * Copyright (c) 2020 AITIA
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *   AITIA - implementation
+ ********************************************************************************/
+
+package ai.aitia.arrowhead.application.library.util;
+
+import eu.arrowhead.common.dto.shared.ServiceRegistryRequestDTO;
+import eu.arrowhead.common.dto.shared.ServiceRegistryResponseDTO;
+
+public class ServiceRegistryOperationResult {
+	
+	//=================================================================================================
+	// members
+	
+	private final ServiceRegistryRequestDTO request;
+	private final ServiceRegistryResponseDTO response;
+	private final Throwable error;
+	
+	//=================================================================================================
+	// methods
+	
+	//-------------------------------------------------------------------------------------------------
+	public static ServiceRegistryOperationResult success(final ServiceRegistryRequestDTO request, final ServiceRegistryResponseDTO response) {
+		return new ServiceRegistryOperationResult(request, response, null);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public static ServiceRegistryOperationResult failure(final ServiceRegistryRequestDTO request, final Throwable error) {
+		return new ServiceRegistryOperationResult(request, null, error);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public ServiceRegistryRequestDTO getRequest() { return request; }
+	public ServiceRegistryResponseDTO getResponse() { return response; }
+	public Throwable getError() { return error; }
+	
+	//-------------------------------------------------------------------------------------------------
+	public boolean isSuccessful() {
+		return error == null;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@Override
+	public String toString() {
+		return "ServiceRegistryOperationResult [serviceDefinition=" + (request == null ? null : request.getServiceDefinition()) + ", successful=" + isSuccessful() 
+			   + ", error=" + (error == null ? null : error.getMessage()) + "]";
+	}
+	
+	//=================================================================================================
+	// assistant methods
+	
+	//-------------------------------------------------------------------------------------------------
+	private ServiceRegistryOperationResult(final ServiceRegistryRequestDTO request, final ServiceRegistryResponseDTO response, final Throwable error) {
+		this.request = request;
+		this.response = response;
+		this.error = error;
+	}
+}
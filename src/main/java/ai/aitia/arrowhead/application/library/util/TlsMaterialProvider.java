@@ -0,0 +1,275 @@
+/********************************************************************************
+ * Copyright (c) 2020 AITIA
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *   AITIA - implementation
+ ********************************************************************************/
+
+package ai.aitia.arrowhead.application.library.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.KeyManagementException;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.NoSuchAlgorithmException;
+import java.security.UnrecoverableKeyException;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
+
+import org.apache.http.ssl.SSLContexts;
+import org.apache.http.ssl.TrustStrategy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.util.Assert;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+
+import eu.arrowhead.common.SSLProperties;
+import eu.arrowhead.common.exception.AuthException;
+
+/**
+ * Loads the key and trust stores once, builds one SSL context from them and shares a single WebSocket client (and so a single
+ * WebSocket container) between all the WS(S) connections. A second, strict SSL context (which trusts only the certificates of the 
+ * truststore) provides the socket factory shared by the MQTT(S) clients.
+ * 
+ * The material is loaded lazily on first use, so an application running in insecure mode never touches the stores. {@link #reload()} 
+ * replaces the whole material atomically: new connections use the new SSL context, while the already established ones keep the 
+ * context they were opened with. The HTTP(S) calls made through HttpService are not affected: it builds its own SSL context once at
+ * startup and has no way to replace it, so a reloaded certificate is used for HTTP(S) only after a restart.
+ */
+public class TlsMaterialProvider {
+	
+	//=================================================================================================
+	// members
+	
+	private static final TrustStrategy ACCEPTING_TRUST_STRATEGY = (final X509Certificate[] chain, final String authType) -> true;
+	
+	private final SSLProperties sslProperties;
+	private final StandardWebSocketClient webSocketClient = new StandardWebSocketClient();
+	
+	private volatile TlsMaterial material;
+	private final List<Consumer<TlsMaterial>> reloadListeners = new CopyOnWriteArrayList<>();
+	
+	private final AtomicLong buildCount = new AtomicLong();
+	private final AtomicLong totalBuildTimeNanos = new AtomicLong();
+	private volatile long lastBuildTimeNanos = 0;
+	
+	private final Logger logger = LogManager.getLogger(TlsMaterialProvider.class);
+	
+	//=================================================================================================
+	// methods
+	
+	//-------------------------------------------------------------------------------------------------
+	public TlsMaterialProvider(final SSLProperties sslProperties) {
+		this.sslProperties = sslProperties;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @return the loaded stores and the SSL context built from them
+	 * @throws ServiceConfigurationError when the stores can't be opened or the SSL context can't be built
+	 */
+	public TlsMaterial getMaterial() {
+		TlsMaterial result = material;
+		if (result == null) {
+			synchronized (this) {
+				result = material;
+				if (result == null) {
+					result = build();
+					material = result;
+					webSocketClient.getUserProperties().put(ApplicationCommonConstants.TOMCAT_WS_SSL_CONTEXT, result.getSslContext());
+				}
+			}
+		}
+		
+		return result;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Loads the stores again and swaps the material if they are valid. The reload listeners are notified after the swap.
+	 * 
+	 * @return the new material
+	 * @throws ServiceConfigurationError when the stores can't be opened or the SSL context can't be built (the current material remains in use)
+	 * @throws AuthException when the CN of the new system certificate is not compliant with the Arrowhead certificate structure or differs from the current one
+	 * (the current material remains in use)
+	 */
+	public TlsMaterial reload() {
+		final TlsMaterial result;
+		synchronized (this) {
+			result = build();
+			if (material != null && !material.getServerKeyMaterial().getServerCN().equals(result.getServerKeyMaterial().getServerCN())) {
+				throw new AuthException("Reloaded system certificate CN (" + result.getServerKeyMaterial().getServerCN() + ") differs from the current one (" +
+										material.getServerKeyMaterial().getServerCN() + ").");
+			}
+			material = result;
+			webSocketClient.getUserProperties().put(ApplicationCommonConstants.TOMCAT_WS_SSL_CONTEXT, result.getSslContext());
+		}
+		logger.info("TLS material reloaded, system CN: {}", result.getServerKeyMaterial().getServerCN());
+		
+		for (final Consumer<TlsMaterial> listener : reloadListeners) {
+			try {
+				listener.accept(result);
+			} catch (final RuntimeException ex) {
+				logger.error("TLS material reload listener failed: {}", ex.getMessage());
+				logger.debug("Exception: ", ex);
+			}
+		}
+		
+		return result;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @param listener called with the new material after every successful reload
+	 */
+	public void addReloadListener(final Consumer<TlsMaterial> listener) {
+		Assert.notNull(listener, "listener is null");
+		reloadListeners.add(listener);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public void removeReloadListener(final Consumer<TlsMaterial> listener) {
+		reloadListeners.remove(listener);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public SSLContext getSSLContext() {
+		return getMaterial().getSslContext();
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @return the socket factory shared by the MQTT(S) clients
+	 * @throws ServiceConfigurationError when the stores can't be opened or the SSL context can't be built
+	 */
+	public SSLSocketFactory getMqttSocketFactory() {
+		return getMaterial().getMqttSocketFactory();
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @return the shared WebSocket client, configured with the shared SSL context in secure mode
+	 * @throws ServiceConfigurationError when secure mode is on and the SSL context can't be built
+	 */
+	public StandardWebSocketClient getWebSocketClient() {
+		if (sslProperties.isSslEnabled()) {
+			getMaterial();
+		}
+		
+		return webSocketClient;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public long getBuildCount() { return buildCount.get(); }
+	public long getLastBuildTimeNanos() { return lastBuildTimeNanos; }
+	public long getTotalBuildTimeNanos() { return totalBuildTimeNanos.get(); }
+	
+	//-------------------------------------------------------------------------------------------------
+	public double getLastBuildTimeMillis() {
+		return (double) lastBuildTimeNanos / TimeUnit.MILLISECONDS.toNanos(1);
+	}
+	
+	//=================================================================================================
+	// assistant methods
+	
+	//-------------------------------------------------------------------------------------------------
+	private TlsMaterial build() {
+		final long start = System.nanoTime();
+		final KeyStore keyStore = loadKeyStore();
+		final KeyStore trustStore = loadTrustStore();
+		final ServerKeyMaterial serverKeyMaterial = ServerKeyMaterial.fromKeyStore(keyStore, sslProperties.getKeyPassword());
+		
+		final SSLContext sslContext;
+		final SSLContext mqttSslContext;
+		try {
+			sslContext = SSLContexts.custom().loadTrustMaterial(trustStore, ACCEPTING_TRUST_STRATEGY).loadKeyMaterial(keyStore, sslProperties.getKeyStorePassword().toCharArray()).build();
+			mqttSslContext = SSLContexts.custom().loadTrustMaterial(trustStore, null).loadKeyMaterial(keyStore, sslProperties.getKeyPassword().toCharArray()).build();
+		} catch (final KeyManagementException | UnrecoverableKeyException | NoSuchAlgorithmException | KeyStoreException e) {
+			throw new ServiceConfigurationError("Cannot build SSL context: " + e.getMessage());
+		}
+		
+		final long elapsed = System.nanoTime() - start;
+		lastBuildTimeNanos = elapsed;
+		totalBuildTimeNanos.addAndGet(elapsed);
+		buildCount.incrementAndGet();
+		logger.debug("TLS material built in {} ms.", TimeUnit.NANOSECONDS.toMillis(elapsed));
+		
+		return new TlsMaterial(keyStore, trustStore, sslContext, mqttSslContext.getSocketFactory(), serverKeyMaterial);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private KeyStore loadKeyStore() {
+        try (final InputStream input = sslProperties.getKeyStore().getInputStream()) {
+            final KeyStore keystore = KeyStore.getInstance(sslProperties.getKeyStoreType());
+            keystore.load(input, sslProperties.getKeyStorePassword().toCharArray());
+            return keystore;
+        } catch (final KeyStoreException | IOException | CertificateException | NoSuchAlgorithmException e) {
+            throw new ServiceConfigurationError("Cannot open keystore: " + e.getMessage());
+        }
+    }
+
+	//-------------------------------------------------------------------------------------------------
+    private KeyStore loadTrustStore() {
+        try (final InputStream input = sslProperties.getTrustStore().getInputStream()) {
+            final KeyStore truststore = KeyStore.getInstance(sslProperties.getKeyStoreType());
+            truststore.load(input, sslProperties.getTrustStorePassword().toCharArray());
+            return truststore;
+        } catch (final KeyStoreException | IOException | CertificateException | NoSuchAlgorithmException e) {
+            throw new ServiceConfigurationError("Cannot open truststore: " + e.getMessage());
+        }
+    }
+	
+	//=================================================================================================
+	// nested classes
+	
+	//-------------------------------------------------------------------------------------------------
+	public static class TlsMaterial {
+		
+		//=================================================================================================
+		// members
+		
+		private final KeyStore keyStore;
+		private final KeyStore trustStore;
+		private final SSLContext sslContext;
+		private final SSLSocketFactory mqttSocketFactory;
+		private final ServerKeyMaterial serverKeyMaterial;
+		private final long createdAt = System.currentTimeMillis();
+		
+		//=================================================================================================
+		// methods
+		
+		//-------------------------------------------------------------------------------------------------
+		public TlsMaterial(final KeyStore keyStore, final KeyStore trustStore, final SSLContext sslContext, final SSLSocketFactory mqttSocketFactory,
+						   final ServerKeyMaterial serverKeyMaterial) {
+			this.keyStore = keyStore;
+			this.trustStore = trustStore;
+			this.sslContext = sslContext;
+			this.mqttSocketFactory = mqttSocketFactory;
+			this.serverKeyMaterial = serverKeyMaterial;
+		}
+		
+		//-------------------------------------------------------------------------------------------------
+		public KeyStore getKeyStore() { return keyStore; }
+		public KeyStore getTrustStore() { return trustStore; }
+		public SSLContext getSslContext() { return sslContext; }
+		public SSLSocketFactory getMqttSocketFactory() { return mqttSocketFactory; }
+		public ServerKeyMaterial getServerKeyMaterial() { return serverKeyMaterial; }
+		public long getCreatedAt() { return createdAt; }
+	}
+}
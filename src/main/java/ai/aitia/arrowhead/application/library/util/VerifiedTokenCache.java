@@ -0,0 +1,325 @@
+/********************************************************************************
+ * Copyright (c) 2020 AITIA
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *   AITIA - implementation
+ ********************************************************************************/
+
+package ai.aitia.arrowhead.application.library.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jose4j.jwa.AlgorithmConstraints;
+import org.jose4j.jwa.AlgorithmConstraints.ConstraintType;
+import org.jose4j.jwe.ContentEncryptionAlgorithmIdentifiers;
+import org.jose4j.jwe.KeyManagementAlgorithmIdentifiers;
+import org.jose4j.jws.AlgorithmIdentifiers;
+import org.jose4j.jwt.JwtClaims;
+import org.jose4j.jwt.MalformedClaimException;
+import org.jose4j.jwt.NumericDate;
+import org.jose4j.jwt.consumer.InvalidJwtException;
+import org.jose4j.jwt.consumer.JwtConsumer;
+import org.jose4j.jwt.consumer.JwtConsumerBuilder;
+import org.springframework.util.Assert;
+
+import eu.arrowhead.common.Utilities;
+import eu.arrowhead.common.exception.ArrowheadException;
+import eu.arrowhead.common.exception.AuthException;
+
+/**
+ * Decrypts and verifies the access tokens issued by the Authorization Core System and caches the claims of the valid ones.
+ * 
+ * A token is decrypted with the private key of the application system and its signature is verified with the public key of the
+ * Authorization Core System. The cache is keyed by the SHA-256 digest of the token, bounded (least recently used entries are evicted)
+ * and expiry-aware: an entry lives until the expiration time of the token but not longer than the configured maximum.
+ * Invalid tokens are not cached. The cache has to be cleared when one of the keys changes.
+ * 
+ * Concurrent misses on the same token are verified only once, the other callers wait for the result. The JWT consumer is built once and
+ * reused until one of the keys changes.
+ */
+public class VerifiedTokenCache {
+	
+	//=================================================================================================
+	// members
+	
+	private static final AlgorithmConstraints JWS_ALGORITHM_CONSTRAINTS = new AlgorithmConstraints(ConstraintType.WHITELIST, AlgorithmIdentifiers.RSA_USING_SHA512);
+	private static final AlgorithmConstraints JWE_ALGORITHM_CONSTRAINTS = new AlgorithmConstraints(ConstraintType.WHITELIST, KeyManagementAlgorithmIdentifiers.RSA_OAEP_256);
+	private static final AlgorithmConstraints JWE_ENCRYPTION_CONSTRAINTS = new AlgorithmConstraints(ConstraintType.WHITELIST, ContentEncryptionAlgorithmIdentifiers.AES_256_CBC_HMAC_SHA_512);
+	private static final String DIGEST_ALGORITHM = "SHA-256";
+	
+	private final Supplier<PrivateKey> privateKeySupplier;
+	private final Supplier<PublicKey> authorizationPublicKeySupplier;
+	private final int maxSize;
+	private final long maxTtl;
+	private final Map<String,Entry> entries; // guarded by itself
+	private final ConcurrentMap<String,CompletableFuture<JwtClaims>> inFlight = new ConcurrentHashMap<>();
+	private long generation = 0; // incremented by invalidateAll(), guarded by entries
+	private volatile Verifier verifier;
+	
+	private final LongAdder hitCount = new LongAdder();
+	private final LongAdder missCount = new LongAdder();
+	private final LongAdder rejectCount = new LongAdder();
+	
+	private final Logger logger = LogManager.getLogger(VerifiedTokenCache.class);
+	
+	//=================================================================================================
+	// methods
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @param privateKeySupplier supplies the private key of the application system
+	 * @param authorizationPublicKeySupplier supplies the public key of the Authorization Core System
+	 * @param maxSize the maximum number of cached tokens
+	 * @param maxTtl the maximum time in milliseconds a verified token is kept
+	 */
+	public VerifiedTokenCache(final Supplier<PrivateKey> privateKeySupplier, final Supplier<PublicKey> authorizationPublicKeySupplier, final int maxSize, final long maxTtl) {
+		Assert.notNull(privateKeySupplier, "privateKeySupplier is null");
+		Assert.notNull(authorizationPublicKeySupplier, "authorizationPublicKeySupplier is null");
+		Assert.isTrue(maxSize > 0, "maxSize must be positive");
+		Assert.isTrue(maxTtl > 0, "maxTtl must be positive");
+		
+		this.privateKeySupplier = privateKeySupplier;
+		this.authorizationPublicKeySupplier = authorizationPublicKeySupplier;
+		this.maxSize = maxSize;
+		this.maxTtl = maxTtl;
+		this.entries = new LinkedHashMap<String,Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = -2749117232553870321L;
+
+			//-------------------------------------------------------------------------------------------------
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<String,Entry> eldest) {
+				return size() > VerifiedTokenCache.this.maxSize;
+			}
+		};
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @param token the encrypted and signed token received in the request
+	 * @return the claims of the token. The returned object is shared between the requests with the same token, so it must not be modified.
+	 * @throws AuthException when the token is invalid, expired or can't be verified
+	 */
+	public JwtClaims verify(final String token) {
+		if (Utilities.isEmpty(token)) {
+			throw new AuthException("Token is missing.");
+		}
+		
+		final String key = digest(token);
+		final long now = System.currentTimeMillis();
+		final long currentGeneration;
+		synchronized (entries) {
+			final Entry entry = entries.get(key);
+			if (entry != null) {
+				if (entry.expiresAt > now && entry.notBefore <= now) {
+					hitCount.increment();
+					return entry.claims;
+				}
+				
+				entries.remove(key);
+			}
+			currentGeneration = generation;
+		}
+		
+		missCount.increment();
+		final CompletableFuture<JwtClaims> result = new CompletableFuture<>();
+		final CompletableFuture<JwtClaims> running = inFlight.putIfAbsent(key, result);
+		if (running != null) {
+			return await(running);
+		}
+		
+		try {
+			final JwtClaims claims = decryptAndVerify(token);
+			final Entry entry = new Entry(claims, getExpiresAt(claims, now), getNotBefore(claims));
+			if (entry.expiresAt > now) {
+				synchronized (entries) {
+					if (generation == currentGeneration) { // not verified with an invalidated key
+						entries.put(key, entry);
+					}
+				}
+			}
+			result.complete(claims);
+			
+			return claims;
+		} catch (final RuntimeException ex) {
+			result.completeExceptionally(ex);
+			throw ex;
+		} finally {
+			inFlight.remove(key, result);
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public void invalidateAll() {
+		synchronized (entries) {
+			++generation;
+			entries.clear();
+		}
+		inFlight.clear(); // the running verifications are not joined anymore
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public long getHitCount() { return hitCount.sum(); }
+	public long getMissCount() { return missCount.sum(); }
+	public long getRejectCount() { return rejectCount.sum(); }
+	
+	//=================================================================================================
+	// assistant methods
+	
+	//-------------------------------------------------------------------------------------------------
+	private JwtClaims decryptAndVerify(final String token) {
+		final PrivateKey privateKey = privateKeySupplier.get();
+		if (privateKey == null) {
+			throw new AuthException("Private key of the application system is not available.");
+		}
+		final PublicKey authorizationPublicKey = authorizationPublicKeySupplier.get();
+		if (authorizationPublicKey == null) {
+			throw new AuthException("Public key of the Authorization Core System is not available.");
+		}
+		
+		Verifier current = verifier;
+		if (current == null || current.privateKey != privateKey || current.authorizationPublicKey != authorizationPublicKey) {
+			current = new Verifier(privateKey, authorizationPublicKey);
+			verifier = current;
+		}
+		
+		try {
+			return current.jwtConsumer.processToClaims(token);
+		} catch (final InvalidJwtException ex) {
+			rejectCount.increment();
+			logger.debug("Invalid token: {}", ex.getMessage());
+			throw new AuthException("Token processing is failed: " + ex.getMessage(), ex);
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private long getExpiresAt(final JwtClaims claims, final long now) {
+		final long maxExpiresAt = now + maxTtl;
+		try {
+			final NumericDate expirationTime = claims.getExpirationTime();
+			if (expirationTime == null) {
+				return maxExpiresAt;
+			}
+			
+			return Math.min(maxExpiresAt, TimeUnit.SECONDS.toMillis(expirationTime.getValue()));
+		} catch (final MalformedClaimException ex) {
+			return now; // not cached
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private long getNotBefore(final JwtClaims claims) {
+		try {
+			final NumericDate notBefore = claims.getNotBefore();
+			return notBefore == null ? 0 : TimeUnit.SECONDS.toMillis(notBefore.getValue());
+		} catch (final MalformedClaimException ex) {
+			return Long.MAX_VALUE; // never valid from the cache, never happens as the consumer requires a valid one
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private JwtClaims await(final CompletableFuture<JwtClaims> running) {
+		try {
+			return running.join();
+		} catch (final CompletionException ex) {
+			if (ex.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) ex.getCause();
+			}
+			throw new AuthException("Token processing is failed: " + ex.getMessage(), ex);
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private String digest(final String token) {
+		try {
+			final MessageDigest messageDigest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+			return Base64.getEncoder().encodeToString(messageDigest.digest(token.getBytes(StandardCharsets.UTF_8)));
+		} catch (final NoSuchAlgorithmException ex) {
+			// never happens, SHA-256 is available in every JRE
+			throw new ArrowheadException(ex.getMessage(), ex);
+		}
+	}
+	
+	//=================================================================================================
+	// nested classes
+	
+	//-------------------------------------------------------------------------------------------------
+	private static class Entry {
+		
+		//=================================================================================================
+		// members
+		
+		private final JwtClaims claims;
+		private final long expiresAt;
+		private final long notBefore;
+		
+		//=================================================================================================
+		// methods
+		
+		//-------------------------------------------------------------------------------------------------
+		public Entry(final JwtClaims claims, final long expiresAt, final long notBefore) {
+			this.claims = claims;
+			this.expiresAt = expiresAt;
+			this.notBefore = notBefore;
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private static class Verifier {
+		
+		//=================================================================================================
+		// members
+		
+		private final PrivateKey privateKey;
+		private final PublicKey authorizationPublicKey;
+		private final JwtConsumer jwtConsumer; // thread-safe
+		
+		//=================================================================================================
+		// methods
+		
+		//-------------------------------------------------------------------------------------------------
+		public Verifier(final PrivateKey privateKey, final PublicKey authorizationPublicKey) {
+			this.privateKey = privateKey;
+			this.authorizationPublicKey = authorizationPublicKey;
+			this.jwtConsumer = new JwtConsumerBuilder().setRequireJwtId()
+													   .setRequireNotBefore()
+													   .setEnableRequireEncryption()
+													   .setEnableRequireIntegrity()
+													   .setExpectedIssuer(ApplicationCommonConstants.AUTHORIZATION_TOKEN_ISSUER)
+													   .setDecryptionKey(privateKey)
+													   .setVerificationKey(authorizationPublicKey)
+													   .setJwsAlgorithmConstraints(JWS_ALGORITHM_CONSTRAINTS)
+													   .setJweAlgorithmConstraints(JWE_ALGORITHM_CONSTRAINTS)
+													   .setJweContentEncryptionAlgorithmConstraints(JWE_ENCRYPTION_CONSTRAINTS)
+													   .build();
+		}
+	}
+}
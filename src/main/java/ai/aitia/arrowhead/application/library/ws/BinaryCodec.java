@@ -0,0 +1,39 @@
+/********************************************************************************
+ * Copyright (c) 2020 AITIA
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *   AITIA - implementation
+ ********************************************************************************/
+
+package ai.aitia.arrowhead.application.library.ws;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Converts payloads (e.g. Arrowhead DTOs) to and from binary WebSocket frames.
+ */
+public interface BinaryCodec {
+	
+	//-------------------------------------------------------------------------------------------------
+	public String getName();
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Writes the binary representation of the payload to the stream.
+	 */
+	public void encode(final Object payload, final OutputStream out) throws IOException;
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Reads an object of the given type from the remaining bytes of the buffer.
+	 */
+	public <T> T decode(final ByteBuffer payload, final Class<T> type) throws IOException;
+}
@@ -0,0 +1,82 @@
+/********************************************************************************
+ * Copyright (c) 2020 AITIA
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *   AITIA - implementation
+ ********************************************************************************/
+
+package ai.aitia.arrowhead.application.library.ws;
+
+import java.nio.ByteBuffer;
+
+import org.springframework.util.Assert;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.BinaryWebSocketHandler;
+
+/**
+ * WebSocket handler which passes the payload of the binary frames to a callback without copying it. Text frames are rejected (the session is
+ * closed with NOT_ACCEPTABLE status).
+ */
+public class ByteBufferWebSocketHandler extends BinaryWebSocketHandler {
+	
+	//=================================================================================================
+	// members
+	
+	private final ByteBufferConsumer consumer;
+	
+	//=================================================================================================
+	// methods
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @param consumer the callback; the buffer is only valid during the call, so it must be copied if needed later
+	 */
+	public ByteBufferWebSocketHandler(final ByteBufferConsumer consumer) {
+		Assert.notNull(consumer, "consumer is null");
+		this.consumer = consumer;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @return a handler which decodes every binary frame into the given type with the codec
+	 */
+	public static <T> ByteBufferWebSocketHandler decoding(final BinaryCodec codec, final Class<T> type, final PayloadConsumer<T> consumer) {
+		Assert.notNull(codec, "codec is null");
+		Assert.notNull(type, "type is null");
+		Assert.notNull(consumer, "consumer is null");
+		
+		return new ByteBufferWebSocketHandler((session, payload) -> consumer.accept(session, codec.decode(payload, type)));
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@Override
+	protected void handleBinaryMessage(final WebSocketSession session, final BinaryMessage message) throws Exception {
+		consumer.accept(session, message.getPayload());
+	}
+	
+	//=================================================================================================
+	// nested classes
+	
+	//-------------------------------------------------------------------------------------------------
+	@FunctionalInterface
+	public interface ByteBufferConsumer {
+		
+		//-------------------------------------------------------------------------------------------------
+		public void accept(final WebSocketSession session, final ByteBuffer payload) throws Exception;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@FunctionalInterface
+	public interface PayloadConsumer<T> {
+		
+		//-------------------------------------------------------------------------------------------------
+		public void accept(final WebSocketSession session, final T payload) throws Exception;
+	}
+}
@@ -0,0 +1,82 @@
+/********************************************************************************
+ * Copyright (c) 2020 AITIA
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *   AITIA - implementation
+ ********************************************************************************/
+
+package ai.aitia.arrowhead.application.library.ws;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import org.springframework.util.Assert;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+
+/**
+ * Binary codec based on Jackson. The JSON variant writes UTF-8 bytes directly (no intermediate String), the CBOR variant produces a more compact 
+ * binary encoding of the same data model, so both work with the Jackson annotated Arrowhead DTOs.
+ */
+public class JacksonBinaryCodec implements BinaryCodec {
+	
+	//=================================================================================================
+	// members
+	
+	private final String name;
+	private final ObjectMapper mapper;
+	
+	//=================================================================================================
+	// methods
+	
+	//-------------------------------------------------------------------------------------------------
+	public static JacksonBinaryCodec json() {
+		return new JacksonBinaryCodec("json", new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false).findAndRegisterModules());
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public static JacksonBinaryCodec cbor() {
+		return new JacksonBinaryCodec("cbor", new ObjectMapper(new CBORFactory()).configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false).findAndRegisterModules());
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public JacksonBinaryCodec(final String name, final ObjectMapper mapper) {
+		Assert.hasText(name, "name is empty");
+		Assert.notNull(mapper, "mapper is null");
+		
+		this.name = name;
+		this.mapper = mapper;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@Override
+	public String getName() {
+		return name;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@Override
+	public void encode(final Object payload, final OutputStream out) throws IOException {
+		mapper.writeValue(out, payload);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@Override
+	public <T> T decode(final ByteBuffer payload, final Class<T> type) throws IOException {
+		if (payload.hasArray()) {
+			return mapper.readValue(payload.array(), payload.arrayOffset() + payload.position(), payload.remaining(), type);
+		}
+		
+		return mapper.readValue(new ByteBufferBackedInputStream(payload.duplicate()), type);
+	}
+}
@@ -0,0 +1,369 @@
+/********************************************************************************
+ * Copyright (c) 2020 AITIA
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *   AITIA - implementation
+ ********************************************************************************/
+
+package ai.aitia.arrowhead.application.library.ws;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PingMessage;
+import org.springframework.web.socket.PongMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.client.WebSocketClient;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+
+import ai.aitia.arrowhead.application.library.util.LatencySampler;
+
+/**
+ * Handle of a WebSocket connection managed by a {@link WebSocketConnectionRegistry}. The connection is re-established automatically
+ * (according to the reconnect settings of the registry) whenever it is dropped for any reason other than calling {@link #close()}.
+ */
+public class WebSocketConnection {
+	
+	//=================================================================================================
+	// members
+	
+	private static final int RTT_SAMPLE_SIZE = 128;
+	private static final int PING_PAYLOAD_SIZE = Long.BYTES;
+	
+	private final String id;
+	private final URI uri;
+	private final String endpointKey;
+	private final WebSocketConnectionRegistry registry;
+	private final ManagedHandler handler;
+	private final WebSocketSender sender;
+	
+	private final AtomicInteger failedAttempts = new AtomicInteger();
+	private final AtomicLong connectCount = new AtomicLong();
+	private final AtomicLong disconnectCount = new AtomicLong();
+	private final AtomicInteger missedPongs = new AtomicInteger();
+	private final LatencySampler roundTripTimes = new LatencySampler(RTT_SAMPLE_SIZE);
+	
+	private volatile WebSocketConnectionState state = WebSocketConnectionState.CONNECTING;
+	private volatile WebSocketSession session;
+	private volatile boolean closeRequested = false;
+	private volatile long disconnectedAt = 0;
+	private volatile ScheduledFuture<?> pendingReconnect;
+	private volatile long pingSentAt = 0; // 0 means no ping is waiting for pong
+	
+	private final Logger logger = LogManager.getLogger(WebSocketConnection.class);
+	
+	//=================================================================================================
+	// methods
+	
+	//-------------------------------------------------------------------------------------------------
+	public String getId() { return id; }
+	public URI getUri() { return uri; }
+	public String getEndpointKey() { return endpointKey; }
+	public WebSocketConnectionState getState() { return state; }
+	public long getConnectCount() { return connectCount.get(); }
+	public long getDisconnectCount() { return disconnectCount.get(); }
+	public int getFailedAttempts() { return failedAttempts.get(); }
+	public int getMissedPongs() { return missedPongs.get(); }
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @return the round trip times of the heartbeat pings of this connection
+	 */
+	public LatencySampler getRoundTripTimes() {
+		return roundTripTimes;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @return the current session or null if the connection is not established at the moment
+	 */
+	public WebSocketSession getSession() {
+		return session;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @return the managed outbound queue of the connection which can be used from any number of threads
+	 */
+	public WebSocketSender getSender() {
+		return sender;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public boolean isOpen() {
+		final WebSocketSession current = session;
+		return current != null && current.isOpen();
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Closes the connection for good (no reconnect attempt is made afterwards) and removes it from the registry.
+	 * 
+	 * @return true if and only if the connection was alive, otherwise false
+	 */
+	public boolean close() {
+		return registry.close(id);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@Override
+	public String toString() {
+		return "WebSocketConnection [id=" + id + ", uri=" + uri.getScheme() + "://" + uri.getAuthority() + uri.getPath() + ", state=" + state + "]";
+	}
+	
+	//=================================================================================================
+	// assistant methods
+	
+	//-------------------------------------------------------------------------------------------------
+	WebSocketConnection(final String id, final URI uri, final WebSocketHandler delegate, final WebSocketConnectionRegistry registry) {
+		this.id = id;
+		this.uri = uri;
+		this.endpointKey = uri.getHost() + ":" + uri.getPort() + uri.getPath();
+		this.registry = registry;
+		this.handler = new ManagedHandler(delegate);
+		this.sender = new WebSocketSender(this, registry.getSenderSettings(), registry.getSenderExecutor(), registry.getBufferPool());
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	void connect() {
+		if (closeRequested) {
+			return;
+		}
+		
+		final WebSocketClient client;
+		try {
+			client = registry.getClient();
+		} catch (final RuntimeException | Error ex) {
+			onConnectFailure(ex);
+			return;
+		}
+		
+		try {
+			client.doHandshake(handler, new WebSocketHttpHeaders(), uri).completable().whenComplete((result, error) -> {
+				if (error != null) {
+					onConnectFailure(error);
+				}
+			});
+		} catch (final RuntimeException ex) {
+			// e.g. the container can't be started, so the attempt is counted as failed instead of leaving the connection in RECONNECTING
+			onConnectFailure(ex);
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Sends a ping, or evicts the session if too many pings remained unanswered. The payload of the ping is its sending time, so the round trip time 
+	 * can be calculated from the pong even if it arrives late.
+	 */
+	void heartbeat() {
+		final WebSocketSession current = session;
+		if (closeRequested || state != WebSocketConnectionState.CONNECTED || current == null || !current.isOpen()) {
+			return;
+		}
+		
+		if (pingSentAt != 0) {
+			final int missed = missedPongs.incrementAndGet();
+			if (missed >= registry.getHeartbeatSettings().getMaxMissedPongs()) {
+				evict(current, missed);
+				return;
+			}
+		}
+		
+		final long now = System.nanoTime();
+		pingSentAt = now;
+		final ByteBuffer payload = ByteBuffer.allocate(PING_PAYLOAD_SIZE);
+		payload.putLong(0, now);
+		sender.sendPing(new PingMessage(payload)); // through the single writer, as the session does not allow concurrent writes
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	boolean doClose() {
+		closeRequested = true;
+		state = WebSocketConnectionState.CLOSED;
+		sender.close();
+		final ScheduledFuture<?> reconnect = pendingReconnect;
+		if (reconnect != null) {
+			reconnect.cancel(false);
+		}
+		
+		final WebSocketSession current = session;
+		if (current == null || !current.isOpen()) {
+			return false;
+		}
+		
+		try {
+			current.close(CloseStatus.NORMAL);
+		} catch (final IOException ex) {
+			logger.debug("Closing WebSocket session of {} failed: {}", id, ex.getMessage());
+		}
+		
+		return true;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private void evict(final WebSocketSession deadSession, final int missed) {
+		logger.warn("WebSocket connection {} missed {} pong(s), closing it as dead.", this, missed);
+		registry.recordEviction();
+		try {
+			deadSession.close(CloseStatus.SESSION_NOT_RELIABLE);
+		} catch (final IOException ex) {
+			logger.debug("Closing dead WebSocket session of {} failed: {}", id, ex.getMessage());
+		}
+		
+		if (session == deadSession) {
+			// the container did not report the close (e.g. the close frame could not be written), so the connection is handled as dropped here
+			try {
+				handler.afterConnectionClosed(deadSession, CloseStatus.SESSION_NOT_RELIABLE);
+			} catch (final Exception ex) {
+				logger.debug("Handling the close of {} failed: {}", id, ex.getMessage());
+			}
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private void onPong(final PongMessage message) {
+		final ByteBuffer payload = message.getPayload();
+		final long sentAt = payload.remaining() == PING_PAYLOAD_SIZE ? payload.getLong(payload.position()) : pingSentAt;
+		if (sentAt == 0) {
+			return;
+		}
+		
+		final long roundTripTime = System.nanoTime() - sentAt;
+		roundTripTimes.record(roundTripTime);
+		registry.recordRoundTrip(endpointKey, roundTripTime);
+		missedPongs.set(0);
+		pingSentAt = 0;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private synchronized boolean releaseSession(final WebSocketSession closedSession) {
+		if (closedSession != session) {
+			return false;
+		}
+		
+		session = null;
+		return true;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private void onConnectFailure(final Throwable error) {
+		logger.debug("WebSocket handshake of {} failed: {}", id, error.getMessage());
+		registry.recordFailedAttempt();
+		failedAttempts.incrementAndGet();
+		scheduleReconnect();
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private void scheduleReconnect() {
+		if (closeRequested) {
+			return;
+		}
+		
+		final int attempt = failedAttempts.get() + 1;
+		if (!registry.getSettings().isAttemptAllowed(attempt)) {
+			logger.warn("WebSocket connection {} is given up after {} failed attempt(s).", this, failedAttempts.get());
+			state = WebSocketConnectionState.CLOSED;
+			sender.close();
+			registry.remove(this);
+			return;
+		}
+		
+		state = WebSocketConnectionState.RECONNECTING;
+		final long delay = registry.getSettings().getDelay(attempt);
+		logger.debug("Reconnecting {} in {} ms (attempt {}).", id, delay, attempt);
+		try {
+			pendingReconnect = registry.schedule(this::connect, delay);
+		} catch (final RejectedExecutionException ex) {
+			// registry is shut down
+			state = WebSocketConnectionState.CLOSED;
+		}
+	}
+	
+	//=================================================================================================
+	// nested classes
+	
+	//-------------------------------------------------------------------------------------------------
+	private class ManagedHandler extends WebSocketHandlerDecorator {
+		
+		//=================================================================================================
+		// methods
+		
+		//-------------------------------------------------------------------------------------------------
+		public ManagedHandler(final WebSocketHandler delegate) {
+			super(delegate);
+		}
+		
+		//-------------------------------------------------------------------------------------------------
+		@Override
+		public void afterConnectionEstablished(final WebSocketSession newSession) throws Exception {
+			if (closeRequested) {
+				// closed while the handshake was in progress
+				newSession.close(CloseStatus.NORMAL);
+				return;
+			}
+			
+			session = newSession;
+			state = WebSocketConnectionState.CONNECTED;
+			failedAttempts.set(0);
+			missedPongs.set(0);
+			pingSentAt = 0;
+			connectCount.incrementAndGet();
+			final long droppedAt = disconnectedAt;
+			disconnectedAt = 0;
+			registry.recordConnect(droppedAt == 0 ? -1 : System.nanoTime() - droppedAt);
+			
+			super.afterConnectionEstablished(newSession);
+			sender.onConnected();
+		}
+		
+		//-------------------------------------------------------------------------------------------------
+		@Override
+		public void handleMessage(final WebSocketSession messageSession, final WebSocketMessage<?> message) throws Exception {
+			if (message instanceof PongMessage) {
+				onPong((PongMessage) message);
+			}
+			
+			super.handleMessage(messageSession, message);
+		}
+		
+		//-------------------------------------------------------------------------------------------------
+		@Override
+		public void afterConnectionClosed(final WebSocketSession closedSession, final CloseStatus closeStatus) throws Exception {
+			if (!releaseSession(closedSession)) {
+				// never handed over to the delegate or already handled
+				return;
+			}
+			
+			disconnectCount.incrementAndGet();
+			registry.recordDisconnect();
+			try {
+				super.afterConnectionClosed(closedSession, closeStatus);
+			} finally {
+				if (closeRequested) {
+					state = WebSocketConnectionState.CLOSED;
+				} else {
+					logger.info("WebSocket connection {} dropped: {}", id, closeStatus);
+					disconnectedAt = System.nanoTime();
+					scheduleReconnect();
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,317 @@
+/********************************************************************************
+ * Copyright (c) 2020 AITIA
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *   AITIA - implementation
+ ********************************************************************************/
+
+package ai.aitia.arrowhead.application.library.ws;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.util.Assert;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.client.WebSocketClient;
+
+import ai.aitia.arrowhead.application.library.util.ApplicationCommonConstants;
+import ai.aitia.arrowhead.application.library.util.DirectBufferPool;
+import ai.aitia.arrowhead.application.library.util.LatencySampler;
+import eu.arrowhead.common.exception.InvalidParameterException;
+
+/**
+ * Keeps track of the WebSocket connections opened by the application, re-establishes the dropped ones with jittered exponential backoff
+ * and counts the connects, disconnects and reconnect latencies (the time between losing a connection and having it back). Optionally, it pings 
+ * the established connections periodically and evicts (and reconnects) the ones which stopped answering.
+ * 
+ * The sender threads and the scheduler thread are created by the first connection, so an application that doesn't use WebSocket has none.
+ */
+public class WebSocketConnectionRegistry {
+	
+	//=================================================================================================
+	// members
+	
+	private static final int LATENCY_SAMPLE_SIZE = 256;
+	
+	private final Supplier<? extends WebSocketClient> clientSupplier;
+	private final WebSocketReconnectSettings settings;
+	private final WebSocketSenderSettings senderSettings;
+	private final int senderThreads;
+	private final DirectBufferPool bufferPool;
+	private final WebSocketHeartbeatSettings heartbeatSettings;
+	private final ConcurrentMap<String,WebSocketConnection> connections = new ConcurrentHashMap<>();
+	private ExecutorService senderExecutor; // created on first use, guarded by this
+	private ScheduledExecutorService scheduler; // created on first use, guarded by this
+	private boolean shutdown = false; // guarded by this
+	
+	private final AtomicLong connectCount = new AtomicLong();
+	private final AtomicLong reconnectCount = new AtomicLong();
+	private final AtomicLong disconnectCount = new AtomicLong();
+	private final AtomicLong failedAttemptCount = new AtomicLong();
+	private final AtomicLong evictionCount = new AtomicLong();
+	private final LatencySampler reconnectLatencies = new LatencySampler(LATENCY_SAMPLE_SIZE);
+	private final ConcurrentMap<String,LatencySampler> roundTripTimes = new ConcurrentHashMap<>();
+	
+	private final Logger logger = LogManager.getLogger(WebSocketConnectionRegistry.class);
+	
+	//=================================================================================================
+	// methods
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @param clientSupplier provides the client used by every (re)connect attempt, so a replaced client (e.g. after a key store reload) is picked up
+	 * @param settings the reconnect settings
+	 * @param senderSettings the settings of the outbound queues
+	 * @param senderThreads the number of threads writing the outbound queues to the sessions
+	 * @param bufferPool the pool of the direct buffers used for the outbound binary messages
+	 * @param heartbeatSettings the ping/pong settings
+	 */
+	public WebSocketConnectionRegistry(final Supplier<? extends WebSocketClient> clientSupplier, final WebSocketReconnectSettings settings, final WebSocketSenderSettings senderSettings,
+									   final int senderThreads, final DirectBufferPool bufferPool, final WebSocketHeartbeatSettings heartbeatSettings) {
+		Assert.notNull(clientSupplier, "clientSupplier is null");
+		Assert.notNull(settings, "settings is null");
+		Assert.notNull(senderSettings, "senderSettings is null");
+		Assert.isTrue(senderThreads > 0, "senderThreads must be positive");
+		Assert.notNull(bufferPool, "bufferPool is null");
+		Assert.notNull(heartbeatSettings, "heartbeatSettings is null");
+		
+		this.clientSupplier = clientSupplier;
+		this.settings = settings;
+		this.senderSettings = senderSettings;
+		this.senderThreads = senderThreads;
+		this.bufferPool = bufferPool;
+		this.heartbeatSettings = heartbeatSettings;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Registers a new connection and starts the (asynchronous) handshake.
+	 * 
+	 * @param handler WebSocket handler to use for message exchanges
+	 * @param uri the URI of the WebSocket endpoint
+	 * @return the handle of the connection (in CONNECTING state)
+	 */
+	public WebSocketConnection connect(final WebSocketHandler handler, final URI uri) {
+		if (handler == null) {
+			throw new InvalidParameterException("handler cannot be null.");
+		}
+		if (uri == null) {
+			throw new InvalidParameterException("uri cannot be null.");
+		}
+		
+		if (heartbeatSettings.isEnabled()) {
+			getScheduler(); // starts the heartbeat
+		}
+		
+		final String id = ApplicationCommonConstants.WS_MANAGER_ID_PREFIX + UUID.randomUUID().toString();
+		final WebSocketConnection connection = new WebSocketConnection(id, uri, handler, this);
+		connections.put(id, connection);
+		connection.connect();
+		
+		return connection;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @return the connection with the specified id or null if there is no such (living) connection
+	 */
+	public WebSocketConnection getConnection(final String id) {
+		return id == null ? null : connections.get(id);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public Collection<WebSocketConnection> getConnections() {
+		return Collections.unmodifiableCollection(new ArrayList<>(connections.values()));
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @return true if and only if the connection was alive, otherwise false
+	 */
+	public boolean close(final String id) {
+		final WebSocketConnection connection = id == null ? null : connections.remove(id);
+		return connection != null && connection.doClose();
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Closes every registered connection.
+	 * 
+	 * @return the number of connections that were alive
+	 */
+	public int closeAll() {
+		int alive = 0;
+		final List<String> ids = new ArrayList<>(connections.keySet());
+		for (final String id : ids) {
+			if (close(id)) {
+				++alive;
+			}
+		}
+		
+		logger.debug("{} WebSocket connection(s) closed ({} alive).", ids.size(), alive);
+		return alive;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public void shutdown() {
+		closeAll();
+		synchronized (this) {
+			shutdown = true;
+			if (scheduler != null) {
+				scheduler.shutdownNow();
+			}
+			if (senderExecutor != null) {
+				senderExecutor.shutdownNow();
+			}
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public WebSocketReconnectSettings getSettings() { return settings; }
+	public WebSocketSenderSettings getSenderSettings() { return senderSettings; }
+	public DirectBufferPool getBufferPool() { return bufferPool; }
+	public WebSocketHeartbeatSettings getHeartbeatSettings() { return heartbeatSettings; }
+	public long getConnectCount() { return connectCount.get(); }
+	public long getReconnectCount() { return reconnectCount.get(); }
+	public long getDisconnectCount() { return disconnectCount.get(); }
+	public long getFailedAttemptCount() { return failedAttemptCount.get(); }
+	public long getEvictionCount() { return evictionCount.get(); }
+	public LatencySampler getReconnectLatencies() { return reconnectLatencies; }
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @return the heartbeat round trip times per endpoint (host:port/path), including the already closed connections
+	 */
+	public Map<String,LatencySampler> getRoundTripTimes() {
+		return Collections.unmodifiableMap(roundTripTimes);
+	}
+	
+	//=================================================================================================
+	// assistant methods
+	
+	//-------------------------------------------------------------------------------------------------
+	WebSocketClient getClient() {
+		return clientSupplier.get();
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	synchronized Executor getSenderExecutor() {
+		if (senderExecutor == null) {
+			checkNotShutdown();
+			final AtomicInteger counter = new AtomicInteger();
+			senderExecutor = Executors.newFixedThreadPool(senderThreads, r -> {
+				final Thread thread = new Thread(r, "ws-sender-" + counter.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		
+		return senderExecutor;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	ScheduledFuture<?> schedule(final Runnable task, final long delayMillis) {
+		return getScheduler().schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	void remove(final WebSocketConnection connection) {
+		connections.remove(connection.getId(), connection);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @param reconnectLatencyNanos the time elapsed since the connection was lost or a negative value for the first connect
+	 */
+	void recordConnect(final long reconnectLatencyNanos) {
+		connectCount.incrementAndGet();
+		if (reconnectLatencyNanos >= 0) {
+			reconnectCount.incrementAndGet();
+			reconnectLatencies.record(reconnectLatencyNanos);
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	void recordDisconnect() {
+		disconnectCount.incrementAndGet();
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	void recordFailedAttempt() {
+		failedAttemptCount.incrementAndGet();
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	void recordEviction() {
+		evictionCount.incrementAndGet();
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	void recordRoundTrip(final String endpointKey, final long roundTripNanos) {
+		roundTripTimes.computeIfAbsent(endpointKey, key -> new LatencySampler(LATENCY_SAMPLE_SIZE)).record(roundTripNanos);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private synchronized ScheduledExecutorService getScheduler() {
+		if (scheduler == null) {
+			checkNotShutdown();
+			scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+				final Thread thread = new Thread(r, "ws-scheduler");
+				thread.setDaemon(true);
+				return thread;
+			});
+			if (heartbeatSettings.isEnabled()) {
+				scheduler.scheduleAtFixedRate(this::heartbeat, heartbeatSettings.getInterval(), heartbeatSettings.getInterval(), TimeUnit.MILLISECONDS);
+			}
+		}
+		
+		return scheduler;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private void checkNotShutdown() { // guarded by this
+		if (shutdown) {
+			throw new RejectedExecutionException("WebSocket connection registry is shut down.");
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private void heartbeat() {
+		// the missed pongs are counted and the dead sessions are evicted here, while the pings are only handed over to the senders (written on the 
+		// sender threads), so a slow or blocked writer can't delay the eviction of its own connection
+		for (final WebSocketConnection connection : connections.values()) {
+			if (connection.getState() == WebSocketConnectionState.CONNECTED) {
+				try {
+					connection.heartbeat();
+				} catch (final RuntimeException ex) {
+					logger.debug("Heartbeat of {} failed: {}", connection.getId(), ex.getMessage());
+				}
+			}
+		}
+	}
+}
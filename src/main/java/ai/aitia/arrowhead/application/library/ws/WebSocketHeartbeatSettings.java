@@ -0,0 +1,49 @@
+/********************************************************************************
+ * Copyright (c) 2020 AITIA
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *   AITIA - implementation
+ ********************************************************************************/
+
+package ai.aitia.arrowhead.application.library.ws;
+
+import org.springframework.util.Assert;
+
+public class WebSocketHeartbeatSettings {
+	
+	//=================================================================================================
+	// members
+	
+	private final boolean enabled;
+	private final long interval;
+	private final int maxMissedPongs;
+	
+	//=================================================================================================
+	// methods
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @param enabled whether ping frames are sent on the established connections
+	 * @param interval the time between two pings in milliseconds
+	 * @param maxMissedPongs the connection is considered dead (and closed) after this many consecutive pings without pong
+	 */
+	public WebSocketHeartbeatSettings(final boolean enabled, final long interval, final int maxMissedPongs) {
+		Assert.isTrue(interval > 0, "interval must be positive");
+		Assert.isTrue(maxMissedPongs > 0, "maxMissedPongs must be positive");
+		
+		this.enabled = enabled;
+		this.interval = interval;
+		this.maxMissedPongs = maxMissedPongs;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public boolean isEnabled() { return enabled; }
+	public long getInterval() { return interval; }
+	public int getMaxMissedPongs() { return maxMissedPongs; }
+}
@@ -0,0 +1,82 @@
+/********************************************************************************
+ * Copyright (c) 2020 AITIA
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *   AITIA - implementation
+ ********************************************************************************/
+
+package ai.aitia.arrowhead.application.library.ws;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.springframework.util.Assert;
+
+public class WebSocketReconnectSettings {
+	
+	//=================================================================================================
+	// members
+	
+	public static final WebSocketReconnectSettings DISABLED = new WebSocketReconnectSettings(false, 1, 1, 1, 0);
+	
+	private final boolean enabled;
+	private final long initialDelay;
+	private final long maxDelay;
+	private final double multiplier;
+	private final int maxAttempts;
+	
+	//=================================================================================================
+	// methods
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @param enabled whether dropped connections are reconnected automatically
+	 * @param initialDelay the delay before the first reconnect attempt in milliseconds
+	 * @param maxDelay the upper bound of the delay between the attempts in milliseconds
+	 * @param multiplier the delay is multiplied by this after every failed attempt
+	 * @param maxAttempts the maximum number of consecutive attempts, 0 means unlimited
+	 */
+	public WebSocketReconnectSettings(final boolean enabled, final long initialDelay, final long maxDelay, final double multiplier, final int maxAttempts) {
+		Assert.isTrue(initialDelay > 0 && initialDelay <= maxDelay, "initialDelay must be positive and not greater than maxDelay");
+		Assert.isTrue(multiplier >= 1, "multiplier must be at least 1");
+		Assert.isTrue(maxAttempts >= 0, "maxAttempts must not be negative");
+		
+		this.enabled = enabled;
+		this.initialDelay = initialDelay;
+		this.maxDelay = maxDelay;
+		this.multiplier = multiplier;
+		this.maxAttempts = maxAttempts;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @param attempt the number of the attempt (starting from 1)
+	 * @return the jittered exponential delay before the specified attempt in milliseconds: a random value between the half and the whole 
+	 * of the exponential delay, so the clients dropped at the same time don't reconnect at the same time
+	 */
+	public long getDelay(final int attempt) {
+		final double exponential = Math.min(maxDelay, initialDelay * Math.pow(multiplier, Math.max(0, attempt - 1)));
+		final long half = (long) (exponential / 2);
+		return half + ThreadLocalRandom.current().nextLong(half + 1);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @return true if the specified attempt is allowed
+	 */
+	public boolean isAttemptAllowed(final int attempt) {
+		return enabled && (maxAttempts == 0 || attempt <= maxAttempts);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public boolean isEnabled() { return enabled; }
+	public long getInitialDelay() { return initialDelay; }
+	public long getMaxDelay() { return maxDelay; }
+	public double getMultiplier() { return multiplier; }
+	public int getMaxAttempts() { return maxAttempts; }
+}
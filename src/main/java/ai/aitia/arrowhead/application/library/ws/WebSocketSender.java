@@ -0,0 +1,510 @@
+/********************************************************************************
+ * Copyright (c) 2020 AITIA
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *   AITIA - implementation
+ ********************************************************************************/
+
+package ai.aitia.arrowhead.application.library.ws;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.PingMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import com.fasterxml.jackson.databind.util.ByteBufferBackedOutputStream;
+
+import ai.aitia.arrowhead.application.library.util.DirectBufferPool;
+import ai.aitia.arrowhead.application.library.util.LatencySampler;
+import eu.arrowhead.common.exception.ArrowheadException;
+import eu.arrowhead.common.exception.InvalidParameterException;
+
+/**
+ * Outbound message queue of a {@link WebSocketConnection}. Any number of producer threads can send through it, but the messages are written to 
+ * the session by one writer at a time, so concurrent producers never run into the "TEXT_FULL_WRITING" state of the container. Messages sent while 
+ * the connection is down are kept (up to the queue capacity) and delivered after the connection is re-established.
+ */
+public class WebSocketSender {
+	
+	//=================================================================================================
+	// members
+	
+	private static final int MAX_FRAMES_PER_RUN = 64; // the writer yields the thread after this many frames
+	private static final int LATENCY_SAMPLE_SIZE = 1024;
+	
+	private final WebSocketConnection connection;
+	private final WebSocketSenderSettings settings;
+	private final Executor executor;
+	private final DirectBufferPool bufferPool;
+	private final LinkedBlockingDeque<Pending> queue;
+	private final Object queueLock = new Object();
+	private final AtomicBoolean draining = new AtomicBoolean(false);
+	private final AtomicReference<PingMessage> pendingPing = new AtomicReference<>(); // written before the next queued frame
+	
+	private final AtomicLong sentMessageCount = new AtomicLong();
+	private final AtomicLong sentFrameCount = new AtomicLong();
+	private final AtomicLong droppedCount = new AtomicLong();
+	private final AtomicLong rejectedCount = new AtomicLong();
+	private final AtomicLong failedWriteCount = new AtomicLong();
+	private final LatencySampler sendLatencies = new LatencySampler(LATENCY_SAMPLE_SIZE);
+	private volatile int maxQueueSize = 0;
+	
+	private volatile boolean closed = false;
+	private Batch unsent; // accessed only by the current writer
+	
+	private final Logger logger = LogManager.getLogger(WebSocketSender.class);
+	
+	//=================================================================================================
+	// methods
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Sends a text message.
+	 * 
+	 * @see #send(WebSocketMessage)
+	 */
+	public void sendText(final String payload) {
+		if (payload == null) {
+			throw new InvalidParameterException("payload cannot be null.");
+		}
+		
+		send(new TextMessage(payload));
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Sends the remaining bytes of the buffer as a binary message. The buffer is not copied, so it must not be modified by the caller afterwards.
+	 * 
+	 * @see #send(WebSocketMessage)
+	 */
+	public void sendBinary(final ByteBuffer payload) {
+		if (payload == null) {
+			throw new InvalidParameterException("payload cannot be null.");
+		}
+		
+		send(new BinaryMessage(payload));
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @return a cleared direct buffer from the pool of the connections, which can be filled by the caller and sent with {@link #sendPooledBinary(ByteBuffer)}
+	 */
+	public ByteBuffer acquireBuffer() {
+		return bufferPool.acquire();
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Sends the remaining bytes of a buffer obtained from {@link #acquireBuffer()} as a binary message. The buffer goes back to the pool after it is
+	 * written (or dropped), so it must not be used by the caller afterwards, even if this method throws an exception.
+	 * 
+	 * @see #send(WebSocketMessage)
+	 */
+	public void sendPooledBinary(final ByteBuffer payload) {
+		if (payload == null) {
+			throw new InvalidParameterException("payload cannot be null.");
+		}
+		
+		enqueue(new Pending(new BinaryMessage(payload), System.nanoTime(), payload));
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Encodes the payload with the codec into a pooled direct buffer and sends it as a binary message. Payloads which don't fit into a pooled buffer
+	 * are encoded into a heap buffer instead.
+	 * 
+	 * @see #send(WebSocketMessage)
+	 * @throws ArrowheadException when the encoding fails
+	 */
+	public void sendEncoded(final Object payload, final BinaryCodec codec) {
+		if (payload == null) {
+			throw new InvalidParameterException("payload cannot be null.");
+		}
+		if (codec == null) {
+			throw new InvalidParameterException("codec cannot be null.");
+		}
+		
+		final ByteBuffer buffer = bufferPool.acquire();
+		try {
+			codec.encode(payload, new ByteBufferBackedOutputStream(buffer));
+			buffer.flip();
+		} catch (final IOException | BufferOverflowException ex) {
+			bufferPool.release(buffer);
+			if (!isOverflow(ex)) {
+				throw new ArrowheadException("Encoding payload with " + codec.getName() + " codec failed: " + ex.getMessage(), ex);
+			}
+			
+			sendBinary(ByteBuffer.wrap(encodeToArray(payload, codec)));
+			return;
+		}
+		
+		sendPooledBinary(buffer);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Puts the message into the queue and returns. If the queue is full, the configured overflow policy applies.
+	 * 
+	 * @param message the message to send
+	 * @throws ArrowheadException when the sender is closed, the queue is full (FAIL policy) or no space became free in time (BLOCK policy)
+	 */
+	public void send(final WebSocketMessage<?> message) {
+		if (message == null) {
+			throw new InvalidParameterException("message cannot be null.");
+		}
+		
+		enqueue(new Pending(message, System.nanoTime(), null));
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public WebSocketSenderSettings getSettings() { return settings; }
+	public int getQueueSize() { return queue.size(); }
+	public int getMaxQueueSize() { return maxQueueSize; }
+	public long getSentMessageCount() { return sentMessageCount.get(); }
+	public long getSentFrameCount() { return sentFrameCount.get(); }
+	public long getDroppedCount() { return droppedCount.get(); }
+	public long getRejectedCount() { return rejectedCount.get(); }
+	public long getFailedWriteCount() { return failedWriteCount.get(); }
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @return the samples of the time elapsed between queueing a message and writing it to the session
+	 */
+	public LatencySampler getSendLatencies() {
+		return sendLatencies;
+	}
+	
+	//=================================================================================================
+	// assistant methods
+	
+	//-------------------------------------------------------------------------------------------------
+	WebSocketSender(final WebSocketConnection connection, final WebSocketSenderSettings settings, final Executor executor, final DirectBufferPool bufferPool) {
+		this.connection = connection;
+		this.settings = settings;
+		this.executor = executor;
+		this.bufferPool = bufferPool;
+		this.queue = new LinkedBlockingDeque<>(settings.getQueueCapacity());
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	void onConnected() {
+		pendingPing.set(null); // belongs to the previous session
+		scheduleDrain();
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * Hands a ping over to the writer. The ping is not queued with the messages, it is written before the next frame, so a long queue does not 
+	 * delay it. The call never blocks and a ping that has not been written yet is replaced.
+	 */
+	void sendPing(final PingMessage ping) {
+		if (closed) {
+			return;
+		}
+		
+		pendingPing.set(ping);
+		scheduleDrain();
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	void close() {
+		closed = true;
+		pendingPing.set(null);
+		Pending pending;
+		while ((pending = queue.pollFirst()) != null) {
+			release(pending);
+		}
+		
+		// a running writer releases the unsent batch itself when it finishes
+		if (draining.compareAndSet(false, true)) {
+			releaseUnsent();
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private void enqueue(final Pending pending) {
+		if (closed) {
+			release(pending);
+			throw new ArrowheadException("WebSocket connection " + connection.getId() + " is closed.");
+		}
+		
+		switch (settings.getOverflowPolicy()) {
+		case BLOCK:
+			enqueueOrBlock(pending);
+			break;
+		case DROP_OLDEST:
+			enqueueOrDropOldest(pending);
+			break;
+		default:
+			if (!queue.offer(pending)) {
+				reject(pending);
+				throw new ArrowheadException("Send queue of WebSocket connection " + connection.getId() + " is full.");
+			}
+		}
+		
+		final int size = queue.size();
+		if (size > maxQueueSize) {
+			maxQueueSize = size;
+		}
+		scheduleDrain();
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private void enqueueOrBlock(final Pending pending) {
+		try {
+			if (!queue.offer(pending, settings.getBlockTimeout(), TimeUnit.MILLISECONDS)) {
+				reject(pending);
+				throw new ArrowheadException("Send queue of WebSocket connection " + connection.getId() + " is full.");
+			}
+		} catch (final InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			reject(pending);
+			throw new ArrowheadException("Interrupted while waiting for the send queue of WebSocket connection " + connection.getId() + ".");
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private void reject(final Pending pending) {
+		rejectedCount.incrementAndGet();
+		release(pending);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private void release(final Pending pending) {
+		if (pending.pooledBuffer != null) {
+			bufferPool.release(pending.pooledBuffer);
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private void enqueueOrDropOldest(final Pending pending) {
+		synchronized (queueLock) {
+			while (!queue.offer(pending)) {
+				final Pending dropped = queue.pollFirst();
+				if (dropped != null) {
+					droppedCount.incrementAndGet();
+					release(dropped);
+				}
+			}
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private void scheduleDrain() {
+		if (closed || !connection.isOpen() || !draining.compareAndSet(false, true)) {
+			return;
+		}
+		
+		try {
+			executor.execute(this::drain);
+		} catch (final RejectedExecutionException ex) {
+			draining.set(false);
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private void drain() {
+		boolean reschedule = false;
+		try {
+			reschedule = writeFrames();
+		} finally {
+			draining.set(false);
+		}
+		
+		if (closed) {
+			if (draining.compareAndSet(false, true)) { // the writer slot is never given back after close
+				releaseUnsent();
+			}
+			return;
+		}
+		
+		if (reschedule && (unsent != null || pendingPing.get() != null || !queue.isEmpty())) {
+			scheduleDrain();
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @return false if writing has to stop until the next (re)connect, true otherwise
+	 */
+	private boolean writeFrames() {
+		for (int frames = 0; frames < MAX_FRAMES_PER_RUN; ++frames) {
+			final WebSocketSession session = connection.getSession();
+			if (closed || session == null || !session.isOpen()) {
+				return false;
+			}
+			
+			final PingMessage ping = pendingPing.getAndSet(null);
+			if (ping != null) {
+				try {
+					session.sendMessage(ping);
+				} catch (final IOException | IllegalStateException ex) {
+					// the lost ping is counted as missed at the next heartbeat
+					logger.debug("Sending ping on WebSocket connection {} failed: {}", connection.getId(), ex.getMessage());
+					failedWriteCount.incrementAndGet();
+					return false;
+				}
+			}
+			
+			final Batch batch = unsent != null ? unsent : nextBatch();
+			if (batch == null) {
+				return true;
+			}
+			
+			try {
+				// binary payloads are sent through a view, so the position of the original buffer is intact if the write has to be repeated
+				session.sendMessage(batch.frame instanceof BinaryMessage ? new BinaryMessage(((BinaryMessage) batch.frame).getPayload().duplicate(), batch.frame.isLast()) 
+																		 : batch.frame);
+			} catch (final IOException | IllegalStateException ex) {
+				// the session is broken, the frame is kept and sent again after reconnect
+				logger.debug("Writing to WebSocket connection {} failed: {}", connection.getId(), ex.getMessage());
+				failedWriteCount.incrementAndGet();
+				unsent = batch;
+				return false;
+			}
+			
+			unsent = null;
+			if (batch.pooledBuffer != null) {
+				bufferPool.release(batch.pooledBuffer);
+			}
+			final long now = System.nanoTime();
+			for (final long enqueuedAt : batch.enqueuedAts) {
+				sendLatencies.record(now - enqueuedAt);
+			}
+			sentMessageCount.addAndGet(batch.enqueuedAts.size());
+			sentFrameCount.incrementAndGet();
+		}
+		
+		return true;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private void releaseUnsent() {
+		final Batch batch = unsent;
+		unsent = null;
+		if (batch != null && batch.pooledBuffer != null) {
+			bufferPool.release(batch.pooledBuffer);
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private Batch nextBatch() {
+		synchronized (queueLock) {
+			final Pending first = queue.pollFirst();
+			if (first == null) {
+				return null;
+			}
+			if (!settings.isCoalescingEnabled() || !(first.message instanceof TextMessage)) {
+				return new Batch(first.message, Collections.singletonList(first.enqueuedAt), first.pooledBuffer);
+			}
+			
+			final String delimiter = settings.getBatchDelimiter();
+			final StringBuilder payload = new StringBuilder(((TextMessage) first.message).getPayload());
+			final List<Long> enqueuedAts = new ArrayList<>();
+			enqueuedAts.add(first.enqueuedAt);
+			
+			Pending next = queue.peekFirst();
+			while (next != null && next.message instanceof TextMessage && payload.length() + delimiter.length() + next.message.getPayloadLength() <= settings.getMaxBatchSize()) {
+				queue.pollFirst();
+				payload.append(delimiter).append(((TextMessage) next.message).getPayload());
+				enqueuedAts.add(next.enqueuedAt);
+				next = queue.peekFirst();
+			}
+			
+			return new Batch(enqueuedAts.size() == 1 ? first.message : new TextMessage(payload), enqueuedAts, null);
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private byte[] encodeToArray(final Object payload, final BinaryCodec codec) {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream(2 * bufferPool.getBufferSize());
+		try {
+			codec.encode(payload, out);
+		} catch (final IOException ex) {
+			throw new ArrowheadException("Encoding payload with " + codec.getName() + " codec failed: " + ex.getMessage(), ex);
+		}
+		
+		return out.toByteArray();
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private boolean isOverflow(final Throwable ex) {
+		// Jackson may wrap the exception of the underlying stream
+		for (Throwable current = ex; current != null; current = current.getCause()) {
+			if (current instanceof BufferOverflowException) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	//=================================================================================================
+	// nested classes
+	
+	//-------------------------------------------------------------------------------------------------
+	private static class Pending {
+		
+		//=================================================================================================
+		// members
+		
+		private final WebSocketMessage<?> message;
+		private final long enqueuedAt;
+		private final ByteBuffer pooledBuffer;
+		
+		//=================================================================================================
+		// methods
+		
+		//-------------------------------------------------------------------------------------------------
+		public Pending(final WebSocketMessage<?> message, final long enqueuedAt, final ByteBuffer pooledBuffer) {
+			this.message = message;
+			this.enqueuedAt = enqueuedAt;
+			this.pooledBuffer = pooledBuffer;
+		}
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private static class Batch {
+		
+		//=================================================================================================
+		// members
+		
+		private final WebSocketMessage<?> frame;
+		private final List<Long> enqueuedAts;
+		private final ByteBuffer pooledBuffer;
+		
+		//=================================================================================================
+		// methods
+		
+		//-------------------------------------------------------------------------------------------------
+		public Batch(final WebSocketMessage<?> frame, final List<Long> enqueuedAts, final ByteBuffer pooledBuffer) {
+			this.frame = frame;
+			this.enqueuedAts = enqueuedAts;
+			this.pooledBuffer = pooledBuffer;
+		}
+	}
+}
@@ -0,0 +1,69 @@
+/********************************************************************************
+ * Copyright (c) 2020 AITIA
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *   AITIA - implementation
+ ********************************************************************************/
+
+package ai.aitia.arrowhead.application.library.ws;
+
+import org.springframework.util.Assert;
+
+import ai.aitia.arrowhead.application.library.util.OverflowPolicy;
+
+public class WebSocketSenderSettings {
+	
+	//=================================================================================================
+	// members
+	
+	public static final String DEFAULT_BATCH_DELIMITER = "\n";
+	
+	private final int queueCapacity;
+	private final OverflowPolicy overflowPolicy;
+	private final long blockTimeout;
+	private final boolean coalescingEnabled;
+	private final int maxBatchSize;
+	private final String batchDelimiter;
+	
+	//=================================================================================================
+	// methods
+	
+	//-------------------------------------------------------------------------------------------------
+	/**
+	 * @param queueCapacity the maximum number of messages waiting for being sent per connection
+	 * @param overflowPolicy what to do when the queue is full
+	 * @param blockTimeout how long a producer may wait for free space in milliseconds (BLOCK policy only)
+	 * @param coalescingEnabled whether the queued text messages are sent in one frame, separated by the batch delimiter
+	 * @param maxBatchSize the maximum length of a coalesced text frame in characters
+	 * @param batchDelimiter the separator of the coalesced text messages
+	 */
+	public WebSocketSenderSettings(final int queueCapacity, final OverflowPolicy overflowPolicy, final long blockTimeout, final boolean coalescingEnabled, final int maxBatchSize,
+								   final String batchDelimiter) {
+		Assert.isTrue(queueCapacity > 0, "queueCapacity must be positive");
+		Assert.notNull(overflowPolicy, "overflowPolicy is null");
+		Assert.isTrue(blockTimeout >= 0, "blockTimeout must not be negative");
+		Assert.isTrue(maxBatchSize > 0, "maxBatchSize must be positive");
+		Assert.notNull(batchDelimiter, "batchDelimiter is null");
+		
+		this.queueCapacity = queueCapacity;
+		this.overflowPolicy = overflowPolicy;
+		this.blockTimeout = blockTimeout;
+		this.coalescingEnabled = coalescingEnabled;
+		this.maxBatchSize = maxBatchSize;
+		this.batchDelimiter = batchDelimiter;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	public int getQueueCapacity() { return queueCapacity; }
+	public OverflowPolicy getOverflowPolicy() { return overflowPolicy; }
+	public long getBlockTimeout() { return blockTimeout; }
+	public boolean isCoalescingEnabled() { return coalescingEnabled; }
+	public int getMaxBatchSize() { return maxBatchSize; }
+	public String getBatchDelimiter() { return batchDelimiter; }
+}
@@ -0,0 +1,191 @@
+/********************************************************************************
+ * Copyright (c) 2020 AITIA
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *   AITIA - implementation
+ ********************************************************************************/
+
+package ai.aitia.arrowhead.application.library.mqtt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Stream;
+
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.FileSystemUtils;
+
+import ai.aitia.arrowhead.application.library.mqtt.MqttOfflineBuffer.BufferedMessage;
+import ai.aitia.arrowhead.application.library.util.OverflowPolicy;
+
+public class MqttOfflineBufferTest {
+	
+	//=================================================================================================
+	// members
+	
+	private static final int SEGMENT_SIZE = 4096;
+	private static final int RECORD_HEADER_SIZE = 2 * Integer.BYTES;
+	
+	private Path directory;
+	private MqttOfflineBuffer buffer;
+	
+	//=================================================================================================
+	// methods
+	
+	//-------------------------------------------------------------------------------------------------
+	@BeforeEach
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("mqtt-offline-buffer-test");
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@AfterEach
+	public void tearDown() throws IOException {
+		if (buffer != null) {
+			buffer.close();
+		}
+		FileSystemUtils.deleteRecursively(directory);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@Test
+	public void testMessagesSurviveReopen() {
+		buffer = open(SEGMENT_SIZE);
+		buffer.append("topic/a", message("first", 1, true));
+		buffer.append("topic/b", message("second", 2, false));
+		buffer.append("topic/c", message("third", 0, false));
+		buffer.remove(buffer.peek());
+		buffer.close();
+		
+		buffer = open(SEGMENT_SIZE);
+		assertEquals(2, buffer.getCount());
+		
+		final BufferedMessage next = buffer.peek();
+		assertEquals("topic/b", next.getTopic());
+		assertEquals("second", payload(next));
+		assertEquals(2, next.getMessage().getQos());
+		
+		buffer.remove(next);
+		assertEquals("third", payload(buffer.peek()));
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@Test
+	public void testTornRecordIsDiscarded() throws IOException {
+		buffer = open(SEGMENT_SIZE);
+		buffer.append("topic", message("intact", 1, false));
+		buffer.append("topic", message("torn", 1, false));
+		buffer.close();
+		
+		// damage the body of the second record as if the crash happened while it was written
+		final Path segment = getSegmentFiles()[0];
+		try (final FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			final ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+			channel.read(length, 0);
+			final int secondOffset = RECORD_HEADER_SIZE + length.getInt(0);
+			final int position = secondOffset + RECORD_HEADER_SIZE + 4; // first byte of the topic
+			final ByteBuffer original = ByteBuffer.allocate(1);
+			channel.read(original, position);
+			channel.write(ByteBuffer.wrap(new byte[] { (byte) ~original.get(0) }), position);
+		}
+		
+		buffer = open(SEGMENT_SIZE);
+		assertEquals(1, buffer.getCount());
+		
+		// the next message overwrites the torn record
+		buffer.append("topic", message("next", 1, false));
+		assertEquals(2, buffer.getCount());
+		final BufferedMessage first = buffer.peek();
+		assertEquals("intact", payload(first));
+		buffer.remove(first);
+		assertEquals("next", payload(buffer.peek()));
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@Test
+	public void testCursorPastTheLastRecordIsClamped() throws IOException {
+		buffer = open(SEGMENT_SIZE);
+		buffer.append("topic", message("lost", 1, false));
+		buffer.close();
+		
+		// the cursor was forced, but the record it points after was not
+		try (final FileChannel channel = FileChannel.open(directory.resolve("cursor"), StandardOpenOption.WRITE)) {
+			final ByteBuffer cursor = ByteBuffer.allocate(Long.BYTES + Integer.BYTES);
+			cursor.putLong(0).putInt(SEGMENT_SIZE / 2).flip();
+			channel.write(cursor, 0);
+		}
+		
+		buffer = open(SEGMENT_SIZE);
+		assertTrue(buffer.isEmpty());
+		assertNull(buffer.peek());
+		
+		buffer.append("topic", message("new", 1, false));
+		assertEquals("new", payload(buffer.peek()));
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@Test
+	public void testCursorIsRestoredAcrossSegments() {
+		final int segmentSize = 64; // one record per segment
+		buffer = open(segmentSize);
+		for (int i = 0; i < 3; ++i) {
+			buffer.append("t", message("message-number-" + i + "-padding", 1, false));
+		}
+		assertEquals(3, buffer.getSegmentCount());
+		
+		buffer.remove(buffer.peek());
+		buffer.remove(buffer.peek());
+		buffer.close();
+		
+		buffer = open(segmentSize);
+		assertEquals(1, buffer.getCount());
+		assertEquals("message-number-2-padding", payload(buffer.peek()));
+		assertEquals(1, buffer.getSegmentCount());
+	}
+	
+	//=================================================================================================
+	// assistant methods
+	
+	//-------------------------------------------------------------------------------------------------
+	private MqttOfflineBuffer open(final int segmentSize) {
+		return new MqttOfflineBuffer(directory, segmentSize, 10L * segmentSize, OverflowPolicy.FAIL, 0, 0);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private MqttMessage message(final String payload, final int qos, final boolean retained) {
+		final MqttMessage message = new MqttMessage(payload.getBytes(StandardCharsets.UTF_8));
+		message.setQos(qos);
+		message.setRetained(retained);
+		
+		return message;
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private String payload(final BufferedMessage message) {
+		return new String(message.getMessage().getPayload(), StandardCharsets.UTF_8);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private Path[] getSegmentFiles() throws IOException {
+		try (final Stream<Path> files = Files.list(directory)) {
+			return files.filter(path -> path.getFileName().toString().startsWith("segment-")).sorted().toArray(Path[]::new);
+		}
+	}
+}
@@ -0,0 +1,118 @@
+/********************************************************************************
+ * Copyright (c) 2020 AITIA
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *   AITIA - implementation
+ ********************************************************************************/
+
+package ai.aitia.arrowhead.application.library.mqtt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class MqttTopicTrieTest {
+	
+	//=================================================================================================
+	// methods
+	
+	//-------------------------------------------------------------------------------------------------
+	@Test
+	public void testExactMatch() {
+		final MqttTopicTrie<String> trie = MqttTopicTrie.<String>empty().with("a/b/c", "exact");
+		
+		assertEquals(List.of("exact"), trie.match("a/b/c"));
+		assertTrue(trie.match("a/b").isEmpty());
+		assertTrue(trie.match("a/b/c/d").isEmpty());
+		assertTrue(trie.match("a/b/x").isEmpty());
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@Test
+	public void testSingleLevelWildcard() {
+		final MqttTopicTrie<String> trie = MqttTopicTrie.<String>empty().with("a/+/c", "single")
+																		 .with("+", "top");
+		
+		assertEquals(List.of("single"), trie.match("a/b/c"));
+		assertEquals(List.of("single"), trie.match("a//c")); // empty level
+		assertTrue(trie.match("a/b/c/d").isEmpty());
+		assertTrue(trie.match("a/c").isEmpty());
+		assertEquals(List.of("top"), trie.match("a"));
+		assertTrue(trie.match("a/b").isEmpty());
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@Test
+	public void testMultiLevelWildcard() {
+		final MqttTopicTrie<String> trie = MqttTopicTrie.<String>empty().with("a/#", "multi");
+		
+		assertEquals(List.of("multi"), trie.match("a"));
+		assertEquals(List.of("multi"), trie.match("a/b"));
+		assertEquals(List.of("multi"), trie.match("a/b/c/d"));
+		assertTrue(trie.match("b/a").isEmpty());
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@Test
+	public void testEveryMatchingFilterIsListed() {
+		final MqttTopicTrie<String> trie = MqttTopicTrie.<String>empty().with("#", "all")
+																		 .with("a/+", "single")
+																		 .with("a/b", "exact")
+																		 .with("a/#", "multi")
+																		 .with("a/b", "exact2");
+		
+		final List<String> matches = trie.match("a/b");
+		Collections.sort(matches);
+		assertEquals(Arrays.asList("all", "exact", "exact2", "multi", "single"), matches);
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@Test
+	public void testSystemTopicsAreNotMatchedByLeadingWildcards() {
+		final MqttTopicTrie<String> trie = MqttTopicTrie.<String>empty().with("#", "all")
+																		 .with("+/broker", "single")
+																		 .with("$SYS/#", "system");
+		
+		assertEquals(List.of("system"), trie.match("$SYS/broker"));
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@Test
+	public void testWithoutRemovesOnlyTheGivenValue() {
+		final MqttTopicTrie<String> trie = MqttTopicTrie.<String>empty().with("a/+", "first")
+																		 .with("a/+", "second");
+		
+		final MqttTopicTrie<String> removed = trie.without("a/+", "first");
+		assertEquals(1, removed.size());
+		assertEquals(List.of("second"), removed.match("a/b"));
+		
+		// the original trie is not modified
+		assertEquals(2, trie.size());
+		assertEquals(2, trie.match("a/b").size());
+		
+		final MqttTopicTrie<String> empty = removed.without("a/+", "second");
+		assertEquals(0, empty.size());
+		assertTrue(empty.match("a/b").isEmpty());
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@Test
+	public void testWithoutUnknownValueReturnsSameTrie() {
+		final MqttTopicTrie<String> trie = MqttTopicTrie.<String>empty().with("a/b", "value");
+		
+		assertSame(trie, trie.without("a/b", "other"));
+		assertSame(trie, trie.without("a/c", "value"));
+	}
+}
@@ -0,0 +1,165 @@
+/********************************************************************************
+ * Copyright (c) 2020 AITIA
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *   AITIA - implementation
+ ********************************************************************************/
+
+package ai.aitia.arrowhead.application.library.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class CircuitBreakerTest {
+	
+	//=================================================================================================
+	// members
+	
+	private static final String ENDPOINT = "localhost:8443/test";
+	private static final int FAILURE_THRESHOLD = 3;
+	private static final long MIN_TIMEOUT = 10;
+	private static final long MAX_TIMEOUT = 1000;
+	private static final long FAST = TimeUnit.MILLISECONDS.toNanos(5);
+	
+	//=================================================================================================
+	// methods
+	
+	//-------------------------------------------------------------------------------------------------
+	@Test
+	public void testOpensAfterConsecutiveFailures() {
+		final CircuitBreaker breaker = newBreaker(60000);
+		for (int i = 0; i < FAILURE_THRESHOLD - 1; ++i) {
+			breaker.acquirePermission();
+			breaker.onFailure(FAST);
+		}
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+		
+		breaker.acquirePermission();
+		breaker.onFailure(FAST);
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+		assertEquals(1, breaker.getOpenCount());
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@Test
+	public void testSuccessResetsConsecutiveFailures() {
+		final CircuitBreaker breaker = newBreaker(60000);
+		for (int i = 0; i < FAILURE_THRESHOLD - 1; ++i) {
+			breaker.onFailure(FAST);
+		}
+		breaker.onSuccess(FAST);
+		assertEquals(0, breaker.getConsecutiveFailures());
+		
+		breaker.onFailure(FAST);
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@Test
+	public void testOpenBreakerRejects() {
+		final CircuitBreaker breaker = newBreaker(60000);
+		open(breaker);
+		
+		assertThrows(CircuitBreakerOpenException.class, () -> breaker.acquirePermission());
+		assertEquals(1, breaker.getRejectedCount());
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@Test
+	public void testHalfOpenLetsOneTrialThrough() {
+		final CircuitBreaker breaker = newBreaker(0);
+		open(breaker);
+		assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+		
+		breaker.acquirePermission();
+		assertThrows(CircuitBreakerOpenException.class, () -> breaker.acquirePermission());
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@Test
+	public void testHalfOpenTrialSuccessCloses() {
+		final CircuitBreaker breaker = newBreaker(0);
+		open(breaker);
+		
+		breaker.acquirePermission();
+		breaker.onSuccess(FAST);
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+		assertEquals(0, breaker.getConsecutiveFailures());
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@Test
+	public void testHalfOpenTrialFailureReopens() {
+		final CircuitBreaker breaker = newBreaker(60000);
+		open(breaker);
+		ReflectionTestUtils.setField(breaker, "openedAt", 0L); // the open duration is over
+		
+		breaker.acquirePermission();
+		breaker.onFailure(FAST);
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+		assertEquals(2, breaker.getOpenCount());
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@Test
+	public void testReleasedTrialPermissionAllowsAnotherTrial() {
+		final CircuitBreaker breaker = newBreaker(0);
+		open(breaker);
+		
+		breaker.acquirePermission();
+		breaker.releasePermission();
+		breaker.acquirePermission();
+		assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@Test
+	public void testSlowCallCountsAsFailure() {
+		final CircuitBreaker breaker = newBreaker(60000);
+		breaker.onSuccess(TimeUnit.MILLISECONDS.toNanos(MAX_TIMEOUT + 1));
+		assertEquals(1, breaker.getConsecutiveFailures());
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	@Test
+	public void testAdaptiveTimeout() {
+		final CircuitBreaker breaker = newBreaker(60000);
+		assertEquals(MAX_TIMEOUT, breaker.getTimeout());
+		
+		for (int i = 0; i < 40; ++i) {
+			breaker.onSuccess(TimeUnit.MILLISECONDS.toNanos(20));
+		}
+		assertEquals(40, breaker.getTimeout()); // 99th percentile * 2
+		
+		for (int i = 0; i < 300; ++i) {
+			breaker.onSuccess(TimeUnit.MICROSECONDS.toNanos(100));
+		}
+		assertEquals(MIN_TIMEOUT, breaker.getTimeout());
+	}
+	
+	//=================================================================================================
+	// assistant methods
+	
+	//-------------------------------------------------------------------------------------------------
+	private CircuitBreaker newBreaker(final long openDuration) {
+		return new CircuitBreaker(ENDPOINT, new CircuitBreakerSettings(FAILURE_THRESHOLD, openDuration, MIN_TIMEOUT, MAX_TIMEOUT, 99, 2));
+	}
+	
+	//-------------------------------------------------------------------------------------------------
+	private void open(final CircuitBreaker breaker) {
+		for (int i = 0; i < FAILURE_THRESHOLD; ++i) {
+			breaker.onFailure(FAST);
+		}
+	}
+}